@@ -0,0 +1,251 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import game.model.CostTable;
+import game.model.ForkJoinExecutor;
+import game.model.GameState;
+import game.model.HierarchicalMap;
+import game.model.MapSnapshot;
+import game.model.PathFinder;
+import game.model.SearchMode;
+import game.model.SimulationExecutor;
+import game.model.SingleThreadedExecutor;
+import game.model.TerrainGenerator;
+import game.model.TileGrid;
+import game.model.entities.Duck;
+import game.model.entities.EntityType;
+
+/**
+ * Benchmark is a small static class for timing the expensive parts of the model on their own, and
+ * checking that the fast versions still give the same answers as the simple ones.
+ *
+ * Usage: Benchmark generation|layers|snapshot|hierarchy [map size] [runs] [seed]
+ *
+ * For hierarchy the runs are the number of queries checked against a plain A* search.
+ */
+public class Benchmark {
+  private static final int DEFAULT_SIZE = 4096;
+  private static final int DEFAULT_RUNS = 3;
+  private static final long DEFAULT_SEED = 5;
+  // The number of hierarchical queries to time.
+  private static final int HIERARCHY_QUERIES = 200;
+
+  public static void main(String args[]) throws IOException {
+    String benchmark = args.length > 0 ? args[0] : "generation";
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SIZE;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUNS;
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+
+    if (benchmark.equals("generation")) {
+      generation(size, runs, seed);
+    } else if (benchmark.equals("layers")) {
+      layers(size, runs, seed);
+    } else if (benchmark.equals("snapshot")) {
+      snapshot(size, runs, (int) seed);
+    } else if (benchmark.equals("hierarchy")) {
+      hierarchy(size, runs, (int) seed);
+    } else {
+      System.err.println("Unknown benchmark " + benchmark
+              + ", try generation, layers, snapshot or hierarchy.");
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Time generating a map serially and on every core, and check that both give the same map.
+   */
+  private static void generation(int size, int runs, long seed) {
+    TerrainGenerator generator = new TerrainGenerator(seed);
+    SimulationExecutor serial = new SingleThreadedExecutor();
+    SimulationExecutor parallel = new ForkJoinExecutor();
+    TileGrid serialGrid = new TileGrid(size, size);
+    TileGrid parallelGrid = new TileGrid(size, size);
+
+    // The first run of each warms up the JIT and isn't counted.
+    generator.generate(serialGrid, 0, 0, serial);
+    generator.generate(parallelGrid, 0, 0, parallel);
+    if (!serialGrid.sameTilesAs(parallelGrid)) {
+      System.err.println("Parallel generation gave a different map!");
+      System.exit(1);
+    }
+
+    double serialSeconds = time(generator, serialGrid, serial, runs);
+    double parallelSeconds = time(generator, parallelGrid, parallel, runs);
+    parallel.shutdown();
+    System.out.printf("Generated %dx%d maps: serial %.3f s, parallel on %d threads %.3f s "
+                    + "(%.2fx), identical.%n", size, size, serialSeconds,
+            parallel.getParallelism(), parallelSeconds, serialSeconds / parallelSeconds);
+  }
+
+  /**
+   * Time generating a game against saving it to a MapSnapshot and starting a game from the file, and
+   * check that the loaded game has the same tiles and costs. A big map needs a big heap for the
+   * generated game's cost tables, the loaded ones stay on the file.
+   */
+  private static void snapshot(int size, int runs, int seed) throws IOException {
+    SimulationExecutor executor = new ForkJoinExecutor();
+    long startTime = System.nanoTime();
+    GameState generated = new GameState(size, size, seed, executor);
+    double generateSeconds = (System.nanoTime() - startTime) / 1e9;
+    executor.shutdown();
+
+    Path path = Files.createTempFile("snapshot", ".kqm");
+    try {
+      startTime = System.nanoTime();
+      MapSnapshot.write(generated, path);
+      double writeSeconds = (System.nanoTime() - startTime) / 1e9;
+
+      double loadSeconds = 0;
+      GameState loaded = null;
+      // The first load warms up the JIT and isn't counted.
+      for (int run = 0; run <= runs; run++) {
+        startTime = System.nanoTime();
+        loaded = new GameState(MapSnapshot.read(path), seed);
+        if (run > 0) {
+          loadSeconds += (System.nanoTime() - startTime) / 1e9 / runs;
+        }
+      }
+      CostTable generatedCosts = generated.getCostTable();
+      CostTable loadedCosts = loaded.getCostTable();
+      boolean same = generated.getGrid().sameTilesAs(loaded.getGrid());
+      for (EntityType type : EntityType.values()) {
+        same = same && generatedCosts.getCosts(type).equals(loadedCosts.getCosts(type))
+                && generatedCosts.getMinimumCost(type) == loadedCosts.getMinimumCost(type);
+      }
+      if (!same) {
+        System.err.println("The loaded map is different from the saved one!");
+        System.exit(1);
+      }
+      System.out.printf("%dx%d map of %d MB: generating %.3f s, writing %.3f s, loading %.3f ms, "
+                      + "identical.%n", size, size, Files.size(path) >> 20, generateSeconds,
+              writeSeconds, loadSeconds * 1e3);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  /**
+   * Time building a HierarchicalMap for ducks and finding paths between random tiles with it, and
+   * compare the cost of some of those paths with the cheapest path found by plain A*. A 4096x4096
+   * map needs a heap of about 2 GB.
+   */
+  private static void hierarchy(int size, int checks, int seed) {
+    SimulationExecutor executor = new ForkJoinExecutor();
+    GameState state = new GameState(size, size, seed, executor);
+    executor.shutdown();
+    Duck duck = new Duck(0, 0, 0, 0, size, size, state);
+    long startTime = System.nanoTime();
+    HierarchicalMap hierarchy = state.getHierarchy(duck);
+    double buildSeconds = (System.nanoTime() - startTime) / 1e9;
+
+    Random random = new Random(seed);
+    double totalMillis = 0;
+    double worstMillis = 0;
+    long moves = 0;
+    // The first queries warm up the JIT and aren't counted.
+    for (int q = -HIERARCHY_QUERIES / 4; q < HIERARCHY_QUERIES; q++) {
+      int x = random.nextInt(size);
+      int y = random.nextInt(size);
+      int xd = random.nextInt(size);
+      int yd = random.nextInt(size);
+      startTime = System.nanoTime();
+      int[] path = hierarchy.findPath(x, y, xd, yd);
+      double millis = (System.nanoTime() - startTime) / 1e6;
+      if (q >= 0) {
+        totalMillis += millis;
+        worstMillis = Math.max(worstMillis, millis);
+        moves += Math.max(path.length - 1, 0);
+      }
+    }
+
+    PathFinder reference = new PathFinder(state, size, size, SearchMode.A_STAR);
+    double totalExcess = 0;
+    double worstExcess = 0;
+    double referenceSeconds = 0;
+    int compared = 0;
+    for (int q = 0; q < checks; q++) {
+      int x = random.nextInt(size);
+      int y = random.nextInt(size);
+      int xd = random.nextInt(size);
+      int yd = random.nextInt(size);
+      int[] path = hierarchy.findPath(x, y, xd, yd);
+      startTime = System.nanoTime();
+      reference.start(duck, x, y, xd, yd);
+      reference.run();
+      referenceSeconds += (System.nanoTime() - startTime) / 1e9;
+      int cheapest = reference.getDistance(reference.node(xd, yd));
+      if (cheapest == PathFinder.UNREACHED || cheapest == 0) {
+        continue;
+      }
+      int cost = 0;
+      for (int i = 1; i < path.length; i++) {
+        int from = path[i - 1];
+        int to = path[i];
+        CardinalDirection direction = state.getTopology().towards(from % size, from / size,
+                to % size, to / size, size, size);
+        cost += state.requestCost(duck, from % size, from / size, direction);
+      }
+      double excess = (double) cost / cheapest - 1;
+      totalExcess += excess;
+      worstExcess = Math.max(worstExcess, excess);
+      compared++;
+    }
+    System.out.printf("Built a %dx%d hierarchy in %.2f s with %d entrances. %d queries took %.2f ms "
+                    + "on average and %.2f ms at worst, %.0f moves long on average. Against %d A* "
+                    + "searches (%.2f s each) the paths cost %.2f%% more on average and %.2f%% at "
+                    + "worst.%n", size, size, buildSeconds, hierarchy.getNodeCount(),
+            HIERARCHY_QUERIES, totalMillis / HIERARCHY_QUERIES, worstMillis,
+            (double) moves / HIERARCHY_QUERIES, compared, referenceSeconds / Math.max(checks, 1),
+            100 * totalExcess / Math.max(compared, 1), 100 * worstExcess);
+  }
+
+  /**
+   * Time the layered terrain against the plain terrain. NoisePipelineTest checks that the pipeline
+   * gives the same values as its layers.
+   */
+  private static void layers(int size, int runs, long seed) {
+    TerrainGenerator generator = new TerrainGenerator(seed);
+    SimulationExecutor serial = new SingleThreadedExecutor();
+    TileGrid grid = new TileGrid(size, size);
+    double plainSeconds = 0;
+    double layeredSeconds = 0;
+    // The first run of each warms up the JIT and isn't counted.
+    for (int run = 0; run <= runs; run++) {
+      long startTime = System.nanoTime();
+      generator.generate(grid, 0, 0, serial);
+      long middleTime = System.nanoTime();
+      generator.generateLayered(grid, 0, 0, serial);
+      long endTime = System.nanoTime();
+      if (run > 0) {
+        plainSeconds += (middleTime - startTime) / 1e9 / runs;
+        layeredSeconds += (endTime - middleTime) / 1e9 / runs;
+      }
+    }
+    int water = 0;
+    int marsh = 0;
+    for (int cell = 0; cell < size * size; cell++) {
+      if (grid.getKind(cell) == TileGrid.WATER) {
+        water++;
+        // Open water is never quite still, so still water is marsh.
+        marsh += grid.getPower(cell) == 0 ? 1 : 0;
+      }
+    }
+    System.out.printf("Generated %dx%d maps: plain %.3f s, layered %.3f s (%.2fx the cost), "
+                    + "%.0f%% water of which %.0f%% marsh.%n", size, size, plainSeconds,
+            layeredSeconds, layeredSeconds / plainSeconds, 100.0 * water / size / size,
+            100.0 * marsh / Math.max(water, 1));
+  }
+
+  private static double time(TerrainGenerator generator, TileGrid grid,
+                             SimulationExecutor executor, int runs) {
+    long startTime = System.nanoTime();
+    for (int run = 0; run < runs; run++) {
+      generator.generate(grid, 0, 0, executor);
+    }
+    return (System.nanoTime() - startTime) / 1e9 / runs;
+  }
+}
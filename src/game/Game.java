@@ -1,62 +1,83 @@
 package game;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.util.function.Consumer;
 
-import javax.swing.Timer;
-
+import game.model.CurrentField;
+import game.model.EntityUpdater;
+import game.model.ForkJoinExecutor;
 import game.model.GameState;
-import game.model.entities.Duck;
-import game.model.entities.Koala;
+import game.model.Simulation;
+import game.model.SimulationExecutor;
+import game.model.SnapshotPublisher;
+import game.model.ThinkingScheduler;
 import game.view.View;
 
 /**
  * The Game class is a controller for the entire game. It is also how we are going to run stuff.
+ *
+ * The simulation ticks on a thread of its own in real time and the view draws on another, so a
+ * slow frame never holds up the AI and a slow tick never holds up the frames. All that passes
+ * between them is the snapshot published after every tick.
  */
 public class Game {
-  private static int FRAMES_PER_SECOND = 30;
+  private static int FRAMES_PER_SECOND = 60;
   private static int UPDATE_TICK_MILLISECONDS = 70;
+  // How much of every tick the entities can spend thinking.
+  private static int THINKING_MILLISECONDS = 20;
+  // How many water tiles get their current looked at again every tick.
+  private static int CURRENT_TILES_PER_TICK = 8;
 
   private GameState gamestate;
   private View view;
+  private Simulation simulation;
+  private Thread simulationThread;
 
   /**
    * Create a new Game controller with all the bells and whistles.
    */
   public Game() {
-    this.gamestate = new GameState(16, 16, 5);
-    this.view = new View(this.gamestate);
+    this(false);
+  }
 
+  /**
+   * Create a new Game controller.
+   * @param visualizeThinking If true, entities only think one operation per tick so we can watch.
+   */
+  public Game(boolean visualizeThinking) {
+    this(visualizeThinking, new ForkJoinExecutor());
+  }
 
+  /**
+   * Create a new Game controller.
+   * @param visualizeThinking If true, entities only think one operation per tick so we can watch.
+   * @param executor          The executor to run the entities' AI on.
+   */
+  public Game(boolean visualizeThinking, SimulationExecutor executor) {
+    this.gamestate = new GameState(16, 16, 5, executor);
+    ThinkingScheduler thinkingScheduler = visualizeThinking
+            ? ThinkingScheduler.oneStepPerTick()
+            : ThinkingScheduler.millisecondsPerTick(THINKING_MILLISECONDS);
+    EntityUpdater entityUpdater = new EntityUpdater(executor, thinkingScheduler);
+    this.simulation = new Simulation(this.gamestate, entityUpdater, UPDATE_TICK_MILLISECONDS);
+    // The currents move before the snapshot for the view is taken.
+    this.simulation.addObserver(new CurrentField(this.gamestate, CURRENT_TILES_PER_TICK));
+    SnapshotPublisher publisher = new SnapshotPublisher(this.gamestate, UPDATE_TICK_MILLISECONDS);
+    this.simulation.addObserver(publisher);
+    this.view = new View(this.gamestate, publisher);
+    this.view.start(FRAMES_PER_SECOND);
 
-    // We create an anonymous class here that is an action listener for the Timer.
-    // It will simply repaint stuff.
-    ActionListener drawingListener = new ActionListener() {
-      private long time = System.currentTimeMillis();
-      private long updateCounter = 0;
+    // We create an anonymous class here that runs the simulation at the pace of real time for as
+    // long as the game is open.
+    this.simulationThread = new Thread(new Runnable() {
       @Override
-      public void actionPerformed(ActionEvent actionEvent) {
-        long updatedTime = System.currentTimeMillis();
-        long dt = updatedTime - this.time;
-        this.updateCounter += dt;
-        if (this.updateCounter >= UPDATE_TICK_MILLISECONDS) {
-          this.updateCounter = 0;
-          for (Duck duck: gamestate.ducks) {
-            duck.processStep();
-          }
-          for (Koala koala: gamestate.koalas) {
-            koala.processStep();
-          }
+      public void run() {
+        try {
+          simulation.runRealTime(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+          // The game is over.
         }
-        view.step(dt);
-        this.time = updatedTime;
       }
-    };
-
-
-
-    Timer scheduler = new Timer(1000 / FRAMES_PER_SECOND, drawingListener);
-    scheduler.start();
+    }, "simulation");
+    this.simulationThread.start();
   }
 }
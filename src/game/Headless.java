@@ -0,0 +1,49 @@
+package game;
+
+import game.model.EntityUpdater;
+import game.model.ForkJoinExecutor;
+import game.model.GameState;
+import game.model.Simulation;
+import game.model.SimulationExecutor;
+import game.model.ThinkingScheduler;
+import game.model.Topology;
+
+/**
+ * Headless is a small static class focused on running games without a display, as fast as
+ * possible. It is what we use to batch-run games for balancing and regression.
+ *
+ * Usage: Headless [games] [board size] [ticks per game] [thinking operations per tick] [layered]
+ *
+ * Games are played on plain terrain unless the last argument is "layered".
+ */
+public class Headless {
+  private static final int DEFAULT_GAMES = 10;
+  private static final int DEFAULT_SIZE = 64;
+  private static final int DEFAULT_TICKS = 1000;
+  private static final int DEFAULT_OPERATIONS = 100000;
+  private static final long TICK_MILLISECONDS = 70;
+
+  public static void main(String args[]) {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SIZE;
+    long ticks = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_TICKS;
+    int operations = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_OPERATIONS;
+    boolean layered = args.length > 4 && args[4].equals("layered");
+
+    // Counting operations instead of time keeps every run reproducible, and the thinking is shared
+    // out the same way whatever the number of cores (SimulationTest checks this).
+    SimulationExecutor executor = new ForkJoinExecutor();
+    long startTime = System.nanoTime();
+    for (int seed = 0; seed < games; seed++) {
+      GameState gamestate = new GameState(size, size, seed, executor, Topology.BOUNDED, layered);
+      EntityUpdater entityUpdater =
+              new EntityUpdater(executor, ThinkingScheduler.operationsPerTick(operations));
+      Simulation simulation = new Simulation(gamestate, entityUpdater, TICK_MILLISECONDS);
+      simulation.run(ticks);
+    }
+    executor.shutdown();
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+    System.out.printf("Ran %d games of %d ticks on %dx%d boards in %.2f s (%.1f games/hour).%n",
+            games, ticks, size, size, seconds, games / seconds * 3600);
+  }
+}
@@ -0,0 +1,228 @@
+package game.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import game.CardinalDirection;
+import game.model.entities.EntityType;
+import game.model.tiles.Tile;
+
+/**
+ * A ChunkedWorld is a world with no edges. It is cut into square chunks of tiles, and a chunk is only
+ * generated from the seed the first time something looks at it, so making a world costs the same
+ * however big it is.
+ *
+ * Only so many chunks are kept in memory. When there are too many the one that was looked at least
+ * recently is thrown away; it is generated again, tile for tile the same, if it is needed later.
+ * Chunks that have been edited with setTile() can't be generated again, so they are kept for good.
+ *
+ * Positions can be any int, negative ones included.
+ *
+ * This is only the store of such a world. A GameState and its View still play on a bounded board of
+ * a fixed size, so nothing in the game calls touch() or moves entities across chunks yet; a camera
+ * or an entity that wants the world around it should touch() that rectangle before reading tiles.
+ */
+public class ChunkedWorld {
+  /** The width and height in tiles of a chunk, unless one is given to the constructor. */
+  public static final int DEFAULT_CHUNK_SIZE = 64;
+  // A TileGrid keeps a byte for the kind, a byte for the current and a float for the power.
+  private static final int BYTES_PER_TILE = 6;
+
+  private final TerrainGenerator generator;
+  private final int chunkSize;
+  private final int maximumChunks;
+  private final LinkedHashMap<Long, TileGrid> chunks; // In order of use, least recent first.
+  private final Map<Long, TileGrid> editedChunks;
+  private long generatedChunks; // How many times we've had to generate a chunk.
+
+  /**
+   * Create a new ChunkedWorld. Nothing is generated yet.
+   * @param seed         The seed to generate the world from.
+   * @param chunkSize    The width and height in tiles of a chunk.
+   * @param memoryBudget Roughly how many bytes of tiles to keep around. At least one chunk is kept.
+   */
+  public ChunkedWorld(long seed, int chunkSize, long memoryBudget) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunks need at least one tile.");
+    }
+    this.generator = new TerrainGenerator(seed);
+    this.chunkSize = chunkSize;
+    long chunkBytes = (long) chunkSize * chunkSize * BYTES_PER_TILE;
+    this.maximumChunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / chunkBytes));
+    this.chunks = new LinkedHashMap<>(16, 0.75f, true);
+    this.editedChunks = new HashMap<>();
+  }
+
+  /**
+   * Create a new ChunkedWorld with chunks of the default size.
+   * @param seed         The seed to generate the world from.
+   * @param memoryBudget Roughly how many bytes of tiles to keep around.
+   */
+  public ChunkedWorld(long seed, long memoryBudget) {
+    this(seed, DEFAULT_CHUNK_SIZE, memoryBudget);
+  }
+
+  private static long key(int chunkX, int chunkY) {
+    return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+  }
+
+  /**
+   * A method to fetch the chunk holding the given position, generating it if needed.
+   * @param x The x position (in tiles) in the world.
+   * @param y The y position (in tiles) in the world.
+   * @return The chunk as a grid. The position is at (x - getChunkOriginX(x), y - getChunkOriginY(y))
+   *         in it.
+   */
+  public synchronized TileGrid getChunk(int x, int y) {
+    int chunkX = Math.floorDiv(x, this.chunkSize);
+    int chunkY = Math.floorDiv(y, this.chunkSize);
+    Long key = key(chunkX, chunkY);
+    TileGrid chunk = this.editedChunks.get(key);
+    if (chunk != null) {
+      return chunk;
+    }
+    chunk = this.chunks.get(key);
+    if (chunk == null) {
+      chunk = new TileGrid(this.chunkSize, this.chunkSize);
+      this.generator.generate(chunk, chunkX * this.chunkSize, chunkY * this.chunkSize);
+      this.generatedChunks++;
+      this.chunks.put(key, chunk);
+      evict();
+    }
+    return chunk;
+  }
+
+  private void evict() {
+    Iterator<TileGrid> leastRecent = this.chunks.values().iterator();
+    while (this.chunks.size() + this.editedChunks.size() > this.maximumChunks
+            && this.chunks.size() > 1) {
+      leastRecent.next();
+      leastRecent.remove();
+    }
+  }
+
+  /**
+   * A method to make sure every chunk overlapping a rectangle is in memory, like the part of the world
+   * in view. Asking for more than the budget holds just throws the first ones away again.
+   * @param x      The x position (in tiles) of the top left corner.
+   * @param y      The y position (in tiles) of the top left corner.
+   * @param width  The width of the rectangle in tiles.
+   * @param height The height of the rectangle in tiles.
+   */
+  public void touch(int x, int y, int width, int height) {
+    int fromX = Math.floorDiv(x, this.chunkSize);
+    int toX = Math.floorDiv(x + width - 1, this.chunkSize);
+    int fromY = Math.floorDiv(y, this.chunkSize);
+    int toY = Math.floorDiv(y + height - 1, this.chunkSize);
+    for (int chunkY = fromY; chunkY <= toY; chunkY++) {
+      for (int chunkX = fromX; chunkX <= toX; chunkX++) {
+        getChunk(chunkX * this.chunkSize, chunkY * this.chunkSize);
+      }
+    }
+  }
+
+  /**
+   * A method to return the tile at a position.
+   * @param x The x position (in tiles) in the world.
+   * @param y The y position (in tiles) in the world.
+   * @return A view of the tile at that position.
+   */
+  public Tile getTile(int x, int y) {
+    return getChunk(x, y).getTile(Math.floorMod(x, this.chunkSize),
+            Math.floorMod(y, this.chunkSize));
+  }
+
+  /**
+   * A method to return the kind of tile at a position.
+   * @param x The x position (in tiles) in the world.
+   * @param y The y position (in tiles) in the world.
+   * @return TileGrid.GRASS or TileGrid.WATER.
+   */
+  public byte getKind(int x, int y) {
+    return getChunk(x, y).getKind(cell(x, y));
+  }
+
+  /**
+   * A method to return the cost of moving out of a tile.
+   * @param type      The type of entity moving.
+   * @param x         The x position (in tiles) in the world.
+   * @param y         The y position (in tiles) in the world.
+   * @param direction The direction the entity wants to move.
+   * @return The cost for the given type of entity to do the given move.
+   */
+  public int getCost(EntityType type, int x, int y, CardinalDirection direction) {
+    return getChunk(x, y).getCost(type, cell(x, y), direction);
+  }
+
+  /**
+   * A method to replace one tile of the world. The chunk it is in is never thrown away after this.
+   * @param x    The x position (in tiles) in the world.
+   * @param y    The y position (in tiles) in the world.
+   * @param tile The new tile, a GrassTile or a WaterTile.
+   */
+  public synchronized void setTile(int x, int y, Tile tile) {
+    TileGrid chunk = getChunk(x, y);
+    Long key = key(Math.floorDiv(x, this.chunkSize), Math.floorDiv(y, this.chunkSize));
+    if (this.chunks.remove(key) != null) {
+      this.editedChunks.put(key, chunk);
+    }
+    chunk.setTile(Math.floorMod(x, this.chunkSize), Math.floorMod(y, this.chunkSize), tile);
+  }
+
+  private int cell(int x, int y) {
+    return Math.floorMod(y, this.chunkSize) * this.chunkSize + Math.floorMod(x, this.chunkSize);
+  }
+
+  /**
+   * A method to return the x position in the world of the chunk holding a position.
+   * @param x The x position (in tiles) in the world.
+   * @return The x position (in tiles) of the left edge of its chunk.
+   */
+  public int getChunkOriginX(int x) {
+    return Math.floorDiv(x, this.chunkSize) * this.chunkSize;
+  }
+
+  /**
+   * A method to return the y position in the world of the chunk holding a position.
+   * @param y The y position (in tiles) in the world.
+   * @return The y position (in tiles) of the top edge of its chunk.
+   */
+  public int getChunkOriginY(int y) {
+    return Math.floorDiv(y, this.chunkSize) * this.chunkSize;
+  }
+
+  /**
+   * A method to return the width and height of a chunk.
+   * @return The size of a chunk in tiles.
+   */
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+
+  /**
+   * A method to return how many chunks are in memory right now.
+   * @return The number of chunks, edited ones included.
+   */
+  public synchronized int getLoadedChunkCount() {
+    return this.chunks.size() + this.editedChunks.size();
+  }
+
+  /**
+   * A method to return how many chunks have been generated so far, counting chunks generated again
+   * after being thrown away.
+   * @return The number of times a chunk was generated.
+   */
+  public synchronized long getGeneratedChunkCount() {
+    return this.generatedChunks;
+  }
+
+  /**
+   * A method to return the generator the world comes from.
+   * @return The TerrainGenerator of this world.
+   */
+  public TerrainGenerator getGenerator() {
+    return this.generator;
+  }
+}
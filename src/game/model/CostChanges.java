@@ -0,0 +1,102 @@
+package game.model;
+
+import game.CardinalDirection;
+import game.model.entities.EntityType;
+
+/**
+ * A CostChanges is what changed in one update of the edge costs: the tiles that changed, and what
+ * the edges out of each of them cost before and after, for every type of entity. That is enough for
+ * a CostListener to bring what it worked out from the old costs up to date without asking the
+ * CostTable again.
+ */
+public class CostChanges {
+  private static final EntityType[] TYPES = EntityType.values();
+  private static final int DIRECTIONS = CostTable.DIRECTION_COUNT;
+  // The costs of one tile for every type, in the order of EntityType then CardinalDirection.
+  private static final int COSTS_PER_CELL = TYPES.length * DIRECTIONS;
+
+  private final int[] cells;
+  private final int[] oldCosts, newCosts; // Cost of cell i, type t, direction d at [i][t][d].
+  private int count;
+
+  /**
+   * Create a new, empty CostChanges.
+   * @param capacity The most tiles that can be added.
+   */
+  CostChanges(int capacity) {
+    this.cells = new int[capacity];
+    this.oldCosts = new int[capacity * COSTS_PER_CELL];
+    this.newCosts = new int[capacity * COSTS_PER_CELL];
+    this.count = 0;
+  }
+
+  /**
+   * A method to add a tile that is about to change, keeping what its edges cost now. Call it before
+   * CostTable.update() for the tile, and call updated() once every tile has been updated.
+   * @param costs The cost table, not updated for the tile yet.
+   * @param cell  The packed cell id y * width + x of the tile.
+   */
+  void add(CostTable costs, int cell) {
+    this.cells[this.count] = cell;
+    copy(costs, cell, this.oldCosts, this.count);
+    this.count++;
+  }
+
+  /**
+   * A method to keep what the edges of every tile added cost after the update.
+   * @param costs The cost table, updated for every tile.
+   */
+  void updated(CostTable costs) {
+    for (int i = 0; i < this.count; i++) {
+      copy(costs, this.cells[i], this.newCosts, i);
+    }
+  }
+
+  private static void copy(CostTable costs, int cell, int[] into, int i) {
+    for (EntityType type : TYPES) {
+      for (int d = 0; d < DIRECTIONS; d++) {
+        into[i * COSTS_PER_CELL + type.ordinal() * DIRECTIONS + d] =
+                costs.getCosts(type).get(cell * DIRECTIONS + d);
+      }
+    }
+  }
+
+  /**
+   * A method to return how many tiles changed.
+   * @return The number of tiles.
+   */
+  public int size() {
+    return this.count;
+  }
+
+  /**
+   * A method to return which tile changed.
+   * @param i The index of the change, less than size().
+   * @return The packed cell id y * width + x of the tile.
+   */
+  public int getCell(int i) {
+    return this.cells[i];
+  }
+
+  /**
+   * A method to return what an edge out of a changed tile cost before the change.
+   * @param i         The index of the change, less than size().
+   * @param type      The type of entity moving.
+   * @param direction The direction of the edge.
+   * @return The old cost.
+   */
+  public int getOldCost(int i, EntityType type, CardinalDirection direction) {
+    return this.oldCosts[i * COSTS_PER_CELL + type.ordinal() * DIRECTIONS + direction.ordinal()];
+  }
+
+  /**
+   * A method to return what an edge out of a changed tile costs after the change.
+   * @param i         The index of the change, less than size().
+   * @param type      The type of entity moving.
+   * @param direction The direction of the edge.
+   * @return The new cost, the same as the CostTable has now.
+   */
+  public int getNewCost(int i, EntityType type, CardinalDirection direction) {
+    return this.newCosts[i * COSTS_PER_CELL + type.ordinal() * DIRECTIONS + direction.ordinal()];
+  }
+}
@@ -0,0 +1,82 @@
+package game.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import game.CardinalDirection;
+import game.model.entities.EntityType;
+
+/**
+ * A CostDrift keeps track of how far the edge costs of one type of entity have moved from what they
+ * were when something was worked out from them. If every edge now costs at least r times what it
+ * did, so does every path, so bounds worked out from the old costs can be scaled by the ratios here
+ * to stay safe without searching again.
+ */
+class CostDrift {
+  private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+
+  private final EntityType type;
+  // What each edge that has changed since we started cost then, by cell * 4 + direction.
+  private final Map<Integer, Integer> builtCosts;
+  // No edge costs less than lowestRatio or more than highestRatio times what it did.
+  private double lowestRatio, highestRatio;
+
+  /**
+   * Create a new CostDrift from the costs as they are now.
+   * @param type The type of entity whose costs to follow.
+   */
+  CostDrift(EntityType type) {
+    this.type = type;
+    this.builtCosts = new HashMap<>();
+    this.lowestRatio = 1;
+    this.highestRatio = 1;
+  }
+
+  /**
+   * A method to take changed costs into account. Call this from the thread that changes the costs,
+   * between searches.
+   * @param changes The changed costs.
+   */
+  void costsChanged(CostChanges changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      int cell = changes.getCell(i);
+      for (CardinalDirection direction : DIRECTIONS) {
+        int newCost = changes.getNewCost(i, this.type, direction);
+        int edge = cell * CostTable.DIRECTION_COUNT + direction.ordinal();
+        Integer builtCost = this.builtCosts.get(edge);
+        if (builtCost == null) {
+          builtCost = changes.getOldCost(i, this.type, direction);
+          this.builtCosts.put(edge, builtCost);
+        }
+        if (newCost == builtCost) {
+          continue;
+        }
+        // A free edge that isn't free any more could have grown by any amount.
+        double ratio = builtCost > 0 ? (double) newCost / builtCost : Double.POSITIVE_INFINITY;
+        this.lowestRatio = Math.min(this.lowestRatio, ratio);
+        this.highestRatio = Math.max(this.highestRatio, ratio);
+      }
+    }
+  }
+
+  /**
+   * A method to scale a lower bound on the old costs into one on the costs now.
+   * @param bound A lower bound on a distance with the old costs, at least zero.
+   * @return A lower bound on the distance with the costs now.
+   */
+  int scaleLower(int bound) {
+    return this.lowestRatio < 1 ? (int) (bound * this.lowestRatio) : bound;
+  }
+
+  /**
+   * A method to scale an upper bound on the old costs into one on the costs now.
+   * @param bound An upper bound on a distance with the old costs, PathFinder.UNREACHED if unknown.
+   * @return An upper bound on the distance with the costs now.
+   */
+  int scaleUpper(int bound) {
+    if (this.highestRatio > 1 && bound != PathFinder.UNREACHED) {
+      return (int) Math.min(PathFinder.UNREACHED - 1, Math.ceil(bound * this.highestRatio));
+    }
+    return bound;
+  }
+}
@@ -0,0 +1,14 @@
+package game.model;
+
+/**
+ * A CostListener is told whenever the cost of moving out of some tiles has changed, so it can bring
+ * whatever it worked out from the old costs up to date instead of starting over.
+ */
+public interface CostListener {
+  /**
+   * Called after the costs of some tiles have changed. The new costs are already in the model's
+   * CostTable.
+   * @param changes The tiles that changed, with the costs of their edges before and after.
+   */
+  void costsChanged(CostChanges changes);
+}
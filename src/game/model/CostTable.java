@@ -0,0 +1,170 @@
+package game.model;
+
+import java.nio.IntBuffer;
+
+import game.CardinalDirection;
+import game.model.entities.EntityType;
+
+/**
+ * A CostTable holds the cost of every edge on the board for every type of entity, worked out once
+ * from the TileGrid. Edge costs only depend on the tile and the type of entity, so a search never
+ * has to go back to the tile rules: the cost of leaving a cell is one array read.
+ *
+ * The costs of each type are packed into a single int array indexed by cell * 4 + the ordinal of
+ * the direction, so the four edges out of a cell sit next to each other. Searches that want to go
+ * fast can hold on to that array with getCostArray() and index it themselves. A table loaded from a
+ * MapSnapshot has no arrays and sits straight on the file instead, so getCostArray() gives null and
+ * searches read its IntBuffer from getCosts(). Keeping the arrays for everything else means the hot
+ * loops of a game that didn't come from a file never call through a buffer at all.
+ *
+ * When a tile changes call update() so the table stays in step with the grid.
+ */
+public class CostTable {
+  /** The number of edges out of every cell. */
+  public static final int DIRECTION_COUNT = CardinalDirection.values().length;
+
+  private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+  private static final EntityType[] TYPES = EntityType.values();
+
+  private final TileGrid grid;
+  private final int cells;
+  private final int[][] arrays; // arrays[type][cell * 4 + direction] is that edge's cost.
+  private final IntBuffer[] costs; // The same costs as buffers, mapped if there are no arrays.
+  private final int[] minimumCosts; // The cheapest edge on the board for each type.
+  private final boolean[] minimumStale; // Has the cheapest edge of a type gone up since we looked?
+
+  /**
+   * Create a new CostTable filled in from the given grid.
+   * @param grid The grid to work the costs out from.
+   */
+  public CostTable(TileGrid grid) {
+    this.grid = grid;
+    this.cells = grid.getWidth() * grid.getHeight();
+    this.arrays = new int[TYPES.length][];
+    this.costs = new IntBuffer[TYPES.length];
+    this.minimumCosts = new int[TYPES.length];
+    this.minimumStale = new boolean[TYPES.length];
+    for (EntityType type : TYPES) {
+      int[] typeCosts = new int[this.cells * DIRECTION_COUNT];
+      this.arrays[type.ordinal()] = typeCosts;
+      this.costs[type.ordinal()] = IntBuffer.wrap(typeCosts);
+      for (int cell = 0; cell < this.cells; cell++) {
+        fill(type, this.costs[type.ordinal()], cell);
+      }
+      this.minimumCosts[type.ordinal()] = scanMinimum(this.costs[type.ordinal()]);
+    }
+  }
+
+  /**
+   * Create a new CostTable on top of costs that were already worked out, like the sections of a
+   * MapSnapshot. The buffers are used as they are, not copied or checked against the grid, and the
+   * table has no arrays.
+   * @param grid         The grid the costs were worked out from.
+   * @param costs        The costs of every edge for each type, in the order of EntityType.
+   * @param minimumCosts The cheapest edge of each type.
+   */
+  CostTable(TileGrid grid, IntBuffer[] costs, int[] minimumCosts) {
+    this.grid = grid;
+    this.cells = grid.getWidth() * grid.getHeight();
+    this.arrays = new int[TYPES.length][];
+    this.costs = costs;
+    this.minimumCosts = minimumCosts;
+    this.minimumStale = new boolean[TYPES.length];
+  }
+
+  private void fill(EntityType type, IntBuffer typeCosts, int cell) {
+    int base = cell * DIRECTION_COUNT;
+    for (int d = 0; d < DIRECTION_COUNT; d++) {
+      typeCosts.put(base + d, this.grid.getCost(type, cell, DIRECTIONS[d]));
+    }
+  }
+
+  private static int scanMinimum(IntBuffer typeCosts) {
+    int minimum = Integer.MAX_VALUE;
+    for (int i = 0; i < typeCosts.limit(); i++) {
+      minimum = Math.min(minimum, typeCosts.get(i));
+    }
+    return minimum;
+  }
+
+  /**
+   * A method to work the costs out again for one cell, after its tile has changed in the grid.
+   * @param cell The packed cell index y * width + x.
+   */
+  public synchronized void update(int cell) {
+    int base = cell * DIRECTION_COUNT;
+    for (EntityType type : TYPES) {
+      int t = type.ordinal();
+      IntBuffer typeCosts = this.costs[t];
+      for (int d = 0; d < DIRECTION_COUNT; d++) {
+        if (typeCosts.get(base + d) == this.minimumCosts[t]) {
+          // The cheapest edge might be going away, look again when someone asks.
+          this.minimumStale[t] = true;
+        }
+      }
+      fill(type, typeCosts, cell);
+      for (int d = 0; d < DIRECTION_COUNT; d++) {
+        this.minimumCosts[t] = Math.min(this.minimumCosts[t], typeCosts.get(base + d));
+      }
+    }
+  }
+
+  /**
+   * A method to return the cost of one edge.
+   * @param type      The type of entity moving.
+   * @param cell      The packed cell index y * width + x the entity moves out of.
+   * @param direction The direction the entity wants to move.
+   * @return The cost for the given type of entity to do the given move.
+   */
+  public int costAt(EntityType type, int cell, CardinalDirection direction) {
+    int index = cell * DIRECTION_COUNT + direction.ordinal();
+    int[] typeCosts = this.arrays[type.ordinal()];
+    return typeCosts != null ? typeCosts[index] : this.costs[type.ordinal()].get(index);
+  }
+
+  /**
+   * A method to return every cost for a type of entity at once, indexed by cell * 4 + the ordinal of
+   * the direction. This is the table itself and not a copy, so don't write to it. It keeps up with
+   * update(), so it is safe to hold on to.
+   * @param type The type of entity moving.
+   * @return The costs of every edge on the board, or null if the table sits on a MapSnapshot and
+   *         getCosts() has to be read instead.
+   */
+  public int[] getCostArray(EntityType type) {
+    return this.arrays[type.ordinal()];
+  }
+
+  /**
+   * A method to return every cost for a type of entity at once as a buffer, indexed like
+   * getCostArray(). This is the table itself and not a copy, so don't write to it, and only use
+   * absolute gets. It keeps up with update(), so it is safe to hold on to. Searches should prefer
+   * getCostArray() when it isn't null.
+   * @param type The type of entity moving.
+   * @return The costs of every edge on the board.
+   */
+  public IntBuffer getCosts(EntityType type) {
+    return this.costs[type.ordinal()];
+  }
+
+  /**
+   * A method to return the cheapest edge on the board for a type of entity.
+   * @param type The type of entity moving.
+   * @return The smallest cost for the given type of entity to do any move on the board.
+   */
+  public synchronized int getMinimumCost(EntityType type) {
+    int t = type.ordinal();
+    if (this.minimumStale[t]) {
+      this.minimumCosts[t] = scanMinimum(this.costs[t]);
+      this.minimumStale[t] = false;
+    }
+    return this.minimumCosts[t];
+  }
+
+  /**
+   * A method to return the number of cells the table covers.
+   * @return The width times the height of the board.
+   */
+  public int getCellCount() {
+    return this.cells;
+  }
+}
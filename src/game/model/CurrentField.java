@@ -0,0 +1,167 @@
+package game.model;
+
+import game.CardinalDirection;
+import noise.OpenSimplexNoise;
+import noise.TileableNoise;
+
+/**
+ * A CurrentField makes the currents of the water change over time. The flow at a tile comes from 3D
+ * noise, with time as the third axis, so it drifts smoothly. Working it out for every water tile on
+ * every tick would cost far too much, so each tick only a slice of the water tiles is looked at
+ * again, going round all of them in turn. Changes go to the model with setCurrents(), which only
+ * updates what depends on the tiles that actually changed.
+ *
+ * On a TORUS board the flow comes from TileableNoise instead, with time moving the torus through
+ * the fourth dimension, so the currents match up where the board wraps around.
+ *
+ * Add it as an observer of the Simulation and it advances on every tick.
+ */
+public class CurrentField implements SimulationObserver {
+  // How far along the time axis of the noise one tick moves.
+  private static final double TIME_SCALE = 0.01;
+  // The scale of the flow in noise space, the same as the terrain.
+  private static final double COORDINATE_SCALE = 1.5 / 5.0;
+  // How far apart in noise space the two components of the flow are sampled, so they don't match.
+  private static final double COMPONENT_OFFSET = 57.1;
+  // Mixed into the seed of the game, so the currents don't follow the same noise as the terrain.
+  private static final long SEED_MIX = 0x5DEECE66DL;
+
+  private final GameState model;
+  private final OpenSimplexNoise noise;
+  private final TileableNoise tileable; // The noise on a TORUS board, null on a BOUNDED one.
+  private final int tilesPerTick;
+  private final int[] waterCells; // The packed cell ids of the water tiles, in the order we visit.
+  private int cursor; // The index into waterCells of the next tile to look at.
+  private final int[] cells; // Scratch space for a tick's slice.
+  private final CardinalDirection[] currents;
+
+  /**
+   * Create a new CurrentField over the water of the given model, with currents that follow from the
+   * seed of the game.
+   * @param model        The model whose currents change.
+   * @param tilesPerTick How many water tiles to look at again every tick.
+   */
+  public CurrentField(GameState model, int tilesPerTick) {
+    this(model, model.getSeed() ^ SEED_MIX, tilesPerTick);
+  }
+
+  /**
+   * Create a new CurrentField over the water of the given model.
+   * @param model        The model whose currents change.
+   * @param seed         The seed of the noise the currents follow.
+   * @param tilesPerTick How many water tiles to look at again every tick.
+   */
+  public CurrentField(GameState model, long seed, int tilesPerTick) {
+    this.model = model;
+    this.noise = new OpenSimplexNoise(seed);
+    TileGrid grid = model.getGrid();
+    this.tileable = model.getTopology() == Topology.TORUS
+            ? new TileableNoise(this.noise, grid.getWidth() * COORDINATE_SCALE,
+                    grid.getHeight() * COORDINATE_SCALE)
+            : null;
+    int cellCount = grid.getWidth() * grid.getHeight();
+    int water = 0;
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (grid.getKind(cell) == TileGrid.WATER) {
+        water++;
+      }
+    }
+    this.waterCells = new int[water];
+    water = 0;
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (grid.getKind(cell) == TileGrid.WATER) {
+        this.waterCells[water++] = cell;
+      }
+    }
+    this.tilesPerTick = Math.min(tilesPerTick, this.waterCells.length);
+    this.cells = new int[this.tilesPerTick];
+    this.currents = new CardinalDirection[this.tilesPerTick];
+    this.cursor = 0;
+  }
+
+  @Override
+  public void ticked(Simulation simulation) {
+    advance(simulation.getTickCount());
+  }
+
+  /**
+   * Look at the next slice of water tiles again and move their currents to the given time. Once
+   * every water tile has been looked at, the landmark tables are dropped, so they are built again
+   * with bounds at full strength.
+   * @param tick The tick the simulation is at.
+   */
+  public void advance(long tick) {
+    if (this.tilesPerTick == 0) {
+      return;
+    }
+    int width = this.model.getGameWidth();
+    double t = tick * TIME_SCALE;
+    boolean wrapped = false;
+    for (int i = 0; i < this.tilesPerTick; i++) {
+      int cell = this.waterCells[this.cursor];
+      this.cells[i] = cell;
+      this.currents[i] = flow(cell % width, cell / width, t);
+      if (++this.cursor == this.waterCells.length) {
+        this.cursor = 0;
+        wrapped = true;
+      }
+    }
+    this.model.setCurrents(this.cells, this.currents, this.tilesPerTick);
+    if (wrapped) {
+      this.model.dropLandmarks();
+    }
+  }
+
+  /**
+   * A method to work out which way the water flows at a tile and time.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   * @param t The time, along the time axis of the noise.
+   * @return The strongest direction of the flow.
+   */
+  public CardinalDirection flow(int x, int y, double t) {
+    double flowX = flowX(x, y, t);
+    double flowY = flowY(x, y, t);
+    if (Math.abs(flowX) > Math.abs(flowY)) {
+      return flowX > 0 ? CardinalDirection.EAST : CardinalDirection.WEST;
+    }
+    return flowY > 0 ? CardinalDirection.SOUTH : CardinalDirection.NORTH;
+  }
+
+  /**
+   * A method to work out how strongly the water flows east at a tile and time.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   * @param t The time, along the time axis of the noise.
+   * @return The flow, negative for west.
+   */
+  double flowX(int x, int y, double t) {
+    double nx = x * COORDINATE_SCALE;
+    double ny = y * COORDINATE_SCALE;
+    return this.tileable != null ? this.tileable.eval(nx, ny, t) : this.noise.eval(nx, ny, t);
+  }
+
+  /**
+   * A method to work out how strongly the water flows south at a tile and time.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   * @param t The time, along the time axis of the noise.
+   * @return The flow, negative for north.
+   */
+  double flowY(int x, int y, double t) {
+    double nx = x * COORDINATE_SCALE;
+    double ny = y * COORDINATE_SCALE;
+    if (this.tileable != null) {
+      return this.tileable.eval(nx, ny, t + COMPONENT_OFFSET);
+    }
+    return this.noise.eval(nx + COMPONENT_OFFSET, ny + COMPONENT_OFFSET, t);
+  }
+
+  /**
+   * A method to return how many water tiles there are to go round.
+   * @return The number of water tiles when the field was made.
+   */
+  public int getWaterCount() {
+    return this.waterCells.length;
+  }
+}
@@ -0,0 +1,355 @@
+package game.model;
+
+import game.model.entities.Entity;
+import game.model.entities.EntityType;
+
+/**
+ * An EntityIndex answers "which entities are near this tile?" without looking at every entity. The
+ * board is cut into square buckets of BUCKET_SIZE tiles and each bucket keeps a packed list of the
+ * ids of the entities in it, so a query only looks at the buckets it overlaps.
+ *
+ * Every entity added gets a small int id, and the index keeps the position and type of each id in
+ * flat arrays. Queries hand back ids in arrays the caller owns, so they never allocate: look the
+ * entity up with getEntity() if you need more than where it is.
+ *
+ * The index has to be told when an entity moves, which Duck does in move(). Ids are reused after an
+ * entity is removed.
+ */
+public class EntityIndex {
+  /** The width and height in tiles of a bucket. */
+  public static final int BUCKET_SIZE = 8;
+  /** The id returned when there is no entity to return. */
+  public static final int NONE = -1;
+
+  private static final EntityType[] TYPES = EntityType.values();
+
+  private final int width, height; // The size of the board in tiles.
+  private final Topology topology;
+  private final int bucketsX, bucketsY;
+  private final int[][] buckets; // The ids in each bucket, bucket y * bucketsX + x.
+  private final int[] bucketCounts;
+  // What we know about each id. A free id has a null entity.
+  private Entity[] entities;
+  private int[] xs, ys;
+  private byte[] types;
+  private int[] freeIds; // Ids of removed entities, to hand out again.
+  private int freeCount;
+  private int idCount; // Ids handed out so far, free ones included.
+  private int size;
+
+  /**
+   * Create a new, empty EntityIndex.
+   * @param width    The width of the board in tiles.
+   * @param height   The height of the board in tiles.
+   * @param topology What happens at the edges of the board, for nearest().
+   */
+  public EntityIndex(int width, int height, Topology topology) {
+    this.width = width;
+    this.height = height;
+    this.topology = topology;
+    this.bucketsX = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    this.bucketsY = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    this.buckets = new int[this.bucketsX * this.bucketsY][];
+    this.bucketCounts = new int[this.bucketsX * this.bucketsY];
+    this.entities = new Entity[16];
+    this.xs = new int[16];
+    this.ys = new int[16];
+    this.types = new byte[16];
+    this.freeIds = new int[16];
+  }
+
+  private int bucket(int x, int y) {
+    return (y / BUCKET_SIZE) * this.bucketsX + x / BUCKET_SIZE;
+  }
+
+  private void addToBucket(int bucket, int id) {
+    int[] ids = this.buckets[bucket];
+    int count = this.bucketCounts[bucket];
+    if (ids == null) {
+      ids = new int[4];
+      this.buckets[bucket] = ids;
+    } else if (count == ids.length) {
+      int[] grown = new int[ids.length * 2];
+      System.arraycopy(ids, 0, grown, 0, count);
+      ids = grown;
+      this.buckets[bucket] = ids;
+    }
+    ids[count] = id;
+    this.bucketCounts[bucket] = count + 1;
+  }
+
+  private void removeFromBucket(int bucket, int id) {
+    int[] ids = this.buckets[bucket];
+    int count = this.bucketCounts[bucket];
+    for (int i = 0; i < count; i++) {
+      if (ids[i] == id) {
+        // Order in a bucket doesn't matter, so the last one fills the gap.
+        ids[i] = ids[count - 1];
+        this.bucketCounts[bucket] = count - 1;
+        return;
+      }
+    }
+  }
+
+  // Finds the id of an entity from its position, NONE if it isn't at that position.
+  private int find(Entity entity, int x, int y) {
+    if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+      return NONE;
+    }
+    int bucket = bucket(x, y);
+    int[] ids = this.buckets[bucket];
+    for (int i = 0; i < this.bucketCounts[bucket]; i++) {
+      if (this.entities[ids[i]] == entity) {
+        return ids[i];
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * A method to start keeping track of an entity.
+   * @param entity The entity.
+   * @param x      The x position (in tiles) of the entity.
+   * @param y      The y position (in tiles) of the entity.
+   * @return The id of the entity in the index.
+   */
+  public synchronized int add(Entity entity, int x, int y) {
+    int id;
+    if (this.freeCount > 0) {
+      id = this.freeIds[--this.freeCount];
+    } else {
+      id = this.idCount++;
+      if (id == this.entities.length) {
+        int length = this.entities.length * 2;
+        Entity[] entities = new Entity[length];
+        System.arraycopy(this.entities, 0, entities, 0, id);
+        this.entities = entities;
+        int[] xs = new int[length];
+        System.arraycopy(this.xs, 0, xs, 0, id);
+        this.xs = xs;
+        int[] ys = new int[length];
+        System.arraycopy(this.ys, 0, ys, 0, id);
+        this.ys = ys;
+        byte[] types = new byte[length];
+        System.arraycopy(this.types, 0, types, 0, id);
+        this.types = types;
+      }
+    }
+    this.entities[id] = entity;
+    this.xs[id] = x;
+    this.ys[id] = y;
+    this.types[id] = (byte) EntityType.of(entity).ordinal();
+    addToBucket(bucket(x, y), id);
+    this.size++;
+    return id;
+  }
+
+  /**
+   * A method to stop keeping track of an entity.
+   * @param entity The entity.
+   * @param x      The x position (in tiles) the index last knew the entity at.
+   * @param y      The y position (in tiles) the index last knew the entity at.
+   * @return True if the entity was found and removed.
+   */
+  public synchronized boolean remove(Entity entity, int x, int y) {
+    int id = find(entity, x, y);
+    if (id == NONE) {
+      return false;
+    }
+    removeFromBucket(bucket(x, y), id);
+    this.entities[id] = null;
+    if (this.freeCount == this.freeIds.length) {
+      int[] grown = new int[this.freeIds.length * 2];
+      System.arraycopy(this.freeIds, 0, grown, 0, this.freeCount);
+      this.freeIds = grown;
+    }
+    this.freeIds[this.freeCount++] = id;
+    this.size--;
+    return true;
+  }
+
+  /**
+   * A method to tell the index an entity has moved. Entities that were never added are ignored.
+   * @param entity The entity.
+   * @param fromX  The x position (in tiles) the entity moved from.
+   * @param fromY  The y position (in tiles) the entity moved from.
+   * @param toX    The x position (in tiles) the entity moved to.
+   * @param toY    The y position (in tiles) the entity moved to.
+   */
+  public synchronized void moved(Entity entity, int fromX, int fromY, int toX, int toY) {
+    int id = find(entity, fromX, fromY);
+    if (id == NONE) {
+      return;
+    }
+    int from = bucket(fromX, fromY);
+    int to = bucket(toX, toY);
+    if (from != to) {
+      removeFromBucket(from, id);
+      addToBucket(to, id);
+    }
+    this.xs[id] = toX;
+    this.ys[id] = toY;
+  }
+
+  /**
+   * A method to find every entity inside a rectangle of the board. The rectangle doesn't wrap around
+   * the edges, and the parts of it off the board are ignored.
+   * @param minX The x position (in tiles) of the left column, included.
+   * @param minY The y position (in tiles) of the top row, included.
+   * @param maxX The x position (in tiles) of the right column, included.
+   * @param maxY The y position (in tiles) of the bottom row, included.
+   * @param into An array to put the ids of the entities found in. Only as many as fit are put in.
+   * @return The number of entities found, which can be more than into holds. Call again with a
+   *         bigger array if it is.
+   */
+  public synchronized int inRange(int minX, int minY, int maxX, int maxY, int[] into) {
+    minX = Math.max(minX, 0);
+    minY = Math.max(minY, 0);
+    maxX = Math.min(maxX, this.width - 1);
+    maxY = Math.min(maxY, this.height - 1);
+    int found = 0;
+    if (minX > maxX || minY > maxY) {
+      return found;
+    }
+    for (int by = minY / BUCKET_SIZE; by <= maxY / BUCKET_SIZE; by++) {
+      for (int bx = minX / BUCKET_SIZE; bx <= maxX / BUCKET_SIZE; bx++) {
+        int bucket = by * this.bucketsX + bx;
+        int[] ids = this.buckets[bucket];
+        for (int i = 0; i < this.bucketCounts[bucket]; i++) {
+          int id = ids[i];
+          int x = this.xs[id];
+          int y = this.ys[id];
+          if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+            if (found < into.length) {
+              into[found] = id;
+            }
+            found++;
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * A method to find the closest entity to a tile, in moves across the board (around the edges on a
+   * TORUS). Ties go to whichever the index finds first.
+   * @param x           The x position (in tiles) to look from.
+   * @param y           The y position (in tiles) to look from.
+   * @param maxDistance The farthest away to look, in moves.
+   * @param type        The type of entity to look for, null for any type.
+   * @return The id of the closest entity, NONE if there isn't one close enough.
+   */
+  public synchronized int nearest(int x, int y, int maxDistance, EntityType type) {
+    boolean torus = this.topology == Topology.TORUS;
+    int centreX = x / BUCKET_SIZE;
+    int centreY = y / BUCKET_SIZE;
+    int best = NONE;
+    int bestDistance = maxDistance + 1;
+    int rings = Math.max(this.bucketsX, this.bucketsY);
+    for (int ring = 0; ring <= rings; ring++) {
+      // Everything in this ring is at least this far away. Around the edge of a TORUS the last
+      // bucket can be narrower, so allow a bucket less.
+      int closest = Math.max(0, (ring - (torus ? 2 : 1)) * BUCKET_SIZE + 1);
+      if (closest >= bestDistance) {
+        break;
+      }
+      for (int by = centreY - ring; by <= centreY + ring; by++) {
+        // Only the edge of the square of buckets is new in this ring.
+        int step = (by == centreY - ring || by == centreY + ring) ? 1 : Math.max(1, 2 * ring);
+        for (int bx = centreX - ring; bx <= centreX + ring; bx += step) {
+          int wrappedX = torus ? Math.floorMod(bx, this.bucketsX) : bx;
+          int wrappedY = torus ? Math.floorMod(by, this.bucketsY) : by;
+          if (wrappedX < 0 || wrappedY < 0 || wrappedX >= this.bucketsX
+                  || wrappedY >= this.bucketsY) {
+            continue;
+          }
+          int bucket = wrappedY * this.bucketsX + wrappedX;
+          int[] ids = this.buckets[bucket];
+          for (int i = 0; i < this.bucketCounts[bucket]; i++) {
+            int id = ids[i];
+            if (type != null && this.types[id] != type.ordinal()) {
+              continue;
+            }
+            int distance = this.topology.distance(x, this.xs[id], this.width)
+                    + this.topology.distance(y, this.ys[id], this.height);
+            if (distance < bestDistance) {
+              best = id;
+              bestDistance = distance;
+            }
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * A method to look up the entity with an id.
+   * @param id An id returned by a query.
+   * @return The entity.
+   */
+  public synchronized Entity getEntity(int id) {
+    return this.entities[id];
+  }
+
+  /**
+   * A method to return where the index last knew an entity to be.
+   * @param id An id returned by a query.
+   * @return The x position (in tiles).
+   */
+  public synchronized int getX(int id) {
+    return this.xs[id];
+  }
+
+  /**
+   * A method to return where the index last knew an entity to be.
+   * @param id An id returned by a query.
+   * @return The y position (in tiles).
+   */
+  public synchronized int getY(int id) {
+    return this.ys[id];
+  }
+
+  /**
+   * A method to return the type of an entity.
+   * @param id An id returned by a query.
+   * @return The EntityType of the entity.
+   */
+  public synchronized EntityType getType(int id) {
+    return TYPES[this.types[id]];
+  }
+
+  /**
+   * A method to return the width of the board the index covers.
+   * @return The width in tiles.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * A method to return the height of the board the index covers.
+   * @return The height in tiles.
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * A method to return how many ids have been handed out, so every id is below this. Free ids are
+   * counted too and have a null entity.
+   * @return The number of ids.
+   */
+  public synchronized int getIdCount() {
+    return this.idCount;
+  }
+
+  /**
+   * A method to return how many entities the index is keeping track of.
+   * @return The number of entities.
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+}
@@ -0,0 +1,66 @@
+package game.model;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import game.CardinalDirection;
+import game.model.entities.Entity;
+
+/**
+ * An EntityUpdater advances every entity of a GameState by one tick. It works in three phases:
+ * entities think with the ThinkingScheduler's budget, then every entity decides its move, and both
+ * of those can run in parallel on the SimulationExecutor since they only read the terrain. Finally
+ * the moves are committed one entity at a time in list order, so the result is the same whatever
+ * executor is used.
+ */
+public class EntityUpdater {
+  private final SimulationExecutor executor;
+  private final ThinkingScheduler thinkingScheduler;
+  private CardinalDirection[] decisions; // Reused between ticks, grows with the entity count.
+
+  /**
+   * Create a new EntityUpdater.
+   * @param executor          The executor to think and decide on.
+   * @param thinkingScheduler The scheduler sharing out the thinking budget.
+   */
+  public EntityUpdater(SimulationExecutor executor, ThinkingScheduler thinkingScheduler) {
+    this.executor = executor;
+    this.thinkingScheduler = thinkingScheduler;
+    this.decisions = new CardinalDirection[0];
+  }
+
+  /**
+   * Advance every entity in the given GameState by one tick.
+   * @param gamestate The model holding the entities.
+   */
+  public void update(GameState gamestate) {
+    final List<Entity> entities = gamestate.getEntities();
+    int count = entities.size();
+    if (this.decisions.length < count) {
+      this.decisions = new CardinalDirection[count];
+    }
+    this.thinkingScheduler.think(entities, this.executor);
+
+    final CardinalDirection[] decided = this.decisions;
+    this.executor.forEach(count, new IntConsumer() {
+      @Override
+      public void accept(int i) {
+        decided[i] = entities.get(i).processStep();
+      }
+    });
+
+    // The merge phase. Always in list order so runs can be replayed.
+    for (int i = 0; i < count; i++) {
+      entities.get(i).move(decided[i]);
+      decided[i] = null;
+    }
+  }
+
+  /**
+   * A method to return the executor this updater runs on.
+   * @return The SimulationExecutor in use.
+   */
+  public SimulationExecutor getExecutor() {
+    return this.executor;
+  }
+}
@@ -0,0 +1,225 @@
+package game.model;
+
+import java.nio.IntBuffer;
+
+import game.CardinalDirection;
+import game.model.entities.Entity;
+import game.model.entities.EntityType;
+
+/**
+ * A FlowField stores, for every tile of the board, which way to move to get to one destination the
+ * cheapest way. It is built with a single backward search from the destination, so any number of
+ * entities of the same type heading there can share it and decide each move with one array read.
+ *
+ * Ask the GameState for one with getFlowField() so they are shared. The GameState also keeps them
+ * up to date with update() when edge costs change, which only searches again around what changed.
+ */
+public class FlowField {
+  private static final byte NO_DIRECTION = -1;
+  private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+
+  private final int width, height;
+  private final boolean wrap; // Do the edges of the board wrap around?
+  private final EntityType type;
+  // The costs of the type, kept up to date by the CostTable. Only read from the buffer when the
+  // table has no array, because it sits on a MapSnapshot.
+  private final int[] costArray;
+  private final IntBuffer costs;
+  private final int target;
+  private final byte[] directions; // The ordinal of the direction to move from each tile.
+  private final int[] distance; // The cost of getting to the destination from each tile.
+
+  /**
+   * Create a new FlowField towards the given destination.
+   * @param model  The model to query about edge weights.
+   * @param entity An entity of the type this field is for.
+   * @param xd     The x position (in tiles) of the destination.
+   * @param yd     The y position of the destination.
+   */
+  public FlowField(GameState model, Entity entity, int xd, int yd) {
+    this.width = model.getGameWidth();
+    this.height = model.getGameHeight();
+    this.wrap = model.getTopology() == Topology.TORUS;
+    this.type = EntityType.of(entity);
+    this.costArray = model.getCostTable().getCostArray(this.type);
+    this.costs = model.getCostTable().getCosts(this.type);
+    int cells = this.width * this.height;
+    this.directions = new byte[cells];
+    this.distance = new int[cells];
+
+    PathFinder finder = new PathFinder(model, this.width, model.getGameHeight());
+    finder.startReverse(entity, xd, yd);
+    finder.run();
+    finder.copyDistances(this.distance);
+    this.target = finder.node(xd, yd);
+
+    // Going backwards, the predecessor of a tile is the next tile on its way to the destination.
+    Topology topology = model.getTopology();
+    for (int node = 0; node < cells; node++) {
+      int next = finder.getPrevious(node);
+      CardinalDirection direction = next == PathFinder.NONE ? null
+              : topology.towards(node % this.width, node / this.width, next % this.width,
+                      next / this.width, this.width, this.height);
+      this.directions[node] = direction == null ? NO_DIRECTION : (byte) direction.ordinal();
+    }
+  }
+
+  /**
+   * A method to bring the field up to date after the edges out of some tiles changed cost, which is
+   * usually much less work than building it again. Tiles whose way to the destination got dearer
+   * lose their distance, along with every tile whose way goes through them, and get it back from the
+   * tiles around them that kept theirs. Cheaper edges spread outwards from where they are. Both are
+   * then finished by one Dijkstra search over just the tiles that change. Entities can follow the
+   * field while it is updated only if they don't run at the same time, so call this between ticks.
+   * @param changes The tiles whose edges changed. The new costs have to be in the CostTable.
+   * @param heap    A heap with room for every tile of the board. It is cleared first.
+   */
+  void update(CostChanges changes, NodeHeap heap) {
+    heap.clear();
+    // First the tiles where the edge they follow got dearer, before any distance changes.
+    int[] roots = new int[changes.size()];
+    int rootCount = 0;
+    for (int i = 0; i < changes.size(); i++) {
+      int cell = changes.getCell(i);
+      byte direction = this.directions[cell];
+      if (direction != NO_DIRECTION
+              && edge(cell, direction) + this.distance[next(cell, direction)] > this.distance[cell]) {
+        roots[rootCount++] = cell;
+      }
+    }
+    // They lose their distance, and so does every tile whose way goes through one of them.
+    int[] lost = new int[Math.max(rootCount, 16)];
+    int lostCount = 0;
+    for (int i = 0; i < rootCount; i++) {
+      if (this.distance[roots[i]] != PathFinder.UNREACHED) {
+        this.distance[roots[i]] = PathFinder.UNREACHED;
+        lost = append(lost, lostCount++, roots[i]);
+      }
+    }
+    for (int i = 0; i < lostCount; i++) {
+      int cell = lost[i];
+      for (byte d = 0; d < DIRECTIONS.length; d++) {
+        int neighbour = next(cell, d);
+        if (neighbour != PathFinder.NONE && this.distance[neighbour] != PathFinder.UNREACHED
+                && this.directions[neighbour] == opposite(d)) {
+          this.distance[neighbour] = PathFinder.UNREACHED;
+          lost = append(lost, lostCount++, neighbour);
+        }
+      }
+    }
+    // The lost tiles start from the best of their neighbours that kept a distance.
+    for (int i = 0; i < lostCount; i++) {
+      this.directions[lost[i]] = NO_DIRECTION;
+      offer(lost[i], heap);
+    }
+    // The changed tiles that kept their distance may have found a cheaper way.
+    for (int i = 0; i < changes.size(); i++) {
+      int cell = changes.getCell(i);
+      if (this.distance[cell] != PathFinder.UNREACHED) {
+        offer(cell, heap);
+      }
+    }
+    // Spread the new distances backwards, like the search that built the field.
+    while (!heap.isEmpty()) {
+      int cell = heap.pop();
+      for (byte d = 0; d < DIRECTIONS.length; d++) {
+        int neighbour = next(cell, d);
+        if (neighbour == PathFinder.NONE) {
+          continue;
+        }
+        int distance = this.distance[cell] + edge(neighbour, opposite(d));
+        if (distance < this.distance[neighbour]) {
+          this.distance[neighbour] = distance;
+          this.directions[neighbour] = opposite(d);
+          heap.push(neighbour, distance);
+        }
+      }
+    }
+  }
+
+  private static int[] append(int[] array, int size, int value) {
+    if (size == array.length) {
+      int[] grown = new int[array.length * 2];
+      System.arraycopy(array, 0, grown, 0, size);
+      array = grown;
+    }
+    array[size] = value;
+    return array;
+  }
+
+  private static byte opposite(byte direction) {
+    return (byte) CardinalDirection.opposite(DIRECTIONS[direction]).ordinal();
+  }
+
+  // Lowers the distance of a tile to the best way through its neighbours, queueing it if it did.
+  private void offer(int cell, NodeHeap heap) {
+    boolean improved = false;
+    for (byte d = 0; d < DIRECTIONS.length; d++) {
+      int neighbour = next(cell, d);
+      if (neighbour == PathFinder.NONE || this.distance[neighbour] == PathFinder.UNREACHED) {
+        continue;
+      }
+      int distance = edge(cell, d) + this.distance[neighbour];
+      if (distance < this.distance[cell]) {
+        this.distance[cell] = distance;
+        this.directions[cell] = d;
+        improved = true;
+      }
+    }
+    if (improved) {
+      heap.push(cell, this.distance[cell]);
+    }
+  }
+
+  // The cost of leaving a tile in a direction.
+  private int edge(int cell, byte direction) {
+    int index = cell * CostTable.DIRECTION_COUNT + direction;
+    return this.costArray != null ? this.costArray[index] : this.costs.get(index);
+  }
+
+  // The tile next to a tile in a direction, wrapped around the edges or NONE if there is none.
+  private int next(int cell, byte direction) {
+    int x = cell % this.width;
+    int y = cell / this.width;
+    switch (DIRECTIONS[direction]) {
+      case NORTH:
+        return y > 0 ? cell - this.width
+                : this.wrap ? cell + (this.height - 1) * this.width : PathFinder.NONE;
+      case SOUTH:
+        return y < this.height - 1 ? cell + this.width : this.wrap ? x : PathFinder.NONE;
+      case EAST:
+        return x < this.width - 1 ? cell + 1 : this.wrap ? cell - x : PathFinder.NONE;
+      default:
+        return x > 0 ? cell - 1 : this.wrap ? cell + this.width - 1 : PathFinder.NONE;
+    }
+  }
+
+  /**
+   * A method to return which way to move from the given tile.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   * @return The direction to move, null at the destination or if it can't be reached.
+   */
+  public CardinalDirection getDirection(int x, int y) {
+    byte direction = this.directions[y * this.width + x];
+    return direction == NO_DIRECTION ? null : DIRECTIONS[direction];
+  }
+
+  /**
+   * A method to return how much it costs to get to the destination from the given tile.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   * @return The cost of the cheapest way to the destination, PathFinder.UNREACHED if there is none.
+   */
+  public int getDistance(int x, int y) {
+    return this.distance[y * this.width + x];
+  }
+
+  /**
+   * A method to return the destination of this field.
+   * @return The packed node id y * width + x of the destination.
+   */
+  public int getTarget() {
+    return this.target;
+  }
+}
@@ -0,0 +1,93 @@
+package game.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * A ForkJoinExecutor splits the indices of a tick into ranges and runs them on a ForkJoinPool, so
+ * idle workers can steal work from busy ones.
+ */
+public class ForkJoinExecutor implements SimulationExecutor {
+  // How many ranges we split the indices into for every worker, to leave something to steal.
+  private static final int RANGES_PER_WORKER = 4;
+
+  private final ForkJoinPool pool;
+  private final boolean ownsPool; // Only shut down pools we made ourselves.
+
+  /**
+   * Create a new ForkJoinExecutor with its own pool using every core.
+   */
+  public ForkJoinExecutor() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create a new ForkJoinExecutor with its own pool.
+   * @param parallelism The number of worker threads.
+   */
+  public ForkJoinExecutor(int parallelism) {
+    this.pool = new ForkJoinPool(parallelism);
+    this.ownsPool = true;
+  }
+
+  /**
+   * Create a new ForkJoinExecutor running on an existing pool, like ForkJoinPool.commonPool().
+   * @param pool The pool to run on.
+   */
+  public ForkJoinExecutor(ForkJoinPool pool) {
+    this.pool = pool;
+    this.ownsPool = false;
+  }
+
+  @Override
+  public void forEach(int count, IntConsumer task) {
+    if (count == 0) {
+      return;
+    }
+    int threshold = Math.max(1, count / (this.pool.getParallelism() * RANGES_PER_WORKER));
+    this.pool.invoke(new RangeAction(0, count, threshold, task));
+  }
+
+  @Override
+  public int getParallelism() {
+    return this.pool.getParallelism();
+  }
+
+  @Override
+  public void shutdown() {
+    if (this.ownsPool) {
+      this.pool.shutdown();
+    }
+  }
+
+  /**
+   * A RangeAction runs the task for a range of indices, splitting it in half while it is too big.
+   */
+  static class RangeAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from, to, threshold;
+    private final IntConsumer task;
+
+    RangeAction(int from, int to, int threshold, IntConsumer task) {
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+      this.task = task;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from <= this.threshold) {
+        for (int i = this.from; i < this.to; i++) {
+          this.task.accept(i);
+        }
+        return;
+      }
+      int middle = (this.from + this.to) >>> 1;
+      invokeAll(new RangeAction(this.from, middle, this.threshold, this.task),
+              new RangeAction(middle, this.to, this.threshold, this.task));
+    }
+  }
+}
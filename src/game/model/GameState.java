@@ -2,26 +2,47 @@ package game.model;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import game.CardinalDirection;
 import game.model.entities.*;
 import game.model.tiles.*;
-import noise.OpenSimplexNoise;
 
 /**
  * A GameState is a class that represents the data model of the game. It stores all our objects.
  */
 public class GameState {
   // Fields
-  public List<List<Tile>> gameTiles;
+  public List<List<Tile>> gameTiles; // A read-only view of grid, kept for older code.
+  private TileGrid grid;
+  private CostTable costs; // Every edge cost of grid, worked out once.
+  private Topology topology; // What happens at the edges of the board.
   public List<Duck> ducks;
   public List<Koala> koalas;
+  private EntityIndex entityIndex; // Where the entities with a position are, by bucket.
+  private int seed; // The seed the game was made with.
 
-  // The scale to use when calculating what to compare to for water versus grass.
-  private static final double THRESHOLD = 0;
-  private static final double COORDINATE_SCALE = 1.5 / 5.0;
+  // The shared landmark tables, built the first time an entity of each type asks for one.
+  private Map<EntityType, LandmarkTable> landmarks;
+  // The shared flow fields for each type, keyed by the packed node id of their destination.
+  private Map<EntityType, Map<Integer, FlowField>> flowFields;
+  // The shared cluster abstractions for hierarchical pathfinding.
+  private Map<EntityType, HierarchicalMap> hierarchies;
+  // Everyone who wants to know when edge costs change.
+  private List<CostListener> costListeners;
+  private NodeHeap repairHeap; // For bringing flow fields up to date, made when first needed.
+
+  // The most landmarks in each LandmarkTable.
+  private static final int LANDMARK_COUNT = 8;
+  // The most memory a LandmarkTable can take, so big boards get fewer landmarks. 64 MiB is all 8
+  // on boards up to 1448x1448, and one on a 4096x4096 board.
+  private static final long LANDMARK_BYTES = 64L << 20;
+  // The width and height in tiles of a cluster in each HierarchicalMap.
+  private static final int HIERARCHY_CLUSTER_SIZE = 16;
 
   /**
    * Create a new GameState with the given random seed.
@@ -30,73 +51,320 @@ public class GameState {
    * @param seed  The seed to use when generating the map.
    */
   public GameState(int height, int width, int seed) {
-    Random random = new Random(seed);
-    this.gameTiles = new ArrayList<>();
+    this(height, width, seed, new SingleThreadedExecutor());
+  }
+
+  /**
+   * Create a new GameState with the given random seed, generating the map on the given executor.
+   * The map is the same whatever executor is used.
+   * @param height   The height of the map to generate.
+   * @param width    The width of the map to generate.
+   * @param seed     The seed to use when generating the map.
+   * @param executor The executor to generate bands of rows on.
+   */
+  public GameState(int height, int width, int seed, SimulationExecutor executor) {
+    this(height, width, seed, executor, Topology.BOUNDED);
+  }
+
+  /**
+   * Create a new GameState with the given random seed and topology. A TORUS board gets terrain that
+   * wraps around with no seam at the edges.
+   * @param height   The height of the map to generate.
+   * @param width    The width of the map to generate.
+   * @param seed     The seed to use when generating the map.
+   * @param executor The executor to generate bands of rows on.
+   * @param topology What happens at the edges of the board.
+   */
+  public GameState(int height, int width, int seed, SimulationExecutor executor,
+                   Topology topology) {
+    this(height, width, seed, executor, topology, false);
+  }
+
+  /**
+   * Create a new GameState with the given random seed and topology, on plain or layered terrain.
+   * Layered terrain has warped coastlines, currents that swirl with them and marshes, see
+   * TerrainGenerator.generateLayered(). It doesn't wrap around, so it can't be used on a TORUS.
+   * @param height   The height of the map to generate.
+   * @param width    The width of the map to generate.
+   * @param seed     The seed to use when generating the map.
+   * @param executor The executor to generate bands of rows on.
+   * @param topology What happens at the edges of the board.
+   * @param layered  True for layered terrain, false for the plain terrain of the other
+   *                 constructors.
+   */
+  public GameState(int height, int width, int seed, SimulationExecutor executor,
+                   Topology topology, boolean layered) {
+    if (layered && topology == Topology.TORUS) {
+      throw new IllegalArgumentException("Layered terrain doesn't wrap around a TORUS board.");
+    }
+    TileGrid grid = new TileGrid(width, height);
     // Now let's generate the game map.
-    OpenSimplexNoise generator = new OpenSimplexNoise(seed);
-    for (int r = 0; r < height; r++) {
-      ArrayList<Tile> row = new ArrayList<>();
-      gameTiles.add(row);
-      for (int c = 0; c < height; c++) {
-        double noise = generator.eval(((double) r) * COORDINATE_SCALE,
-                ((double) c) * COORDINATE_SCALE);
-        if (noise > THRESHOLD) {
-          row.add(new GrassTile());
-        } else {
-          // noise < THRESHOLD, so noise / THRESHOLD is distance from zero to the land mass.
-          // closer to the land mass means less current (maybe more in real life).
-
-          // We will flow into the direction with the biggest drop from our current y level.
-          double diffAbove = noise - generator.eval(((double) r) * COORDINATE_SCALE,
-                  ((double) c) * COORDINATE_SCALE - 1);
-          double diffBelow = generator.eval(((double) r) * COORDINATE_SCALE,
-                  ((double) c) * COORDINATE_SCALE + 1);
-          double diffLeft = generator.eval(((double) r) * COORDINATE_SCALE - 1,
-                  ((double) c) * COORDINATE_SCALE);
-          double diffRight = generator.eval(((double) r) * COORDINATE_SCALE + 1,
-                  ((double) c) * COORDINATE_SCALE);
-
-          CardinalDirection direction;
-          if (diffAbove > diffBelow && diffAbove > diffLeft && diffAbove > diffRight) {
-            direction = CardinalDirection.NORTH;
-          } else if (diffBelow > diffAbove && diffBelow > diffLeft && diffBelow > diffRight) {
-            direction = CardinalDirection.SOUTH;
-          } else if (diffLeft > diffAbove && diffLeft > diffBelow && diffLeft > diffRight) {
-            direction = CardinalDirection.WEST;
-          } else {
-            direction = CardinalDirection.EAST;
-          }
-
-          row.add(new WaterTile(direction, (noise + 1) / (THRESHOLD + 1)));
-        }
-      }
+    if (topology == Topology.TORUS) {
+      new TerrainGenerator(seed).generateTileable(grid, executor);
+    } else if (layered) {
+      new TerrainGenerator(seed).generateLayered(grid, 0, 0, executor);
+    } else {
+      new TerrainGenerator(seed).generate(grid, 0, 0, executor);
     }
+    setUp(grid, new CostTable(grid), topology, seed);
+  }
+
+  /**
+   * Create a new GameState on a saved map instead of generating one. The tiles and costs are used
+   * straight from the snapshot, so this is quick whatever the size of the map.
+   * @param snapshot The map to play on. Don't start two games on the same snapshot. A game whose
+   *                 tiles change, by setTile() or with currents, needs one read as mutable.
+   * @param seed     The seed to use when placing entities.
+   */
+  public GameState(MapSnapshot snapshot, int seed) {
+    setUp(snapshot.getGrid(), snapshot.getCostTable(), snapshot.getTopology(), seed);
+  }
+
+  private void setUp(TileGrid grid, CostTable costs, Topology topology, int seed) {
+    int width = grid.getWidth();
+    int height = grid.getHeight();
+    this.topology = topology;
+    this.seed = seed;
+    Random random = new Random(seed);
+    this.landmarks = new EnumMap<>(EntityType.class);
+    this.flowFields = new EnumMap<>(EntityType.class);
+    this.hierarchies = new EnumMap<>(EntityType.class);
+    this.costListeners = new ArrayList<>();
+    this.grid = grid;
+    this.gameTiles = this.grid.asRows();
+    this.costs = costs;
+    this.entityIndex = new EntityIndex(width, height, topology);
     // Time to put down a duck.
     int duckX = random.nextInt(width);
     int duckY = random.nextInt(height);
     int randomX = random.nextInt(width);
     int randomY = random.nextInt(height);
-    Duck sampleDuck = new Duck(duckX, duckY, randomX, randomY, width, height, this);
+    Duck sampleDuck = new Duck(duckX, duckY, randomX, randomY, width, height, this,
+            SearchMode.LANDMARKS);
     this.ducks = new ArrayList<Duck>();
-    this.ducks.add(sampleDuck);
     this.koalas = new ArrayList<Koala>();
+    addDuck(sampleDuck);
+    // And a koala, placed after the duck so the duck is where it always was for a seed.
+    Koala sampleKoala = new Koala(random.nextInt(width), random.nextInt(height),
+            random.nextInt(width), random.nextInt(height), width, height, this);
+    addKoala(sampleKoala);
   }
 
   /**
    * A method to fetch all the game tiles on the board.
-   * @return All of the game tiles on the board.
+   * @return A read-only view of all of the game tiles on the board, row by row.
    */
   public List<List<Tile>> getGameTiles() {
     return this.gameTiles;
   }
 
+  /**
+   * A method to fetch one tile of the board.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   * @return A view of the tile at that position.
+   */
+  public Tile getTile(int x, int y) {
+    return this.grid.getTile(x, y);
+  }
+
+  /**
+   * A method to fetch the compact grid the board is stored in.
+   * @return The TileGrid of the board.
+   */
+  public TileGrid getGrid() {
+    return this.grid;
+  }
+
+  /**
+   * A method to return what happens at the edges of the board.
+   * @return BOUNDED or TORUS.
+   */
+  public Topology getTopology() {
+    return this.topology;
+  }
+
+  /**
+   * A method to return the seed the game was made with, for anything else that should come out the
+   * same every time the game is played with that seed.
+   * @return The seed.
+   */
+  public int getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * A method to fetch the precomputed edge costs of the board.
+   * @return The CostTable kept in step with the grid.
+   */
+  public CostTable getCostTable() {
+    return this.costs;
+  }
+
+  /**
+   * A method to replace one tile of the board. Everything precomputed from the old tile is brought
+   * up to date: the hierarchies only recompute the tile's cluster and flow fields only search again
+   * around the tile, while landmark tables are dropped and rebuilt the next time they are asked for.
+   * Entities follow flow fields while they are updated, so call this between ticks.
+   * @param x    The x position (in tiles) of the tile to replace.
+   * @param y    The y position of the tile to replace.
+   * @param tile The new tile.
+   */
+  public synchronized void setTile(int x, int y, Tile tile) {
+    int cell = y * this.grid.getWidth() + x;
+    CostChanges changes = new CostChanges(1);
+    changes.add(this.costs, cell);
+    this.grid.setTile(x, y, tile);
+    this.costs.update(cell);
+    changes.updated(this.costs);
+    this.landmarks.clear();
+    costsChanged(changes);
+  }
+
+  /**
+   * A method to change the currents of many water tiles at once, keeping their power. This is
+   * cheaper than setTile() for each of them: the cost table is updated a tile at a time, each
+   * hierarchy cluster is recomputed once and landmark tables are kept. Their bounds are scaled to
+   * allow for the changed costs, so LANDMARKS paths stay the cheapest but the searches slowly get
+   * less help, until dropLandmarks() is called. Flow fields only search again where their distances
+   * change. Land tiles and tiles whose current doesn't change are skipped. Entities follow flow
+   * fields while they are updated, so call this between ticks.
+   * @param cells    The packed cell ids y * width + x of the tiles.
+   * @param currents The new current of each tile.
+   * @param count    The number of tiles, from the start of the arrays.
+   */
+  public synchronized void setCurrents(int[] cells, CardinalDirection[] currents, int count) {
+    int width = this.grid.getWidth();
+    CostChanges changes = new CostChanges(count);
+    for (int i = 0; i < count; i++) {
+      int cell = cells[i];
+      if (this.grid.getKind(cell) != TileGrid.WATER || this.grid.getCurrent(cell) == currents[i]) {
+        continue;
+      }
+      changes.add(this.costs, cell);
+      this.grid.setWater(cell % width, cell / width, currents[i], this.grid.getPower(cell));
+      this.costs.update(cell);
+    }
+    if (changes.size() == 0) {
+      return;
+    }
+    changes.updated(this.costs);
+    for (LandmarkTable table : this.landmarks.values()) {
+      table.costsChanged(changes);
+    }
+    costsChanged(changes);
+  }
+
+  // Brings the flow fields and hierarchies up to date with changed costs, and tells the listeners.
+  private void costsChanged(CostChanges changes) {
+    if (!this.flowFields.isEmpty() && this.repairHeap == null) {
+      this.repairHeap = new NodeHeap(this.costs.getCellCount());
+    }
+    for (Map<Integer, FlowField> fields : this.flowFields.values()) {
+      for (FlowField field : fields.values()) {
+        field.update(changes, this.repairHeap);
+      }
+    }
+    for (HierarchicalMap hierarchy : this.hierarchies.values()) {
+      hierarchy.costsChanged(changes);
+    }
+    for (CostListener listener : this.costListeners) {
+      listener.costsChanged(changes);
+    }
+  }
+
+  /**
+   * A method to throw away the landmark tables so they are built again from the current costs the
+   * next time they are asked for, and to search the landmarks of the hierarchies again, so their
+   * bounds are at full strength again. Call this between ticks.
+   */
+  public synchronized void dropLandmarks() {
+    this.landmarks.clear();
+    for (HierarchicalMap hierarchy : this.hierarchies.values()) {
+      hierarchy.rebuildLandmarks();
+    }
+  }
+
+  /**
+   * A method to be told whenever edge costs change, by setTile() or setCurrents().
+   * @param listener The listener to add.
+   */
+  public synchronized void addCostListener(CostListener listener) {
+    this.costListeners.add(listener);
+  }
+
+  /**
+   * A method to stop being told about edge costs changing.
+   * @param listener The listener to remove.
+   */
+  public synchronized void removeCostListener(CostListener listener) {
+    this.costListeners.remove(listener);
+  }
+
+  /**
+   * A method to put a duck on the board. Ducks added straight to the ducks list still move, but
+   * the EntityIndex won't know about them.
+   * @param duck The duck to add.
+   */
+  public void addDuck(Duck duck) {
+    this.ducks.add(duck);
+    this.entityIndex.add(duck, duck.x, duck.y);
+  }
+
+  /**
+   * A method to take a duck off the board.
+   * @param duck The duck to remove.
+   * @return True if the duck was on the board.
+   */
+  public boolean removeDuck(Duck duck) {
+    this.entityIndex.remove(duck, duck.x, duck.y);
+    return this.ducks.remove(duck);
+  }
+
+  /**
+   * A method to put a koala on the board.
+   * @param koala The koala to add.
+   */
+  public void addKoala(Koala koala) {
+    this.koalas.add(koala);
+    this.entityIndex.add(koala, koala.x, koala.y);
+  }
+
+  /**
+   * A method to take a koala off the board.
+   * @param koala The koala to remove.
+   * @return True if the koala was on the board.
+   */
+  public boolean removeKoala(Koala koala) {
+    this.entityIndex.remove(koala, koala.x, koala.y);
+    return this.koalas.remove(koala);
+  }
+
+  /**
+   * A method to fetch the spatial index of the entities on the board, to ask what is near a tile.
+   * @return The EntityIndex, kept up to date as entities move.
+   */
+  public EntityIndex getEntityIndex() {
+    return this.entityIndex;
+  }
+
+  /**
+   * A method to fetch every entity on the board, ducks first and then koalas.
+   * @return A new list of all of the entities.
+   */
+  public List<Entity> getEntities() {
+    List<Entity> entities = new ArrayList<>(this.ducks.size() + this.koalas.size());
+    entities.addAll(this.ducks);
+    entities.addAll(this.koalas);
+    return entities;
+  }
+
   /**
    * A method to return the width of the game board.
    * @return The width of the game board in tiles.
    */
   public int getGameWidth() {
-    // The size of the first row will be the game board.
-    return this.gameTiles.get(0).size();
+    return this.grid.getWidth();
   }
 
   /**
@@ -104,8 +372,7 @@ public class GameState {
    * @return The height of the game board in tiles.
    */
   public int getGameHeight() {
-    // The number of rows is the height.
-    return this.gameTiles.size();
+    return this.grid.getHeight();
   }
 
   /**
@@ -116,6 +383,110 @@ public class GameState {
    * @return the cost for the given entity to do the given move.
    */
   public int requestCost(Entity entity, Point from, CardinalDirection direction) {
-    return gameTiles.get(from.y).get(from.x).getCost(entity, direction);
+    return requestCost(entity, from.x, from.y, direction);
+  }
+
+  /**
+   * A method to request the cost for some edge in the game board without wrapping the position in a
+   * Point. Pathfinders call this for every edge so it shouldn't allocate.
+   * @param entity The entity moving between the given points.
+   * @param x      The x position (in tiles) of where the entity would be.
+   * @param y      The y position (in tiles) of where the entity would be.
+   * @param direction The direction the entity wants to move from that point.
+   * @return the cost for the given entity to do the given move.
+   */
+  public int requestCost(Entity entity, int x, int y, CardinalDirection direction) {
+    return this.costs.costAt(EntityType.of(entity), y * this.grid.getWidth() + x, direction);
+  }
+
+  /**
+   * A method to request the cheapest cost of any edge in the game board. A path of n moves can't
+   * cost less than n times this, which is what makes it useful for heuristics.
+   * @param entity The entity that would be moving.
+   * @return the smallest cost for the given entity to do any move on the board.
+   */
+  public int requestMinimumCost(Entity entity) {
+    return requestMinimumCost(EntityType.of(entity));
+  }
+
+  /**
+   * A method to request the cheapest cost of any edge in the game board for a type of entity.
+   * @param type The type of entity that would be moving.
+   * @return the smallest cost for that type of entity to do any move on the board.
+   */
+  public int requestMinimumCost(EntityType type) {
+    // Negative costs would break Dijkstra anyway, but don't let them break the heuristic too.
+    return Math.max(this.costs.getMinimumCost(type), 0);
+  }
+
+  /**
+   * A method to fetch the landmark distance tables for the type of the given entity. They are built
+   * once per map the first time any entity of that type asks, and shared from then on. Each table
+   * takes at most LANDMARK_BYTES, with as many landmarks as fit up to LANDMARK_COUNT.
+   * @param entity The entity that wants to know, only its type matters.
+   * @return The LandmarkTable for the entity's type.
+   */
+  public LandmarkTable getLandmarks(Entity entity) {
+    return getLandmarks(EntityType.of(entity));
+  }
+
+  /**
+   * A method to fetch the landmark distance tables for a type of entity, built the first time they
+   * are asked for.
+   * @param type The type of entity.
+   * @return The LandmarkTable for the type.
+   */
+  public synchronized LandmarkTable getLandmarks(EntityType type) {
+    LandmarkTable table = this.landmarks.get(type);
+    if (table == null) {
+      int cells = getGameWidth() * getGameHeight();
+      table = new LandmarkTable(this, type,
+              LandmarkTable.landmarkCount(cells, LANDMARK_COUNT, LANDMARK_BYTES));
+      this.landmarks.put(type, table);
+    }
+    return table;
+  }
+
+  /**
+   * A method to fetch the flow field towards the given destination for the type of the given
+   * entity. It is built with one search the first time it is asked for and shared from then on, so
+   * any number of entities heading to the same place only cost one search. When costs change it is
+   * updated where it needs to be rather than built again.
+   * @param entity The entity that wants to know, only its type matters.
+   * @param xd     The x position (in tiles) of the destination.
+   * @param yd     The y position of the destination.
+   * @return The FlowField towards the destination for the entity's type.
+   */
+  public synchronized FlowField getFlowField(Entity entity, int xd, int yd) {
+    EntityType type = EntityType.of(entity);
+    Map<Integer, FlowField> fields = this.flowFields.get(type);
+    if (fields == null) {
+      fields = new HashMap<>();
+      this.flowFields.put(type, fields);
+    }
+    int target = yd * getGameWidth() + xd;
+    FlowField field = fields.get(target);
+    if (field == null) {
+      field = new FlowField(this, entity, xd, yd);
+      fields.put(target, field);
+    }
+    return field;
+  }
+
+  /**
+   * A method to fetch the hierarchical abstraction of the board for the type of the given entity. It
+   * is built the first time an entity of that type asks for it and kept up to date by setTile().
+   * Clusters aren't linked across the edges of a TORUS board, so its paths never wrap around.
+   * @param entity The entity that wants to know, only its type matters.
+   * @return The HierarchicalMap for the entity's type.
+   */
+  public synchronized HierarchicalMap getHierarchy(Entity entity) {
+    EntityType type = EntityType.of(entity);
+    HierarchicalMap hierarchy = this.hierarchies.get(type);
+    if (hierarchy == null) {
+      hierarchy = new HierarchicalMap(this, type, HIERARCHY_CLUSTER_SIZE);
+      this.hierarchies.put(type, hierarchy);
+    }
+    return hierarchy;
   }
 }
@@ -0,0 +1,738 @@
+package game.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import game.CardinalDirection;
+import game.model.entities.EntityType;
+
+/**
+ * A HierarchicalMap is an abstraction of the board for hierarchical pathfinding (HPA*) for one type
+ * of entity. The board is cut into square clusters. Where two clusters touch we place entrances,
+ * and inside every cluster we precompute the cost between each pair of its entrances. A query then
+ * searches the small graph of entrances first and only refines the winning route tile by tile
+ * inside the clusters it passes through. Entrances are spread along each border rather than only
+ * at its ends, so routes don't have to bend far to reach one.
+ *
+ * The search of the entrances is A* with landmarks (ALT) over the graph of entrances: the distances
+ * from and to a few entrances far apart are worked out when the map is built, and the triangle
+ * inequality turns them into bounds towards the goal that are much tighter than Manhattan distance
+ * scaled by the cheapest edge. When costs change the bounds are scaled like a LandmarkTable's, so
+ * they stay safe, and rebuildLandmarks() brings them back to full strength.
+ *
+ * Routes through entrances make detours, so two things keep the paths close to the cheapest. A
+ * start and goal in the same or neighbouring clusters are searched directly with A* in a window
+ * around their clusters, without entrances at all. Longer paths are smoothed: every stretch of
+ * SMOOTH_SPAN moves is searched again with A* in a window around it, twice with the stretches
+ * offset by half, and replaced if that finds a cheaper way.
+ *
+ * That isn't guaranteed to find the cheapest path, but the paths cost at most 1.5% more than the
+ * cheapest on average and 10% more at worst, which HierarchicalMapTest checks on both topologies.
+ * Clusters aren't linked across the edges of a TORUS board, so paths never wrap around.
+ *
+ * Every thread that queries gets its own scratch space, so entities thinking on different threads
+ * don't wait for each other. Queries only read the map, so changing costs has to happen between
+ * them, which GameState does between ticks.
+ */
+public class HierarchicalMap {
+  // Borders at least this long get entrances at each end and about every ENTRANCE_SPACING tiles
+  // between, shorter ones get one in the middle.
+  private static final int ENTRANCE_SPLIT = 6;
+  private static final int ENTRANCE_SPACING = 5;
+  // The number of moves in each stretch of a path that smoothing searches again.
+  private static final int SMOOTH_SPAN = 32;
+  // How far around a stretch, in tiles, smoothing looks for a better way.
+  private static final int SMOOTH_MARGIN = 8;
+  // The most landmarks among the entrances, and the most memory their distances can take.
+  private static final int LANDMARK_COUNT = 8;
+  private static final long LANDMARK_BYTES = 32L << 20;
+
+  private final GameState model;
+  private final EntityType type; // The type of entity this map is for, needed for edge weights.
+  private final int width, height;
+  private final int clusterSize;
+  private final int clustersX, clustersY;
+  private final int nearSize; // The biggest window nearby queries and smoothing search in.
+  private int minimumCost; // The cheapest edge on the board, scales the heuristic.
+
+  // The abstract nodes, which are all entrance tiles.
+  private final int nodeCount;
+  private final int[] nodeCell; // The packed node id y * width + x of each abstract node.
+  private final int[] nodeCluster; // The cluster each abstract node is in.
+  private final int[] nodeSlot; // The index of each abstract node in its cluster.
+  private final int[][] interTarget; // The abstract nodes across a cluster border from each node.
+  private final CardinalDirection[][] interDirection; // Which way each of those edges goes.
+  private final int[][] interCost; // The cost of each of those edges.
+  private final int[][] interReverse; // Where the edge back is in the lists of the node across.
+
+  // The clusters, indexed by cy * clustersX + cx.
+  private final int[][] clusterNodes; // The abstract nodes in each cluster.
+  private final int[][] intraCost; // intraCost[c][i * k + j] is the cost from slot i to slot j.
+  private final int largestCluster; // The most entrances in one cluster.
+
+  // The distances between the entrances and the landmarks, node * landmarkCount + landmark.
+  private final int landmarkCount;
+  private final int[] fromLandmarks; // From each landmark to each node.
+  private final int[] toLandmarks; // From each node to each landmark.
+  private CostDrift drift; // How far the costs have moved since the landmarks were searched.
+
+  private final ThreadLocal<Query> queries; // The scratch space of each thread.
+
+  /**
+   * Create a new HierarchicalMap over the board and compute every cluster.
+   * @param model       The model to query about edge weights.
+   * @param type        The type of entity this map is for.
+   * @param clusterSize The width and height of a cluster in tiles.
+   */
+  public HierarchicalMap(GameState model, EntityType type, int clusterSize) {
+    this.model = model;
+    this.type = type;
+    this.width = model.getGameWidth();
+    this.height = model.getGameHeight();
+    this.clusterSize = clusterSize;
+    this.clustersX = (this.width + clusterSize - 1) / clusterSize;
+    this.clustersY = (this.height + clusterSize - 1) / clusterSize;
+    // Big enough for the clusters around two neighbouring ones, or a stretch being smoothed.
+    this.nearSize = Math.max(4 * clusterSize, SMOOTH_SPAN + 2 * SMOOTH_MARGIN + 1);
+    this.minimumCost = model.requestMinimumCost(type);
+
+    // First find the entrances along every border between two clusters.
+    Map<Integer, Integer> cellNodes = new HashMap<>();
+    List<Integer> cells = new ArrayList<>();
+    List<int[]> links = new ArrayList<>(); // {from node, to node, direction ordinal}
+    for (int cy = 0; cy < this.clustersY; cy++) {
+      for (int cx = 0; cx < this.clustersX; cx++) {
+        int x0 = cx * clusterSize;
+        int y0 = cy * clusterSize;
+        int x1 = Math.min(this.width, x0 + clusterSize);
+        int y1 = Math.min(this.height, y0 + clusterSize);
+        if (x1 < this.width) {
+          // The border with the cluster to the east.
+          for (int y : entrancePositions(y0, y1)) {
+            link(cellNodes, cells, links, y * this.width + x1 - 1, y * this.width + x1,
+                    CardinalDirection.EAST);
+          }
+        }
+        if (y1 < this.height) {
+          // The border with the cluster to the south.
+          for (int x : entrancePositions(x0, x1)) {
+            link(cellNodes, cells, links, (y1 - 1) * this.width + x, y1 * this.width + x,
+                    CardinalDirection.SOUTH);
+          }
+        }
+      }
+    }
+
+    this.nodeCount = cells.size();
+    this.nodeCell = new int[this.nodeCount];
+    this.nodeCluster = new int[this.nodeCount];
+    this.nodeSlot = new int[this.nodeCount];
+    int[] clusterSizes = new int[this.clustersX * this.clustersY];
+    for (int n = 0; n < this.nodeCount; n++) {
+      int cell = cells.get(n);
+      this.nodeCell[n] = cell;
+      this.nodeCluster[n] = cluster(cell % this.width, cell / this.width);
+      this.nodeSlot[n] = clusterSizes[this.nodeCluster[n]]++;
+    }
+    this.clusterNodes = new int[clusterSizes.length][];
+    this.intraCost = new int[clusterSizes.length][];
+    for (int c = 0; c < clusterSizes.length; c++) {
+      this.clusterNodes[c] = new int[clusterSizes[c]];
+      this.intraCost[c] = new int[clusterSizes[c] * clusterSizes[c]];
+    }
+    for (int n = 0; n < this.nodeCount; n++) {
+      this.clusterNodes[this.nodeCluster[n]][this.nodeSlot[n]] = n;
+    }
+
+    // Then hang the edges across the borders off of the nodes they leave from.
+    int[] linkCounts = new int[this.nodeCount];
+    for (int[] link : links) {
+      linkCounts[link[0]]++;
+    }
+    this.interTarget = new int[this.nodeCount][];
+    this.interDirection = new CardinalDirection[this.nodeCount][];
+    this.interCost = new int[this.nodeCount][];
+    this.interReverse = new int[this.nodeCount][];
+    for (int n = 0; n < this.nodeCount; n++) {
+      this.interTarget[n] = new int[linkCounts[n]];
+      this.interDirection[n] = new CardinalDirection[linkCounts[n]];
+      this.interCost[n] = new int[linkCounts[n]];
+      this.interReverse[n] = new int[linkCounts[n]];
+      linkCounts[n] = 0;
+    }
+    CardinalDirection[] directions = CardinalDirection.values();
+    for (int[] link : links) {
+      int from = link[0];
+      this.interTarget[from][linkCounts[from]] = link[1];
+      this.interDirection[from][linkCounts[from]] = directions[link[2]];
+      linkCounts[from]++;
+    }
+    for (int n = 0; n < this.nodeCount; n++) {
+      for (int e = 0; e < this.interTarget[n].length; e++) {
+        int across = this.interTarget[n][e];
+        for (int back = 0; back < this.interTarget[across].length; back++) {
+          if (this.interTarget[across][back] == n) {
+            this.interReverse[n][e] = back;
+          }
+        }
+      }
+    }
+
+    int largestCluster = 0;
+    for (int size : clusterSizes) {
+      largestCluster = Math.max(largestCluster, size);
+    }
+    this.largestCluster = largestCluster;
+    this.landmarkCount = this.nodeCount == 0 ? 0 : (int) Math.max(1,
+            Math.min(LANDMARK_COUNT, LANDMARK_BYTES / (2L * Integer.BYTES * this.nodeCount)));
+    this.queries = new ThreadLocal<Query>() {
+      @Override
+      protected Query initialValue() {
+        return new Query();
+      }
+    };
+
+    // Then work out the costs inside of every cluster.
+    for (int c = 0; c < clusterSizes.length; c++) {
+      updateCluster(c);
+    }
+
+    // Finally search the graph of entrances from and to the landmarks.
+    this.fromLandmarks = new int[this.nodeCount * this.landmarkCount];
+    this.toLandmarks = new int[this.nodeCount * this.landmarkCount];
+    rebuildLandmarks();
+  }
+
+  // The scratch space of one thread's queries.
+  private final class Query {
+    final PathFinder local; // Searches inside a single cluster.
+    final PathFinder near; // Searches nearby queries and smooths, in bigger windows.
+    // The abstract search, two bigger than nodeCount for the start and the goal. A distance is only
+    // set if the node was visited in the search of the current generation.
+    final int[] distance;
+    final int[] previous;
+    final int[] visited;
+    int generation;
+    final NodeHeap open;
+    final int[] startCost; // The cost from the start to each entrance of its cluster.
+    final int[] goalCost; // The cost from each entrance of the goal's cluster to the goal.
+    // What each landmark says about the goal: the distance from the landmark to it, and the most
+    // an entrance of the goal's cluster is closer to the landmark than the goal is to it.
+    final long[] landmarkToGoal;
+    final long[] goalToLandmark;
+
+    Query() {
+      HierarchicalMap map = HierarchicalMap.this;
+      this.local = new PathFinder(map.model, map.clusterSize, map.clusterSize);
+      this.near = new PathFinder(map.model, map.nearSize, map.nearSize, SearchMode.A_STAR);
+      this.distance = new int[map.nodeCount + 2];
+      this.previous = new int[map.nodeCount + 2];
+      this.visited = new int[map.nodeCount + 2];
+      this.open = new NodeHeap(map.nodeCount + 2);
+      this.startCost = new int[map.largestCluster];
+      this.goalCost = new int[map.largestCluster];
+      this.landmarkToGoal = new long[map.landmarkCount];
+      this.goalToLandmark = new long[map.landmarkCount];
+    }
+
+    // Starts a new abstract search, forgetting every distance of the last one.
+    void begin() {
+      if (++this.generation == 0) {
+        Arrays.fill(this.visited, 0);
+        this.generation = 1;
+      }
+      this.open.clear();
+    }
+
+    int getDistance(int node) {
+      return this.visited[node] == this.generation ? this.distance[node] : PathFinder.UNREACHED;
+    }
+
+    void setDistance(int node, int distance, int previous) {
+      this.visited[node] = this.generation;
+      this.distance[node] = distance;
+      this.previous[node] = previous;
+    }
+  }
+
+  /**
+   * A helper method to pick where the entrances go along a border.
+   * @param from The first position along the border.
+   * @param to   One past the last position along the border.
+   * @return The positions along the border to put entrances at.
+   */
+  private static int[] entrancePositions(int from, int to) {
+    if (to - from < ENTRANCE_SPLIT) {
+      return new int[] {(from + to) / 2};
+    }
+    int count = (to - from - 1 + ENTRANCE_SPACING - 1) / ENTRANCE_SPACING + 1;
+    int[] positions = new int[count];
+    for (int i = 0; i < count; i++) {
+      positions[i] = from + (int) ((long) i * (to - from - 1) / (count - 1));
+    }
+    return positions;
+  }
+
+  /**
+   * A helper method to connect two tiles across a border in both directions, making abstract nodes
+   * for them if they don't have any yet.
+   */
+  private static void link(Map<Integer, Integer> cellNodes, List<Integer> cells,
+                           List<int[]> links, int from, int to, CardinalDirection direction) {
+    int fromNode = abstractNode(cellNodes, cells, from);
+    int toNode = abstractNode(cellNodes, cells, to);
+    links.add(new int[] {fromNode, toNode, direction.ordinal()});
+    links.add(new int[] {toNode, fromNode, CardinalDirection.opposite(direction).ordinal()});
+  }
+
+  private static int abstractNode(Map<Integer, Integer> cellNodes, List<Integer> cells, int cell) {
+    Integer node = cellNodes.get(cell);
+    if (node == null) {
+      node = cells.size();
+      cells.add(cell);
+      cellNodes.put(cell, node);
+    }
+    return node;
+  }
+
+  /**
+   * A method to bring the map up to date after edge costs have changed. Each cluster with a changed
+   * tile is recomputed once, and the landmark bounds are scaled to allow for the changes. Call this
+   * from the thread that changes the costs, between queries.
+   * @param changes The changed costs.
+   */
+  void costsChanged(CostChanges changes) {
+    this.drift.costsChanged(changes);
+    boolean[] dirty = new boolean[this.clusterNodes.length];
+    for (int i = 0; i < changes.size(); i++) {
+      int cell = changes.getCell(i);
+      for (CardinalDirection direction : CardinalDirection.values()) {
+        this.minimumCost = Math.min(this.minimumCost,
+                Math.max(0, changes.getNewCost(i, this.type, direction)));
+      }
+      dirty[cluster(cell % this.width, cell / this.width)] = true;
+    }
+    for (int c = 0; c < dirty.length; c++) {
+      if (dirty[c]) {
+        updateCluster(c);
+      }
+    }
+  }
+
+  /**
+   * A method to search the graph of entrances from and to every landmark again, so the bounds are
+   * back to full strength after costs have changed. The first landmark is the first entrance and
+   * every next one is the entrance furthest from the ones already picked. Call this between
+   * queries.
+   */
+  void rebuildLandmarks() {
+    this.drift = new CostDrift(this.type);
+    Query query = this.queries.get();
+    int[] closest = new int[this.nodeCount]; // The distance to the closest landmark so far.
+    Arrays.fill(closest, PathFinder.UNREACHED);
+    int next = 0;
+    for (int i = 0; i < this.landmarkCount; i++) {
+      searchAll(query, next, false);
+      int furthest = -1;
+      for (int n = 0; n < this.nodeCount; n++) {
+        int distance = query.getDistance(n);
+        this.fromLandmarks[n * this.landmarkCount + i] = distance;
+        closest[n] = Math.min(closest[n], distance);
+        if (closest[n] != PathFinder.UNREACHED
+                && (furthest == -1 || closest[n] > closest[furthest])) {
+          furthest = n;
+        }
+      }
+      searchAll(query, next, true);
+      for (int n = 0; n < this.nodeCount; n++) {
+        this.toLandmarks[n * this.landmarkCount + i] = query.getDistance(n);
+      }
+      next = furthest == -1 ? 0 : furthest;
+    }
+  }
+
+  /**
+   * A helper method to find the distance from an entrance to every other one, or from every other
+   * one to it, with Dijkstra over the graph of entrances.
+   * @param query   The scratch space to search in, which ends up with the distances.
+   * @param source  The abstract node to search from.
+   * @param reverse True to follow the edges backwards, for the distances to source.
+   */
+  private void searchAll(Query query, int source, boolean reverse) {
+    query.begin();
+    query.setDistance(source, 0, PathFinder.NONE);
+    query.open.push(source, 0);
+    while (!query.open.isEmpty()) {
+      int from = query.open.pop();
+      int fromDistance = query.getDistance(from);
+      int c = this.nodeCluster[from];
+      int slot = this.nodeSlot[from];
+      int[] nodes = this.clusterNodes[c];
+      int k = nodes.length;
+      for (int j = 0; j < k; j++) {
+        if (j != slot) {
+          int cost = reverse ? this.intraCost[c][j * k + slot] : this.intraCost[c][slot * k + j];
+          relax(query, from, nodes[j], fromDistance, cost, -1);
+        }
+      }
+      for (int e = 0; e < this.interTarget[from].length; e++) {
+        int across = this.interTarget[from][e];
+        int cost = reverse ? this.interCost[across][this.interReverse[from][e]]
+                : this.interCost[from][e];
+        relax(query, from, across, fromDistance, cost, -1);
+      }
+    }
+  }
+
+  /**
+   * A helper method to recompute the costs between the entrances of a cluster, and the costs of the
+   * edges leaving the cluster since those belong to tiles in it.
+   * @param c The index of the cluster.
+   */
+  private void updateCluster(int c) {
+    PathFinder local = this.queries.get().local;
+    int[] nodes = this.clusterNodes[c];
+    int k = nodes.length;
+    int[] costs = this.intraCost[c];
+    windowTo(local, c);
+    for (int i = 0; i < k; i++) {
+      int from = this.nodeCell[nodes[i]];
+      int fromX = from % this.width;
+      int fromY = from / this.width;
+      local.start(this.type, fromX, fromY, fromX, fromY);
+      local.run();
+      for (int j = 0; j < k; j++) {
+        int to = this.nodeCell[nodes[j]];
+        costs[i * k + j] = local.getDistance(local.node(to % this.width, to / this.width));
+      }
+      for (int e = 0; e < this.interTarget[nodes[i]].length; e++) {
+        this.interCost[nodes[i]][e] = cost(from, this.interDirection[nodes[i]][e]);
+      }
+    }
+  }
+
+  /**
+   * A method to find a path between two tiles. Any number of threads can do this at once.
+   * @param x  The x position (in tiles) to start from.
+   * @param y  The y position (in tiles) to start from.
+   * @param xd The x position (in tiles) of the destination.
+   * @param yd The y position of the destination.
+   * @return The packed node ids y * width + x along the path, beginning with the start and ending
+   *         with the destination. Empty if the destination can't be reached.
+   */
+  public int[] findPath(int x, int y, int xd, int yd) {
+    Query query = this.queries.get();
+    PathFinder local = query.local;
+    int source = y * this.width + x;
+    int target = yd * this.width + xd;
+    if (source == target) {
+      return new int[] {source};
+    }
+    int sourceCluster = cluster(x, y);
+    int targetCluster = cluster(xd, yd);
+    if (Math.abs(sourceCluster % this.clustersX - targetCluster % this.clustersX) <= 1
+            && Math.abs(sourceCluster / this.clustersX - targetCluster / this.clustersX) <= 1) {
+      // Close enough to search directly, around both clusters and the ones next to them.
+      int[] path = searchNear(query.near, x, y, xd, yd,
+              (Math.min(x, xd) / this.clusterSize - 1) * this.clusterSize,
+              (Math.min(y, yd) / this.clusterSize - 1) * this.clusterSize,
+              (Math.max(x, xd) / this.clusterSize + 2) * this.clusterSize,
+              (Math.max(y, yd) / this.clusterSize + 2) * this.clusterSize);
+      if (path.length > 0) {
+        return path;
+      }
+    }
+    int startNode = this.nodeCount;
+    int goalNode = this.nodeCount + 1;
+
+    // Connect the start and the goal to the entrances of their clusters.
+    int[] sourceNodes = this.clusterNodes[sourceCluster];
+    windowTo(local, sourceCluster);
+    local.start(this.type, x, y, x, y);
+    local.run();
+    for (int i = 0; i < sourceNodes.length; i++) {
+      query.startCost[i] = localDistance(local, this.nodeCell[sourceNodes[i]]);
+    }
+    int direct = sourceCluster == targetCluster ? localDistance(local, target)
+            : PathFinder.UNREACHED;
+    int[] targetNodes = this.clusterNodes[targetCluster];
+    windowTo(local, targetCluster);
+    local.startReverse(this.type, xd, yd);
+    local.run();
+    for (int i = 0; i < targetNodes.length; i++) {
+      query.goalCost[i] = localDistance(local, this.nodeCell[targetNodes[i]]);
+    }
+    boundGoal(query, targetNodes);
+
+    // Search the abstract graph.
+    query.begin();
+    query.setDistance(startNode, 0, PathFinder.NONE);
+    query.open.push(startNode, 0);
+    while (!query.open.isEmpty()) {
+      int from = query.open.pop();
+      if (from == goalNode) {
+        break;
+      }
+      int fromDistance = query.getDistance(from);
+      if (from == startNode) {
+        for (int i = 0; i < sourceNodes.length; i++) {
+          relax(query, from, sourceNodes[i], fromDistance, query.startCost[i], target);
+        }
+        relax(query, from, goalNode, fromDistance, direct, target);
+        continue;
+      }
+      int c = this.nodeCluster[from];
+      int slot = this.nodeSlot[from];
+      int[] nodes = this.clusterNodes[c];
+      int k = nodes.length;
+      for (int j = 0; j < k; j++) {
+        if (j != slot) {
+          relax(query, from, nodes[j], fromDistance, this.intraCost[c][slot * k + j], target);
+        }
+      }
+      for (int e = 0; e < this.interTarget[from].length; e++) {
+        relax(query, from, this.interTarget[from][e], fromDistance, this.interCost[from][e],
+                target);
+      }
+      if (c == targetCluster) {
+        relax(query, from, goalNode, fromDistance, query.goalCost[slot], target);
+      }
+    }
+    if (query.getDistance(goalNode) == PathFinder.UNREACHED) {
+      return new int[0];
+    }
+
+    // Walk back through the abstract nodes, then refine every hop into tiles.
+    int hops = 0;
+    for (int n = goalNode; n != PathFinder.NONE; n = query.previous[n]) {
+      hops++;
+    }
+    int[] route = new int[hops];
+    for (int n = goalNode; n != PathFinder.NONE; n = query.previous[n]) {
+      route[--hops] = n;
+    }
+    int[] path = new int[Math.abs(x - xd) + Math.abs(y - yd) + 1];
+    int length = 0;
+    path[length++] = source;
+    for (int i = 1; i < route.length; i++) {
+      int from = route[i - 1] == startNode ? source : this.nodeCell[route[i - 1]];
+      int to = route[i] == goalNode ? target : this.nodeCell[route[i]];
+      int fromCluster = route[i - 1] == startNode ? sourceCluster : this.nodeCluster[route[i - 1]];
+      int toCluster = route[i] == goalNode ? targetCluster : this.nodeCluster[route[i]];
+      if (fromCluster != toCluster) {
+        // Only edges across a border leave a cluster, and those are a single step.
+        path = ensureCapacity(path, length + 1);
+        path[length++] = to;
+        continue;
+      }
+      windowTo(local, fromCluster);
+      local.start(this.type, from % this.width, from / this.width,
+              to % this.width, to / this.width);
+      local.run();
+      int[] segment = local.getPath();
+      path = ensureCapacity(path, length + segment.length);
+      for (int s = 1; s < segment.length; s++) {
+        path[length++] = local.nodeY(segment[s]) * this.width + local.nodeX(segment[s]);
+      }
+    }
+    path = smooth(query.near, path, length, 0);
+    return smooth(query.near, path, path.length, SMOOTH_SPAN / 2);
+  }
+
+  /**
+   * A helper method to work out what each landmark says about the distance to the goal, once the
+   * costs from the entrances of its cluster to it are known. The goal is only reached through those
+   * entrances, so for an entrance e with cost g to the goal, d(L, goal) is the least d(L, e) + g,
+   * and d(v, goal) >= d(v, L) - (d(e, L) - g) for the e where that is largest.
+   * @param query       The scratch space of the query, with goalCost filled in.
+   * @param targetNodes The entrances of the goal's cluster.
+   */
+  private void boundGoal(Query query, int[] targetNodes) {
+    for (int i = 0; i < this.landmarkCount; i++) {
+      long toGoal = Long.MAX_VALUE;
+      long fromGoal = Long.MIN_VALUE;
+      for (int slot = 0; slot < targetNodes.length; slot++) {
+        int goalCost = query.goalCost[slot];
+        if (goalCost == PathFinder.UNREACHED) {
+          continue;
+        }
+        int node = targetNodes[slot];
+        int from = this.fromLandmarks[node * this.landmarkCount + i];
+        int to = this.toLandmarks[node * this.landmarkCount + i];
+        if (from != PathFinder.UNREACHED) {
+          toGoal = Math.min(toGoal, (long) from + goalCost);
+        }
+        // An entrance that can't reach the landmark tells us nothing about the others.
+        fromGoal = to == PathFinder.UNREACHED || fromGoal == Long.MAX_VALUE ? Long.MAX_VALUE
+                : Math.max(fromGoal, (long) to - goalCost);
+      }
+      query.landmarkToGoal[i] = toGoal;
+      query.goalToLandmark[i] = fromGoal == Long.MIN_VALUE ? Long.MAX_VALUE : fromGoal;
+    }
+  }
+
+  /**
+   * A helper method to search with A* in a window of the board, clamped to the board.
+   * @return The packed node ids y * width + x along the cheapest path in the window, empty if there
+   *         is none.
+   */
+  private int[] searchNear(PathFinder near, int x, int y, int xd, int yd, int x0, int y0, int x1,
+                           int y1) {
+    x0 = Math.max(0, x0);
+    y0 = Math.max(0, y0);
+    x1 = Math.min(this.width, x1);
+    y1 = Math.min(this.height, y1);
+    near.setWindow(x0, y0, x1 - x0, y1 - y0);
+    near.start(this.type, x, y, xd, yd);
+    near.run();
+    int[] segment = near.getPath();
+    for (int s = 0; s < segment.length; s++) {
+      segment[s] = near.nodeY(segment[s]) * this.width + near.nodeX(segment[s]);
+    }
+    return segment;
+  }
+
+  /**
+   * A helper method to straighten out the detours a path makes through entrances. The path is cut
+   * into stretches of SMOOTH_SPAN moves, starting after the given offset, and each stretch is
+   * searched again in a window around it. A cheaper way replaces the stretch.
+   * @param near   The finder to search the stretches with.
+   * @param path   The packed node ids along the path.
+   * @param length The number of nodes in the path, from the start of path.
+   * @param offset The number of moves before the first stretch.
+   * @return The smoothed path.
+   */
+  private int[] smooth(PathFinder near, int[] path, int length, int offset) {
+    int[] smoothed = new int[length];
+    int count = 0;
+    smoothed[count++] = path[0];
+    int from = 0;
+    while (from < length - 1) {
+      int to = Math.min(length - 1, from == 0 && offset > 0 ? offset : from + SMOOTH_SPAN);
+      int x0 = this.width, y0 = this.height, x1 = 0, y1 = 0;
+      int stretchCost = 0;
+      for (int i = from; i <= to; i++) {
+        int px = path[i] % this.width;
+        int py = path[i] / this.width;
+        x0 = Math.min(x0, px);
+        y0 = Math.min(y0, py);
+        x1 = Math.max(x1, px + 1);
+        y1 = Math.max(y1, py + 1);
+        if (i < to) {
+          stretchCost += cost(path[i], step(path[i], path[i + 1]));
+        }
+      }
+      int[] better = searchNear(near, path[from] % this.width, path[from] / this.width,
+              path[to] % this.width, path[to] / this.width, x0 - SMOOTH_MARGIN,
+              y0 - SMOOTH_MARGIN, x1 + SMOOTH_MARGIN, y1 + SMOOTH_MARGIN);
+      int[] stretch;
+      int stretchStart;
+      if (better.length > 0 && near.getDistance(near.node(path[to] % this.width,
+              path[to] / this.width)) < stretchCost) {
+        stretch = better;
+        stretchStart = 0;
+      } else {
+        stretch = path;
+        stretchStart = from;
+      }
+      int stretchLength = stretch == path ? to - from + 1 : better.length;
+      smoothed = ensureCapacity(smoothed, count + stretchLength);
+      for (int i = 1; i < stretchLength; i++) {
+        smoothed[count++] = stretch[stretchStart + i];
+      }
+      from = to;
+    }
+    return Arrays.copyOf(smoothed, count);
+  }
+
+  // The direction of the move between two neighbouring tiles. Paths here never wrap around.
+  private CardinalDirection step(int from, int to) {
+    if (to == from + 1) {
+      return CardinalDirection.EAST;
+    } else if (to == from - 1) {
+      return CardinalDirection.WEST;
+    } else if (to > from) {
+      return CardinalDirection.SOUTH;
+    }
+    return CardinalDirection.NORTH;
+  }
+
+  private int cost(int cell, CardinalDirection direction) {
+    return this.model.getCostTable().costAt(this.type, cell, direction);
+  }
+
+  private void relax(Query query, int from, int to, int fromDistance, int cost, int target) {
+    if (cost == PathFinder.UNREACHED) {
+      return;
+    }
+    int toDistance = fromDistance + cost;
+    if (toDistance < query.getDistance(to)) {
+      query.setDistance(to, toDistance, from);
+      int estimate = to >= this.nodeCount || target < 0 ? 0 : heuristic(query, to, target);
+      query.open.push(to, toDistance + estimate);
+    }
+  }
+
+  // The larger of Manhattan distance scaled by the cheapest edge and what the landmarks say.
+  private int heuristic(Query query, int node, int target) {
+    int cell = this.nodeCell[node];
+    int dx = Math.abs(cell % this.width - target % this.width);
+    int dy = Math.abs(cell / this.width - target / this.width);
+    long bound = 0;
+    for (int i = 0; i < this.landmarkCount; i++) {
+      int from = this.fromLandmarks[node * this.landmarkCount + i];
+      int to = this.toLandmarks[node * this.landmarkCount + i];
+      // d(v, goal) >= d(L, goal) - d(L, v), and d(v, goal) >= d(v, L) - d(goal, L).
+      if (from != PathFinder.UNREACHED && query.landmarkToGoal[i] != Long.MAX_VALUE) {
+        bound = Math.max(bound, query.landmarkToGoal[i] - from);
+      }
+      if (to != PathFinder.UNREACHED && query.goalToLandmark[i] != Long.MAX_VALUE) {
+        bound = Math.max(bound, to - query.goalToLandmark[i]);
+      }
+    }
+    int landmarks = this.drift.scaleLower((int) Math.min(bound, PathFinder.UNREACHED - 1));
+    return Math.max((dx + dy) * this.minimumCost, landmarks);
+  }
+
+  private int localDistance(PathFinder local, int cell) {
+    return local.getDistance(local.node(cell % this.width, cell / this.width));
+  }
+
+  private static int[] ensureCapacity(int[] path, int length) {
+    if (length <= path.length) {
+      return path;
+    }
+    return Arrays.copyOf(path, Math.max(length, path.length * 2));
+  }
+
+  private void windowTo(PathFinder local, int c) {
+    int originX = (c % this.clustersX) * this.clusterSize;
+    int originY = (c / this.clustersX) * this.clusterSize;
+    local.setWindow(originX, originY,
+            Math.min(this.clusterSize, this.width - originX),
+            Math.min(this.clusterSize, this.height - originY));
+  }
+
+  private int cluster(int x, int y) {
+    return (y / this.clusterSize) * this.clustersX + x / this.clusterSize;
+  }
+
+  /**
+   * A method to return the number of entrances in the abstract graph.
+   * @return The number of abstract nodes.
+   */
+  public int getNodeCount() {
+    return this.nodeCount;
+  }
+
+  /**
+   * A method to return the width and height of a cluster.
+   * @return The size of a cluster in tiles.
+   */
+  public int getClusterSize() {
+    return this.clusterSize;
+  }
+}
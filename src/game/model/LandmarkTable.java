@@ -0,0 +1,220 @@
+package game.model;
+
+import java.util.Arrays;
+
+import game.model.entities.EntityType;
+
+/**
+ * A LandmarkTable holds the exact distances from and to a handful of landmark nodes for one type of
+ * entity. The triangle inequality turns those into bounds on the distance between any two nodes
+ * (the ALT technique), which make a much stronger A* heuristic than Manhattan distance alone.
+ *
+ * Edge costs only depend on the tile and the type of entity, so one table is built per type and
+ * shared by every entity of that type. Ask the GameState for it with getLandmarks().
+ *
+ * A table costs BYTES_PER_CELL bytes per landmark per cell of the board: each distance is kept in a
+ * char, in a unit picked per landmark so that its furthest distance fits. On boards up to a few
+ * hundred tiles across the unit is 1 and the distances are exact. Further than that a distance is
+ * only known to within a unit, and the bounds are rounded the safe way, so they stay admissible and
+ * lose less than one unit, which is still less than the cheapest edge on a 4096x4096 board. Use
+ * landmarkCount() to keep the whole table inside a memory budget. Building it takes two more int
+ * arrays the size of the board for a moment.
+ *
+ * When edge costs change the table isn't searched again, which would take two searches of the whole
+ * board per landmark. Instead costsChanged() keeps track of how far the changed edges have moved
+ * from what they cost when the table was built, and the bounds are scaled to match, so they stay
+ * safe and only get weaker. Build a new table to get them back to full strength.
+ */
+public class LandmarkTable {
+  /** The bytes a table takes for every landmark and cell: a char each way. */
+  public static final int BYTES_PER_CELL = 2 * Character.BYTES;
+
+  // A distance that isn't known, because there is no way there.
+  private static final char UNKNOWN = Character.MAX_VALUE;
+  // The most units a distance can be stored as.
+  private static final int MAX_STORED = Character.MAX_VALUE - 1;
+
+  private final int width;
+  private final int[] landmarks; // The packed node ids of the landmarks.
+  private final int[] units; // A distance from or to landmark i is stored in units of units[i].
+  private final char[][] fromLandmark; // fromLandmark[i][v] is the distance from landmark i to v.
+  private final char[][] toLandmark; // toLandmark[i][v] is the distance from v to landmark i.
+  private final CostDrift drift; // How far the costs have moved since the table was built.
+
+  /**
+   * Create a new LandmarkTable by running a forward and a backward search from every landmark. The
+   * first landmark is the top left corner and every next one is the node furthest away from the
+   * ones already picked, which spreads them around the edges of the board.
+   * @param model         The model to query about edge weights.
+   * @param type          The type of entity this table is for.
+   * @param landmarkCount The number of landmarks to place.
+   */
+  public LandmarkTable(GameState model, EntityType type, int landmarkCount) {
+    this.width = model.getGameWidth();
+    this.drift = new CostDrift(type);
+    int height = model.getGameHeight();
+    int cells = this.width * height;
+    landmarkCount = Math.max(1, Math.min(landmarkCount, cells));
+    this.landmarks = new int[landmarkCount];
+    this.units = new int[landmarkCount];
+    this.fromLandmark = new char[landmarkCount][cells];
+    this.toLandmark = new char[landmarkCount][cells];
+
+    PathFinder finder = new PathFinder(model, this.width, height);
+    int[] from = new int[cells];
+    int[] to = new int[cells];
+    int[] closest = new int[cells]; // The distance to the closest landmark picked so far.
+    Arrays.fill(closest, PathFinder.UNREACHED);
+    int next = 0;
+    for (int i = 0; i < landmarkCount; i++) {
+      this.landmarks[i] = next;
+      int x = next % this.width;
+      int y = next / this.width;
+      finder.start(type, x, y, x, y);
+      finder.run();
+      finder.copyDistances(from);
+      finder.startReverse(type, x, y);
+      finder.run();
+      finder.copyDistances(to);
+      int furthestDistance = 0;
+      for (int v = 0; v < cells; v++) {
+        if (from[v] != PathFinder.UNREACHED) {
+          furthestDistance = Math.max(furthestDistance, from[v]);
+        }
+        if (to[v] != PathFinder.UNREACHED) {
+          furthestDistance = Math.max(furthestDistance, to[v]);
+        }
+      }
+      int unit = Math.max(1, (furthestDistance + MAX_STORED - 1) / MAX_STORED);
+      this.units[i] = unit;
+      store(from, unit, this.fromLandmark[i]);
+      store(to, unit, this.toLandmark[i]);
+
+      // Pick the node that is the furthest from all of the landmarks so far for next time.
+      int furthest = -1;
+      for (int v = 0; v < cells; v++) {
+        closest[v] = Math.min(closest[v], from[v]);
+        if (closest[v] != PathFinder.UNREACHED
+                && (furthest == -1 || closest[v] > closest[furthest])) {
+          furthest = v;
+        }
+      }
+      next = furthest == -1 ? 0 : furthest;
+    }
+  }
+
+  // Rounds the distances down to whole units, so unit * stored <= distance < unit * (stored + 1).
+  private static void store(int[] distances, int unit, char[] into) {
+    for (int v = 0; v < distances.length; v++) {
+      into[v] = distances[v] == PathFinder.UNREACHED ? UNKNOWN : (char) (distances[v] / unit);
+    }
+  }
+
+  /**
+   * A method to work out how many landmarks fit in a memory budget, so tables on big boards don't
+   * take more memory than the board itself.
+   * @param cells    The number of cells on the board.
+   * @param wanted   The most landmarks to have.
+   * @param maxBytes The most bytes the table should take.
+   * @return The number of landmarks to place, at least one.
+   */
+  public static int landmarkCount(int cells, int wanted, long maxBytes) {
+    long fit = maxBytes / ((long) BYTES_PER_CELL * Math.max(cells, 1));
+    return (int) Math.max(1, Math.min(wanted, fit));
+  }
+
+  /**
+   * A method to keep the bounds safe after edge costs changed. If no edge costs less than r times
+   * what it did when the table was built, no distance does either, so the lower bounds are scaled
+   * down by the smallest such r and the upper bounds up by the largest. Call this from the thread
+   * that changes the costs, between searches.
+   * @param changes The changed costs.
+   */
+  void costsChanged(CostChanges changes) {
+    this.drift.costsChanged(changes);
+  }
+
+  /**
+   * A method to return a lower bound on the distance between two nodes. It never overestimates, so
+   * it is safe to use as an A* heuristic.
+   * @param from The packed node id we start at.
+   * @param to   The packed node id we want to reach.
+   * @return A lower bound on the distance from from to to, at least zero.
+   */
+  public int lowerBound(int from, int to) {
+    int bound = 0;
+    for (int i = 0; i < this.landmarks.length; i++) {
+      char[] fromL = this.fromLandmark[i];
+      char[] toL = this.toLandmark[i];
+      int unit = this.units[i];
+      // d(L, to) <= d(L, from) + d(from, to) and d(from, L) <= d(from, to) + d(to, L). What we
+      // take away can be up to unit - 1 more than it's stored as, so we take that off too.
+      if (fromL[from] != UNKNOWN && fromL[to] != UNKNOWN) {
+        bound = Math.max(bound, unit * (fromL[to] - fromL[from]) - (unit - 1));
+      }
+      if (toL[from] != UNKNOWN && toL[to] != UNKNOWN) {
+        bound = Math.max(bound, unit * (toL[from] - toL[to]) - (unit - 1));
+      }
+    }
+    return this.drift.scaleLower(bound);
+  }
+
+  /**
+   * A method to return an upper bound on the distance between two nodes, by going through the best
+   * landmark. When this equals lowerBound() the distance is exact, which is always the case when one
+   * of the nodes is a landmark and the board is small enough for the distances to be kept exactly.
+   * @param from The packed node id we start at.
+   * @param to   The packed node id we want to reach.
+   * @return An upper bound on the distance from from to to, PathFinder.UNREACHED if we don't know.
+   */
+  public int upperBound(int from, int to) {
+    if (from == to) {
+      return 0;
+    }
+    int bound = PathFinder.UNREACHED;
+    for (int i = 0; i < this.landmarks.length; i++) {
+      char viaFrom = this.toLandmark[i][from];
+      char viaTo = this.fromLandmark[i][to];
+      if (viaFrom != UNKNOWN && viaTo != UNKNOWN) {
+        // Each of them can be up to unit - 1 more than it's stored as.
+        int unit = this.units[i];
+        bound = Math.min(bound, unit * (viaFrom + viaTo) + 2 * (unit - 1));
+      }
+    }
+    return this.drift.scaleUpper(bound);
+  }
+
+  /**
+   * A method to return the number of landmarks in this table.
+   * @return The number of landmarks.
+   */
+  public int getLandmarkCount() {
+    return this.landmarks.length;
+  }
+
+  /**
+   * A method to return where a landmark is.
+   * @param i The index of the landmark.
+   * @return The packed node id y * width + x of the landmark.
+   */
+  public int getLandmark(int i) {
+    return this.landmarks[i];
+  }
+
+  /**
+   * A method to return how precisely the distances to and from a landmark are kept.
+   * @param i The index of the landmark.
+   * @return The unit of the distances, 1 when they are exact.
+   */
+  public int getUnit(int i) {
+    return this.units[i];
+  }
+
+  /**
+   * A method to return the width of the board, needed to unpack node ids.
+   * @return The width of the board in tiles.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+}
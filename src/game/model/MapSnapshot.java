@@ -0,0 +1,274 @@
+package game.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import game.model.entities.EntityType;
+
+/**
+ * A MapSnapshot is a map saved to a file, tiles and edge costs included, so a game can start from it
+ * instead of generating terrain and working the costs out again.
+ *
+ * Loading doesn't copy the file. Each section is memory-mapped and the TileGrid and CostTable sit
+ * straight on the mapped buffers, so the operating system pages the tiles in as they are used. Only
+ * the kinds and the currents are read once, two bytes a cell, to check that every cell is a tile
+ * the game can handle before anything indexes with them. By default the file is opened and
+ * mapped read only, so any number of processes can share it, and changing a tile of that board
+ * throws a ReadOnlyBufferException. A board that has to change can be read as mutable instead, and
+ * then the mapping is private: changing a tile copies just its page for this process and never
+ * touches the file. Java only maps privately through a channel that could write, so that needs
+ * permission to write the file, even though nothing is ever written to it.
+ *
+ * The file is little endian. It starts with a header of HEADER_BYTES:
+ *   int    MAGIC
+ *   int    VERSION
+ *   int    width, height
+ *   int    the ordinal of the Topology
+ *   int    the number of entity types and the number of directions it was written with
+ *   int    the cheapest edge of each entity type
+ *   long   the offset in the file of each section
+ * and then the sections, each starting on a page: the kind of every cell (a byte), the ordinal of
+ * every current (a byte, -1 on land), the power of every current (a float) and then, for each
+ * entity type, the cost of every edge (an int, indexed like CostTable).
+ */
+public class MapSnapshot {
+  /** The first four bytes of every snapshot, "KQMS". */
+  public static final int MAGIC = 0x4B514D53;
+  /** The version of the format, changed whenever the layout does. */
+  public static final int VERSION = 1;
+  /** The size in bytes of the header, and what every section is aligned to. */
+  public static final int HEADER_BYTES = 4096;
+
+  private static final EntityType[] TYPES = EntityType.values();
+  private static final Topology[] TOPOLOGIES = Topology.values();
+  // The kinds, currents and powers, and then a section of costs for each type.
+  private static final int SECTIONS = 3 + TYPES.length;
+
+  private final TileGrid grid;
+  private final CostTable costs;
+  private final Topology topology;
+
+  private MapSnapshot(TileGrid grid, CostTable costs, Topology topology) {
+    this.grid = grid;
+    this.costs = costs;
+    this.topology = topology;
+  }
+
+  /**
+   * A method to save the board of a game. Nothing can change the board while it's being written.
+   * @param state The game to save.
+   * @param path  The file to write, replaced if it's already there.
+   * @throws IOException If the file couldn't be written.
+   */
+  public static void write(GameState state, Path path) throws IOException {
+    synchronized (state) {
+      write(state.getGrid(), state.getCostTable(), state.getTopology(), path);
+    }
+  }
+
+  /**
+   * A method to save a board.
+   * @param grid     The tiles of the board.
+   * @param costs    The edge costs worked out from the tiles.
+   * @param topology What happens at the edges of the board.
+   * @param path     The file to write, replaced if it's already there.
+   * @throws IOException If the file couldn't be written.
+   */
+  public static void write(TileGrid grid, CostTable costs, Topology topology, Path path)
+          throws IOException {
+    int cells = grid.getWidth() * grid.getHeight();
+    long[] offsets = layout(cells);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION);
+    header.putInt(grid.getWidth()).putInt(grid.getHeight());
+    header.putInt(topology.ordinal());
+    header.putInt(TYPES.length).putInt(CostTable.DIRECTION_COUNT);
+    for (EntityType type : TYPES) {
+      header.putInt(costs.getMinimumCost(type));
+    }
+    for (long offset : offsets) {
+      header.putLong(offset);
+    }
+    header.clear();
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      ByteBuffer kinds = grid.getKinds().duplicate();
+      kinds.clear();
+      map(channel, FileChannel.MapMode.READ_WRITE, offsets[0], cells).put(kinds);
+      ByteBuffer currents = grid.getCurrents().duplicate();
+      currents.clear();
+      map(channel, FileChannel.MapMode.READ_WRITE, offsets[1], cells).put(currents);
+      FloatBuffer powers = grid.getPowers().duplicate();
+      powers.clear();
+      map(channel, FileChannel.MapMode.READ_WRITE, offsets[2], (long) cells * Float.BYTES)
+              .asFloatBuffer().put(powers);
+      for (EntityType type : TYPES) {
+        IntBuffer typeCosts = costs.getCosts(type).duplicate();
+        typeCosts.clear();
+        map(channel, FileChannel.MapMode.READ_WRITE, offsets[3 + type.ordinal()],
+                costBytes(cells)).asIntBuffer().put(typeCosts);
+      }
+    }
+  }
+
+  /**
+   * A method to open a saved board read only. Only the header is read, the rest is mapped.
+   * @param path The file to open.
+   * @return The snapshot, ready to start a GameState whose tiles never change from.
+   * @throws IOException If the file couldn't be opened, isn't a snapshot this version can read or
+   *                     has a tile that can't be.
+   */
+  public static MapSnapshot read(Path path) throws IOException {
+    return read(path, false);
+  }
+
+  /**
+   * A method to open a saved board. Only the header is read, the rest is mapped.
+   * @param path    The file to open.
+   * @param mutable True to map the file privately, so tiles can change without changing the file,
+   *                false to map it read only.
+   * @return The snapshot, ready to start a GameState from.
+   * @throws IOException If the file couldn't be opened, or written to for a mutable snapshot, or
+   *                     isn't a snapshot this version can read, or has a tile that can't be.
+   */
+  public static MapSnapshot read(Path path, boolean mutable) throws IOException {
+    FileChannel channel;
+    FileChannel.MapMode mode;
+    if (mutable) {
+      // Nothing is ever written through this, it is only needed for the private mapping.
+      channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      mode = FileChannel.MapMode.PRIVATE;
+    } else {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      mode = FileChannel.MapMode.READ_ONLY;
+    }
+    try {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException(path + " is too short to be a map snapshot.");
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0) {
+          throw new IOException(path + " ended in its header.");
+        }
+      }
+      header.clear();
+      if (header.getInt() != MAGIC) {
+        throw new IOException(path + " isn't a map snapshot.");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException(path + " is version " + version + ", we read version " + VERSION
+                + ".");
+      }
+      int width = header.getInt();
+      int height = header.getInt();
+      int topology = header.getInt();
+      int types = header.getInt();
+      int directions = header.getInt();
+      if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE / Integer.BYTES
+              / CostTable.DIRECTION_COUNT || topology < 0 || topology >= TOPOLOGIES.length
+              || types != TYPES.length || directions != CostTable.DIRECTION_COUNT) {
+        throw new IOException(path + " has a header we can't use.");
+      }
+      int[] minimumCosts = new int[TYPES.length];
+      for (int t = 0; t < TYPES.length; t++) {
+        minimumCosts[t] = header.getInt();
+      }
+      int cells = width * height;
+      long[] offsets = layout(cells);
+      for (long offset : offsets) {
+        if (header.getLong() != offset) {
+          throw new IOException(path + " has its sections in the wrong places.");
+        }
+      }
+      if (channel.size() < offsets[SECTIONS - 1] + costBytes(cells)) {
+        throw new IOException(path + " is cut short.");
+      }
+
+      TileGrid grid = new TileGrid(width, height, map(channel, mode, offsets[0], cells),
+              map(channel, mode, offsets[1], cells),
+              map(channel, mode, offsets[2], (long) cells * Float.BYTES).asFloatBuffer());
+      int badCell = grid.findBadCell();
+      if (badCell >= 0) {
+        throw new IOException(path + " has a tile we can't use at " + badCell % width + ","
+                + badCell / width + ".");
+      }
+      IntBuffer[] costs = new IntBuffer[TYPES.length];
+      for (EntityType type : TYPES) {
+        costs[type.ordinal()] = map(channel, mode, offsets[3 + type.ordinal()], costBytes(cells))
+                .asIntBuffer();
+      }
+      // The mappings stay valid after the channel is closed.
+      return new MapSnapshot(grid, new CostTable(grid, costs, minimumCosts),
+              TOPOLOGIES[topology]);
+    } finally {
+      channel.close();
+    }
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset,
+                                      long size) throws IOException {
+    MappedByteBuffer buffer = channel.map(mode, offset, size);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return buffer;
+  }
+
+  private static long costBytes(int cells) {
+    return (long) cells * CostTable.DIRECTION_COUNT * Integer.BYTES;
+  }
+
+  // Works out where each section starts, every one on a boundary of HEADER_BYTES.
+  private static long[] layout(int cells) {
+    long[] offsets = new long[SECTIONS];
+    long[] sizes = new long[SECTIONS];
+    sizes[0] = cells;
+    sizes[1] = cells;
+    sizes[2] = (long) cells * Float.BYTES;
+    for (int t = 0; t < TYPES.length; t++) {
+      sizes[3 + t] = costBytes(cells);
+    }
+    long offset = HEADER_BYTES;
+    for (int s = 0; s < SECTIONS; s++) {
+      offsets[s] = offset;
+      offset += (sizes[s] + HEADER_BYTES - 1) / HEADER_BYTES * HEADER_BYTES;
+    }
+    return offsets;
+  }
+
+  /**
+   * A method to return the tiles of the snapshot.
+   * @return The TileGrid, on top of the file.
+   */
+  public TileGrid getGrid() {
+    return this.grid;
+  }
+
+  /**
+   * A method to return the edge costs of the snapshot.
+   * @return The CostTable, on top of the file.
+   */
+  public CostTable getCostTable() {
+    return this.costs;
+  }
+
+  /**
+   * A method to return what happens at the edges of the saved board.
+   * @return BOUNDED or TORUS.
+   */
+  public Topology getTopology() {
+    return this.topology;
+  }
+}
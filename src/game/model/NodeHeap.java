@@ -0,0 +1,155 @@
+package game.model;
+
+import java.util.Arrays;
+
+/**
+ * A NodeHeap is a binary min heap of packed node ids (y * width + x) keyed by an int priority. It
+ * lives entirely in primitive arrays so pushing, popping and decreasing keys never allocate.
+ */
+public class NodeHeap {
+  private static final int ABSENT = -1;
+
+  private int[] heap; // The node ids in heap order.
+  private int[] keys; // The key for each node id, only meaningful while it is in the heap.
+  private int[] index; // Where each node id sits in heap, ABSENT if it isn't there.
+  private int size;
+
+  /**
+   * Create a new NodeHeap able to hold node ids in [0, capacity).
+   * @param capacity The number of distinct node ids this heap has to support.
+   */
+  public NodeHeap(int capacity) {
+    this.heap = new int[capacity];
+    this.keys = new int[capacity];
+    this.index = new int[capacity];
+    Arrays.fill(this.index, ABSENT);
+    this.size = 0;
+  }
+
+  /**
+   * A method to empty the heap. This only touches the nodes that are still queued.
+   */
+  public void clear() {
+    for (int i = 0; i < this.size; i++) {
+      this.index[this.heap[i]] = ABSENT;
+    }
+    this.size = 0;
+  }
+
+  /**
+   * A method to check if there is anything left in the heap.
+   * @return True if the heap holds no nodes.
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * A method to return the number of nodes queued in the heap.
+   * @return The number of queued nodes.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * A method to check if the given node is currently queued.
+   * @param node The packed node id.
+   * @return True if the node is in the heap.
+   */
+  public boolean contains(int node) {
+    return this.index[node] != ABSENT;
+  }
+
+  /**
+   * Queue a node with the given key. If the node is already queued its key is lowered when the new
+   * key is smaller and left alone otherwise.
+   * @param node The packed node id.
+   * @param key  The priority of the node, smaller comes out first.
+   */
+  public void push(int node, int key) {
+    int position = this.index[node];
+    if (position == ABSENT) {
+      position = this.size++;
+      this.heap[position] = node;
+      this.index[node] = position;
+    } else if (key >= this.keys[node]) {
+      return; // Nothing to improve.
+    }
+    this.keys[node] = key;
+    siftUp(position);
+  }
+
+  /**
+   * A method to look at the node with the smallest key without removing it.
+   * @return The packed node id at the top of the heap, or -1 if the heap is empty.
+   */
+  public int peek() {
+    return this.size == 0 ? ABSENT : this.heap[0];
+  }
+
+  /**
+   * A method to return the key of the node at the top of the heap.
+   * @return The smallest key in the heap. Don't call this on an empty heap.
+   */
+  public int peekKey() {
+    return this.keys[this.heap[0]];
+  }
+
+  /**
+   * A method to remove and return the node with the smallest key.
+   * @return The packed node id removed from the heap. Don't call this on an empty heap.
+   */
+  public int pop() {
+    int top = this.heap[0];
+    this.index[top] = ABSENT;
+    this.size--;
+    if (this.size > 0) {
+      int last = this.heap[this.size];
+      this.heap[0] = last;
+      this.index[last] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  private void siftUp(int position) {
+    int node = this.heap[position];
+    int key = this.keys[node];
+    while (position > 0) {
+      int parentPosition = (position - 1) >>> 1;
+      int parent = this.heap[parentPosition];
+      if (this.keys[parent] <= key) {
+        break;
+      }
+      this.heap[position] = parent;
+      this.index[parent] = position;
+      position = parentPosition;
+    }
+    this.heap[position] = node;
+    this.index[node] = position;
+  }
+
+  private void siftDown(int position) {
+    int node = this.heap[position];
+    int key = this.keys[node];
+    int half = this.size >>> 1;
+    while (position < half) {
+      int childPosition = 2 * position + 1;
+      int child = this.heap[childPosition];
+      int rightPosition = childPosition + 1;
+      if (rightPosition < this.size && this.keys[this.heap[rightPosition]] < this.keys[child]) {
+        childPosition = rightPosition;
+        child = this.heap[childPosition];
+      }
+      if (key <= this.keys[child]) {
+        break;
+      }
+      this.heap[position] = child;
+      this.index[child] = position;
+      position = childPosition;
+    }
+    this.heap[position] = node;
+    this.index[node] = position;
+  }
+}
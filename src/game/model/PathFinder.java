@@ -0,0 +1,420 @@
+package game.model;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import game.CardinalDirection;
+import game.model.entities.Entity;
+import game.model.entities.EntityType;
+
+/**
+ * A PathFinder is a reusable implementation of Dijkstra's Algorithm over the game board. Distances
+ * and predecessors live in flat int arrays indexed by y * width + x and the open set is a NodeHeap,
+ * so relaxing an edge never allocates. It can be run one node at a time with step() so entities can
+ * spread their thinking across ticks.
+ *
+ * In A_STAR mode the heap is keyed by distance plus the Manhattan distance to the destination
+ * scaled by the cheapest edge on the board. That never overestimates, so the search can stop as
+ * soon as the destination is settled. LANDMARKS mode does the same but also takes the bounds from
+ * the model's shared LandmarkTable, which are much tighter on boards with currents.
+ *
+ * startReverse() searches backwards from a destination instead, giving the distance from every
+ * node to it. Then getPrevious() is the next step towards the destination.
+ *
+ * A PathFinder can also be limited to a window of the board with setWindow(). Positions are still
+ * given in board coordinates, but node ids are packed relative to the window.
+ *
+ * On a TORUS board, searches over the whole board follow the edges that wrap around, and the
+ * heuristic measures distance around them too. Searches in a window never wrap, even when the
+ * window covers the whole board.
+ *
+ * Edge weights are read straight out of the model's CostTable, so relaxing an edge is one array read
+ * rather than a trip through the tiles, or one buffer read for a board loaded from a MapSnapshot.
+ */
+public class PathFinder {
+  /** The distance of a node we have not reached (yet). */
+  public static final int UNREACHED = Integer.MAX_VALUE;
+  /** The predecessor of a node with no predecessor. */
+  public static final int NONE = -1;
+
+  private final GameState model;
+  private int originX, originY; // The top left corner of the window we search in.
+  private int width, height; // The size of the window we search in.
+
+  private final int[] distance;
+  private final int[] previous;
+  private final NodeHeap open;
+
+  private SearchMode mode;
+  private SearchMode searchMode; // The mode the current search was started with.
+  // The CostTable costs for the entity type, by board cell * 4 + direction. Only read from the
+  // buffer when the table has no array, because it sits on a MapSnapshot.
+  private int[] costArray;
+  private IntBuffer costs;
+  private final int boardWidth; // The width of the whole board, to find cells in costs.
+  private int source, target;
+  private int targetX, targetY;
+  private int minimumCost; // The cheapest edge on the board, scales the A_STAR heuristic.
+  private LandmarkTable landmarks; // Only used in LANDMARKS mode.
+  private boolean targetSettled;
+  private boolean reverse; // Are we following edges backwards?
+  private boolean wrap; // Does the current search follow edges around the board?
+  private boolean windowed; // Has setWindow() been called? Windows never wrap.
+
+  /**
+   * Create a new PathFinder for a board of the given size. The arrays are allocated once here and
+   * reused by every search.
+   * @param model  The model to query about edge weights.
+   * @param width  The width of the board in tiles.
+   * @param height The height of the board in tiles.
+   */
+  public PathFinder(GameState model, int width, int height) {
+    this(model, width, height, SearchMode.DIJKSTRA);
+  }
+
+  /**
+   * Create a new PathFinder for a board of the given size that searches with the given mode.
+   * @param model  The model to query about edge weights.
+   * @param width  The width of the board in tiles.
+   * @param height The height of the board in tiles.
+   * @param mode   The way to explore the board.
+   */
+  public PathFinder(GameState model, int width, int height, SearchMode mode) {
+    checkMode(mode);
+    this.model = model;
+    this.boardWidth = model.getGameWidth();
+    this.mode = mode;
+    this.originX = 0;
+    this.originY = 0;
+    this.width = width;
+    this.height = height;
+    this.distance = new int[width * height];
+    this.previous = new int[width * height];
+    this.open = new NodeHeap(width * height);
+    this.source = NONE;
+    this.target = NONE;
+  }
+
+  /**
+   * Begin a new search. Nothing is settled until step() is called.
+   * @param entity The entity that is going to travel, needed for the edge weights.
+   * @param x      The x position (in tiles) to search from.
+   * @param y      The y position (in tiles) to search from.
+   * @param xd     The x position (in tiles) of the destination.
+   * @param yd     The y position of the destination.
+   */
+  public void start(Entity entity, int x, int y, int xd, int yd) {
+    start(EntityType.of(entity), x, y, xd, yd);
+  }
+
+  /**
+   * Begin a new search for a type of entity. Nothing is settled until step() is called.
+   * @param type The type of entity that is going to travel, needed for the edge weights.
+   * @param x    The x position (in tiles) to search from.
+   * @param y    The y position (in tiles) to search from.
+   * @param xd   The x position (in tiles) of the destination.
+   * @param yd   The y position of the destination.
+   */
+  public void start(EntityType type, int x, int y, int xd, int yd) {
+    this.costArray = this.model.getCostTable().getCostArray(type);
+    this.costs = this.model.getCostTable().getCosts(type);
+    this.source = node(x, y);
+    this.target = node(xd, yd);
+    this.targetX = xd - this.originX;
+    this.targetY = yd - this.originY;
+    this.targetSettled = false;
+    this.reverse = false;
+    this.searchMode = this.mode;
+    if (this.searchMode != SearchMode.DIJKSTRA) {
+      this.minimumCost = this.model.requestMinimumCost(type);
+    }
+    this.landmarks = this.searchMode == SearchMode.LANDMARKS
+            ? this.model.getLandmarks(type) : null;
+    reset(x - this.originX, y - this.originY);
+  }
+
+  /**
+   * Begin a new search backwards from the given destination. Every reachable node will end up with
+   * its distance to the destination, whatever the mode is.
+   * @param entity The entity that is going to travel, needed for the edge weights.
+   * @param xd     The x position (in tiles) of the destination.
+   * @param yd     The y position of the destination.
+   */
+  public void startReverse(Entity entity, int xd, int yd) {
+    startReverse(EntityType.of(entity), xd, yd);
+  }
+
+  /**
+   * Begin a new search backwards from the given destination for a type of entity.
+   * @param type The type of entity that is going to travel, needed for the edge weights.
+   * @param xd   The x position (in tiles) of the destination.
+   * @param yd   The y position of the destination.
+   */
+  public void startReverse(EntityType type, int xd, int yd) {
+    this.costArray = this.model.getCostTable().getCostArray(type);
+    this.costs = this.model.getCostTable().getCosts(type);
+    this.source = node(xd, yd);
+    this.target = NONE;
+    this.targetSettled = false;
+    this.reverse = true;
+    this.searchMode = SearchMode.DIJKSTRA;
+    this.landmarks = null;
+    reset(xd - this.originX, yd - this.originY);
+  }
+
+  /**
+   * Limit the following searches to a window of the board. Edges leaving the window are ignored,
+   * including the ones around the edges of a TORUS board, so paths found in a window never wrap
+   * around even if it covers the whole board. The window can't hold more tiles than the board given
+   * to the constructor.
+   * @param originX The x position (in tiles) of the top left corner of the window.
+   * @param originY The y position (in tiles) of the top left corner of the window.
+   * @param width   The width of the window in tiles.
+   * @param height  The height of the window in tiles.
+   */
+  public void setWindow(int originX, int originY, int width, int height) {
+    if (width * height > this.distance.length) {
+      throw new IllegalArgumentException("The window is bigger than this PathFinder can hold.");
+    }
+    this.originX = originX;
+    this.originY = originY;
+    this.width = width;
+    this.height = height;
+    this.windowed = true;
+  }
+
+  private void reset(int x, int y) {
+    this.wrap = this.model.getTopology() == Topology.TORUS && !this.windowed;
+    Arrays.fill(this.distance, 0, this.width * this.height, UNREACHED);
+    Arrays.fill(this.previous, 0, this.width * this.height, NONE);
+    this.open.clear();
+    this.distance[this.source] = 0;
+    this.open.push(this.source, heuristic(x, y));
+  }
+
+  /**
+   * A method to check if there is nothing left to do for the current search.
+   * @return True once every reachable node has been settled, or in A_STAR mode once the
+   *         destination has been settled.
+   */
+  public boolean isFinished() {
+    return this.targetSettled || this.open.isEmpty();
+  }
+
+  /**
+   * Settle exactly one node, relaxing all of the edges out of it.
+   * @return True if there is still work left to do after this step.
+   */
+  public boolean step() {
+    if (isFinished()) {
+      return false;
+    }
+    int from = this.open.pop();
+    if (from == this.target && this.searchMode != SearchMode.DIJKSTRA) {
+      // Nothing left in the heap can beat this, so we're done.
+      this.targetSettled = true;
+      return false;
+    }
+    int fromDistance = this.distance[from];
+    int x = from % this.width;
+    int y = from / this.width;
+    // The neighbours, wrapped around the edges or NONE if there is no edge that way.
+    int west = x > 0 ? from - 1 : this.wrap ? from + this.width - 1 : NONE;
+    int east = x < this.width - 1 ? from + 1 : this.wrap ? from - x : NONE;
+    int north = y > 0 ? from - this.width
+            : this.wrap ? from + (this.height - 1) * this.width : NONE;
+    int south = y < this.height - 1 ? from + this.width : this.wrap ? x : NONE;
+    if (this.reverse) {
+      // The edges come into from, so the cost belongs to the neighbour moving towards us.
+      if (west != NONE) {
+        relax(from, west, fromDistance, west % this.width, y, CardinalDirection.EAST);
+      }
+      if (east != NONE) {
+        relax(from, east, fromDistance, east % this.width, y, CardinalDirection.WEST);
+      }
+      if (north != NONE) {
+        relax(from, north, fromDistance, x, north / this.width, CardinalDirection.SOUTH);
+      }
+      if (south != NONE) {
+        relax(from, south, fromDistance, x, south / this.width, CardinalDirection.NORTH);
+      }
+    } else {
+      if (west != NONE) {
+        relax(from, west, fromDistance, x, y, CardinalDirection.WEST);
+      }
+      if (east != NONE) {
+        relax(from, east, fromDistance, x, y, CardinalDirection.EAST);
+      }
+      if (north != NONE) {
+        relax(from, north, fromDistance, x, y, CardinalDirection.NORTH);
+      }
+      if (south != NONE) {
+        relax(from, south, fromDistance, x, y, CardinalDirection.SOUTH);
+      }
+    }
+    return !isFinished();
+  }
+
+  /**
+   * Run the current search until it is finished.
+   */
+  public void run() {
+    while (step()) {
+      // All of the work happens in step.
+    }
+  }
+
+  private void relax(int from, int to, int fromDistance, int x, int y,
+                     CardinalDirection direction) {
+    int cell = (this.originY + y) * this.boardWidth + this.originX + x;
+    int index = cell * CostTable.DIRECTION_COUNT + direction.ordinal();
+    int toDistance = fromDistance
+            + (this.costArray != null ? this.costArray[index] : this.costs.get(index));
+    if (toDistance < this.distance[to]) {
+      this.distance[to] = toDistance;
+      this.previous[to] = from;
+      this.open.push(to, toDistance + heuristic(to % this.width, to / this.width));
+    }
+  }
+
+  private int heuristic(int x, int y) {
+    if (this.searchMode == SearchMode.DIJKSTRA) {
+      return 0;
+    }
+    Topology topology = this.wrap ? Topology.TORUS : Topology.BOUNDED;
+    int estimate = (topology.distance(x, this.targetX, this.width)
+            + topology.distance(y, this.targetY, this.height)) * this.minimumCost;
+    if (this.landmarks != null) {
+      // Both bounds are admissible, so the larger one is too. The table uses board node ids.
+      int boardWidth = this.landmarks.getWidth();
+      int from = (this.originY + y) * boardWidth + this.originX + x;
+      int to = (this.originY + this.targetY) * boardWidth + this.originX + this.targetX;
+      estimate = Math.max(estimate, this.landmarks.lowerBound(from, to));
+    }
+    return estimate;
+  }
+
+  /**
+   * A method to copy every distance of the current search into the given array.
+   * @param into An array of at least width * height ints.
+   */
+  public void copyDistances(int[] into) {
+    System.arraycopy(this.distance, 0, into, 0, this.width * this.height);
+  }
+
+  /**
+   * A method to change the way the next search explores the board.
+   * @param mode The SearchMode to use from the next call to start() on.
+   */
+  public void setMode(SearchMode mode) {
+    checkMode(mode);
+    this.mode = mode;
+  }
+
+  private static void checkMode(SearchMode mode) {
+    if (mode == SearchMode.FLOW_FIELD) {
+      throw new IllegalArgumentException("A FlowField is followed, not searched by a PathFinder.");
+    }
+    if (mode == SearchMode.HIERARCHICAL) {
+      throw new IllegalArgumentException("HIERARCHICAL searches are done by a HierarchicalMap.");
+    }
+  }
+
+  /**
+   * A method to return the way this PathFinder explores the board.
+   * @return The SearchMode in use.
+   */
+  public SearchMode getMode() {
+    return this.mode;
+  }
+
+  /**
+   * A method to return the node that the next step will settle.
+   * @return The packed node id, or NONE if the search is finished.
+   */
+  public int peek() {
+    return this.open.peek();
+  }
+
+  /**
+   * A method to return the best distance found so far to the given node.
+   * @param node The packed node id.
+   * @return The distance, UNREACHED if we haven't found any way there.
+   */
+  public int getDistance(int node) {
+    return this.distance[node];
+  }
+
+  /**
+   * A method to return the node we came from on the best way to the given node.
+   * @param node The packed node id.
+   * @return The packed node id of the predecessor, NONE if there is none.
+   */
+  public int getPrevious(int node) {
+    return this.previous[node];
+  }
+
+  /**
+   * A method to build the path to the destination given in start(). The path begins with the start
+   * node and ends with the destination. This is the only place a search allocates.
+   * @return The packed node ids along the path, empty if the destination wasn't reached.
+   */
+  public int[] getPath() {
+    if (this.target == NONE || this.distance[this.target] == UNREACHED) {
+      return new int[0];
+    }
+    int length = 0;
+    for (int step = this.target; step != NONE; step = this.previous[step]) {
+      length++;
+    }
+    int[] path = new int[length];
+    for (int step = this.target; step != NONE; step = this.previous[step]) {
+      path[--length] = step;
+    }
+    return path;
+  }
+
+  /**
+   * A method to pack a position into a node id.
+   * @param x The x position (in tiles) on the board.
+   * @param y The y position (in tiles) on the board.
+   * @return The packed node id, y * width + x relative to the window.
+   */
+  public int node(int x, int y) {
+    return (y - this.originY) * this.width + (x - this.originX);
+  }
+
+  /**
+   * A method to return the x position on the board of a packed node id.
+   * @param node The packed node id.
+   * @return The x position (in tiles) on the board.
+   */
+  public int nodeX(int node) {
+    return this.originX + node % this.width;
+  }
+
+  /**
+   * A method to return the y position on the board of a packed node id.
+   * @param node The packed node id.
+   * @return The y position (in tiles) on the board.
+   */
+  public int nodeY(int node) {
+    return this.originY + node / this.width;
+  }
+
+  /**
+   * A method to return the width of the window this PathFinder searches.
+   * @return The width in tiles, needed to unpack node ids.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * A method to return the height of the window this PathFinder searches.
+   * @return The height in tiles.
+   */
+  public int getHeight() {
+    return this.height;
+  }
+}
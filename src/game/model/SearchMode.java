@@ -0,0 +1,12 @@
+package game.model;
+
+/**
+ * A SearchMode is the way a PathFinder explores the board.
+ */
+public enum SearchMode {
+  DIJKSTRA, // Settle the whole board. Slow but simple, so it is the reference for the others.
+  A_STAR, // Guided by a Manhattan distance heuristic and stops once the destination is settled.
+  LANDMARKS, // Like A_STAR, but also guided by the model's shared landmark distance tables.
+  FLOW_FIELD, // Don't search at all, follow the model's shared FlowField to the destination.
+  HIERARCHICAL // Plan over the model's shared HierarchicalMap of clusters, then refine locally.
+}
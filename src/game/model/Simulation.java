@@ -0,0 +1,120 @@
+package game.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Simulation runs a GameState forward in fixed size ticks. It knows nothing about Swing, so it can
+ * run at the pace of real time on a thread of its own, or headless as fast as possible. Anything
+ * that wants to watch, like the view, registers as a SimulationObserver.
+ */
+public class Simulation {
+  // The most ticks runRealTime() will fall behind and still catch up on, so one slow tick can't
+  // snowball into a burst of ticks run back to back.
+  private static final int MAX_CATCH_UP_TICKS = 5;
+
+  private final GameState gamestate;
+  private final EntityUpdater entityUpdater;
+  private final long tickMillis;
+  private final List<SimulationObserver> observers;
+  private long tickCount;
+
+  /**
+   * Create a new Simulation.
+   * @param gamestate     The model to run.
+   * @param entityUpdater The updater to advance the entities with every tick.
+   * @param tickMillis    The length of one tick of simulated time in milliseconds.
+   */
+  public Simulation(GameState gamestate, EntityUpdater entityUpdater, long tickMillis) {
+    this.gamestate = gamestate;
+    this.entityUpdater = entityUpdater;
+    this.tickMillis = tickMillis;
+    this.observers = new ArrayList<>();
+    this.tickCount = 0;
+  }
+
+  /**
+   * A method to start telling the given observer about this simulation.
+   * @param observer The observer to add.
+   */
+  public void addObserver(SimulationObserver observer) {
+    this.observers.add(observer);
+  }
+
+  /**
+   * A method to stop telling the given observer about this simulation.
+   * @param observer The observer to remove.
+   */
+  public void removeObserver(SimulationObserver observer) {
+    this.observers.remove(observer);
+  }
+
+  /**
+   * Run exactly one tick.
+   */
+  public void tick() {
+    this.entityUpdater.update(this.gamestate);
+    this.tickCount++;
+    for (SimulationObserver observer : this.observers) {
+      observer.ticked(this);
+    }
+  }
+
+  /**
+   * Run the given number of ticks as fast as possible. This is the headless mode.
+   * @param ticks The number of ticks to run.
+   */
+  public void run(long ticks) {
+    for (long t = 0; t < ticks; t++) {
+      tick();
+    }
+  }
+
+  /**
+   * Run the given number of ticks at the pace of real time, on the calling thread. Ticks that run
+   * late are caught up on by running the next ones without waiting, but only up to
+   * MAX_CATCH_UP_TICKS behind. Past that the time lost is dropped and the pace starts again from
+   * now, so a long stall doesn't turn into a burst of ticks.
+   * @param ticks The number of ticks to run.
+   * @throws InterruptedException If the thread is interrupted while waiting for the next tick.
+   */
+  public void runRealTime(long ticks) throws InterruptedException {
+    long tickNanos = this.tickMillis * 1000000L;
+    long next = System.nanoTime();
+    for (long t = 0; t < ticks; t++) {
+      tick();
+      next += tickNanos;
+      long now = System.nanoTime();
+      long wait = next - now;
+      if (wait > 0) {
+        Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+      } else if (-wait > MAX_CATCH_UP_TICKS * tickNanos) {
+        next = now;
+      }
+    }
+  }
+
+  /**
+   * A method to return the number of ticks run so far.
+   * @return The tick count.
+   */
+  public long getTickCount() {
+    return this.tickCount;
+  }
+
+  /**
+   * A method to return the length of a tick.
+   * @return The length of one tick of simulated time in milliseconds.
+   */
+  public long getTickMillis() {
+    return this.tickMillis;
+  }
+
+  /**
+   * A method to return the model this simulation runs.
+   * @return The GameState being simulated.
+   */
+  public GameState getGameState() {
+    return this.gamestate;
+  }
+}
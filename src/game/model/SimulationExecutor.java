@@ -0,0 +1,29 @@
+package game.model;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A SimulationExecutor runs the independent pieces of a simulation tick, such as every entity's
+ * decision, possibly in parallel. Swapping the executor changes how fast a tick runs but never what
+ * it computes, as long as the pieces only read shared state.
+ */
+public interface SimulationExecutor {
+  /**
+   * Run the task for every index in [0, count) and return once they have all finished. Tasks for
+   * different indices must not depend on each other.
+   * @param count The number of indices.
+   * @param task  The task to run for each index.
+   */
+  void forEach(int count, IntConsumer task);
+
+  /**
+   * A method to return how many tasks this executor can run at once.
+   * @return The number of tasks that can run at the same time, one if they run one at a time.
+   */
+  int getParallelism();
+
+  /**
+   * Release the threads held by this executor. It can't be used afterwards.
+   */
+  void shutdown();
+}
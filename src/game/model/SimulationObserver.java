@@ -0,0 +1,13 @@
+package game.model;
+
+/**
+ * A SimulationObserver is told about the progress of a Simulation, for example to publish it to a
+ * view.
+ */
+public interface SimulationObserver {
+  /**
+   * Called after every tick of the simulation.
+   * @param simulation The simulation that ticked.
+   */
+  void ticked(Simulation simulation);
+}
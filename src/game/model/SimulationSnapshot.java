@@ -0,0 +1,264 @@
+package game.model;
+
+import java.util.Arrays;
+
+import game.model.entities.Entity;
+import game.model.entities.EntityType;
+
+/**
+ * A SimulationSnapshot is what the entities looked like at the end of one tick: where each one is,
+ * where it was the tick before, and what it is doing. It is taken on the simulation thread, and a
+ * render thread can draw from it while the next tick runs, without locks.
+ *
+ * A renderer finds what is in view with inRange(), which answers from the snapshot's own copy of
+ * the buckets of the EntityIndex, so the ids and the positions always come from the same tick and
+ * drawing never waits on the index. Having both positions lets the renderer slide an entity between
+ * tiles in the time between two ticks with getX() and getY().
+ *
+ * Snapshots are reused: capture() can take the arrays of an old snapshot that nobody reads anymore
+ * instead of allocating new ones, which SnapshotPublisher does every tick.
+ */
+public final class SimulationSnapshot {
+  private static final EntityType[] TYPES = EntityType.values();
+  private static final int BUCKET_SIZE = EntityIndex.BUCKET_SIZE;
+
+  private long tick;
+  private long nanoTime; // When the snapshot was taken, from System.nanoTime().
+  private int idCount;
+  private int width, height; // The size of the board in tiles.
+  private int bucketsX, bucketsY;
+  // What we know about each id. An id without an entity has a null entity.
+  private Entity[] entities; // Only to match ids with the last snapshot, never handed out.
+  private int[] xs, ys;
+  private int[] previousXs, previousYs;
+  private byte[] types;
+  private String[] statuses;
+  // The ids in bucket b are bucketIds[bucketStarts[b]] up to bucketIds[bucketStarts[b + 1]].
+  private int[] bucketStarts;
+  private int[] bucketIds;
+
+  private SimulationSnapshot(int capacity, int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.bucketsX = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    this.bucketsY = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    this.entities = new Entity[capacity];
+    this.xs = new int[capacity];
+    this.ys = new int[capacity];
+    this.previousXs = new int[capacity];
+    this.previousYs = new int[capacity];
+    this.types = new byte[capacity];
+    this.statuses = new String[capacity];
+    this.bucketStarts = new int[this.bucketsX * this.bucketsY + 1];
+    this.bucketIds = new int[capacity];
+  }
+
+  /**
+   * A method to take a snapshot of every entity. This has to be called on the thread running the
+   * simulation, between ticks.
+   * @param index    The index of the entities.
+   * @param previous The snapshot of the tick before, to take the previous positions from. Null
+   *                 when there isn't one, and then entities start where they are.
+   * @param tick     The number of the tick that just ran.
+   * @param nanoTime The time of the tick, from System.nanoTime().
+   * @return The snapshot.
+   */
+  public static SimulationSnapshot capture(EntityIndex index, SimulationSnapshot previous,
+                                           long tick, long nanoTime) {
+    return capture(index, previous, null, tick, nanoTime);
+  }
+
+  /**
+   * A method to take a snapshot of every entity into an old snapshot, so nothing is allocated
+   * unless there are more ids than it has room for. This has to be called on the thread running
+   * the simulation, between ticks.
+   * @param index    The index of the entities.
+   * @param previous The snapshot of the tick before, to take the previous positions from. Null
+   *                 when there isn't one, and then entities start where they are.
+   * @param reuse    A snapshot of the same board that nothing reads anymore, which is overwritten.
+   *                 Null to make a new one. It can't be previous.
+   * @param tick     The number of the tick that just ran.
+   * @param nanoTime The time of the tick, from System.nanoTime().
+   * @return The snapshot, reuse if there was room in it.
+   */
+  public static SimulationSnapshot capture(EntityIndex index, SimulationSnapshot previous,
+                                           SimulationSnapshot reuse, long tick, long nanoTime) {
+    synchronized (index) {
+      int idCount = index.getIdCount();
+      SimulationSnapshot snapshot = reuse;
+      if (snapshot == null || snapshot.entities.length < idCount
+              || snapshot.width != index.getWidth() || snapshot.height != index.getHeight()) {
+        // Room to grow, so the next few ticks can reuse it.
+        snapshot = new SimulationSnapshot(Math.max(16, idCount + idCount / 2), index.getWidth(),
+                index.getHeight());
+      }
+      int oldCount = snapshot.idCount;
+      snapshot.tick = tick;
+      snapshot.nanoTime = nanoTime;
+      snapshot.idCount = idCount;
+      int[] bucketStarts = snapshot.bucketStarts;
+      Arrays.fill(bucketStarts, 0);
+      for (int id = 0; id < idCount; id++) {
+        Entity entity = index.getEntity(id);
+        snapshot.entities[id] = entity;
+        snapshot.statuses[id] = null;
+        if (entity == null) {
+          continue;
+        }
+        int x = index.getX(id);
+        int y = index.getY(id);
+        snapshot.xs[id] = x;
+        snapshot.ys[id] = y;
+        snapshot.types[id] = (byte) index.getType(id).ordinal();
+        snapshot.statuses[id] = entity.getStatus();
+        // An id can be handed to a new entity, which shouldn't slide over from the old one.
+        if (previous != null && id < previous.idCount && previous.entities[id] == entity) {
+          snapshot.previousXs[id] = previous.xs[id];
+          snapshot.previousYs[id] = previous.ys[id];
+        } else {
+          snapshot.previousXs[id] = x;
+          snapshot.previousYs[id] = y;
+        }
+        bucketStarts[snapshot.bucket(x, y) + 1]++;
+      }
+      // Count the ids of each bucket, then put them in place behind the ones before.
+      int buckets = bucketStarts.length - 1;
+      for (int b = 0; b < buckets; b++) {
+        bucketStarts[b + 1] += bucketStarts[b];
+      }
+      for (int id = 0; id < idCount; id++) {
+        if (snapshot.entities[id] != null) {
+          int bucket = snapshot.bucket(snapshot.xs[id], snapshot.ys[id]);
+          snapshot.bucketIds[bucketStarts[bucket]++] = id;
+        }
+      }
+      // Filling moved every start up to the next one, so move them back.
+      for (int b = buckets; b > 0; b--) {
+        bucketStarts[b] = bucketStarts[b - 1];
+      }
+      bucketStarts[0] = 0;
+      // Old entities past the ids in use shouldn't be kept from the garbage collector.
+      for (int id = idCount; id < oldCount; id++) {
+        snapshot.entities[id] = null;
+        snapshot.statuses[id] = null;
+      }
+      return snapshot;
+    }
+  }
+
+  private int bucket(int x, int y) {
+    return (y / BUCKET_SIZE) * this.bucketsX + x / BUCKET_SIZE;
+  }
+
+  // Slides from one tile to the next. A jump of more than a tile is around the edge of a TORUS,
+  // and sliding back across the whole board would look wrong, so those don't slide.
+  private static double interpolate(int from, int to, double alpha) {
+    if (Math.abs(to - from) > 1) {
+      return to;
+    }
+    return from + (to - from) * alpha;
+  }
+
+  /**
+   * A method to find every entity that was inside a rectangle of the board at the end of the tick,
+   * like EntityIndex.inRange() but from the snapshot. The rectangle doesn't wrap around the edges,
+   * and the parts of it off the board are ignored.
+   * @param minX The x position (in tiles) of the left column, included.
+   * @param minY The y position (in tiles) of the top row, included.
+   * @param maxX The x position (in tiles) of the right column, included.
+   * @param maxY The y position (in tiles) of the bottom row, included.
+   * @param into An array to put the ids of the entities found in. Only as many as fit are put in.
+   * @return The number of entities found, which can be more than into holds. Call again with a
+   *         bigger array if it is.
+   */
+  public int inRange(int minX, int minY, int maxX, int maxY, int[] into) {
+    minX = Math.max(minX, 0);
+    minY = Math.max(minY, 0);
+    maxX = Math.min(maxX, this.width - 1);
+    maxY = Math.min(maxY, this.height - 1);
+    int found = 0;
+    if (minX > maxX || minY > maxY) {
+      return found;
+    }
+    for (int by = minY / BUCKET_SIZE; by <= maxY / BUCKET_SIZE; by++) {
+      for (int bx = minX / BUCKET_SIZE; bx <= maxX / BUCKET_SIZE; bx++) {
+        int bucket = by * this.bucketsX + bx;
+        for (int i = this.bucketStarts[bucket]; i < this.bucketStarts[bucket + 1]; i++) {
+          int id = this.bucketIds[i];
+          int x = this.xs[id];
+          int y = this.ys[id];
+          if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+            if (found < into.length) {
+              into[found] = id;
+            }
+            found++;
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * A method to return the number of the tick the snapshot was taken after.
+   * @return The tick count.
+   */
+  public long getTick() {
+    return this.tick;
+  }
+
+  /**
+   * A method to return when the snapshot was taken.
+   * @return The time from System.nanoTime().
+   */
+  public long getNanoTime() {
+    return this.nanoTime;
+  }
+
+  /**
+   * A method to check if the snapshot has an entity with an id.
+   * @param id An id from inRange().
+   * @return True if the entity was there when the snapshot was taken.
+   */
+  public boolean contains(int id) {
+    return id >= 0 && id < this.idCount && this.entities[id] != null;
+  }
+
+  /**
+   * A method to return the type of an entity.
+   * @param id An id the snapshot contains.
+   * @return The EntityType of the entity.
+   */
+  public EntityType getType(int id) {
+    return TYPES[this.types[id]];
+  }
+
+  /**
+   * A method to return where an entity is partway between the last tick and this one.
+   * @param id    An id the snapshot contains.
+   * @param alpha How far between the ticks, from 0 for the last tick to 1 for this one.
+   * @return The x position in tiles.
+   */
+  public double getX(int id, double alpha) {
+    return interpolate(this.previousXs[id], this.xs[id], alpha);
+  }
+
+  /**
+   * A method to return where an entity is partway between the last tick and this one.
+   * @param id    An id the snapshot contains.
+   * @param alpha How far between the ticks, from 0 for the last tick to 1 for this one.
+   * @return The y position in tiles.
+   */
+  public double getY(int id, double alpha) {
+    return interpolate(this.previousYs[id], this.ys[id], alpha);
+  }
+
+  /**
+   * A method to return what an entity was doing.
+   * @param id An id the snapshot contains.
+   * @return The note from Entity.getStatus(), null for nothing.
+   */
+  public String getStatus(int id) {
+    return this.statuses[id];
+  }
+}
@@ -0,0 +1,26 @@
+package game.model;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A SingleThreadedExecutor runs every task on the calling thread, in order. It is the one to use for
+ * reproducible replays and for debugging.
+ */
+public class SingleThreadedExecutor implements SimulationExecutor {
+  @Override
+  public void forEach(int count, IntConsumer task) {
+    for (int i = 0; i < count; i++) {
+      task.accept(i);
+    }
+  }
+
+  @Override
+  public int getParallelism() {
+    return 1;
+  }
+
+  @Override
+  public void shutdown() {
+    // There are no threads to release.
+  }
+}
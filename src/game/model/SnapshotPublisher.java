@@ -0,0 +1,69 @@
+package game.model;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A SnapshotPublisher takes a SimulationSnapshot after every tick and puts it where another thread
+ * can pick it up. Publishing is one atomic swap and picking up at most one more, so the simulation
+ * never waits on whoever is drawing, and whoever is drawing always gets the latest whole tick.
+ *
+ * Only three snapshots are ever used, so nothing is allocated per tick: the one being drawn, the
+ * one waiting to be picked up, and the one being taken. Taking a snapshot swaps it for the one
+ * waiting, picking one up swaps the one drawn for it, and the simulation only ever writes to the
+ * snapshot it swapped out, which nobody can be reading.
+ */
+public class SnapshotPublisher implements SimulationObserver {
+  private final GameState gamestate;
+  private final long tickMillis;
+  private final AtomicReference<SimulationSnapshot> waiting; // Published, not picked up yet.
+  private SimulationSnapshot last; // The last snapshot taken, only used by the simulation thread.
+  private SimulationSnapshot spare; // The next one to take into, only used by the simulation.
+  private SimulationSnapshot drawn; // The one picked up, only used by the thread drawing.
+
+  /**
+   * Create a new SnapshotPublisher, with a snapshot of how the game is now already published.
+   * @param gamestate  The model to take snapshots of.
+   * @param tickMillis The length of a tick of the observed simulation in milliseconds.
+   */
+  public SnapshotPublisher(GameState gamestate, long tickMillis) {
+    this.gamestate = gamestate;
+    this.tickMillis = tickMillis;
+    this.last = SimulationSnapshot.capture(gamestate.getEntityIndex(), null, 0, System.nanoTime());
+    this.waiting = new AtomicReference<>(this.last);
+  }
+
+  @Override
+  public void ticked(Simulation simulation) {
+    SimulationSnapshot snapshot = SimulationSnapshot.capture(this.gamestate.getEntityIndex(),
+            this.last, this.spare, simulation.getTickCount(), System.nanoTime());
+    // Whatever was waiting wasn't picked up, or is the one the drawing thread gave back.
+    this.spare = this.waiting.getAndSet(snapshot);
+    this.last = snapshot;
+  }
+
+  /**
+   * A method to pick up the latest snapshot. This must only be called from the one thread drawing,
+   * and the snapshot it returns can be reused once it is called again, so don't keep it longer.
+   * @return The snapshot of the last tick.
+   */
+  public SimulationSnapshot getLatest() {
+    SimulationSnapshot latest = this.waiting.get();
+    if (latest != null && (this.drawn == null || latest.getTick() > this.drawn.getTick())) {
+      // Only the simulation publishes, so what we swap out is at least as new as what we saw.
+      this.drawn = this.waiting.getAndSet(this.drawn);
+    }
+    return this.drawn;
+  }
+
+  /**
+   * A method to work out how far the simulation is between the latest snapshot and the next one,
+   * to slide entities between their positions with SimulationSnapshot.getX() and getY().
+   * @param snapshot A snapshot from getLatest().
+   * @param nanoTime The time now, from System.nanoTime().
+   * @return How far between the last tick and the one of the snapshot to draw, from 0 to 1.
+   */
+  public double getAlpha(SimulationSnapshot snapshot, long nanoTime) {
+    double alpha = (nanoTime - snapshot.getNanoTime()) / (this.tickMillis * 1000000.0);
+    return Math.max(0, Math.min(1, alpha));
+  }
+}
@@ -0,0 +1,11 @@
+package game.model;
+
+/**
+ * A TerrainClass is what the layered terrain of TerrainGenerator makes of a tile, from its elevation
+ * and its moisture. Each class is stored as a GrassTile or a WaterTile.
+ */
+public enum TerrainClass {
+  OPEN_WATER, // Below the waterline. Water with a current along the warp.
+  MARSH, // Low and wet ground just above the waterline. Still water with no power in its current.
+  GRASSLAND // Everything else above the waterline. Grass.
+}
@@ -0,0 +1,319 @@
+package game.model;
+
+import java.util.function.IntConsumer;
+
+import game.CardinalDirection;
+import noise.DomainWarp;
+import noise.NoiseLattice;
+import noise.NoiseLayer;
+import noise.NoisePipeline;
+import noise.Octaves;
+import noise.OpenSimplexNoise;
+import noise.Shared;
+import noise.Simplex;
+import noise.TileableNoise;
+
+/**
+ * A TerrainGenerator turns a seed into land and water. Every tile only depends on the seed and its
+ * own position, so any piece of the world can be generated on its own, in any order, and will come
+ * out the same every time. GameState uses it for its whole board and a ChunkedWorld uses it for one
+ * chunk at a time.
+ *
+ * The noise is sampled once per tile into a NoiseLattice and every tile reads its neighbours from
+ * there, instead of evaluating the noise five times for every water tile. The points the currents
+ * look at fall between tiles, so they are interpolated from the lattice. Land, water and the power
+ * of the currents are exactly what the noise says. The interpolated points are within 0.085 of the
+ * noise, so the direction of a current can only come out differently where two ways were that close
+ * to as steep, which is about one water tile in thirty (TerrainGeneratorTest checks both).
+ *
+ * The noise is only read after it is made, so bands of rows can also be generated in parallel, and
+ * the result is the same tile for tile.
+ */
+public class TerrainGenerator {
+  // The number of rows sampled into the noise lattice at a time, and in a band when generating in
+  // parallel. Bigger bands waste less on the margins but hold more memory.
+  private static final int BAND_ROWS = 64;
+
+  // The scale to use when calculating what to compare to for water versus grass.
+  private static final double THRESHOLD = 0;
+  private static final double COORDINATE_SCALE = 1.5 / 5.0;
+  // Currents look one unit away in noise space, which is this many tiles and a fraction of one.
+  private static final int OFFSET_TILES = (int) Math.floor(1 / COORDINATE_SCALE);
+  private static final double OFFSET_FRACTION = 1 / COORDINATE_SCALE - OFFSET_TILES;
+  // How far past the tiles being generated the lattice has to reach.
+  private static final int OFFSET_MARGIN = OFFSET_TILES + 1;
+
+  // The shape of the layered terrain of generateLayered(). Octaves past the second would be finer
+  // than a tile at this scale, so they would only add speckles.
+  private static final int ELEVATION_OCTAVES = 2;
+  private static final double LACUNARITY = 2;
+  private static final double GAIN = 0.5;
+  private static final double WARP_STRENGTH = 0.75;
+  // Land up to MARSH_ELEVATION floods into marsh where the moisture is over MARSH_MOISTURE.
+  private static final double MARSH_ELEVATION = 0.12;
+  private static final double MARSH_MOISTURE = 0.2;
+
+  private final long seed;
+  private final OpenSimplexNoise generator;
+  private final NoisePipeline layers; // The fields of generateLayered(), made in one pass.
+  private final int elevationField, moistureField, warpXField, warpYField;
+
+  /**
+   * Create a new TerrainGenerator for the given seed.
+   * @param seed The seed to generate the world from.
+   */
+  public TerrainGenerator(long seed) {
+    this.seed = seed;
+    this.generator = new OpenSimplexNoise(seed);
+
+    // Warped octaves make the coastlines. The currents follow the warp, which is already
+    // worked out for the elevation, so sharing it makes them free. Moisture is noise of its own.
+    this.layers = new NoisePipeline();
+    NoiseLayer warpX = new Shared(new Simplex(seed + 1));
+    NoiseLayer warpY = new Shared(new Simplex(seed + 2));
+    NoiseLayer elevation = new DomainWarp(new Octaves(new Simplex(this.generator),
+            ELEVATION_OCTAVES, LACUNARITY, GAIN), warpX, warpY, WARP_STRENGTH);
+    this.elevationField = this.layers.addField(elevation);
+    this.moistureField = this.layers.addField(new Simplex(seed + 3));
+    this.warpXField = this.layers.addField(warpX);
+    this.warpYField = this.layers.addField(warpY);
+  }
+
+  /**
+   * A method to fill a whole grid with the piece of the world that starts at the given position.
+   * @param grid    The grid to fill.
+   * @param originX The x position (in tiles) in the world of the top left corner of the grid.
+   * @param originY The y position (in tiles) in the world of the top left corner of the grid.
+   */
+  public void generate(TileGrid grid, int originX, int originY) {
+    generate(grid, originX, originY, 0, grid.getHeight());
+  }
+
+  /**
+   * A method to fill a whole grid with the piece of the world that starts at the given position,
+   * generating bands of rows on the given executor. Bands write to different cells, so they don't
+   * need to be locked.
+   * @param grid     The grid to fill.
+   * @param originX  The x position (in tiles) in the world of the top left corner of the grid.
+   * @param originY  The y position (in tiles) in the world of the top left corner of the grid.
+   * @param executor The executor to run the bands on.
+   */
+  public void generate(final TileGrid grid, final int originX, final int originY,
+                       SimulationExecutor executor) {
+    final int height = grid.getHeight();
+    int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+    executor.forEach(bands, new IntConsumer() {
+      @Override
+      public void accept(int band) {
+        int fromRow = band * BAND_ROWS;
+        generate(grid, originX, originY, fromRow, Math.min(height, fromRow + BAND_ROWS));
+      }
+    });
+  }
+
+  /**
+   * A method to fill some rows of a grid with the piece of the world that starts at the given
+   * position. Different rows can be filled by different calls, the result is the same.
+   * @param grid    The grid to fill.
+   * @param originX The x position (in tiles) in the world of the top left corner of the grid.
+   * @param originY The y position (in tiles) in the world of the top left corner of the grid.
+   * @param fromRow The first row of the grid to fill.
+   * @param toRow   The row of the grid to stop before.
+   */
+  public void generate(TileGrid grid, int originX, int originY, int fromRow, int toRow) {
+    NoiseLattice lattice = new NoiseLattice(this.generator, COORDINATE_SCALE);
+    int width = grid.getWidth();
+    for (int bandRow = fromRow; bandRow < toRow; bandRow += BAND_ROWS) {
+      int bandEnd = Math.min(toRow, bandRow + BAND_ROWS);
+      // The lattice runs rows first, like the noise did, and reaches past the band on every side.
+      lattice.fill(originY + bandRow - OFFSET_MARGIN, originX - OFFSET_MARGIN,
+              bandEnd - bandRow + 2 * OFFSET_MARGIN, width + 2 * OFFSET_MARGIN);
+      for (int r = bandRow; r < bandEnd; r++) {
+        for (int c = 0; c < width; c++) {
+          generateTile(grid, lattice, c, r, originY + r, originX + c);
+        }
+      }
+    }
+  }
+
+  private void generateTile(TileGrid grid, NoiseLattice lattice, int x, int y, int r, int c) {
+    double noise = lattice.get(r, c);
+    if (noise > THRESHOLD) {
+      grid.setGrass(x, y);
+    } else {
+      // noise < THRESHOLD, so noise / THRESHOLD is distance from zero to the land mass.
+      // closer to the land mass means less current (maybe more in real life).
+
+      // We will flow into the direction with the biggest drop from our current y level. We look one
+      // unit away in noise space, which falls between lattice points, so we interpolate.
+      double diffAbove = noise
+              - lattice.lerpJ(r, c - OFFSET_TILES - 1, 1 - OFFSET_FRACTION);
+      double diffBelow = lattice.lerpJ(r, c + OFFSET_TILES, OFFSET_FRACTION);
+      double diffLeft = lattice.lerpI(r - OFFSET_TILES - 1, c, 1 - OFFSET_FRACTION);
+      double diffRight = lattice.lerpI(r + OFFSET_TILES, c, OFFSET_FRACTION);
+      storeWater(grid, x, y, noise, diffAbove, diffBelow, diffLeft, diffRight);
+    }
+  }
+
+  /**
+   * A method to fill a whole grid with richer, layered terrain instead of a single octave of noise.
+   * Elevation is two octaves of noise with their domain warped, and moisture is noise of its own.
+   * Together they give every tile a TerrainClass with classify(). Open water gets currents whose
+   * power comes from the elevation as in generate(), flowing along the strongest component of the
+   * warp so they swirl with the coastlines. Marshes are still water. Everything comes out of one
+   * NoisePipeline pass over each band of rows, at five noise evaluations a tile.
+   * @param grid     The grid to fill.
+   * @param originX  The x position (in tiles) in the world of the top left corner of the grid.
+   * @param originY  The y position (in tiles) in the world of the top left corner of the grid.
+   * @param executor The executor to run bands of rows on.
+   */
+  public void generateLayered(final TileGrid grid, final int originX, final int originY,
+                              SimulationExecutor executor) {
+    final int height = grid.getHeight();
+    int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+    executor.forEach(bands, new IntConsumer() {
+      @Override
+      public void accept(int band) {
+        int fromRow = band * BAND_ROWS;
+        generateLayered(grid, originX, originY, fromRow, Math.min(height, fromRow + BAND_ROWS));
+      }
+    });
+  }
+
+  private void generateLayered(TileGrid grid, int originX, int originY, int fromRow, int toRow) {
+    int width = grid.getWidth();
+    double[][] fields = new double[this.layers.getFieldCount()][width * (toRow - fromRow)];
+    this.layers.fill(fields, 0, originX, originY + fromRow, COORDINATE_SCALE, width,
+            toRow - fromRow);
+    double[] elevation = fields[this.elevationField];
+    double[] moisture = fields[this.moistureField];
+    double[] warpX = fields[this.warpXField];
+    double[] warpY = fields[this.warpYField];
+    for (int r = fromRow; r < toRow; r++) {
+      for (int c = 0; c < width; c++) {
+        int i = (r - fromRow) * width + c;
+        switch (classify(elevation[i], moisture[i])) {
+          case OPEN_WATER:
+            storeWater(grid, c, r, elevation[i], -warpY[i], warpY[i], -warpX[i], warpX[i]);
+            break;
+          case MARSH:
+            grid.setWater(c, r, CardinalDirection.NORTH, 0);
+            break;
+          default:
+            grid.setGrass(c, r);
+        }
+      }
+    }
+  }
+
+  /**
+   * A method to work out the class of a tile of the layered terrain.
+   * @param elevation The elevation field of generateLayered() at the tile, roughly -1 to 1.
+   * @param moisture  The moisture field at the tile, roughly -1 to 1.
+   * @return OPEN_WATER at or below the waterline, MARSH for wet ground a little above it and
+   *         GRASSLAND for the rest.
+   */
+  public static TerrainClass classify(double elevation, double moisture) {
+    if (elevation <= THRESHOLD) {
+      return TerrainClass.OPEN_WATER;
+    } else if (elevation <= MARSH_ELEVATION && moisture > MARSH_MOISTURE) {
+      return TerrainClass.MARSH;
+    }
+    return TerrainClass.GRASSLAND;
+  }
+
+  /**
+   * A method to fill a whole grid with a world that wraps around, for a TORUS board. Walking off one
+   * edge comes back on the other and the terrain has no seam there, because the noise is sampled
+   * from a TileableNoise that repeats once across the grid. The currents look around the same way
+   * as in generate(), wrapping at the edges.
+   * @param grid     The grid to fill.
+   * @param executor The executor to run bands of rows on.
+   */
+  public void generateTileable(final TileGrid grid, SimulationExecutor executor) {
+    final int width = grid.getWidth();
+    final int height = grid.getHeight();
+    final TileableNoise tileable = new TileableNoise(this.generator, width * COORDINATE_SCALE,
+            height * COORDINATE_SCALE);
+    // The whole torus is one lattice, so sample it all before looking around.
+    final double[] values = new double[width * height];
+    int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+    executor.forEach(bands, new IntConsumer() {
+      @Override
+      public void accept(int band) {
+        int fromRow = band * BAND_ROWS;
+        int rows = Math.min(height, fromRow + BAND_ROWS) - fromRow;
+        tileable.eval(values, fromRow * width, 0, fromRow, COORDINATE_SCALE, width, rows);
+      }
+    });
+    executor.forEach(bands, new IntConsumer() {
+      @Override
+      public void accept(int band) {
+        int fromRow = band * BAND_ROWS;
+        for (int y = fromRow; y < Math.min(height, fromRow + BAND_ROWS); y++) {
+          for (int x = 0; x < width; x++) {
+            generateWrappedTile(grid, values, x, y);
+          }
+        }
+      }
+    });
+  }
+
+  private void generateWrappedTile(TileGrid grid, double[] values, int x, int y) {
+    int width = grid.getWidth();
+    double noise = values[y * width + x];
+    if (noise > THRESHOLD) {
+      grid.setGrass(x, y);
+    } else {
+      // The same neighbours as generate(), whose lattice has rows along the first noise axis.
+      double diffAbove = noise
+              - alongX(grid, values, x - OFFSET_TILES - 1, y, 1 - OFFSET_FRACTION);
+      double diffBelow = alongX(grid, values, x + OFFSET_TILES, y, OFFSET_FRACTION);
+      double diffLeft = alongY(grid, values, x, y - OFFSET_TILES - 1, 1 - OFFSET_FRACTION);
+      double diffRight = alongY(grid, values, x, y + OFFSET_TILES, OFFSET_FRACTION);
+      storeWater(grid, x, y, noise, diffAbove, diffBelow, diffLeft, diffRight);
+    }
+  }
+
+  // Interpolate part of the way from a tile to the next one along x, wrapping around the edges.
+  private static double alongX(TileGrid grid, double[] values, int x, int y, double fraction) {
+    int width = grid.getWidth();
+    int row = Math.floorMod(y, grid.getHeight()) * width;
+    double from = values[row + Math.floorMod(x, width)];
+    return from + (values[row + Math.floorMod(x + 1, width)] - from) * fraction;
+  }
+
+  // Interpolate part of the way from a tile to the next one along y, wrapping around the edges.
+  private static double alongY(TileGrid grid, double[] values, int x, int y, double fraction) {
+    int width = grid.getWidth();
+    int height = grid.getHeight();
+    int column = Math.floorMod(x, width);
+    double from = values[Math.floorMod(y, height) * width + column];
+    return from + (values[Math.floorMod(y + 1, height) * width + column] - from) * fraction;
+  }
+
+  // Store a water tile whose current flows towards the biggest drop.
+  private static void storeWater(TileGrid grid, int x, int y, double noise, double diffAbove,
+                                 double diffBelow, double diffLeft, double diffRight) {
+    CardinalDirection direction;
+    if (diffAbove > diffBelow && diffAbove > diffLeft && diffAbove > diffRight) {
+      direction = CardinalDirection.NORTH;
+    } else if (diffBelow > diffAbove && diffBelow > diffLeft && diffBelow > diffRight) {
+      direction = CardinalDirection.SOUTH;
+    } else if (diffLeft > diffAbove && diffLeft > diffBelow && diffLeft > diffRight) {
+      direction = CardinalDirection.WEST;
+    } else {
+      direction = CardinalDirection.EAST;
+    }
+
+    grid.setWater(x, y, direction, (noise + 1) / (THRESHOLD + 1));
+  }
+
+  /**
+   * A method to return the seed the world is generated from.
+   * @return The seed.
+   */
+  public long getSeed() {
+    return this.seed;
+  }
+}
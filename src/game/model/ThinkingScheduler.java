@@ -0,0 +1,167 @@
+package game.model;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import game.model.entities.Entity;
+
+/**
+ * A ThinkingScheduler hands out a budget of thinking to entities every tick, before they take their
+ * regular step. The budget is a number of operations or an amount of wall-clock time, and it is
+ * shared round robin in small slices so a single long search can't starve the others. The entity
+ * served first moves along every tick.
+ *
+ * The entities are split into a fixed number of groups, which a parallel SimulationExecutor runs
+ * side by side. Every group shares its part of the operations, or the whole amount of time. The
+ * groups don't depend on the executor, so an OPERATIONS budget plays out the same on one thread as
+ * on many.
+ *
+ * The ONE_STEP budget hands out nothing, which leaves entities with the single operation that
+ * processStep() does each tick. That is the slow pace the view uses to visualise thinking.
+ */
+public class ThinkingScheduler {
+  /**
+   * A Budget is what a ThinkingScheduler counts to decide when a tick is done thinking.
+   */
+  public enum Budget {
+    ONE_STEP, // No extra thinking, just processStep() once per tick.
+    OPERATIONS, // A fixed number of operations per tick.
+    NANOSECONDS // A fixed amount of wall-clock time per tick.
+  }
+
+  // The most operations an entity gets before the next entity gets a turn.
+  private static final int DEFAULT_SLICE = 256;
+  // The number of groups the entities are split into, and so the most threads thinking at once.
+  private static final int GROUPS = 8;
+
+  private final Budget budget;
+  private final long amount; // The number of operations or nanoseconds per tick.
+  private final int slice;
+  private int cursor; // The entity to serve first on the next tick.
+
+  /**
+   * Create a new ThinkingScheduler.
+   * @param budget The way the budget is counted.
+   * @param amount The number of operations or nanoseconds each tick gets. Ignored for ONE_STEP.
+   */
+  public ThinkingScheduler(Budget budget, long amount) {
+    this.budget = budget;
+    this.amount = amount;
+    this.slice = DEFAULT_SLICE;
+    this.cursor = 0;
+  }
+
+  /**
+   * A method to make a scheduler that leaves entities thinking one operation per tick.
+   * @return A ThinkingScheduler with the ONE_STEP budget.
+   */
+  public static ThinkingScheduler oneStepPerTick() {
+    return new ThinkingScheduler(Budget.ONE_STEP, 0);
+  }
+
+  /**
+   * A method to make a scheduler that shares a number of operations every tick.
+   * @param operations The operations to share each tick.
+   * @return A ThinkingScheduler with the OPERATIONS budget.
+   */
+  public static ThinkingScheduler operationsPerTick(int operations) {
+    return new ThinkingScheduler(Budget.OPERATIONS, operations);
+  }
+
+  /**
+   * A method to make a scheduler that shares an amount of wall-clock time every tick.
+   * @param milliseconds The time to share each tick.
+   * @return A ThinkingScheduler with the NANOSECONDS budget.
+   */
+  public static ThinkingScheduler millisecondsPerTick(long milliseconds) {
+    return new ThinkingScheduler(Budget.NANOSECONDS, milliseconds * 1000000L);
+  }
+
+  /**
+   * Share this tick's budget among the given entities. Call this before their processStep().
+   * @param entities The entities that might want to think.
+   * @return The number of operations handed out.
+   */
+  public long think(List<? extends Entity> entities) {
+    return think(entities, null);
+  }
+
+  /**
+   * Share this tick's budget among the given entities, thinking in parallel on the given executor.
+   * Call this before their processStep().
+   * @param entities The entities that might want to think.
+   * @param executor The executor to think on, null to think on the calling thread.
+   * @return The number of operations handed out.
+   */
+  public long think(final List<? extends Entity> entities, SimulationExecutor executor) {
+    final int count = entities.size();
+    if (this.budget == Budget.ONE_STEP || count == 0) {
+      return 0;
+    }
+    final long startTime = System.nanoTime();
+    final int first = this.cursor % count;
+    this.cursor = first + 1;
+    final int groups = Math.min(GROUPS, count);
+    final long share = this.budget == Budget.OPERATIONS ? this.amount / groups : this.amount;
+    final AtomicLong used = new AtomicLong();
+    IntConsumer thinkGroup = new IntConsumer() {
+      @Override
+      public void accept(int group) {
+        int from = (int) ((long) group * count / groups);
+        int to = (int) ((long) (group + 1) * count / groups);
+        used.addAndGet(thinkRange(entities, from, to, first, share, startTime));
+      }
+    };
+    if (executor == null) {
+      for (int i = 0; i < groups; i++) {
+        thinkGroup.accept(i);
+      }
+    } else {
+      executor.forEach(groups, thinkGroup);
+    }
+    return used.get();
+  }
+
+  /**
+   * A helper method to share a budget round robin among a range of the entities.
+   */
+  private long thinkRange(List<? extends Entity> entities, int from, int to, int first,
+                          long amount, long startTime) {
+    int count = to - from;
+    long used = 0;
+    boolean anyoneThinking = true;
+    while (anyoneThinking) {
+      anyoneThinking = false;
+      for (int i = 0; i < count; i++) {
+        long remaining = remaining(used, amount, startTime);
+        if (remaining <= 0) {
+          return used;
+        }
+        Entity entity = entities.get(from + (first + i) % count);
+        int operations = entity.think((int) Math.min(this.slice, remaining));
+        if (operations > 0) {
+          used += operations;
+          anyoneThinking = true;
+        }
+      }
+    }
+    return used;
+  }
+
+  private long remaining(long used, long amount, long startTime) {
+    if (this.budget == Budget.OPERATIONS) {
+      return amount - used;
+    }
+    // Time can't be split into operations, so just hand out whole slices until it is up.
+    return System.nanoTime() - startTime < amount ? this.slice : 0;
+  }
+
+  /**
+   * A method to return the way this scheduler counts its budget.
+   * @return The Budget in use.
+   */
+  public Budget getBudget() {
+    return this.budget;
+  }
+}
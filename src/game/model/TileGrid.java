@@ -0,0 +1,273 @@
+package game.model;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.AbstractList;
+import java.util.List;
+
+import game.CardinalDirection;
+import game.model.entities.EntityType;
+import game.model.tiles.GrassTile;
+import game.model.tiles.Tile;
+import game.model.tiles.WaterTile;
+
+/**
+ * A TileGrid is a compact store of the tiles on the board. Instead of an object per cell it keeps a
+ * byte for the kind of tile, a byte for the direction of the current and a float for its power, all
+ * in flat arrays indexed by y * width + x. That is six bytes a cell, and a cost lookup is a few array
+ * reads.
+ *
+ * Tile objects are still handed out by getTile() for code that wants them, but they are only views:
+ * changing the board goes through setTile().
+ *
+ * The arrays are nio buffers so that a grid can also sit directly on a memory-mapped MapSnapshot
+ * file instead of the heap. Only absolute gets and puts are used, so the buffer positions never
+ * matter and reading from several threads is safe.
+ */
+public class TileGrid {
+  /** The kind of a GrassTile. */
+  public static final byte GRASS = 0;
+  /** The kind of a WaterTile. */
+  public static final byte WATER = 1;
+
+  private static final byte NO_CURRENT = -1;
+  private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+  // Grass has no state of its own so every cell can share one view.
+  private static final GrassTile GRASS_TILE = new GrassTile();
+
+  private final int width, height;
+  private final ByteBuffer kinds;
+  private final ByteBuffer currents; // The ordinal of the current, NO_CURRENT on land.
+  private final FloatBuffer powers;
+
+  /**
+   * Create a new TileGrid covered in grass.
+   * @param width  The width of the board in tiles.
+   * @param height The height of the board in tiles.
+   */
+  public TileGrid(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.kinds = ByteBuffer.allocate(width * height);
+    this.currents = ByteBuffer.allocate(width * height);
+    this.powers = FloatBuffer.allocate(width * height);
+    for (int cell = 0; cell < width * height; cell++) {
+      this.currents.put(cell, NO_CURRENT);
+    }
+  }
+
+  /**
+   * Create a new TileGrid on top of buffers that already hold the tiles, like the sections of a
+   * MapSnapshot. The buffers are used as they are, not copied.
+   * @param width    The width of the board in tiles.
+   * @param height   The height of the board in tiles.
+   * @param kinds    The kind of every cell.
+   * @param currents The ordinal of the current of every cell, -1 on land.
+   * @param powers   The power of the current of every cell.
+   */
+  TileGrid(int width, int height, ByteBuffer kinds, ByteBuffer currents, FloatBuffer powers) {
+    this.width = width;
+    this.height = height;
+    this.kinds = kinds;
+    this.currents = currents;
+    this.powers = powers;
+  }
+
+  /**
+   * A method to turn a cell into grass.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   */
+  public void setGrass(int x, int y) {
+    int cell = y * this.width + x;
+    this.kinds.put(cell, GRASS);
+    this.currents.put(cell, NO_CURRENT);
+    this.powers.put(cell, 0);
+  }
+
+  /**
+   * A method to turn a cell into water.
+   * @param x       The x position (in tiles).
+   * @param y       The y position (in tiles).
+   * @param current The current of the water. Don't give me a null value.
+   * @param power   The power of the current as a double between 0 and 1.
+   */
+  public void setWater(int x, int y, CardinalDirection current, double power) {
+    int cell = y * this.width + x;
+    this.kinds.put(cell, WATER);
+    this.currents.put(cell, (byte) current.ordinal());
+    this.powers.put(cell, (float) power);
+  }
+
+  /**
+   * A method to store a tile object into the grid.
+   * @param x    The x position (in tiles).
+   * @param y    The y position (in tiles).
+   * @param tile The tile, a GrassTile or a WaterTile.
+   */
+  public void setTile(int x, int y, Tile tile) {
+    if (tile instanceof GrassTile) {
+      setGrass(x, y);
+    } else if (tile instanceof WaterTile) {
+      WaterTile water = (WaterTile) tile;
+      setWater(x, y, water.getCurrent(), water.getPower());
+    } else {
+      throw new IllegalArgumentException("A TileGrid can't store " + tile);
+    }
+  }
+
+  /**
+   * A method to return a view of a cell as a Tile object. Water tiles are made on the spot, so don't
+   * call this in a hot loop.
+   * @param x The x position (in tiles).
+   * @param y The y position (in tiles).
+   * @return The tile at that position.
+   */
+  public Tile getTile(int x, int y) {
+    int cell = y * this.width + x;
+    if (this.kinds.get(cell) == GRASS) {
+      return GRASS_TILE;
+    }
+    return new WaterTile(DIRECTIONS[this.currents.get(cell)], this.powers.get(cell));
+  }
+
+  /**
+   * A method to work out the cost of moving out of a cell. This goes back to the tile rules every
+   * time, so searches should read a CostTable built from it instead.
+   * @param type      The type of entity moving.
+   * @param cell      The packed cell index y * width + x.
+   * @param direction The direction the entity wants to move.
+   * @return The cost for the given type of entity to do the given move.
+   */
+  public int getCost(EntityType type, int cell, CardinalDirection direction) {
+    if (this.kinds.get(cell) == GRASS) {
+      return GrassTile.cost(type);
+    }
+    return WaterTile.cost(type, DIRECTIONS[this.currents.get(cell)], this.powers.get(cell),
+            direction);
+  }
+
+  /**
+   * A method to return the kind of tile in a cell.
+   * @param cell The packed cell index y * width + x.
+   * @return GRASS or WATER.
+   */
+  public byte getKind(int cell) {
+    return this.kinds.get(cell);
+  }
+
+  /**
+   * A method to return the current in a cell.
+   * @param cell The packed cell index y * width + x.
+   * @return The direction of the current, null on land.
+   */
+  public CardinalDirection getCurrent(int cell) {
+    byte current = this.currents.get(cell);
+    return current == NO_CURRENT ? null : DIRECTIONS[current];
+  }
+
+  /**
+   * A method to return the power of the current in a cell.
+   * @param cell The packed cell index y * width + x.
+   * @return The power of the current between 0 and 1, 0 on land.
+   */
+  public float getPower(int cell) {
+    return this.powers.get(cell);
+  }
+
+  /**
+   * A method to check if another grid holds exactly the same tiles, powers compared bit for bit.
+   * @param other The grid to compare with.
+   * @return True if both grids are the same size and every cell matches.
+   */
+  public boolean sameTilesAs(TileGrid other) {
+    if (this.width != other.width || this.height != other.height) {
+      return false;
+    }
+    for (int cell = 0; cell < this.width * this.height; cell++) {
+      if (this.kinds.get(cell) != other.kinds.get(cell)
+              || this.currents.get(cell) != other.currents.get(cell)
+              || Float.floatToIntBits(this.powers.get(cell))
+                 != Float.floatToIntBits(other.powers.get(cell))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A method to find a cell that no tile could have left behind, like one read from a damaged file.
+   * Every cell has to be GRASS with no current or WATER with one of the four.
+   * @return The packed cell index y * width + x of the first bad cell, or -1 if there is none.
+   */
+  int findBadCell() {
+    for (int cell = 0; cell < this.width * this.height; cell++) {
+      byte kind = this.kinds.get(cell);
+      byte current = this.currents.get(cell);
+      boolean good = kind == GRASS ? current == NO_CURRENT
+              : kind == WATER && current >= 0 && current < DIRECTIONS.length;
+      if (!good) {
+        return cell;
+      }
+    }
+    return -1;
+  }
+
+  // The buffers themselves, for MapSnapshot to write out. Use absolute gets or a duplicate.
+  ByteBuffer getKinds() {
+    return this.kinds;
+  }
+
+  ByteBuffer getCurrents() {
+    return this.currents;
+  }
+
+  FloatBuffer getPowers() {
+    return this.powers;
+  }
+
+  /**
+   * A method to return a read-only view of the grid as rows of Tile objects, for code written
+   * against the old List of Lists.
+   * @return The rows of the board from top to bottom.
+   */
+  public List<List<Tile>> asRows() {
+    return new AbstractList<List<Tile>>() {
+      @Override
+      public List<Tile> get(final int r) {
+        return new AbstractList<Tile>() {
+          @Override
+          public Tile get(int c) {
+            return getTile(c, r);
+          }
+
+          @Override
+          public int size() {
+            return width;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return height;
+      }
+    };
+  }
+
+  /**
+   * A method to return the width of the grid.
+   * @return The width in tiles.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * A method to return the height of the grid.
+   * @return The height in tiles.
+   */
+  public int getHeight() {
+    return this.height;
+  }
+}
@@ -0,0 +1,63 @@
+package game.model;
+
+import game.CardinalDirection;
+
+/**
+ * A Topology says what happens at the edges of the board.
+ */
+public enum Topology {
+  BOUNDED, // The board ends at its edges.
+  TORUS; // Walking off one edge of the board comes back on the opposite edge.
+
+  /**
+   * A method to bring a position back onto the board.
+   * @param position The x or y position (in tiles), possibly just off the board.
+   * @param size     The width or height of the board.
+   * @return The position on a TORUS, or the position untouched on a BOUNDED board.
+   */
+  public int wrap(int position, int size) {
+    return this == TORUS ? Math.floorMod(position, size) : position;
+  }
+
+  /**
+   * A method to return how many moves apart two positions are along one axis.
+   * @param from The x or y position (in tiles) of one position.
+   * @param to   The x or y position (in tiles) of the other.
+   * @param size The width or height of the board.
+   * @return The fewest moves between them along that axis, going around the edge if it's shorter.
+   */
+  public int distance(int from, int to, int size) {
+    int distance = Math.abs(from - to);
+    return this == TORUS ? Math.min(distance, size - distance) : distance;
+  }
+
+  /**
+   * A method to work out which way to move to get from a tile to a neighbouring tile.
+   * @param fromX  The x position (in tiles) to move from.
+   * @param fromY  The y position (in tiles) to move from.
+   * @param toX    The x position (in tiles) of the neighbour.
+   * @param toY    The y position (in tiles) of the neighbour.
+   * @param width  The width of the board.
+   * @param height The height of the board.
+   * @return The direction of the move, null if the tiles are the same or not neighbours.
+   */
+  public CardinalDirection towards(int fromX, int fromY, int toX, int toY, int width,
+                                   int height) {
+    if (fromY == toY) {
+      if (toX == wrap(fromX + 1, width)) {
+        return CardinalDirection.EAST;
+      }
+      if (toX == wrap(fromX - 1, width)) {
+        return CardinalDirection.WEST;
+      }
+    } else if (fromX == toX) {
+      if (toY == wrap(fromY + 1, height)) {
+        return CardinalDirection.SOUTH;
+      }
+      if (toY == wrap(fromY - 1, height)) {
+        return CardinalDirection.NORTH;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,89 @@
+package game.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * A VirtualThreadExecutor runs ranges of a tick's indices on virtual threads. Virtual threads only
+ * exist from Java 21 on, so we look them up reflectively to keep building on older JDKs.
+ */
+public class VirtualThreadExecutor implements SimulationExecutor {
+  // How many ranges we split the indices into for every core.
+  private static final int RANGES_PER_CORE = 4;
+
+  private final ExecutorService executor;
+  private final int parallelism;
+
+  /**
+   * Create a new VirtualThreadExecutor.
+   * @throws UnsupportedOperationException If this JVM doesn't have virtual threads.
+   */
+  public VirtualThreadExecutor() {
+    try {
+      this.executor = (ExecutorService) Executors.class
+              .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException("Virtual threads need Java 21 or newer.", e);
+    }
+    this.parallelism = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * A method to check if this JVM has virtual threads.
+   * @return True if a VirtualThreadExecutor can be made.
+   */
+  public static boolean isSupported() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void forEach(final int count, final IntConsumer task) {
+    int ranges = Math.min(count, this.parallelism * RANGES_PER_CORE);
+    List<Future<?>> futures = new ArrayList<>(ranges);
+    for (int r = 0; r < ranges; r++) {
+      final int from = (int) ((long) r * count / ranges);
+      final int to = (int) ((long) (r + 1) * count / ranges);
+      futures.add(this.executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = from; i < to; i++) {
+            task.accept(i);
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the tick to finish.", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  @Override
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  @Override
+  public void shutdown() {
+    this.executor.shutdown();
+  }
+}
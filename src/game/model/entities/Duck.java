@@ -1,35 +1,26 @@
 package game.model.entities;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Set;
-import java.util.List;
-
 import game.CardinalDirection;
-import game.Launch;
-import game.model.Edge;
-import game.model.EdgeComparator;
+import game.model.FlowField;
 import game.model.GameState;
-import javafx.util.Pair;
+import game.model.PathFinder;
+import game.model.SearchMode;
+import game.model.Topology;
 
 /**
- * A duck is an entity that is good on water. It also implements Dikstra's Algorithm.
+ * A duck is an entity that is good on water. It also implements Dikstra's Algorithm, or A* if we
+ * ask it to. Ducks heading to the same place can instead share a FlowField and skip thinking.
  */
 public class Duck implements Entity {
   public int x, y; // The duck's position.
   int xd, yd; // The duck's destination
   DuckState state; // The duck's current state.
 
-  PriorityQueue<Edge> processingQueue;
-  Map<Point, Pair<Integer, Point>> progress;
-  Set<Edge> processed;
-  List<Point> path; //
+  SearchMode mode; // How the duck finds its way.
+  PathFinder pathFinder; // Does the thinking, one settled node per step. Made when first needed.
+  int[] path; // The packed node ids we are going to follow.
+  int pathIndex; // The next entry of path to move to.
+  FlowField flowField; // The shared field we follow instead of a path in FLOW_FIELD mode.
 
   int width, height;
   GameState model;
@@ -45,6 +36,22 @@ public class Duck implements Entity {
    * @param model The model to query about edge weights.
    */
   public Duck(int x, int y, int xd, int yd, int width, int height, GameState model) {
+    this(x, y, xd, yd, width, height, model, SearchMode.DIJKSTRA);
+  }
+
+  /**
+   * Create a new Duck entity at the given position that thinks with the given SearchMode.
+   * @param x The x position (in tiles) of the duck on the board.
+   * @param y The y position (in tiles) of the duck on the board.
+   * @param xd The x position (in tiles) of the destination of the duck.
+   * @param yd The y position of the destination.
+   * @param width The width of the game board the duck can wander.
+   * @param height The height of the game board the duck can wander.
+   * @param model The model to query about edge weights.
+   * @param mode The way the duck explores the board when looking for its destination.
+   */
+  public Duck(int x, int y, int xd, int yd, int width, int height, GameState model,
+              SearchMode mode) {
     this.x = x;
     this.y = y;
     this.xd = xd;
@@ -54,10 +61,11 @@ public class Duck implements Entity {
     this.model = model;
     this.state = DuckState.INIT;
 
-    this.processingQueue = new PriorityQueue<>(new EdgeComparator());
-    this.progress = new HashMap<>();
-    this.processed = new HashSet<>();
-    this.path = new LinkedList<Point>();
+    this.mode = mode;
+    this.pathFinder = null;
+    this.flowField = null;
+    this.path = new int[0];
+    this.pathIndex = 0;
   }
 
   enum DuckState {
@@ -67,138 +75,129 @@ public class Duck implements Entity {
     DONE // We've reached the destination.
   }
 
-  /**
-   * Add edge is a helper method to attempt to add an edge to the processingQueue. First we check
-   * against the processed set first.
-   */
-  void addEdge(Edge e) {
-    if (!this.processed.contains(e)) {
-      this.processed.add(e);
-      this.processingQueue.add(e);
-    }
-  }
-
-  /**
-   * Process node is a helper method to add all of the (unexplored) edges to the graph by checking
-   * directions.
-   * @param pos The node position to consider.
-   */
-  void processNode(Point pos) {
-    if (pos.x > 0) {
-      // It's okay to check left.
-      Point to = new Point(pos.x - 1, pos.y);
-      addEdge(new Edge(pos, to,
-              model.requestCost(this, pos, CardinalDirection.WEST)));
-    }
-    if (pos.x < this.width - 1) {
-      // It's okay to check left.
-      Point to = new Point(pos.x + 1, pos.y);
-      addEdge(new Edge(pos, to,
-              model.requestCost(this, pos, CardinalDirection.EAST)));
-    }
-    if (pos.y > 0) {
-      // It's okay to check left.
-      Point to = new Point(pos.x, pos.y - 1);
-      addEdge(new Edge(pos, to,
-              model.requestCost(this, pos, CardinalDirection.NORTH)));
-    }
-    if (pos.y < this.height - 1) {
-      // It's okay to check left.
-      Point to = new Point(pos.x, pos.y + 1);
-      addEdge(new Edge(pos, to,
-              model.requestCost(this, pos, CardinalDirection.SOUTH)));
-    }
-  }
-
   @Override
   public CardinalDirection processStep() {
     // System.out.println("I am Derrick I am doing " + this.state);
     switch (this.state) {
       case INIT:
-        Point currentPosition = new Point(this.x, this.y);
-        this.progress.put(currentPosition, new Pair<>(0, null));
-        processNode(currentPosition);
+        if (this.mode == SearchMode.FLOW_FIELD) {
+          // Someone else may have already done the thinking for us.
+          this.flowField = this.model.getFlowField(this, this.xd, this.yd);
+          this.state = DuckState.TRANSITIONING;
+          return null;
+        }
+        if (this.mode == SearchMode.HIERARCHICAL) {
+          // The clusters do most of the thinking up front, so the rest fits in one step.
+          this.path = this.model.getHierarchy(this).findPath(this.x, this.y, this.xd, this.yd);
+          this.pathIndex = 0;
+          this.state = DuckState.TRANSITIONING;
+          return null;
+        }
+        if (this.pathFinder == null) {
+          this.pathFinder = new PathFinder(this.model, this.width, this.height, this.mode);
+        } else {
+          this.pathFinder.setMode(this.mode);
+        }
+        this.pathFinder.start(this, this.x, this.y, this.xd, this.yd);
         this.state = DuckState.THINKING;
         return null;
       case THINKING:
-        if (this.processingQueue.isEmpty()) {
-          this.initializePath(new Point(this.xd,this.yd));
+        if (this.pathFinder.isFinished()) {
+          this.initializePath();
           this.state = DuckState.TRANSITIONING;
           return null;
         }
-        // The processing queue isn't empty.
-        // This will be null if the queue is empty. It shouldn't be.
-        Edge processedEdge = this.processingQueue.poll();
-        // We actually know processedEdge.from is in the map because otherwise the edge couldn't
-        // possibly be in the queue.
-        // System.out.println(this.progress.get(processedEdge.from));
-        int fromDistance = this.progress.get(processedEdge.from).getKey(); // The key is the integer.
-        int potentialNewToDistance = fromDistance + processedEdge.weight;
-        Pair<Integer, Point> toPair = this.progress.get(processedEdge.to); // The key is the int.
-        if (toPair == null || potentialNewToDistance < toPair.getKey()) {
-          // Then we need to assign a new cost and redirect in the map.
-          this.progress.put(processedEdge.to, new Pair<>(potentialNewToDistance, processedEdge.from));
-        }
-        processNode(processedEdge.to);
+        // The processing queue isn't empty, so we settle one more node.
+        this.pathFinder.step();
         return null;
       case TRANSITIONING:
-        if (this.path.isEmpty()) {
+        if (this.flowField != null) {
+          return followFlowField();
+        }
+        if (this.pathIndex >= this.path.length) {
           this.state = DuckState.DONE;
           return null;
         }
 
-        Point pathPoint = this.path.remove(0);
+        int pathNode = this.path[this.pathIndex++];
 
-        int pathX = pathPoint.x;
-        int pathY = pathPoint.y;
+        int pathX = pathNode % this.width;
+        int pathY = pathNode / this.width;
 
-        int curX = this.x;
-        int curY = this.y;
+        // We don't move yet, that happens when the decision is committed with move(). The next
+        // node is the tile we're on or a neighbour, maybe around the edge of the board.
+        return this.model.getTopology().towards(this.x, this.y, pathX, pathY, this.width,
+                this.height);
+      default:
+        return null;
+    }
+  }
 
-        this.x = pathX;
-        this.y = pathY;
+  @Override
+  public int think(int budget) {
+    int used = 0;
+    // Steps in these states never move the duck, so we can take as many as we like.
+    while (used < budget && (this.state == DuckState.INIT || this.state == DuckState.THINKING)) {
+      processStep();
+      used++;
+    }
+    return used;
+  }
 
-        if (curX== pathX && curY == pathY) {
-          return null;
-        }
+  /**
+   * A method to pull the finished path out of the path finder so we can start following it.
+   */
+  public void initializePath() {
+    this.path = this.pathFinder.getPath();
+    this.pathIndex = 0;
+  }
 
-        else if (curX < pathX) {
-          return CardinalDirection.EAST;
-        }
-        else if (curX > pathX) {
-          return CardinalDirection.WEST;
-        }
-        else if (curY < pathY) {
-          return CardinalDirection.SOUTH;
-        }
-        else if (curY> pathY) {
-          return CardinalDirection.NORTH;
-        }
-        else {
-          return null;
-        }
-      default:
-        return null;
+  /**
+   * A helper method to decide the next step along the flow field.
+   * @return The direction to move, null if we have arrived (or can't get there).
+   */
+  CardinalDirection followFlowField() {
+    CardinalDirection direction = this.flowField.getDirection(this.x, this.y);
+    if (direction == null) {
+      this.state = DuckState.DONE;
     }
+    return direction;
   }
 
-  public void initializePath(Point endPoint) {
-    Point step = endPoint;
-    this.path.add(endPoint);
-    while (true) {
-      Pair<Integer, Point> halfStep = this.progress.get(step);
-      if (halfStep == null) {
+  @Override
+  public void move(CardinalDirection direction) {
+    if (direction == null) {
+      return;
+    }
+    int fromX = this.x;
+    int fromY = this.y;
+    switch (direction) {
+      case NORTH:
+        this.y--;
+        break;
+      case SOUTH:
+        this.y++;
+        break;
+      case WEST:
+        this.x--;
+        break;
+      case EAST:
+        this.x++;
         break;
-      } else {
-        step = halfStep.getValue();
-        if (step == null) {
-          break;
-        } else {
-          this.path.add(step);
-        }
-      }
     }
-    Collections.reverse(this.path);
+    Topology topology = this.model.getTopology();
+    this.x = topology.wrap(this.x, this.width);
+    this.y = topology.wrap(this.y, this.height);
+    this.model.getEntityIndex().moved(this, fromX, fromY, this.x, this.y);
+  }
+
+  /**
+   * A method to change the way the duck finds its way. This takes effect the next time the duck
+   * starts thinking.
+   * @param mode The SearchMode to use.
+   */
+  public void setSearchMode(SearchMode mode) {
+    this.mode = mode;
   }
 
   @Override
@@ -207,28 +206,18 @@ public class Duck implements Entity {
   }
 
   @Override
-  public void draw(Graphics2D g) {
-    Rectangle bounds = g.getClipBounds();
+  public String getStatus() {
     switch (this.state) {
       case THINKING:
-        g.setColor(Color.BLACK);
-        Edge processingEdge = this.processingQueue.peek();
-        String processingString;
-        if (processingEdge != null) {
-          processingString = processingEdge.to.getX() + ", " + processingEdge.to.getY() + " : " + processingEdge.to.getX() + ", " + processingEdge.to.getY();
-        } else {
-          processingString = ":D";
+        int processingNode = this.pathFinder.peek();
+        if (processingNode != PathFinder.NONE) {
+          return (processingNode % this.width) + ", " + (processingNode / this.width);
         }
-        g.drawString(processingString, (int) bounds.getX() + 10, (int) bounds.getY() + 10);
-        break;
+        return ":D";
       case TRANSITIONING:
-        g.setColor(Color.BLACK);
-        g.drawString("!", (int) bounds.getX() + 10, (int) bounds.getY() + 10);
-        break;
+        return "!";
+      default:
+        return null;
     }
-    g.drawImage(Launch.duck,
-            (int) bounds.getX(), (int) bounds.getY(),
-            (int) bounds.getWidth(), (int) bounds.getHeight(),
-            null);
   }
 }
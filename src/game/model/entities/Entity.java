@@ -1,7 +1,5 @@
 package game.model.entities;
 
-import java.awt.*;
-
 import game.CardinalDirection;
 
 /**
@@ -9,11 +7,26 @@ import game.CardinalDirection;
  */
 public interface Entity {
   /**
-   * Process the algorithm with one more operation and return a decision to move.
+   * Process the algorithm with one more operation and return a decision to move. The entity doesn't
+   * move until the decision is committed with move(), so that decisions can be made in parallel.
    * @return  The direction decided on to move. Null means stay in place (thinking).
    */
   CardinalDirection processStep();
 
+  /**
+   * Commit a decision made by processStep() by moving one tile in the given direction.
+   * @param direction The direction to move, null to stay in place.
+   */
+  void move(CardinalDirection direction);
+
+  /**
+   * Spend up to the given number of operations on thinking, without moving. This lets a scheduler
+   * hand out spare time between ticks.
+   * @param budget The most operations to process.
+   * @return The number of operations processed, zero if there is nothing to think about.
+   */
+  int think(int budget);
+
   /**
    * Given an EntityVisitor, the Entity will call the correct code. This allows us to write code
    * about entities without it having to be in an entity.
@@ -23,9 +36,8 @@ public interface Entity {
   <T> T accept(EntityVisitor<T> visitor);
 
   /**
-   * Given a Graphics2D object, the Entity will draw itself onto the given image at the right
-   * coordinate.
-   * @param g The graphics object to draw across.
+   * A method to return a short note of what the entity is doing, which is drawn on top of it.
+   * @return The note, null for nothing.
    */
-  void draw(Graphics2D g);
+  String getStatus();
 }
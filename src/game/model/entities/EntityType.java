@@ -0,0 +1,33 @@
+package game.model.entities;
+
+/**
+ * An EntityType is the kind of an Entity. Everything about moving across the board only depends on
+ * the kind of entity, so this is what we key shared tables by.
+ */
+public enum EntityType {
+  DUCK, KOALA;
+
+  /**
+   * TypeVisitor is a visitor to find out which type of entity we've been given.
+   */
+  private static EntityVisitor<EntityType> typeVisitor = new EntityVisitor<EntityType>() {
+    @Override
+    public EntityType visitDuck(Duck d) {
+      return DUCK;
+    }
+
+    @Override
+    public EntityType visitKoala(Koala k) {
+      return KOALA;
+    }
+  };
+
+  /**
+   * A method to find out the type of the given entity.
+   * @param entity The entity to ask.
+   * @return The EntityType of the entity.
+   */
+  public static EntityType of(Entity entity) {
+    return entity.accept(typeVisitor);
+  }
+}
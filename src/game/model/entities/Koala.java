@@ -1,14 +1,130 @@
 package game.model.entities;
 
-import java.awt.*;
-
 import game.CardinalDirection;
+import game.model.GameState;
+import game.model.PathFinder;
+import game.model.SearchMode;
+import game.model.Topology;
 
+/**
+ * A koala is an entity that is good on land and slow in water. It always finds its way with A*
+ * guided by the model's shared landmark tables for koalas, so many koalas on one map share the
+ * expensive part of the thinking.
+ */
 public class Koala implements Entity {
+  public int x, y; // The koala's position.
+  int xd, yd; // The koala's destination.
+  KoalaState state; // The koala's current state.
+
+  PathFinder pathFinder; // Does the thinking, one settled node per step. Made when first needed.
+  int[] path; // The packed node ids we are going to follow.
+  int pathIndex; // The next entry of path to move to.
+
+  int width, height;
+  GameState model;
+
+  /**
+   * Create a new Koala entity at the given position.
+   * @param x The x position (in tiles) of the koala on the board.
+   * @param y The y position (in tiles) of the koala on the board.
+   * @param xd The x position (in tiles) of the destination of the koala.
+   * @param yd The y position of the destination.
+   * @param width The width of the game board the koala can wander.
+   * @param height The height of the game board the koala can wander.
+   * @param model The model to query about edge weights.
+   */
+  public Koala(int x, int y, int xd, int yd, int width, int height, GameState model) {
+    this.x = x;
+    this.y = y;
+    this.xd = xd;
+    this.yd = yd;
+    this.width = width;
+    this.height = height;
+    this.model = model;
+    this.state = KoalaState.INIT;
+
+    this.pathFinder = null;
+    this.path = new int[0];
+    this.pathIndex = 0;
+  }
+
+  enum KoalaState {
+    INIT, // Need to start the search.
+    THINKING, // Doing operations to process the queue.
+    TRANSITIONING, // We are done processing the queue and are moving by following our map.
+    DONE // We've reached the destination.
+  }
 
   @Override
   public CardinalDirection processStep() {
-    return null;
+    switch (this.state) {
+      case INIT:
+        if (this.pathFinder == null) {
+          this.pathFinder = new PathFinder(this.model, this.width, this.height,
+                  SearchMode.LANDMARKS);
+        }
+        this.pathFinder.start(this, this.x, this.y, this.xd, this.yd);
+        this.state = KoalaState.THINKING;
+        return null;
+      case THINKING:
+        if (this.pathFinder.isFinished()) {
+          this.path = this.pathFinder.getPath();
+          this.pathIndex = 0;
+          this.state = KoalaState.TRANSITIONING;
+          return null;
+        }
+        this.pathFinder.step();
+        return null;
+      case TRANSITIONING:
+        if (this.pathIndex >= this.path.length) {
+          this.state = KoalaState.DONE;
+          return null;
+        }
+        int pathNode = this.path[this.pathIndex++];
+        // The next node is the tile we're on or a neighbour, maybe around the edge of the board.
+        return this.model.getTopology().towards(this.x, this.y, pathNode % this.width,
+                pathNode / this.width, this.width, this.height);
+      default:
+        return null;
+    }
+  }
+
+  @Override
+  public int think(int budget) {
+    int used = 0;
+    // Steps in these states never move the koala, so we can take as many as we like.
+    while (used < budget && (this.state == KoalaState.INIT || this.state == KoalaState.THINKING)) {
+      processStep();
+      used++;
+    }
+    return used;
+  }
+
+  @Override
+  public void move(CardinalDirection direction) {
+    if (direction == null) {
+      return;
+    }
+    int fromX = this.x;
+    int fromY = this.y;
+    switch (direction) {
+      case NORTH:
+        this.y--;
+        break;
+      case SOUTH:
+        this.y++;
+        break;
+      case WEST:
+        this.x--;
+        break;
+      case EAST:
+        this.x++;
+        break;
+    }
+    Topology topology = this.model.getTopology();
+    this.x = topology.wrap(this.x, this.width);
+    this.y = topology.wrap(this.y, this.height);
+    this.model.getEntityIndex().moved(this, fromX, fromY, this.x, this.y);
   }
 
   @Override
@@ -17,7 +133,18 @@ public class Koala implements Entity {
   }
 
   @Override
-  public void draw(Graphics2D g) {
-
+  public String getStatus() {
+    switch (this.state) {
+      case THINKING:
+        int processingNode = this.pathFinder.peek();
+        if (processingNode != PathFinder.NONE) {
+          return (processingNode % this.width) + ", " + (processingNode / this.width);
+        }
+        return ":D";
+      case TRANSITIONING:
+        return "!";
+      default:
+        return null;
+    }
   }
 }
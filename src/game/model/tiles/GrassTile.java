@@ -1,45 +1,32 @@
 package game.model.tiles;
 
-import java.awt.*;
-
 import game.CardinalDirection;
-import game.Launch;
-import game.model.entities.Duck;
 import game.model.entities.Entity;
-import game.model.entities.EntityVisitor;
-import game.model.entities.Koala;
+import game.model.entities.EntityType;
 
 /**
  * A grass tile is a land tile.
  */
 public class GrassTile implements Tile {
   /**
-   * GrassTileVisitor is a visitor to visit different types of entities and return the cost for that
-   * type of entity.
+   * A method to compute the cost of moving out of any grass tile for a type of entity. Cost tables
+   * are built from this, so it works on the type rather than visiting an entity.
+   * @param type The type of entity traveling.
+   * @return     The cost for that type of entity, the same in every direction.
    */
-  private static EntityVisitor<Integer> grassTileVisitor = new EntityVisitor<Integer>() {
-    @Override
-    public Integer visitDuck(Duck d) {
-      return 100;
-    }
-
-    @Override
-    public Integer visitKoala(Koala k) {
-      return 20;
+  public static int cost(EntityType type) {
+    switch (type) {
+      case DUCK:
+        return 100;
+      case KOALA:
+        return 20;
+      default:
+        throw new IllegalArgumentException("No grass cost for " + type);
     }
-  };
-
-  @Override
-  public int getCost(Entity travelingEntity, CardinalDirection direction) {
-    return travelingEntity.accept(grassTileVisitor);
   }
 
   @Override
-  public void draw(Graphics2D g) {
-    Rectangle bounds = g.getClipBounds();
-    g.drawImage(Launch.grass,
-            (int) bounds.getX(), (int) bounds.getY(),
-            (int) bounds.getWidth(), (int) bounds.getHeight(),
-            null);
+  public int getCost(Entity travelingEntity, CardinalDirection direction) {
+    return cost(EntityType.of(travelingEntity));
   }
 }
@@ -1,7 +1,5 @@
 package game.model.tiles;
 
-import java.awt.*;
-
 import game.CardinalDirection;
 import game.model.entities.Entity;
 
@@ -16,10 +14,4 @@ public interface Tile {
    * @return                The cost estimated for moving from
    */
   int getCost(Entity travelingEntity, CardinalDirection direction);
-
-  /**
-   * Asks the given Tile to draw itself across the given Graphics object.
-   * @param g   The graphics object to allow drawing.
-   */
-  void draw(Graphics2D g);
 }
@@ -0,0 +1,167 @@
+package game.view;
+
+/**
+ * A Camera is the part of the board the view shows: where it is looking and how far it is zoomed in.
+ * The zoom is a scale in pixels per tile. Zoomed in far enough, tiles are drawn with their sprites
+ * at a whole number of pixels; further out than DETAIL_SCALE the board is drawn from a minimap
+ * instead, since sprites a few pixels wide aren't worth drawing.
+ *
+ * The camera is moved by the input listeners and read by whatever draws the frame, so every method
+ * is synchronized.
+ */
+public class Camera {
+  /** The smallest scale, in pixels per tile, that tiles are drawn with sprites at. */
+  public static final double DETAIL_SCALE = 8;
+  /** The largest scale, in pixels per tile. */
+  public static final double MAX_SCALE = 128;
+  // How much one notch of the mouse wheel zooms.
+  private static final double ZOOM_STEP = 1.25;
+
+  private final int mapWidth, mapHeight; // The size of the board in tiles.
+  private final int viewWidth, viewHeight; // The size of the view in pixels.
+  private double centreX, centreY; // The tile position in the middle of the view.
+  private double scale;
+
+  /**
+   * Create a new Camera zoomed out to fit the whole board.
+   * @param mapWidth   The width of the board in tiles.
+   * @param mapHeight  The height of the board in tiles.
+   * @param viewWidth  The width of the view in pixels.
+   * @param viewHeight The height of the view in pixels.
+   */
+  public Camera(int mapWidth, int mapHeight, int viewWidth, int viewHeight) {
+    this.mapWidth = mapWidth;
+    this.mapHeight = mapHeight;
+    this.viewWidth = viewWidth;
+    this.viewHeight = viewHeight;
+    this.centreX = mapWidth / 2.0;
+    this.centreY = mapHeight / 2.0;
+    // Whole pixels when there's room for them, like the view always drew small boards.
+    double fit = getMinimumScale();
+    this.scale = fit >= 1 ? Math.floor(fit) : fit;
+    clamp();
+  }
+
+  private double getMinimumScale() {
+    return Math.min(Math.min((double) this.viewWidth / this.mapWidth,
+            (double) this.viewHeight / this.mapHeight), MAX_SCALE);
+  }
+
+  // Keeps the view on the board, or the board in the middle of the view if it's smaller.
+  private void clamp() {
+    this.scale = Math.max(getMinimumScale(), Math.min(MAX_SCALE, this.scale));
+    double halfWidth = this.viewWidth / 2.0 / getDrawnScale();
+    double halfHeight = this.viewHeight / 2.0 / getDrawnScale();
+    this.centreX = halfWidth * 2 >= this.mapWidth ? this.mapWidth / 2.0
+            : Math.max(halfWidth, Math.min(this.mapWidth - halfWidth, this.centreX));
+    this.centreY = halfHeight * 2 >= this.mapHeight ? this.mapHeight / 2.0
+            : Math.max(halfHeight, Math.min(this.mapHeight - halfHeight, this.centreY));
+  }
+
+  // The scale things are really drawn at, whole pixels when tiles are drawn with sprites.
+  private double getDrawnScale() {
+    return this.scale >= DETAIL_SCALE ? Math.floor(this.scale) : this.scale;
+  }
+
+  /**
+   * A method to move the camera by a number of pixels on the screen.
+   * @param dx How far to move right in pixels, negative to move left.
+   * @param dy How far to move down in pixels, negative to move up.
+   */
+  public synchronized void pan(int dx, int dy) {
+    this.centreX += dx / getDrawnScale();
+    this.centreY += dy / getDrawnScale();
+    clamp();
+  }
+
+  /**
+   * A method to zoom in or out, keeping the tile under a point of the view where it is.
+   * @param notches How many steps to zoom out, negative to zoom in, like a mouse wheel turns.
+   * @param x       The x position (in pixels) in the view to zoom around.
+   * @param y       The y position (in pixels) in the view to zoom around.
+   */
+  public synchronized void zoom(int notches, int x, int y) {
+    double tileX = getLeft() + x / getDrawnScale();
+    double tileY = getTop() + y / getDrawnScale();
+    this.scale *= Math.pow(ZOOM_STEP, -notches);
+    clamp();
+    this.centreX = tileX - (x - this.viewWidth / 2.0) / getDrawnScale();
+    this.centreY = tileY - (y - this.viewHeight / 2.0) / getDrawnScale();
+    clamp();
+  }
+
+  /**
+   * A method to check if tiles are big enough to be drawn with their sprites.
+   * @return True when zoomed in to at least DETAIL_SCALE, false to draw the minimap.
+   */
+  public synchronized boolean isDetailed() {
+    return this.scale >= DETAIL_SCALE;
+  }
+
+  /**
+   * A method to return the scale the board is drawn at. When detailed this is a whole number, the
+   * size of a tile.
+   * @return The number of pixels per tile.
+   */
+  public synchronized double getScale() {
+    return getDrawnScale();
+  }
+
+  /**
+   * A method to return the size of a tile when detailed.
+   * @return The width and height of a tile in pixels.
+   */
+  public synchronized int getTileSize() {
+    return (int) getDrawnScale();
+  }
+
+  /**
+   * A method to return the position on the board at the left edge of the view.
+   * @return The x position in tiles, which can be part of the way across a tile or off the board.
+   */
+  public synchronized double getLeft() {
+    return this.centreX - this.viewWidth / 2.0 / getDrawnScale();
+  }
+
+  /**
+   * A method to return the position on the board at the top edge of the view.
+   * @return The y position in tiles, which can be part of the way across a tile or off the board.
+   */
+  public synchronized double getTop() {
+    return this.centreY - this.viewHeight / 2.0 / getDrawnScale();
+  }
+
+  /**
+   * A method to return the pixel of the board at the left edge of the view, when detailed. The tile
+   * at x is drawn at x * getTileSize() - getOriginX().
+   * @return The x position in pixels of the board.
+   */
+  public synchronized int getOriginX() {
+    return (int) Math.floor(getLeft() * getDrawnScale());
+  }
+
+  /**
+   * A method to return the pixel of the board at the top edge of the view, when detailed. The tile
+   * at y is drawn at y * getTileSize() - getOriginY().
+   * @return The y position in pixels of the board.
+   */
+  public synchronized int getOriginY() {
+    return (int) Math.floor(getTop() * getDrawnScale());
+  }
+
+  /**
+   * A method to return the width of the view.
+   * @return The width in pixels.
+   */
+  public int getViewWidth() {
+    return this.viewWidth;
+  }
+
+  /**
+   * A method to return the height of the view.
+   * @return The height in pixels.
+   */
+  public int getViewHeight() {
+    return this.viewHeight;
+  }
+}
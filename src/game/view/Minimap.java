@@ -0,0 +1,98 @@
+package game.view;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import game.model.CostChanges;
+import game.model.CostListener;
+import game.model.GameState;
+import game.model.TileGrid;
+
+/**
+ * A Minimap is the whole board drawn with one pixel per tile, in the average colour of the tile's
+ * sprite. It is what the view draws when zoomed too far out for sprites: scaling part of it on to
+ * the frame costs the same whatever the size of the board.
+ *
+ * The pixels are worked out once, the first time the minimap is drawn, and after that only the
+ * pixels of tiles that change are worked out again.
+ */
+public class Minimap implements CostListener {
+  private final GameState gamestate;
+  private final TileGrid grid;
+  private final SpriteAtlas colours;
+  private final GraphicsConfiguration config;
+  private BufferedImage image; // Null until it is first drawn.
+
+  /**
+   * Create a new Minimap. Nothing is worked out until it is first drawn.
+   * @param gamestate The model to draw, which the minimap starts listening to.
+   * @param config    The graphics configuration of the screen the minimap will be drawn on.
+   * @param colours   The sprites to take the colour of each tile from.
+   */
+  public Minimap(GameState gamestate, GraphicsConfiguration config, SpriteAtlas colours) {
+    this.gamestate = gamestate;
+    this.grid = gamestate.getGrid();
+    this.config = config;
+    this.colours = colours;
+    gamestate.addCostListener(this);
+  }
+
+  private int colour(int cell) {
+    if (this.grid.getKind(cell) == TileGrid.GRASS) {
+      return this.colours.getGrassColor();
+    }
+    return this.colours.getWaterColor(this.grid.getCurrent(cell), this.grid.getPower(cell));
+  }
+
+  private void build() {
+    int width = this.grid.getWidth();
+    int height = this.grid.getHeight();
+    this.image = this.config.createCompatibleImage(width, height, Transparency.OPAQUE);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        row[x] = colour(y * width + x);
+      }
+      this.image.setRGB(0, y, width, 1, row, 0, width);
+    }
+  }
+
+  @Override
+  public synchronized void costsChanged(CostChanges changes) {
+    if (this.image == null) {
+      return;
+    }
+    int width = this.grid.getWidth();
+    for (int i = 0; i < changes.size(); i++) {
+      int cell = changes.getCell(i);
+      this.image.setRGB(cell % width, cell / width, colour(cell));
+    }
+  }
+
+  /**
+   * A method to draw the part of the board in view.
+   * @param g     The graphics of the frame, already filled where the board doesn't reach.
+   * @param left  The x position (in tiles) of the board at the left edge of the frame.
+   * @param top   The y position (in tiles) of the board at the top edge of the frame.
+   * @param scale The number of pixels per tile.
+   */
+  public synchronized void draw(Graphics2D g, double left, double top, double scale) {
+    if (this.image == null) {
+      build();
+    }
+    AffineTransform transform = g.getTransform();
+    g.translate(-left * scale, -top * scale);
+    g.scale(scale, scale);
+    // Only the pixels of the frame the board covers are drawn.
+    g.drawImage(this.image, 0, 0, null);
+    g.setTransform(transform);
+  }
+
+  /**
+   * A method to stop listening to the model, for when the minimap isn't needed any more.
+   */
+  public void detach() {
+    this.gamestate.removeCostListener(this);
+  }
+}
@@ -0,0 +1,273 @@
+package game.view;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+import game.CardinalDirection;
+
+/**
+ * A SpriteAtlas holds every sprite of the game already scaled to one tile size, packed into a single
+ * image that is compatible with the screen. Drawing a sprite is then a copy of part of that image at
+ * its own size, which Java2D can hand to the graphics card, instead of scaling the original image on
+ * every draw.
+ *
+ * Water is drawn into the atlas with its arrow already on top for each direction and each of
+ * POWER_LEVELS powers, blended the way WaterTile always blended it, so a water tile is one copy too.
+ * Tiles and entities don't draw themselves: the view picks the sprite for each by its kind or type.
+ *
+ * The original images are read once by load(). Atlases are made from them by get(), which keeps the
+ * last one it made since the tile size rarely changes.
+ */
+public class SpriteAtlas {
+  /** The number of different strengths of current drawn, from no arrow to the strongest. */
+  public static final int POWER_LEVELS = 16;
+
+  private static final CardinalDirection[] DIRECTIONS = CardinalDirection.values();
+  // The max transparency we interpolate between 0 and in order to draw the transparency of the
+  // arrow.
+  private static final float CURRENT_TRANSPARENCY = 0.5f;
+  // The cells of the atlas, the water with an arrow go after these.
+  private static final int GRASS = 0;
+  private static final int WATER = 1;
+  private static final int DUCK = 2;
+  private static final int KOALA = 3;
+  private static final int BREAD = 4;
+  private static final int CURRENTS = 5;
+  // The number of sprites in a row of the atlas.
+  private static final int COLUMNS = 16;
+
+  // The images as they were loaded, full size.
+  private static BufferedImage grass;
+  private static BufferedImage water;
+  private static BufferedImage[] arrows; // By the ordinal of the direction.
+  private static BufferedImage duck;
+  private static BufferedImage koala;
+  private static BufferedImage bread;
+
+  private static SpriteAtlas last; // The atlas get() made last.
+
+  private final GraphicsConfiguration config;
+  private final int tileWidth, tileHeight;
+  private final BufferedImage atlas;
+  private final int[] averages; // The average colour of each cell, for drawing a tile as a pixel.
+
+  /**
+   * A method to read all the images of the game. It needs to be done once before any atlas is made.
+   * @throws IOException If one of the images couldn't be read.
+   */
+  public static synchronized void load() throws IOException {
+    grass = read("/images/GrassTile.png");
+    water = read("/images/WaterTile.png");
+    arrows = new BufferedImage[DIRECTIONS.length];
+    arrows[CardinalDirection.NORTH.ordinal()] = read("/images/an.png");
+    arrows[CardinalDirection.SOUTH.ordinal()] = read("/images/as.png");
+    arrows[CardinalDirection.EAST.ordinal()] = read("/images/ae.png");
+    arrows[CardinalDirection.WEST.ordinal()] = read("/images/aw.png");
+    duck = read("/images/DerricktheDuck.png");
+    koala = read("/images/KareemtheKoala.png");
+    bread = read("/images/BentheBread.png");
+    last = null;
+  }
+
+  private static BufferedImage read(String name) throws IOException {
+    URL url = SpriteAtlas.class.getResource(name);
+    if (url == null) {
+      throw new IOException("Couldn't find " + name);
+    }
+    return ImageIO.read(url);
+  }
+
+  /**
+   * A method to fetch an atlas for a tile size, making it if the last one was for a different size
+   * or screen.
+   * @param config     The graphics configuration of what the sprites will be drawn on, null for a
+   *                   plain image.
+   * @param tileWidth  The width of a tile in pixels.
+   * @param tileHeight The height of a tile in pixels.
+   * @return The atlas.
+   */
+  public static synchronized SpriteAtlas get(GraphicsConfiguration config, int tileWidth,
+                                             int tileHeight) {
+    if (last == null || last.config != config || last.tileWidth != tileWidth
+            || last.tileHeight != tileHeight) {
+      if (grass == null) {
+        throw new IllegalStateException("The sprites haven't been loaded.");
+      }
+      last = new SpriteAtlas(config, tileWidth, tileHeight);
+    }
+    return last;
+  }
+
+  private SpriteAtlas(GraphicsConfiguration config, int tileWidth, int tileHeight) {
+    this.config = config;
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    int cells = CURRENTS + DIRECTIONS.length * POWER_LEVELS;
+    int rows = (cells + COLUMNS - 1) / COLUMNS;
+    if (config == null) {
+      this.atlas = new BufferedImage(COLUMNS * tileWidth, rows * tileHeight,
+              BufferedImage.TYPE_INT_ARGB);
+    } else {
+      this.atlas = config.createCompatibleImage(COLUMNS * tileWidth, rows * tileHeight,
+              Transparency.TRANSLUCENT);
+    }
+
+    Graphics2D g = this.atlas.createGraphics();
+    // Scaled the same way the images were always scaled when drawn, the pixels stay sharp.
+    place(g, GRASS, grass);
+    place(g, WATER, water);
+    place(g, DUCK, duck);
+    place(g, KOALA, koala);
+    place(g, BREAD, bread);
+    for (CardinalDirection current : DIRECTIONS) {
+      for (int level = 0; level < POWER_LEVELS; level++) {
+        int cell = currentCell(current, level);
+        place(g, cell, water);
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+                CURRENT_TRANSPARENCY * level / (POWER_LEVELS - 1)));
+        place(g, cell, arrows[current.ordinal()]);
+        g.setComposite(AlphaComposite.SrcOver);
+      }
+    }
+    g.dispose();
+
+    this.averages = new int[cells];
+    for (int cell = 0; cell < cells; cell++) {
+      this.averages[cell] = average(cell);
+    }
+  }
+
+  private int average(int cell) {
+    int[] pixels = this.atlas.getRGB((cell % COLUMNS) * this.tileWidth,
+            (cell / COLUMNS) * this.tileHeight, this.tileWidth, this.tileHeight, null, 0,
+            this.tileWidth);
+    long red = 0, green = 0, blue = 0;
+    for (int pixel : pixels) {
+      red += (pixel >> 16) & 0xFF;
+      green += (pixel >> 8) & 0xFF;
+      blue += pixel & 0xFF;
+    }
+    return (int) (red / pixels.length) << 16 | (int) (green / pixels.length) << 8
+            | (int) (blue / pixels.length);
+  }
+
+  private static int level(double power) {
+    return (int) Math.round(Math.max(0, Math.min(1, power)) * (POWER_LEVELS - 1));
+  }
+
+  private static int currentCell(CardinalDirection current, int level) {
+    return CURRENTS + current.ordinal() * POWER_LEVELS + level;
+  }
+
+  private void place(Graphics2D g, int cell, BufferedImage image) {
+    g.drawImage(image, (cell % COLUMNS) * this.tileWidth, (cell / COLUMNS) * this.tileHeight,
+            this.tileWidth, this.tileHeight, null);
+  }
+
+  private void draw(Graphics2D g, int cell, int x, int y) {
+    int sourceX = (cell % COLUMNS) * this.tileWidth;
+    int sourceY = (cell / COLUMNS) * this.tileHeight;
+    g.drawImage(this.atlas, x, y, x + this.tileWidth, y + this.tileHeight,
+            sourceX, sourceY, sourceX + this.tileWidth, sourceY + this.tileHeight, null);
+  }
+
+  /**
+   * A method to return the width of the sprites.
+   * @return The width of a tile in pixels.
+   */
+  public int getTileWidth() {
+    return this.tileWidth;
+  }
+
+  /**
+   * A method to return the height of the sprites.
+   * @return The height of a tile in pixels.
+   */
+  public int getTileHeight() {
+    return this.tileHeight;
+  }
+
+  /**
+   * A method to return the colour of grass seen from far away.
+   * @return The average colour of the grass sprite as 0xRRGGBB.
+   */
+  public int getGrassColor() {
+    return this.averages[GRASS];
+  }
+
+  /**
+   * A method to return the colour of water seen from far away.
+   * @param current The direction of the current.
+   * @param power   The power of the current between 0 and 1.
+   * @return The average colour of the water sprite with its arrow as 0xRRGGBB.
+   */
+  public int getWaterColor(CardinalDirection current, double power) {
+    return this.averages[currentCell(current, level(power))];
+  }
+
+  /**
+   * A method to draw a grass tile.
+   * @param g The graphics to draw on.
+   * @param x The x position (in pixels) of the left edge of the tile.
+   * @param y The y position (in pixels) of the top edge of the tile.
+   */
+  public void drawGrass(Graphics2D g, int x, int y) {
+    draw(g, GRASS, x, y);
+  }
+
+  /**
+   * A method to draw a water tile with the arrow of its current.
+   * @param g       The graphics to draw on.
+   * @param x       The x position (in pixels) of the left edge of the tile.
+   * @param y       The y position (in pixels) of the top edge of the tile.
+   * @param current The direction of the current.
+   * @param power   The power of the current between 0 and 1, rounded to one of POWER_LEVELS.
+   */
+  public void drawWater(Graphics2D g, int x, int y, CardinalDirection current, double power) {
+    draw(g, currentCell(current, level(power)), x, y);
+  }
+
+  /**
+   * A method to draw a duck.
+   * @param g The graphics to draw on.
+   * @param x The x position (in pixels) of the left edge of its tile.
+   * @param y The y position (in pixels) of the top edge of its tile.
+   */
+  public void drawDuck(Graphics2D g, int x, int y) {
+    draw(g, DUCK, x, y);
+  }
+
+  /**
+   * A method to draw a koala.
+   * @param g The graphics to draw on.
+   * @param x The x position (in pixels) of the left edge of its tile.
+   * @param y The y position (in pixels) of the top edge of its tile.
+   */
+  public void drawKoala(Graphics2D g, int x, int y) {
+    draw(g, KOALA, x, y);
+  }
+
+  /**
+   * A method to draw a piece of bread.
+   * @param g The graphics to draw on.
+   * @param x The x position (in pixels) of the left edge of its tile.
+   * @param y The y position (in pixels) of the top edge of its tile.
+   */
+  public void drawBread(Graphics2D g, int x, int y) {
+    draw(g, BREAD, x, y);
+  }
+
+  /**
+   * A method to draw the still water a current flows over, without an arrow.
+   * @param g The graphics to draw on.
+   * @param x The x position (in pixels) of the left edge of the tile.
+   * @param y The y position (in pixels) of the top edge of the tile.
+   */
+  public void drawStillWater(Graphics2D g, int x, int y) {
+    draw(g, WATER, x, y);
+  }
+}
@@ -0,0 +1,204 @@
+package game.view;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import game.model.CostChanges;
+import game.model.CostListener;
+import game.model.GameState;
+import game.model.TileGrid;
+
+/**
+ * A TerrainLayer is the part of the board in view drawn into an image, so that frames can copy the
+ * terrain instead of drawing every tile again. Every change to a tile goes through the model's cost
+ * listeners, so the layer listens to them and only draws the tiles that changed again, the next time
+ * update() is called.
+ *
+ * The layer is the size of the view, not of the board, and only tiles in view are ever drawn. When
+ * the view pans the pixels already drawn are scrolled across and only the strip that comes into
+ * view is drawn, so how much work a frame is depends on the view and never on the size of the
+ * board.
+ *
+ * The image is made compatible with the screen it is shown on, so copying from it is as cheap as
+ * Java2D can make it. Tiles are drawn straight from the model's TileGrid with a SpriteAtlas, without
+ * making Tile objects.
+ */
+public class TerrainLayer implements CostListener {
+  private final GameState gamestate;
+  private final TileGrid grid;
+  private final GraphicsConfiguration config;
+  private final int width, height; // The size of the layer in pixels.
+  private final BufferedImage image;
+  private final Color background; // What shows where there is no board.
+  private SpriteAtlas atlas;
+  private int tileSize; // The size of a tile in pixels, zero before anything is drawn.
+  private int originX, originY; // The pixel of the board at the top left of the layer.
+  private final boolean[] dirty; // Has the tile changed since it was last drawn?
+  private int[] dirtyCells; // The packed cell ids of the changed tiles, in the order they changed.
+  private int dirtyCount;
+
+  /**
+   * Create a new, empty TerrainLayer. Nothing is drawn until show() is called.
+   * @param gamestate  The model to draw, which the layer starts listening to.
+   * @param config     The graphics configuration of the screen the layer will be copied to.
+   * @param width      The width of the view in pixels.
+   * @param height     The height of the view in pixels.
+   * @param background The colour to draw where the view goes past the edge of the board.
+   */
+  public TerrainLayer(GameState gamestate, GraphicsConfiguration config, int width, int height,
+                      Color background) {
+    this.gamestate = gamestate;
+    this.grid = gamestate.getGrid();
+    this.config = config;
+    this.width = width;
+    this.height = height;
+    this.background = background;
+    this.image = config.createCompatibleImage(width, height, Transparency.OPAQUE);
+    this.dirty = new boolean[this.grid.getWidth() * this.grid.getHeight()];
+    this.dirtyCells = new int[16];
+    gamestate.addCostListener(this);
+  }
+
+  /**
+   * A method to bring the layer to a view of the board. Moving by less than the size of the layer
+   * at the same tile size only draws the tiles that come into view.
+   * @param tileSize The size of a tile in pixels.
+   * @param originX  The pixel of the board to show at the left edge of the layer.
+   * @param originY  The pixel of the board to show at the top edge of the layer.
+   * @return True if the layer changed, false if it was already showing that view.
+   */
+  public synchronized boolean show(int tileSize, int originX, int originY) {
+    if (tileSize == this.tileSize && originX == this.originX && originY == this.originY) {
+      return false;
+    }
+    Graphics2D g = this.image.createGraphics();
+    int dx = originX - this.originX;
+    int dy = originY - this.originY;
+    if (tileSize == this.tileSize && Math.abs(dx) < this.width && Math.abs(dy) < this.height) {
+      // Scroll what we have and draw the strips that came into view, the corner twice.
+      g.copyArea(Math.max(dx, 0), Math.max(dy, 0), this.width - Math.abs(dx),
+              this.height - Math.abs(dy), -dx, -dy);
+      this.originX = originX;
+      this.originY = originY;
+      if (dx != 0) {
+        draw(g, dx > 0 ? this.width - dx : 0, 0, Math.abs(dx), this.height);
+      }
+      if (dy != 0) {
+        draw(g, 0, dy > 0 ? this.height - dy : 0, this.width, Math.abs(dy));
+      }
+    } else {
+      this.tileSize = tileSize;
+      this.originX = originX;
+      this.originY = originY;
+      this.atlas = SpriteAtlas.get(this.config, tileSize, tileSize);
+      draw(g, 0, 0, this.width, this.height);
+    }
+    g.dispose();
+    return true;
+  }
+
+  // Draws every tile overlapping a rectangle of the layer, and the background around the board.
+  private void draw(Graphics2D g, int x, int y, int width, int height) {
+    g.setClip(x, y, width, height);
+    g.setColor(this.background);
+    g.fillRect(x, y, width, height);
+    int fromColumn = Math.max(0, Math.floorDiv(this.originX + x, this.tileSize));
+    int toColumn = Math.min(this.grid.getWidth() - 1,
+            Math.floorDiv(this.originX + x + width - 1, this.tileSize));
+    int fromRow = Math.max(0, Math.floorDiv(this.originY + y, this.tileSize));
+    int toRow = Math.min(this.grid.getHeight() - 1,
+            Math.floorDiv(this.originY + y + height - 1, this.tileSize));
+    for (int r = fromRow; r <= toRow; r++) {
+      for (int c = fromColumn; c <= toColumn; c++) {
+        drawTile(g, c, r);
+      }
+    }
+    g.setClip(null);
+  }
+
+  private void drawTile(Graphics2D g, int x, int y) {
+    int cell = y * this.grid.getWidth() + x;
+    int left = x * this.tileSize - this.originX;
+    int top = y * this.tileSize - this.originY;
+    if (this.grid.getKind(cell) == TileGrid.GRASS) {
+      this.atlas.drawGrass(g, left, top);
+    } else {
+      this.atlas.drawWater(g, left, top, this.grid.getCurrent(cell), this.grid.getPower(cell));
+    }
+  }
+
+  @Override
+  public synchronized void costsChanged(CostChanges changes) {
+    for (int i = 0; i < changes.size(); i++) {
+      int cell = changes.getCell(i);
+      if (this.dirty[cell]) {
+        continue;
+      }
+      this.dirty[cell] = true;
+      if (this.dirtyCount == this.dirtyCells.length) {
+        int[] grown = new int[this.dirtyCells.length * 2];
+        System.arraycopy(this.dirtyCells, 0, grown, 0, this.dirtyCount);
+        this.dirtyCells = grown;
+      }
+      this.dirtyCells[this.dirtyCount++] = cell;
+    }
+  }
+
+  /**
+   * A method to draw the tiles in view that changed since the last call into the layer again, and
+   * copy each of them on to a frame as well so the frame doesn't need the whole layer copied again.
+   * Tiles out of view are drawn when they come into view anyway.
+   * @param frame The graphics of the frame, in the same pixel positions as the layer.
+   */
+  public synchronized void update(Graphics2D frame) {
+    if (this.dirtyCount == 0) {
+      return;
+    }
+    int gameWidth = this.grid.getWidth();
+    Graphics2D g = this.image.createGraphics();
+    for (int i = 0; i < this.dirtyCount; i++) {
+      int cell = this.dirtyCells[i];
+      this.dirty[cell] = false;
+      if (this.tileSize == 0) {
+        continue;
+      }
+      int left = (cell % gameWidth) * this.tileSize - this.originX;
+      int top = (cell / gameWidth) * this.tileSize - this.originY;
+      if (left < this.width && top < this.height && left + this.tileSize > 0
+              && top + this.tileSize > 0) {
+        drawTile(g, cell % gameWidth, cell / gameWidth);
+        copyTo(frame, left, top, this.tileSize, this.tileSize);
+      }
+    }
+    g.dispose();
+    this.dirtyCount = 0;
+  }
+
+  /**
+   * A method to copy a rectangle of the terrain on to a frame, like where an entity was drawn last
+   * frame.
+   * @param frame  The graphics of the frame, in the same pixel positions as the layer.
+   * @param x      The x position (in pixels) of the left edge of the rectangle.
+   * @param y      The y position (in pixels) of the top edge of the rectangle.
+   * @param width  The width of the rectangle in pixels.
+   * @param height The height of the rectangle in pixels.
+   */
+  public void copyTo(Graphics2D frame, int x, int y, int width, int height) {
+    frame.drawImage(this.image, x, y, x + width, y + height, x, y, x + width, y + height, null);
+  }
+
+  /**
+   * A method to copy the whole terrain on to a frame.
+   * @param frame The graphics of the frame.
+   */
+  public void copyTo(Graphics2D frame) {
+    frame.drawImage(this.image, 0, 0, null);
+  }
+
+  /**
+   * A method to stop listening to the model, for when the layer isn't needed any more.
+   */
+  public void detach() {
+    this.gamestate.removeCostListener(this);
+  }
+}
@@ -1,34 +1,62 @@
 package game.view;
 
 import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.Buffer;
 import java.util.Map;
-import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 
 import game.model.GameState;
-import game.model.entities.Duck;
-import game.model.tiles.Tile;
+import game.model.SimulationSnapshot;
+import game.model.SnapshotPublisher;
 
 
 /**
  * A view is a class dedicated to viewing the game state.
+ *
+ * The view draws on its own render thread, started with start(), as often as the screen wants
+ * frames and not only when the simulation ticks. It never reads the entities themselves, which the
+ * simulation thread is busy changing, but the latest SimulationSnapshot from a SnapshotPublisher,
+ * and slides every entity from where it was to where it is over the time of a tick.
  */
 public class View extends JFrame {
   private static final String WINDOW_TITLE = "KoalaQuacker";
   private static final int WINDOW_WIDTH = 800;
   private static final int WINDOW_HEIGHT = 800;
   private static Color BG_COLOR = Color.BLACK;
+  // How entities are drawn when zoomed out too far for their sprites.
+  private static final Color DUCK_COLOR = Color.YELLOW;
+  private static final int MINIMUM_DOT_SIZE = 2;
+  // How far the arrow keys pan in pixels.
+  private static final int PAN_PIXELS = 40;
+  // Where an entity's status is written, from the top left of its tile.
+  private static final int STATUS_OFFSET = 10;
 
   private SpecialCanvas canvas;
-  private BufferedImage buffer;
+  private GraphicsConfiguration config; // The screen the canvas is on.
+  private BufferedImage buffer; // The frame, kept from one step to the next.
   private GameState gamestate;
+  private SnapshotPublisher publisher; // Where the positions of the entities come from.
+  private Thread renderThread;
+  private volatile boolean rendering; // Should the render thread keep going?
+  private Camera camera;
+  private TerrainLayer terrain; // What the view shows zoomed in.
+  private Minimap minimap; // What the view shows zoomed out.
+  private boolean wasDetailed; // Was the last frame zoomed in?
+  // Where each entity was drawn in the last frame, in pixels, so we can put the terrain back there.
+  private int[] drawnX, drawnY;
+  private int drawnCount;
+  private int[] visible; // The ids of the entities in view, reused every frame.
 
   /**
    * A SpecialCanvas is a component that we have given special graphics behavior to.
@@ -47,8 +75,11 @@ public class View extends JFrame {
      * system with what we are doing here -- creating a buffer strategy.
      */
     public void initialize() {
+      // We draw on our own thread whenever we like, so we don't want Swing's paint calls too.
+      this.setIgnoreRepaint(true);
+      // Three buffers so the next frame can be drawn while one waits to be shown.
       if (this.getBufferStrategy() == null)
-        createBufferStrategy(2);
+        createBufferStrategy(3);
     }
 
     /**
@@ -60,13 +91,20 @@ public class View extends JFrame {
      */
     public void render(BufferedImage buffer) {
       BufferStrategy bs = this.getBufferStrategy();
-      // When we initialized we made sure this wasn't null.
-      Graphics g = bs.getDrawGraphics();
-      g.drawImage(buffer, 0, 0, getWidth(), getHeight(), null);
-      // We draw from a BufferedImage for the benefit of performance and avoiding screen blips.
-      // Copying from one memory blob to another I've heard is pretty cheap.
-      g.dispose();
-      bs.show();
+      // When we initialized we made sure this wasn't null. The buffers can be lost, say when the
+      // window is minimized, so we draw again until a frame makes it.
+      do {
+        do {
+          Graphics g = bs.getDrawGraphics();
+          g.drawImage(buffer, 0, 0, getWidth(), getHeight(), null);
+          // We draw from a BufferedImage for the benefit of performance and avoiding screen blips.
+          // Copying from one memory blob to another I've heard is pretty cheap.
+          g.dispose();
+        } while (bs.contentsRestored());
+        bs.show();
+      } while (bs.contentsLost());
+      // Some systems queue up drawing, this makes sure the frame goes out now.
+      Toolkit.getDefaultToolkit().sync();
     }
   }
 
@@ -86,45 +124,171 @@ public class View extends JFrame {
   /**
    * A method to step the view forward one total frame. This will call the internal method to update
    * animations in the foreground since we can assume that type of thing is happening.
+   *
+   * Only what the camera can see is drawn. Zoomed in, the frame is kept from the last step, so if
+   * the camera hasn't moved only what could have changed is drawn: the terrain goes back where
+   * entities were, tiles that changed are copied from the terrain layer, and then the entities in
+   * view are drawn again. Zoomed out, the minimap is scaled across the frame with the entities as
+   * dots. None of that depends on the size of the map.
+   *
+   * Entities are drawn from the latest snapshot, partway between their last two tiles by how much
+   * of the tick has passed since it was taken.
    * @param dt  The delta time since the last update in milliseconds.
    */
   public void step(long dt) {
-    // We create a new image that is the composition of our foreground and background.
-    BufferedImage image = new BufferedImage(WINDOW_WIDTH, WINDOW_HEIGHT, BufferedImage.TYPE_INT_RGB);
-    Graphics2D g = image.createGraphics();
-    // First we throw down the background.
+    Graphics2D g = this.buffer.createGraphics();
     View.graphicsSettings(g);
-    List<List<Tile>> tiles = this.gamestate.getGameTiles();
-    int gameHeight = this.gamestate.getGameHeight();
-    int gameWidth = this.gamestate.getGameWidth();
-    int tileHeight = WINDOW_HEIGHT / gameHeight;
-    int tileWidth = WINDOW_WIDTH / gameWidth;
-    for (int r = 0; r < gameHeight; r++) {
-      for (int c = 0; c < gameWidth; c++) {
-        g.setClip(c * tileHeight, r * tileHeight,
-                tileWidth, tileHeight);
-        tiles.get(r).get(c).draw(g);
-      }
+    boolean detailed;
+    int tileSize, originX, originY;
+    double left, top, scale;
+    synchronized (this.camera) {
+      detailed = this.camera.isDetailed();
+      tileSize = this.camera.getTileSize();
+      originX = this.camera.getOriginX();
+      originY = this.camera.getOriginY();
+      left = this.camera.getLeft();
+      top = this.camera.getTop();
+      scale = this.camera.getScale();
     }
-    // Now we add the foreground elements.
-    for (Duck duck: this.gamestate.ducks) {
-      g.setClip(duck.x * tileWidth, duck.y * tileHeight, tileWidth, tileHeight);
-      duck.draw(g);
+    SimulationSnapshot snapshot = this.publisher.getLatest();
+    double alpha = this.publisher.getAlpha(snapshot, System.nanoTime());
+    // Only the entities in view are looked at, the snapshot's buckets find them. Entities slide
+    // in from the tile before, so we look a tile further.
+    int minX = (int) Math.floor(left) - 1;
+    int minY = (int) Math.floor(top) - 1;
+    int maxX = (int) (left + WINDOW_WIDTH / scale) + 1;
+    int maxY = (int) (top + WINDOW_HEIGHT / scale) + 1;
+    int visibleCount = snapshot.inRange(minX, minY, maxX, maxY, this.visible);
+    if (visibleCount > this.visible.length) {
+      this.visible = new int[visibleCount * 2];
+      visibleCount = snapshot.inRange(minX, minY, maxX, maxY, this.visible);
     }
-    g.setClip(0, 0, WINDOW_WIDTH, WINDOW_HEIGHT);
+
+    if (detailed) {
+      if (this.terrain.show(tileSize, originX, originY) || !this.wasDetailed) {
+        // The camera moved, everything in view is new.
+        this.terrain.copyTo(g);
+      } else {
+        // First we put the background back where the foreground was.
+        for (int i = 0; i < this.drawnCount; i++) {
+          this.terrain.copyTo(g, this.drawnX[i], this.drawnY[i], tileSize, tileSize);
+        }
+      }
+      this.terrain.update(g);
+      // Now we add the foreground elements.
+      if (this.drawnX.length < this.visible.length) {
+        this.drawnX = new int[this.visible.length];
+        this.drawnY = new int[this.visible.length];
+      }
+      this.drawnCount = 0;
+      // The same atlas the terrain layer draws with, so it isn't made again.
+      SpriteAtlas atlas = SpriteAtlas.get(this.config, tileSize, tileSize);
+      g.setColor(Color.BLACK);
+      for (int i = 0; i < visibleCount; i++) {
+        int id = this.visible[i];
+        int x = (int) Math.round(snapshot.getX(id, alpha) * tileSize) - originX;
+        int y = (int) Math.round(snapshot.getY(id, alpha) * tileSize) - originY;
+        g.setClip(x, y, tileSize, tileSize);
+        String status = snapshot.getStatus(id);
+        if (status != null) {
+          g.drawString(status, x + STATUS_OFFSET, y + STATUS_OFFSET);
+        }
+        switch (snapshot.getType(id)) {
+          case DUCK:
+            atlas.drawDuck(g, x, y);
+            break;
+          case KOALA:
+            atlas.drawKoala(g, x, y);
+            break;
+        }
+        this.drawnX[this.drawnCount] = x;
+        this.drawnY[this.drawnCount] = y;
+        this.drawnCount++;
+      }
+      g.setClip(0, 0, WINDOW_WIDTH, WINDOW_HEIGHT);
+    } else {
+      g.setColor(BG_COLOR);
+      g.fillRect(0, 0, WINDOW_WIDTH, WINDOW_HEIGHT);
+      this.minimap.draw(g, left, top, scale);
+      // Sprites would be too small to see, but we still want to find the ducks.
+      int dot = (int) Math.max(MINIMUM_DOT_SIZE, Math.ceil(scale));
+      g.setColor(DUCK_COLOR);
+      for (int i = 0; i < visibleCount; i++) {
+        int id = this.visible[i];
+        g.fillRect((int) ((snapshot.getX(id, alpha) - left) * scale),
+                (int) ((snapshot.getY(id, alpha) - top) * scale), dot, dot);
+      }
+      this.drawnCount = 0;
+    }
+    this.wasDetailed = detailed;
 
     // Then we have to dispose of the graphics object since we are done with it. I think this GC's
     // it early or something.
     g.dispose();
     // Kind of has to be the final line in our step method. We take the moment to render our work.
-    this.canvas.render(image);
+    this.canvas.render(this.buffer);
   }
 
   /**
-   * Create a new view capable of viewing pieces of the game model.
+   * A method to start drawing frames on the render thread, as close to the given rate as we can.
+   * Frames don't wait for the simulation and the simulation doesn't wait for frames.
+   * @param framesPerSecond How many frames to draw a second.
+   */
+  public synchronized void start(final int framesPerSecond) {
+    if (this.renderThread != null) {
+      return;
+    }
+    this.rendering = true;
+    this.renderThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        long frameNanos = 1000000000L / framesPerSecond;
+        long last = System.nanoTime();
+        long next = last;
+        while (rendering) {
+          long now = System.nanoTime();
+          step((now - last) / 1000000L);
+          last = now;
+          next += frameNanos;
+          long wait = next - System.nanoTime();
+          if (wait > 0) {
+            try {
+              Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+            } catch (InterruptedException e) {
+              return;
+            }
+          } else {
+            // A slow frame, don't rush the ones after it to catch up.
+            next = System.nanoTime();
+          }
+        }
+      }
+    }, "render");
+    // Closing the window ends the game, the render thread shouldn't keep it running.
+    this.renderThread.setDaemon(true);
+    this.renderThread.start();
+  }
+
+  /**
+   * A method to stop the render thread, waiting for the frame it is drawing to finish.
+   * @throws InterruptedException If the calling thread is interrupted while waiting.
+   */
+  public synchronized void stop() throws InterruptedException {
+    if (this.renderThread == null) {
+      return;
+    }
+    this.rendering = false;
+    this.renderThread.join();
+    this.renderThread = null;
+  }
+
+  /**
+   * Create a new view capable of viewing pieces of the game model. Nothing is drawn until start()
+   * is called.
    * @param gamestate Pass off the model to the view to reflect it.
+   * @param publisher Where the snapshots of the entities to draw are published.
    */
-  public View(GameState gamestate) {
+  public View(GameState gamestate, SnapshotPublisher publisher) {
     // Let's first handle some window settings.
     super("KoalaQuacker");
     this.setVisible(true);
@@ -136,7 +300,85 @@ public class View extends JFrame {
     this.add(this.canvas);
     this.canvas.initialize();
     this.pack();
-    this.buffer = new BufferedImage(WINDOW_WIDTH, WINDOW_HEIGHT, BufferedImage.TYPE_INT_RGB);
     this.gamestate = gamestate;
+    this.publisher = publisher;
+    this.camera = new Camera(gamestate.getGameWidth(), gamestate.getGameHeight(), WINDOW_WIDTH,
+            WINDOW_HEIGHT);
+    GraphicsConfiguration config = this.canvas.getGraphicsConfiguration();
+    this.config = config;
+    this.terrain = new TerrainLayer(gamestate, config, WINDOW_WIDTH, WINDOW_HEIGHT, BG_COLOR);
+    this.minimap = new Minimap(gamestate, config,
+            SpriteAtlas.get(config, (int) Camera.DETAIL_SCALE, (int) Camera.DETAIL_SCALE));
+    this.buffer = config.createCompatibleImage(WINDOW_WIDTH, WINDOW_HEIGHT, Transparency.OPAQUE);
+    this.drawnX = new int[0];
+    this.drawnY = new int[0];
+    this.visible = new int[16];
+    listen();
+  }
+
+  /**
+   * A method to move the camera with the mouse and keyboard: dragging or the arrow keys pan, and
+   * the mouse wheel or plus and minus zoom.
+   */
+  private void listen() {
+    MouseAdapter mouse = new MouseAdapter() {
+      private int lastX, lastY; // Where the mouse was when we last panned.
+
+      @Override
+      public void mousePressed(MouseEvent e) {
+        this.lastX = e.getX();
+        this.lastY = e.getY();
+        canvas.requestFocus();
+      }
+
+      @Override
+      public void mouseDragged(MouseEvent e) {
+        camera.pan(this.lastX - e.getX(), this.lastY - e.getY());
+        this.lastX = e.getX();
+        this.lastY = e.getY();
+      }
+
+      @Override
+      public void mouseWheelMoved(MouseWheelEvent e) {
+        camera.zoom(e.getWheelRotation(), e.getX(), e.getY());
+      }
+    };
+    this.canvas.addMouseListener(mouse);
+    this.canvas.addMouseMotionListener(mouse);
+    this.canvas.addMouseWheelListener(mouse);
+    this.canvas.addKeyListener(new KeyAdapter() {
+      @Override
+      public void keyPressed(KeyEvent e) {
+        switch (e.getKeyCode()) {
+          case KeyEvent.VK_LEFT:
+            camera.pan(-PAN_PIXELS, 0);
+            break;
+          case KeyEvent.VK_RIGHT:
+            camera.pan(PAN_PIXELS, 0);
+            break;
+          case KeyEvent.VK_UP:
+            camera.pan(0, -PAN_PIXELS);
+            break;
+          case KeyEvent.VK_DOWN:
+            camera.pan(0, PAN_PIXELS);
+            break;
+          case KeyEvent.VK_EQUALS:
+          case KeyEvent.VK_PLUS:
+            camera.zoom(-1, WINDOW_WIDTH / 2, WINDOW_HEIGHT / 2);
+            break;
+          case KeyEvent.VK_MINUS:
+            camera.zoom(1, WINDOW_WIDTH / 2, WINDOW_HEIGHT / 2);
+            break;
+        }
+      }
+    });
+  }
+
+  /**
+   * A method to fetch the camera, to move the view from code.
+   * @return The Camera of the view.
+   */
+  public Camera getCamera() {
+    return this.camera;
   }
 }
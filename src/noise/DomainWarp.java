@@ -0,0 +1,45 @@
+package noise;
+
+/**
+ * A DomainWarp layer pushes the points it is asked about around with two other layers before
+ * looking them up in its source, which bends straight features into swirls. The warp layers are
+ * evaluated a row at a time, the source has to be looked up point by point since the warped points
+ * aren't on a grid any more.
+ */
+public class DomainWarp extends NoiseLayer {
+  private final NoiseLayer source;
+  private final NoiseLayer warpX, warpY;
+  private final double strength; // How far in noise space a warp of 1 moves a point.
+
+  /**
+   * Create a new DomainWarp layer.
+   * @param source   The layer to look the warped points up in.
+   * @param warpX    The layer saying how far to move points along x.
+   * @param warpY    The layer saying how far to move points along y.
+   * @param strength How far in noise space a warp value of 1 moves a point.
+   */
+  public DomainWarp(NoiseLayer source, NoiseLayer warpX, NoiseLayer warpY, double strength) {
+    this.source = source;
+    this.warpX = warpX;
+    this.warpY = warpY;
+    this.strength = strength;
+  }
+
+  @Override
+  public double eval(double x, double y) {
+    return this.source.eval(x + this.strength * this.warpX.eval(x, y),
+            y + this.strength * this.warpY.eval(x, y));
+  }
+
+  @Override
+  public void evalRow(double[] xs, double y, double[] into, int offset, int count) {
+    double[] dx = new double[count];
+    double[] dy = new double[count];
+    this.warpX.evalRow(xs, y, dx, 0, count);
+    this.warpY.evalRow(xs, y, dy, 0, count);
+    for (int i = 0; i < count; i++) {
+      into[offset + i] = this.source.eval(xs[i] + this.strength * dx[i],
+              y + this.strength * dy[i]);
+    }
+  }
+}
@@ -0,0 +1,810 @@
+package noise;
+
+/**
+ * A FloatSimplexNoise is OpenSimplexNoise worked out in floats instead of doubles, for noise that
+ * is stored in bulk, where half the bytes a value matters more than the last digits. It uses the
+ * same PermutationTable as an OpenSimplexNoise of the same seed, so it is the same noise, only
+ * rounded differently along the way. Working in floats isn't any faster by itself on the JVM, where
+ * scalar float and double arithmetic cost the same and the kernel waits on its table lookups.
+ *
+ * The noise is between -1 and 1. Against the double version at the same point the error is about
+ * 2e-6 for inputs near zero, but positions lose precision as they get bigger, so it grows with
+ * them: about 2e-4 at a thousand and 0.2 at a million, in 2D and 3D alike. errorBound() gives a
+ * bound that covers this, also when the inputs were rounded from doubles. Rounding can still move a
+ * value across a threshold, like the one between land and water, so isAbove() only trusts the float
+ * value when it is further than the bound from the threshold and asks the double noise otherwise.
+ * That classifies every point exactly like the double noise, which FloatSimplexNoiseTest checks on
+ * a set of reference seeds along with the bounds. There is no fixed-point version: it would do the
+ * same table lookups for less precision.
+ */
+public class FloatSimplexNoise {
+
+  private static final float STRETCH_CONSTANT_2D = -0.211324865405187f;    //(1/Math.sqrt(2+1)-1)/2;
+  private static final float SQUISH_CONSTANT_2D = 0.366025403784439f;      //(Math.sqrt(2+1)-1)/2;
+  private static final float STRETCH_CONSTANT_3D = -1.0f / 6;              //(1/Math.sqrt(3+1)-1)/3;
+  private static final float SQUISH_CONSTANT_3D = 1.0f / 3;                //(Math.sqrt(3+1)-1)/3;
+
+  private static final float NORM_CONSTANT_2D = 47;
+  private static final float NORM_CONSTANT_3D = 103;
+
+  // The rounding error of the sums themselves, measured at about 2e-6 and doubled.
+  private static final float ERROR_NEAR_ZERO = 4e-6f;
+
+  private final short[] perm;
+  private final short[] permGradIndex3D;
+
+  /**
+   * Create a new FloatSimplexNoise from a permutation table, the same noise as an OpenSimplexNoise
+   * made from that table.
+   * @param table The table to share.
+   */
+  public FloatSimplexNoise(PermutationTable table) {
+    this.perm = table.getPerm();
+    this.permGradIndex3D = table.getPermGradIndex3D();
+  }
+
+  /**
+   * Create a new FloatSimplexNoise from a seed, the same noise as new OpenSimplexNoise(seed).
+   * @param seed The seed.
+   */
+  public FloatSimplexNoise(long seed) {
+    this(PermutationTable.forSeed(seed));
+  }
+
+  /**
+   * A method to return how far the float noise can be from the double noise near a 2D point.
+   * @param x The first coordinate, possibly rounded from a double.
+   * @param y The second coordinate, possibly rounded from a double.
+   * @return A bound on |eval(x, y) - the double eval at the unrounded point|.
+   */
+  public static float errorBound(float x, float y) {
+    return 8 * Math.ulp(Math.max(Math.abs(x), Math.abs(y))) + ERROR_NEAR_ZERO;
+  }
+
+  /**
+   * A method to return how far the float noise can be from the double noise near a 3D point.
+   * @param x The first coordinate, possibly rounded from a double.
+   * @param y The second coordinate, possibly rounded from a double.
+   * @param z The third coordinate, possibly rounded from a double.
+   * @return A bound on |eval(x, y, z) - the double eval at the unrounded point|.
+   */
+  public static float errorBound(float x, float y, float z) {
+    return 8 * Math.ulp(Math.max(Math.abs(x), Math.max(Math.abs(y), Math.abs(z))))
+            + ERROR_NEAR_ZERO;
+  }
+
+  /**
+   * A method to tell if the 2D noise at a point is above a threshold, always with the same answer
+   * as the double noise. The float value decides unless it is within errorBound() of the
+   * threshold.
+   * @param exact     The double noise of the same table, asked when the float value is too close.
+   * @param x         The first coordinate.
+   * @param y         The second coordinate.
+   * @param threshold The value to compare with.
+   * @return True if exact.eval(x, y) > threshold.
+   */
+  public boolean isAbove(OpenSimplexNoise exact, double x, double y, double threshold) {
+    float value = eval((float) x, (float) y);
+    float bound = errorBound((float) x, (float) y);
+    if (Math.abs(value - threshold) > bound) {
+      return value > threshold;
+    }
+    return exact.eval(x, y) > threshold;
+  }
+
+  /**
+   * A method to tell if the 3D noise at a point is above a threshold, always with the same answer
+   * as the double noise. The float value decides unless it is within errorBound() of the
+   * threshold.
+   * @param exact     The double noise of the same table, asked when the float value is too close.
+   * @param x         The first coordinate.
+   * @param y         The second coordinate.
+   * @param z         The third coordinate.
+   * @param threshold The value to compare with.
+   * @return True if exact.eval(x, y, z) > threshold.
+   */
+  public boolean isAbove(OpenSimplexNoise exact, double x, double y, double z, double threshold) {
+    float value = eval((float) x, (float) y, (float) z);
+    float bound = errorBound((float) x, (float) y, (float) z);
+    if (Math.abs(value - threshold) > bound) {
+      return value > threshold;
+    }
+    return exact.eval(x, y, z) > threshold;
+  }
+
+  //2D OpenSimplex Noise.
+  public float eval(float x, float y) {
+
+    //Place input coordinates onto grid.
+    float stretchOffset = (x + y) * STRETCH_CONSTANT_2D;
+    float xs = x + stretchOffset;
+    float ys = y + stretchOffset;
+
+    //Floor to get grid coordinates of rhombus (stretched square) super-cell origin.
+    int xsb = fastFloor(xs);
+    int ysb = fastFloor(ys);
+
+    //Skew out to get actual coordinates of rhombus origin. We'll need these later.
+    float squishOffset = (xsb + ysb) * SQUISH_CONSTANT_2D;
+    float xb = xsb + squishOffset;
+    float yb = ysb + squishOffset;
+
+    //Compute grid coordinates relative to rhombus origin.
+    float xins = xs - xsb;
+    float yins = ys - ysb;
+
+    //Sum those together to get a value that determines which region we're in.
+    float inSum = xins + yins;
+
+    //Positions relative to origin point.
+    float dx0 = x - xb;
+    float dy0 = y - yb;
+
+    //We'll be defining these inside the next block and using them afterwards.
+    float dx_ext, dy_ext;
+    int xsv_ext, ysv_ext;
+
+    float value = 0;
+
+    //Contribution (1,0)
+    float dx1 = dx0 - 1 - SQUISH_CONSTANT_2D;
+    float dy1 = dy0 - 0 - SQUISH_CONSTANT_2D;
+    float attn1 = 2 - dx1 * dx1 - dy1 * dy1;
+    if (attn1 > 0) {
+      attn1 *= attn1;
+      value += attn1 * attn1 * extrapolate(xsb + 1, ysb + 0, dx1, dy1);
+    }
+
+    //Contribution (0,1)
+    float dx2 = dx0 - 0 - SQUISH_CONSTANT_2D;
+    float dy2 = dy0 - 1 - SQUISH_CONSTANT_2D;
+    float attn2 = 2 - dx2 * dx2 - dy2 * dy2;
+    if (attn2 > 0) {
+      attn2 *= attn2;
+      value += attn2 * attn2 * extrapolate(xsb + 0, ysb + 1, dx2, dy2);
+    }
+
+    if (inSum <= 1) { //We're inside the triangle (2-Simplex) at (0,0)
+      float zins = 1 - inSum;
+      if (zins > xins || zins > yins) { //(0,0) is one of the closest two triangular vertices
+        if (xins > yins) {
+          xsv_ext = xsb + 1;
+          ysv_ext = ysb - 1;
+          dx_ext = dx0 - 1;
+          dy_ext = dy0 + 1;
+        } else {
+          xsv_ext = xsb - 1;
+          ysv_ext = ysb + 1;
+          dx_ext = dx0 + 1;
+          dy_ext = dy0 - 1;
+        }
+      } else { //(1,0) and (0,1) are the closest two vertices.
+        xsv_ext = xsb + 1;
+        ysv_ext = ysb + 1;
+        dx_ext = dx0 - 1 - 2 * SQUISH_CONSTANT_2D;
+        dy_ext = dy0 - 1 - 2 * SQUISH_CONSTANT_2D;
+      }
+    } else { //We're inside the triangle (2-Simplex) at (1,1)
+      float zins = 2 - inSum;
+      if (zins < xins || zins < yins) { //(0,0) is one of the closest two triangular vertices
+        if (xins > yins) {
+          xsv_ext = xsb + 2;
+          ysv_ext = ysb + 0;
+          dx_ext = dx0 - 2 - 2 * SQUISH_CONSTANT_2D;
+          dy_ext = dy0 + 0 - 2 * SQUISH_CONSTANT_2D;
+        } else {
+          xsv_ext = xsb + 0;
+          ysv_ext = ysb + 2;
+          dx_ext = dx0 + 0 - 2 * SQUISH_CONSTANT_2D;
+          dy_ext = dy0 - 2 - 2 * SQUISH_CONSTANT_2D;
+        }
+      } else { //(1,0) and (0,1) are the closest two vertices.
+        dx_ext = dx0;
+        dy_ext = dy0;
+        xsv_ext = xsb;
+        ysv_ext = ysb;
+      }
+      xsb += 1;
+      ysb += 1;
+      dx0 = dx0 - 1 - 2 * SQUISH_CONSTANT_2D;
+      dy0 = dy0 - 1 - 2 * SQUISH_CONSTANT_2D;
+    }
+
+    //Contribution (0,0) or (1,1)
+    float attn0 = 2 - dx0 * dx0 - dy0 * dy0;
+    if (attn0 > 0) {
+      attn0 *= attn0;
+      value += attn0 * attn0 * extrapolate(xsb, ysb, dx0, dy0);
+    }
+
+    //Extra Vertex
+    float attn_ext = 2 - dx_ext * dx_ext - dy_ext * dy_ext;
+    if (attn_ext > 0) {
+      attn_ext *= attn_ext;
+      value += attn_ext * attn_ext * extrapolate(xsv_ext, ysv_ext, dx_ext, dy_ext);
+    }
+
+    return value / NORM_CONSTANT_2D;
+  }
+
+  //3D OpenSimplex Noise.
+  public float eval(float x, float y, float z) {
+
+    //Place input coordinates on simplectic honeycomb.
+    float stretchOffset = (x + y + z) * STRETCH_CONSTANT_3D;
+    float xs = x + stretchOffset;
+    float ys = y + stretchOffset;
+    float zs = z + stretchOffset;
+
+    //Floor to get simplectic honeycomb coordinates of rhombohedron (stretched cube) super-cell origin.
+    int xsb = fastFloor(xs);
+    int ysb = fastFloor(ys);
+    int zsb = fastFloor(zs);
+
+    //Skew out to get actual coordinates of rhombohedron origin. We'll need these later.
+    float squishOffset = (xsb + ysb + zsb) * SQUISH_CONSTANT_3D;
+    float xb = xsb + squishOffset;
+    float yb = ysb + squishOffset;
+    float zb = zsb + squishOffset;
+
+    //Compute simplectic honeycomb coordinates relative to rhombohedral origin.
+    float xins = xs - xsb;
+    float yins = ys - ysb;
+    float zins = zs - zsb;
+
+    //Sum those together to get a value that determines which region we're in.
+    float inSum = xins + yins + zins;
+
+    //Positions relative to origin point.
+    float dx0 = x - xb;
+    float dy0 = y - yb;
+    float dz0 = z - zb;
+
+    //We'll be defining these inside the next block and using them afterwards.
+    float dx_ext0, dy_ext0, dz_ext0;
+    float dx_ext1, dy_ext1, dz_ext1;
+    int xsv_ext0, ysv_ext0, zsv_ext0;
+    int xsv_ext1, ysv_ext1, zsv_ext1;
+
+    float value = 0;
+    if (inSum <= 1) { //We're inside the tetrahedron (3-Simplex) at (0,0,0)
+
+      //Determine which two of (0,0,1), (0,1,0), (1,0,0) are closest.
+      byte aPoint = 0x01;
+      float aScore = xins;
+      byte bPoint = 0x02;
+      float bScore = yins;
+      if (aScore >= bScore && zins > bScore) {
+        bScore = zins;
+        bPoint = 0x04;
+      } else if (aScore < bScore && zins > aScore) {
+        aScore = zins;
+        aPoint = 0x04;
+      }
+
+      //Now we determine the two lattice points not part of the tetrahedron that may contribute.
+      //This depends on the closest two tetrahedral vertices, including (0,0,0)
+      float wins = 1 - inSum;
+      if (wins > aScore || wins > bScore) { //(0,0,0) is one of the closest two tetrahedral vertices.
+        byte c = (bScore > aScore ? bPoint : aPoint); //Our other closest vertex is the closest out of a and b.
+
+        if ((c & 0x01) == 0) {
+          xsv_ext0 = xsb - 1;
+          xsv_ext1 = xsb;
+          dx_ext0 = dx0 + 1;
+          dx_ext1 = dx0;
+        } else {
+          xsv_ext0 = xsv_ext1 = xsb + 1;
+          dx_ext0 = dx_ext1 = dx0 - 1;
+        }
+
+        if ((c & 0x02) == 0) {
+          ysv_ext0 = ysv_ext1 = ysb;
+          dy_ext0 = dy_ext1 = dy0;
+          if ((c & 0x01) == 0) {
+            ysv_ext1 -= 1;
+            dy_ext1 += 1;
+          } else {
+            ysv_ext0 -= 1;
+            dy_ext0 += 1;
+          }
+        } else {
+          ysv_ext0 = ysv_ext1 = ysb + 1;
+          dy_ext0 = dy_ext1 = dy0 - 1;
+        }
+
+        if ((c & 0x04) == 0) {
+          zsv_ext0 = zsb;
+          zsv_ext1 = zsb - 1;
+          dz_ext0 = dz0;
+          dz_ext1 = dz0 + 1;
+        } else {
+          zsv_ext0 = zsv_ext1 = zsb + 1;
+          dz_ext0 = dz_ext1 = dz0 - 1;
+        }
+      } else { //(0,0,0) is not one of the closest two tetrahedral vertices.
+        byte c = (byte)(aPoint | bPoint); //Our two extra vertices are determined by the closest two.
+
+        if ((c & 0x01) == 0) {
+          xsv_ext0 = xsb;
+          xsv_ext1 = xsb - 1;
+          dx_ext0 = dx0 - 2 * SQUISH_CONSTANT_3D;
+          dx_ext1 = dx0 + 1 - SQUISH_CONSTANT_3D;
+        } else {
+          xsv_ext0 = xsv_ext1 = xsb + 1;
+          dx_ext0 = dx0 - 1 - 2 * SQUISH_CONSTANT_3D;
+          dx_ext1 = dx0 - 1 - SQUISH_CONSTANT_3D;
+        }
+
+        if ((c & 0x02) == 0) {
+          ysv_ext0 = ysb;
+          ysv_ext1 = ysb - 1;
+          dy_ext0 = dy0 - 2 * SQUISH_CONSTANT_3D;
+          dy_ext1 = dy0 + 1 - SQUISH_CONSTANT_3D;
+        } else {
+          ysv_ext0 = ysv_ext1 = ysb + 1;
+          dy_ext0 = dy0 - 1 - 2 * SQUISH_CONSTANT_3D;
+          dy_ext1 = dy0 - 1 - SQUISH_CONSTANT_3D;
+        }
+
+        if ((c & 0x04) == 0) {
+          zsv_ext0 = zsb;
+          zsv_ext1 = zsb - 1;
+          dz_ext0 = dz0 - 2 * SQUISH_CONSTANT_3D;
+          dz_ext1 = dz0 + 1 - SQUISH_CONSTANT_3D;
+        } else {
+          zsv_ext0 = zsv_ext1 = zsb + 1;
+          dz_ext0 = dz0 - 1 - 2 * SQUISH_CONSTANT_3D;
+          dz_ext1 = dz0 - 1 - SQUISH_CONSTANT_3D;
+        }
+      }
+
+      //Contribution (0,0,0)
+      float attn0 = 2 - dx0 * dx0 - dy0 * dy0 - dz0 * dz0;
+      if (attn0 > 0) {
+        attn0 *= attn0;
+        value += attn0 * attn0 * extrapolate(xsb + 0, ysb + 0, zsb + 0, dx0, dy0, dz0);
+      }
+
+      //Contribution (1,0,0)
+      float dx1 = dx0 - 1 - SQUISH_CONSTANT_3D;
+      float dy1 = dy0 - 0 - SQUISH_CONSTANT_3D;
+      float dz1 = dz0 - 0 - SQUISH_CONSTANT_3D;
+      float attn1 = 2 - dx1 * dx1 - dy1 * dy1 - dz1 * dz1;
+      if (attn1 > 0) {
+        attn1 *= attn1;
+        value += attn1 * attn1 * extrapolate(xsb + 1, ysb + 0, zsb + 0, dx1, dy1, dz1);
+      }
+
+      //Contribution (0,1,0)
+      float dx2 = dx0 - 0 - SQUISH_CONSTANT_3D;
+      float dy2 = dy0 - 1 - SQUISH_CONSTANT_3D;
+      float dz2 = dz1;
+      float attn2 = 2 - dx2 * dx2 - dy2 * dy2 - dz2 * dz2;
+      if (attn2 > 0) {
+        attn2 *= attn2;
+        value += attn2 * attn2 * extrapolate(xsb + 0, ysb + 1, zsb + 0, dx2, dy2, dz2);
+      }
+
+      //Contribution (0,0,1)
+      float dx3 = dx2;
+      float dy3 = dy1;
+      float dz3 = dz0 - 1 - SQUISH_CONSTANT_3D;
+      float attn3 = 2 - dx3 * dx3 - dy3 * dy3 - dz3 * dz3;
+      if (attn3 > 0) {
+        attn3 *= attn3;
+        value += attn3 * attn3 * extrapolate(xsb + 0, ysb + 0, zsb + 1, dx3, dy3, dz3);
+      }
+    } else if (inSum >= 2) { //We're inside the tetrahedron (3-Simplex) at (1,1,1)
+
+      //Determine which two tetrahedral vertices are the closest, out of (1,1,0), (1,0,1), (0,1,1) but not (1,1,1).
+      byte aPoint = 0x06;
+      float aScore = xins;
+      byte bPoint = 0x05;
+      float bScore = yins;
+      if (aScore <= bScore && zins < bScore) {
+        bScore = zins;
+        bPoint = 0x03;
+      } else if (aScore > bScore && zins < aScore) {
+        aScore = zins;
+        aPoint = 0x03;
+      }
+
+      //Now we determine the two lattice points not part of the tetrahedron that may contribute.
+      //This depends on the closest two tetrahedral vertices, including (1,1,1)
+      float wins = 3 - inSum;
+      if (wins < aScore || wins < bScore) { //(1,1,1) is one of the closest two tetrahedral vertices.
+        byte c = (bScore < aScore ? bPoint : aPoint); //Our other closest vertex is the closest out of a and b.
+
+        if ((c & 0x01) != 0) {
+          xsv_ext0 = xsb + 2;
+          xsv_ext1 = xsb + 1;
+          dx_ext0 = dx0 - 2 - 3 * SQUISH_CONSTANT_3D;
+          dx_ext1 = dx0 - 1 - 3 * SQUISH_CONSTANT_3D;
+        } else {
+          xsv_ext0 = xsv_ext1 = xsb;
+          dx_ext0 = dx_ext1 = dx0 - 3 * SQUISH_CONSTANT_3D;
+        }
+
+        if ((c & 0x02) != 0) {
+          ysv_ext0 = ysv_ext1 = ysb + 1;
+          dy_ext0 = dy_ext1 = dy0 - 1 - 3 * SQUISH_CONSTANT_3D;
+          if ((c & 0x01) != 0) {
+            ysv_ext1 += 1;
+            dy_ext1 -= 1;
+          } else {
+            ysv_ext0 += 1;
+            dy_ext0 -= 1;
+          }
+        } else {
+          ysv_ext0 = ysv_ext1 = ysb;
+          dy_ext0 = dy_ext1 = dy0 - 3 * SQUISH_CONSTANT_3D;
+        }
+
+        if ((c & 0x04) != 0) {
+          zsv_ext0 = zsb + 1;
+          zsv_ext1 = zsb + 2;
+          dz_ext0 = dz0 - 1 - 3 * SQUISH_CONSTANT_3D;
+          dz_ext1 = dz0 - 2 - 3 * SQUISH_CONSTANT_3D;
+        } else {
+          zsv_ext0 = zsv_ext1 = zsb;
+          dz_ext0 = dz_ext1 = dz0 - 3 * SQUISH_CONSTANT_3D;
+        }
+      } else { //(1,1,1) is not one of the closest two tetrahedral vertices.
+        byte c = (byte)(aPoint & bPoint); //Our two extra vertices are determined by the closest two.
+
+        if ((c & 0x01) != 0) {
+          xsv_ext0 = xsb + 1;
+          xsv_ext1 = xsb + 2;
+          dx_ext0 = dx0 - 1 - SQUISH_CONSTANT_3D;
+          dx_ext1 = dx0 - 2 - 2 * SQUISH_CONSTANT_3D;
+        } else {
+          xsv_ext0 = xsv_ext1 = xsb;
+          dx_ext0 = dx0 - SQUISH_CONSTANT_3D;
+          dx_ext1 = dx0 - 2 * SQUISH_CONSTANT_3D;
+        }
+
+        if ((c & 0x02) != 0) {
+          ysv_ext0 = ysb + 1;
+          ysv_ext1 = ysb + 2;
+          dy_ext0 = dy0 - 1 - SQUISH_CONSTANT_3D;
+          dy_ext1 = dy0 - 2 - 2 * SQUISH_CONSTANT_3D;
+        } else {
+          ysv_ext0 = ysv_ext1 = ysb;
+          dy_ext0 = dy0 - SQUISH_CONSTANT_3D;
+          dy_ext1 = dy0 - 2 * SQUISH_CONSTANT_3D;
+        }
+
+        if ((c & 0x04) != 0) {
+          zsv_ext0 = zsb + 1;
+          zsv_ext1 = zsb + 2;
+          dz_ext0 = dz0 - 1 - SQUISH_CONSTANT_3D;
+          dz_ext1 = dz0 - 2 - 2 * SQUISH_CONSTANT_3D;
+        } else {
+          zsv_ext0 = zsv_ext1 = zsb;
+          dz_ext0 = dz0 - SQUISH_CONSTANT_3D;
+          dz_ext1 = dz0 - 2 * SQUISH_CONSTANT_3D;
+        }
+      }
+
+      //Contribution (1,1,0)
+      float dx3 = dx0 - 1 - 2 * SQUISH_CONSTANT_3D;
+      float dy3 = dy0 - 1 - 2 * SQUISH_CONSTANT_3D;
+      float dz3 = dz0 - 0 - 2 * SQUISH_CONSTANT_3D;
+      float attn3 = 2 - dx3 * dx3 - dy3 * dy3 - dz3 * dz3;
+      if (attn3 > 0) {
+        attn3 *= attn3;
+        value += attn3 * attn3 * extrapolate(xsb + 1, ysb + 1, zsb + 0, dx3, dy3, dz3);
+      }
+
+      //Contribution (1,0,1)
+      float dx2 = dx3;
+      float dy2 = dy0 - 0 - 2 * SQUISH_CONSTANT_3D;
+      float dz2 = dz0 - 1 - 2 * SQUISH_CONSTANT_3D;
+      float attn2 = 2 - dx2 * dx2 - dy2 * dy2 - dz2 * dz2;
+      if (attn2 > 0) {
+        attn2 *= attn2;
+        value += attn2 * attn2 * extrapolate(xsb + 1, ysb + 0, zsb + 1, dx2, dy2, dz2);
+      }
+
+      //Contribution (0,1,1)
+      float dx1 = dx0 - 0 - 2 * SQUISH_CONSTANT_3D;
+      float dy1 = dy3;
+      float dz1 = dz2;
+      float attn1 = 2 - dx1 * dx1 - dy1 * dy1 - dz1 * dz1;
+      if (attn1 > 0) {
+        attn1 *= attn1;
+        value += attn1 * attn1 * extrapolate(xsb + 0, ysb + 1, zsb + 1, dx1, dy1, dz1);
+      }
+
+      //Contribution (1,1,1)
+      dx0 = dx0 - 1 - 3 * SQUISH_CONSTANT_3D;
+      dy0 = dy0 - 1 - 3 * SQUISH_CONSTANT_3D;
+      dz0 = dz0 - 1 - 3 * SQUISH_CONSTANT_3D;
+      float attn0 = 2 - dx0 * dx0 - dy0 * dy0 - dz0 * dz0;
+      if (attn0 > 0) {
+        attn0 *= attn0;
+        value += attn0 * attn0 * extrapolate(xsb + 1, ysb + 1, zsb + 1, dx0, dy0, dz0);
+      }
+    } else { //We're inside the octahedron (Rectified 3-Simplex) in between.
+      float aScore;
+      byte aPoint;
+      boolean aIsFurtherSide;
+      float bScore;
+      byte bPoint;
+      boolean bIsFurtherSide;
+
+      //Decide between point (0,0,1) and (1,1,0) as closest
+      float p1 = xins + yins;
+      if (p1 > 1) {
+        aScore = p1 - 1;
+        aPoint = 0x03;
+        aIsFurtherSide = true;
+      } else {
+        aScore = 1 - p1;
+        aPoint = 0x04;
+        aIsFurtherSide = false;
+      }
+
+      //Decide between point (0,1,0) and (1,0,1) as closest
+      float p2 = xins + zins;
+      if (p2 > 1) {
+        bScore = p2 - 1;
+        bPoint = 0x05;
+        bIsFurtherSide = true;
+      } else {
+        bScore = 1 - p2;
+        bPoint = 0x02;
+        bIsFurtherSide = false;
+      }
+
+      //The closest out of the two (1,0,0) and (0,1,1) will replace the furthest out of the two decided above, if closer.
+      float p3 = yins + zins;
+      if (p3 > 1) {
+        float score = p3 - 1;
+        if (aScore <= bScore && aScore < score) {
+          aScore = score;
+          aPoint = 0x06;
+          aIsFurtherSide = true;
+        } else if (aScore > bScore && bScore < score) {
+          bScore = score;
+          bPoint = 0x06;
+          bIsFurtherSide = true;
+        }
+      } else {
+        float score = 1 - p3;
+        if (aScore <= bScore && aScore < score) {
+          aScore = score;
+          aPoint = 0x01;
+          aIsFurtherSide = false;
+        } else if (aScore > bScore && bScore < score) {
+          bScore = score;
+          bPoint = 0x01;
+          bIsFurtherSide = false;
+        }
+      }
+
+      //Where each of the two closest points are determines how the extra two vertices are calculated.
+      if (aIsFurtherSide == bIsFurtherSide) {
+        if (aIsFurtherSide) { //Both closest points on (1,1,1) side
+
+          //One of the two extra points is (1,1,1)
+          dx_ext0 = dx0 - 1 - 3 * SQUISH_CONSTANT_3D;
+          dy_ext0 = dy0 - 1 - 3 * SQUISH_CONSTANT_3D;
+          dz_ext0 = dz0 - 1 - 3 * SQUISH_CONSTANT_3D;
+          xsv_ext0 = xsb + 1;
+          ysv_ext0 = ysb + 1;
+          zsv_ext0 = zsb + 1;
+
+          //Other extra point is based on the shared axis.
+          byte c = (byte)(aPoint & bPoint);
+          if ((c & 0x01) != 0) {
+            dx_ext1 = dx0 - 2 - 2 * SQUISH_CONSTANT_3D;
+            dy_ext1 = dy0 - 2 * SQUISH_CONSTANT_3D;
+            dz_ext1 = dz0 - 2 * SQUISH_CONSTANT_3D;
+            xsv_ext1 = xsb + 2;
+            ysv_ext1 = ysb;
+            zsv_ext1 = zsb;
+          } else if ((c & 0x02) != 0) {
+            dx_ext1 = dx0 - 2 * SQUISH_CONSTANT_3D;
+            dy_ext1 = dy0 - 2 - 2 * SQUISH_CONSTANT_3D;
+            dz_ext1 = dz0 - 2 * SQUISH_CONSTANT_3D;
+            xsv_ext1 = xsb;
+            ysv_ext1 = ysb + 2;
+            zsv_ext1 = zsb;
+          } else {
+            dx_ext1 = dx0 - 2 * SQUISH_CONSTANT_3D;
+            dy_ext1 = dy0 - 2 * SQUISH_CONSTANT_3D;
+            dz_ext1 = dz0 - 2 - 2 * SQUISH_CONSTANT_3D;
+            xsv_ext1 = xsb;
+            ysv_ext1 = ysb;
+            zsv_ext1 = zsb + 2;
+          }
+        } else {//Both closest points on (0,0,0) side
+
+          //One of the two extra points is (0,0,0)
+          dx_ext0 = dx0;
+          dy_ext0 = dy0;
+          dz_ext0 = dz0;
+          xsv_ext0 = xsb;
+          ysv_ext0 = ysb;
+          zsv_ext0 = zsb;
+
+          //Other extra point is based on the omitted axis.
+          byte c = (byte)(aPoint | bPoint);
+          if ((c & 0x01) == 0) {
+            dx_ext1 = dx0 + 1 - SQUISH_CONSTANT_3D;
+            dy_ext1 = dy0 - 1 - SQUISH_CONSTANT_3D;
+            dz_ext1 = dz0 - 1 - SQUISH_CONSTANT_3D;
+            xsv_ext1 = xsb - 1;
+            ysv_ext1 = ysb + 1;
+            zsv_ext1 = zsb + 1;
+          } else if ((c & 0x02) == 0) {
+            dx_ext1 = dx0 - 1 - SQUISH_CONSTANT_3D;
+            dy_ext1 = dy0 + 1 - SQUISH_CONSTANT_3D;
+            dz_ext1 = dz0 - 1 - SQUISH_CONSTANT_3D;
+            xsv_ext1 = xsb + 1;
+            ysv_ext1 = ysb - 1;
+            zsv_ext1 = zsb + 1;
+          } else {
+            dx_ext1 = dx0 - 1 - SQUISH_CONSTANT_3D;
+            dy_ext1 = dy0 - 1 - SQUISH_CONSTANT_3D;
+            dz_ext1 = dz0 + 1 - SQUISH_CONSTANT_3D;
+            xsv_ext1 = xsb + 1;
+            ysv_ext1 = ysb + 1;
+            zsv_ext1 = zsb - 1;
+          }
+        }
+      } else { //One point on (0,0,0) side, one point on (1,1,1) side
+        byte c1, c2;
+        if (aIsFurtherSide) {
+          c1 = aPoint;
+          c2 = bPoint;
+        } else {
+          c1 = bPoint;
+          c2 = aPoint;
+        }
+
+        //One contribution is a permutation of (1,1,-1)
+        if ((c1 & 0x01) == 0) {
+          dx_ext0 = dx0 + 1 - SQUISH_CONSTANT_3D;
+          dy_ext0 = dy0 - 1 - SQUISH_CONSTANT_3D;
+          dz_ext0 = dz0 - 1 - SQUISH_CONSTANT_3D;
+          xsv_ext0 = xsb - 1;
+          ysv_ext0 = ysb + 1;
+          zsv_ext0 = zsb + 1;
+        } else if ((c1 & 0x02) == 0) {
+          dx_ext0 = dx0 - 1 - SQUISH_CONSTANT_3D;
+          dy_ext0 = dy0 + 1 - SQUISH_CONSTANT_3D;
+          dz_ext0 = dz0 - 1 - SQUISH_CONSTANT_3D;
+          xsv_ext0 = xsb + 1;
+          ysv_ext0 = ysb - 1;
+          zsv_ext0 = zsb + 1;
+        } else {
+          dx_ext0 = dx0 - 1 - SQUISH_CONSTANT_3D;
+          dy_ext0 = dy0 - 1 - SQUISH_CONSTANT_3D;
+          dz_ext0 = dz0 + 1 - SQUISH_CONSTANT_3D;
+          xsv_ext0 = xsb + 1;
+          ysv_ext0 = ysb + 1;
+          zsv_ext0 = zsb - 1;
+        }
+
+        //One contribution is a permutation of (0,0,2)
+        dx_ext1 = dx0 - 2 * SQUISH_CONSTANT_3D;
+        dy_ext1 = dy0 - 2 * SQUISH_CONSTANT_3D;
+        dz_ext1 = dz0 - 2 * SQUISH_CONSTANT_3D;
+        xsv_ext1 = xsb;
+        ysv_ext1 = ysb;
+        zsv_ext1 = zsb;
+        if ((c2 & 0x01) != 0) {
+          dx_ext1 -= 2;
+          xsv_ext1 += 2;
+        } else if ((c2 & 0x02) != 0) {
+          dy_ext1 -= 2;
+          ysv_ext1 += 2;
+        } else {
+          dz_ext1 -= 2;
+          zsv_ext1 += 2;
+        }
+      }
+
+      //Contribution (1,0,0)
+      float dx1 = dx0 - 1 - SQUISH_CONSTANT_3D;
+      float dy1 = dy0 - 0 - SQUISH_CONSTANT_3D;
+      float dz1 = dz0 - 0 - SQUISH_CONSTANT_3D;
+      float attn1 = 2 - dx1 * dx1 - dy1 * dy1 - dz1 * dz1;
+      if (attn1 > 0) {
+        attn1 *= attn1;
+        value += attn1 * attn1 * extrapolate(xsb + 1, ysb + 0, zsb + 0, dx1, dy1, dz1);
+      }
+
+      //Contribution (0,1,0)
+      float dx2 = dx0 - 0 - SQUISH_CONSTANT_3D;
+      float dy2 = dy0 - 1 - SQUISH_CONSTANT_3D;
+      float dz2 = dz1;
+      float attn2 = 2 - dx2 * dx2 - dy2 * dy2 - dz2 * dz2;
+      if (attn2 > 0) {
+        attn2 *= attn2;
+        value += attn2 * attn2 * extrapolate(xsb + 0, ysb + 1, zsb + 0, dx2, dy2, dz2);
+      }
+
+      //Contribution (0,0,1)
+      float dx3 = dx2;
+      float dy3 = dy1;
+      float dz3 = dz0 - 1 - SQUISH_CONSTANT_3D;
+      float attn3 = 2 - dx3 * dx3 - dy3 * dy3 - dz3 * dz3;
+      if (attn3 > 0) {
+        attn3 *= attn3;
+        value += attn3 * attn3 * extrapolate(xsb + 0, ysb + 0, zsb + 1, dx3, dy3, dz3);
+      }
+
+      //Contribution (1,1,0)
+      float dx4 = dx0 - 1 - 2 * SQUISH_CONSTANT_3D;
+      float dy4 = dy0 - 1 - 2 * SQUISH_CONSTANT_3D;
+      float dz4 = dz0 - 0 - 2 * SQUISH_CONSTANT_3D;
+      float attn4 = 2 - dx4 * dx4 - dy4 * dy4 - dz4 * dz4;
+      if (attn4 > 0) {
+        attn4 *= attn4;
+        value += attn4 * attn4 * extrapolate(xsb + 1, ysb + 1, zsb + 0, dx4, dy4, dz4);
+      }
+
+      //Contribution (1,0,1)
+      float dx5 = dx4;
+      float dy5 = dy0 - 0 - 2 * SQUISH_CONSTANT_3D;
+      float dz5 = dz0 - 1 - 2 * SQUISH_CONSTANT_3D;
+      float attn5 = 2 - dx5 * dx5 - dy5 * dy5 - dz5 * dz5;
+      if (attn5 > 0) {
+        attn5 *= attn5;
+        value += attn5 * attn5 * extrapolate(xsb + 1, ysb + 0, zsb + 1, dx5, dy5, dz5);
+      }
+
+      //Contribution (0,1,1)
+      float dx6 = dx0 - 0 - 2 * SQUISH_CONSTANT_3D;
+      float dy6 = dy4;
+      float dz6 = dz5;
+      float attn6 = 2 - dx6 * dx6 - dy6 * dy6 - dz6 * dz6;
+      if (attn6 > 0) {
+        attn6 *= attn6;
+        value += attn6 * attn6 * extrapolate(xsb + 0, ysb + 1, zsb + 1, dx6, dy6, dz6);
+      }
+    }
+
+    //First extra vertex
+    float attn_ext0 = 2 - dx_ext0 * dx_ext0 - dy_ext0 * dy_ext0 - dz_ext0 * dz_ext0;
+    if (attn_ext0 > 0)
+    {
+      attn_ext0 *= attn_ext0;
+      value += attn_ext0 * attn_ext0 * extrapolate(xsv_ext0, ysv_ext0, zsv_ext0, dx_ext0, dy_ext0, dz_ext0);
+    }
+
+    //Second extra vertex
+    float attn_ext1 = 2 - dx_ext1 * dx_ext1 - dy_ext1 * dy_ext1 - dz_ext1 * dz_ext1;
+    if (attn_ext1 > 0)
+    {
+      attn_ext1 *= attn_ext1;
+      value += attn_ext1 * attn_ext1 * extrapolate(xsv_ext1, ysv_ext1, zsv_ext1, dx_ext1, dy_ext1, dz_ext1);
+    }
+
+    return value / NORM_CONSTANT_3D;
+  }
+
+  private float extrapolate(int xsb, int ysb, float dx, float dy)
+  {
+    int index = perm[(perm[xsb & 0xFF] + ysb) & 0xFF] & 0x0E;
+    return OpenSimplexNoise.gradient2D(index) * dx
+            + OpenSimplexNoise.gradient2D(index + 1) * dy;
+  }
+
+  private float extrapolate(int xsb, int ysb, int zsb, float dx, float dy, float dz)
+  {
+    int index = permGradIndex3D[(perm[(perm[xsb & 0xFF] + ysb) & 0xFF] + zsb) & 0xFF];
+    return OpenSimplexNoise.gradient3D(index) * dx
+            + OpenSimplexNoise.gradient3D(index + 1) * dy
+            + OpenSimplexNoise.gradient3D(index + 2) * dz;
+  }
+
+  private static int fastFloor(float x) {
+    int xi = (int)x;
+    return x < xi ? xi - 1 : xi;
+  }
+}
@@ -0,0 +1,96 @@
+package noise;
+
+/**
+ * A NoiseLattice is a cache of 2D noise sampled at whole multiples of a scale, so that code that
+ * reads the same points again and again (like every tile looking at its neighbours) only pays for
+ * each one once. The value at lattice point (i, j) is eval(i * scale, j * scale).
+ *
+ * Only a rectangle of the lattice is held at a time. fill() moves it and reuses the array when it
+ * can, so one lattice can be carried along a whole map.
+ */
+public class NoiseLattice {
+  private final OpenSimplexNoise noise;
+  private final double scale;
+  private int originI, originJ; // The lattice point held at the start of the array.
+  private int spanI, spanJ; // The size of the rectangle held.
+  private double[] values; // values[(i - originI) * spanJ + (j - originJ)].
+
+  /**
+   * Create a new, empty NoiseLattice.
+   * @param noise The noise to sample.
+   * @param scale The distance in noise space between lattice points.
+   */
+  public NoiseLattice(OpenSimplexNoise noise, double scale) {
+    this.noise = noise;
+    this.scale = scale;
+    this.values = new double[0];
+  }
+
+  /**
+   * Sample a rectangle of the lattice, throwing away whatever was held before.
+   * @param originI The first lattice index along the first noise axis.
+   * @param originJ The first lattice index along the second noise axis.
+   * @param spanI   The number of points along the first axis.
+   * @param spanJ   The number of points along the second axis.
+   */
+  public void fill(int originI, int originJ, int spanI, int spanJ) {
+    this.originI = originI;
+    this.originJ = originJ;
+    this.spanI = spanI;
+    this.spanJ = spanJ;
+    if (this.values.length < spanI * spanJ) {
+      this.values = new double[spanI * spanJ];
+    }
+    for (int i = 0; i < spanI; i++) {
+      double x = ((double) (originI + i)) * this.scale;
+      int row = i * spanJ;
+      for (int j = 0; j < spanJ; j++) {
+        this.values[row + j] = this.noise.eval(x, ((double) (originJ + j)) * this.scale);
+      }
+    }
+  }
+
+  /**
+   * A method to return the noise at a lattice point. It has to be inside the last fill().
+   * @param i The lattice index along the first noise axis.
+   * @param j The lattice index along the second noise axis.
+   * @return The same value as eval(i * scale, j * scale).
+   */
+  public double get(int i, int j) {
+    return this.values[(i - this.originI) * this.spanJ + (j - this.originJ)];
+  }
+
+  /**
+   * A method to return the noise part of the way between a lattice point and the next one along the
+   * first axis, by linear interpolation.
+   * @param i        The lattice index along the first noise axis.
+   * @param j        The lattice index along the second noise axis.
+   * @param fraction How far towards point (i + 1, j) to go, between 0 and 1.
+   * @return Roughly eval((i + fraction) * scale, j * scale).
+   */
+  public double lerpI(int i, int j, double fraction) {
+    double from = get(i, j);
+    return from + (get(i + 1, j) - from) * fraction;
+  }
+
+  /**
+   * A method to return the noise part of the way between a lattice point and the next one along the
+   * second axis, by linear interpolation.
+   * @param i        The lattice index along the first noise axis.
+   * @param j        The lattice index along the second noise axis.
+   * @param fraction How far towards point (i, j + 1) to go, between 0 and 1.
+   * @return Roughly eval(i * scale, (j + fraction) * scale).
+   */
+  public double lerpJ(int i, int j, double fraction) {
+    double from = get(i, j);
+    return from + (get(i, j + 1) - from) * fraction;
+  }
+
+  /**
+   * A method to return the distance in noise space between lattice points.
+   * @return The scale of the lattice.
+   */
+  public double getScale() {
+    return this.scale;
+  }
+}
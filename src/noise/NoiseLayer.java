@@ -0,0 +1,52 @@
+package noise;
+
+/**
+ * A NoiseLayer is one stage of a noise pipeline: something that gives a value for every point of
+ * the plane. Layers wrap other layers, so octaves of ridged, warped noise are built by nesting them,
+ * and a NoisePipeline evaluates several of them over a grid in one pass.
+ *
+ * Besides single points a layer can fill a whole row at once from x positions worked out by the
+ * caller. Layers that can do better than one point at a time override evalRow().
+ */
+public abstract class NoiseLayer {
+  /**
+   * A method to evaluate the layer at a point.
+   * @param x The first coordinate in noise space.
+   * @param y The second coordinate in noise space.
+   * @return The value of the layer, roughly between -1 and 1.
+   */
+  public abstract double eval(double x, double y);
+
+  /**
+   * A method to evaluate the layer along a row of points that share a y coordinate.
+   * @param xs     The x coordinates of the points.
+   * @param y      The y coordinate of every point.
+   * @param into   The array to store the values in.
+   * @param offset Where in the array the first value goes.
+   * @param count  The number of points, from the start of xs.
+   */
+  public void evalRow(double[] xs, double y, double[] into, int offset, int count) {
+    for (int i = 0; i < count; i++) {
+      into[offset + i] = eval(xs[i], y);
+    }
+  }
+
+  /**
+   * Evaluate the layer over a regular grid of points, row by row. The point in column c of row r is
+   * (originX + c) * step, (originY + r) * step, and its value goes into into[offset + r * width + c].
+   * @param into    The array to fill.
+   * @param offset  Where in the array the first point goes.
+   * @param originX The lattice index of the first column, in steps.
+   * @param originY The lattice index of the first row, in steps.
+   * @param step    The distance in noise space between neighbouring points.
+   * @param width   The number of columns.
+   * @param height  The number of rows.
+   */
+  public void eval(double[] into, int offset, int originX, int originY, double step, int width,
+                   int height) {
+    double[] xs = NoisePipeline.columns(originX, step, width);
+    for (int r = 0; r < height; r++) {
+      evalRow(xs, ((double) (originY + r)) * step, into, offset + r * width, width);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package noise;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A NoisePipeline evaluates several fields, like elevation, moisture and currents, over the same
+ * grid in one pass. The x positions of the columns are worked out once for the whole grid and the y
+ * position once per row, and every field is handed the whole row, so layers that work a row at a
+ * time, like Shared and DomainWarp, see the same row from every field.
+ */
+public class NoisePipeline {
+  private final List<NoiseLayer> fields;
+
+  /**
+   * Create a new NoisePipeline with no fields.
+   */
+  public NoisePipeline() {
+    this.fields = new ArrayList<>();
+  }
+
+  /**
+   * A method to add a field to the pipeline.
+   * @param layer The layer that gives the field its values.
+   * @return The index of the field, which is the index of its array in fill().
+   */
+  public int addField(NoiseLayer layer) {
+    this.fields.add(layer);
+    return this.fields.size() - 1;
+  }
+
+  /**
+   * Fill every field over a regular grid of points. The point in column c of row r is
+   * (originX + c) * step, (originY + r) * step, and its value in field f goes into
+   * into[f][offset + r * width + c].
+   * @param into    An array for every field, in the order they were added.
+   * @param offset  Where in the arrays the first point goes.
+   * @param originX The lattice index of the first column, in steps.
+   * @param originY The lattice index of the first row, in steps.
+   * @param step    The distance in noise space between neighbouring points.
+   * @param width   The number of columns.
+   * @param height  The number of rows.
+   */
+  public void fill(double[][] into, int offset, int originX, int originY, double step, int width,
+                   int height) {
+    double[] xs = columns(originX, step, width);
+    for (int r = 0; r < height; r++) {
+      double y = ((double) (originY + r)) * step;
+      int row = offset + r * width;
+      for (int f = 0; f < this.fields.size(); f++) {
+        this.fields.get(f).evalRow(xs, y, into[f], row, width);
+      }
+    }
+  }
+
+  /**
+   * A method to return the number of fields in the pipeline.
+   * @return The number of fields.
+   */
+  public int getFieldCount() {
+    return this.fields.size();
+  }
+
+  // The x positions of a row of columns, the same arithmetic as NoiseLattice.
+  static double[] columns(int originX, double step, int width) {
+    double[] xs = new double[width];
+    for (int c = 0; c < width; c++) {
+      xs[c] = ((double) (originX + c)) * step;
+    }
+    return xs;
+  }
+}
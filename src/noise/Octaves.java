@@ -0,0 +1,83 @@
+package noise;
+
+/**
+ * An Octaves layer adds up copies of another layer at rising frequencies and falling amplitudes
+ * (fractional Brownian motion), which gives big shapes with small details on top. Each octave is
+ * also shifted, so the octaves don't all line up at the origin. The sum is scaled back so it stays
+ * in the range of the source.
+ */
+public class Octaves extends NoiseLayer {
+  // How far each octave is shifted from the one before, in noise space.
+  private static final double OCTAVE_SHIFT = 101.3;
+
+  private final NoiseLayer source;
+  private final int octaves;
+  private final double lacunarity; // How much the frequency grows from one octave to the next.
+  private final double gain; // How much the amplitude shrinks from one octave to the next.
+  private final double normalization; // One over the sum of the amplitudes.
+
+  /**
+   * Create a new Octaves layer.
+   * @param source     The layer to add up.
+   * @param octaves    The number of copies, at least one.
+   * @param lacunarity The factor between the frequencies of neighbouring octaves, usually 2.
+   * @param gain       The factor between the amplitudes of neighbouring octaves, usually 0.5.
+   */
+  public Octaves(NoiseLayer source, int octaves, double lacunarity, double gain) {
+    if (octaves < 1) {
+      throw new IllegalArgumentException("Octaves needs at least one octave.");
+    }
+    this.source = source;
+    this.octaves = octaves;
+    this.lacunarity = lacunarity;
+    this.gain = gain;
+    double total = 0;
+    double amplitude = 1;
+    for (int o = 0; o < octaves; o++) {
+      total += amplitude;
+      amplitude *= gain;
+    }
+    this.normalization = 1 / total;
+  }
+
+  @Override
+  public double eval(double x, double y) {
+    double value = 0;
+    double frequency = 1;
+    double amplitude = 1;
+    for (int o = 0; o < this.octaves; o++) {
+      double shift = o * OCTAVE_SHIFT;
+      value += amplitude * this.source.eval(x * frequency + shift, y * frequency + shift);
+      frequency *= this.lacunarity;
+      amplitude *= this.gain;
+    }
+    return value * this.normalization;
+  }
+
+  @Override
+  public void evalRow(double[] xs, double y, double[] into, int offset, int count) {
+    // Every octave gets the row in one go, so a source that works a row at a time still can.
+    double[] scaled = new double[count];
+    double[] octave = new double[count];
+    for (int i = 0; i < count; i++) {
+      into[offset + i] = 0;
+    }
+    double frequency = 1;
+    double amplitude = 1;
+    for (int o = 0; o < this.octaves; o++) {
+      double shift = o * OCTAVE_SHIFT;
+      for (int i = 0; i < count; i++) {
+        scaled[i] = xs[i] * frequency + shift;
+      }
+      this.source.evalRow(scaled, y * frequency + shift, octave, 0, count);
+      for (int i = 0; i < count; i++) {
+        into[offset + i] += amplitude * octave[i];
+      }
+      frequency *= this.lacunarity;
+      amplitude *= this.gain;
+    }
+    for (int i = 0; i < count; i++) {
+      into[offset + i] *= this.normalization;
+    }
+  }
+}
@@ -31,44 +31,27 @@ public class OpenSimplexNoise {
 
   private static final long DEFAULT_SEED = 0;
 
-  private short[] perm;
-  private short[] permGradIndex3D;
+  private final short[] perm;
+  private final short[] permGradIndex3D;
 
   public OpenSimplexNoise() {
     this(DEFAULT_SEED);
   }
 
   public OpenSimplexNoise(short[] perm) {
-    this.perm = perm;
-    permGradIndex3D = new short[256];
+    this(new PermutationTable(perm));
+  }
 
-    for (int i = 0; i < 256; i++) {
-      //Since 3D has 24 gradients, simple bitmask won't work, so precompute modulo array.
-      permGradIndex3D[i] = (short)((perm[i] % (gradients3D.length / 3)) * 3);
-    }
+  //Shares the tables, which never change, so any number of noises on any threads can use one set.
+  public OpenSimplexNoise(PermutationTable table) {
+    this.perm = table.getPerm();
+    this.permGradIndex3D = table.getPermGradIndex3D();
   }
 
   //Initializes the class using a permutation array generated from a 64-bit seed.
-  //Generates a proper permutation (i.e. doesn't merely perform N successive pair swaps on a base array)
-  //Uses a simple 64-bit LCG.
+  //The shuffle is done by PermutationTable, which keeps the tables of recent seeds.
   public OpenSimplexNoise(long seed) {
-    perm = new short[256];
-    permGradIndex3D = new short[256];
-    short[] source = new short[256];
-    for (short i = 0; i < 256; i++)
-      source[i] = i;
-    seed = seed * 6364136223846793005l + 1442695040888963407l;
-    seed = seed * 6364136223846793005l + 1442695040888963407l;
-    seed = seed * 6364136223846793005l + 1442695040888963407l;
-    for (int i = 255; i >= 0; i--) {
-      seed = seed * 6364136223846793005l + 1442695040888963407l;
-      int r = (int)((seed + 31) % (i + 1));
-      if (r < 0)
-        r += (i + 1);
-      perm[i] = source[r];
-      permGradIndex3D[i] = (short)((perm[i] % (gradients3D.length / 3)) * 3);
-      source[r] = source[i];
-    }
+    this(PermutationTable.forSeed(seed));
   }
 
   //2D OpenSimplex Noise.
@@ -2092,7 +2075,7 @@ public class OpenSimplexNoise {
 
   //Gradients for 2D. They approximate the directions to the
   //vertices of an octagon from the center.
-  private static byte[] gradients2D = new byte[] {
+  private static final byte[] gradients2D = new byte[] {
           5,  2,    2,  5,
           -5,  2,   -2,  5,
           5, -2,    2, -5,
@@ -2103,7 +2086,7 @@ public class OpenSimplexNoise {
   //vertices of a rhombicuboctahedron from the center, skewed so
   //that the triangular and square facets can be inscribed inside
   //circles of the same radius.
-  private static byte[] gradients3D = new byte[] {
+  private static final byte[] gradients3D = new byte[] {
           -11,  4,  4,     -4,  11,  4,    -4,  4,  11,
           11,  4,  4,      4,  11,  4,     4,  4,  11,
           -11, -4,  4,     -4, -11,  4,    -4, -4,  11,
@@ -2114,11 +2097,24 @@ public class OpenSimplexNoise {
           11, -4, -4,      4, -11, -4,     4, -4, -11,
   };
 
+  // The number of 3D gradients, for PermutationTable to pick them with.
+  static final int GRADIENT_COUNT_3D = gradients3D.length / 3;
+
+  // One part of a 2D or 3D gradient, for FloatSimplexNoise. The arrays stay private so that nothing
+  // can write to them.
+  static byte gradient2D(int index) {
+    return gradients2D[index];
+  }
+
+  static byte gradient3D(int index) {
+    return gradients3D[index];
+  }
+
   //Gradients for 4D. They approximate the directions to the
   //vertices of a disprismatotesseractihexadecachoron from the center,
   //skewed so that the tetrahedral and cubic facets can be inscribed inside
   //spheres of the same radius.
-  private static byte[] gradients4D = new byte[] {
+  private static final byte[] gradients4D = new byte[] {
           3,  1,  1,  1,      1,  3,  1,  1,      1,  1,  3,  1,      1,  1,  1,  3,
           -3,  1,  1,  1,     -1,  3,  1,  1,     -1,  1,  3,  1,     -1,  1,  1,  3,
           3, -1,  1,  1,      1, -3,  1,  1,      1, -1,  3,  1,      1, -1,  1,  3,
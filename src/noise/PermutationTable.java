@@ -0,0 +1,144 @@
+package noise;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A PermutationTable is the shuffled table that makes one seed's noise different from another's,
+ * along with the gradient indices worked out from it. It never changes once made, so one table can
+ * be shared by any number of OpenSimplexNoise and FloatSimplexNoise objects on any number of
+ * threads.
+ *
+ * forSeed() keeps the tables of recently used seeds around, so making noise for a seed we've seen
+ * lately doesn't shuffle again. A table can also be stored in 256 bytes with toBytes() and read
+ * back with fromBytes().
+ */
+public final class PermutationTable {
+  /** The number of entries in a table, and the number of bytes in its compact form. */
+  public static final int SIZE = 256;
+  // How many tables forSeed() keeps around.
+  private static final int CACHE_SIZE = 1024;
+
+  private static final Map<Long, PermutationTable> cache =
+          new LinkedHashMap<Long, PermutationTable>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PermutationTable> eldest) {
+              return size() > CACHE_SIZE;
+            }
+          };
+
+  private final short[] perm;
+  private final short[] permGradIndex3D;
+
+  /**
+   * Create a new PermutationTable from a permutation. The array is copied.
+   * @param perm The permutation, 256 different values from 0 to 255.
+   * @throws IllegalArgumentException If the array isn't a permutation of 0 to 255.
+   */
+  public PermutationTable(short[] perm) {
+    this(perm, false);
+  }
+
+  // Only copies the array when it isn't owned, so permutations made here that nobody else holds
+  // are taken as they are.
+  private PermutationTable(short[] perm, boolean owned) {
+    if (perm.length != SIZE) {
+      throw new IllegalArgumentException("A permutation needs " + SIZE + " entries.");
+    }
+    this.perm = owned ? perm : perm.clone();
+    // Anything else would index past the end of the noise's tables.
+    boolean[] seen = new boolean[SIZE];
+    for (short entry : this.perm) {
+      if (entry < 0 || entry >= SIZE || seen[entry]) {
+        throw new IllegalArgumentException("That isn't a permutation of 0 to " + (SIZE - 1) + ".");
+      }
+      seen[entry] = true;
+    }
+    this.permGradIndex3D = gradIndex3D(this.perm);
+  }
+
+  private static short[] gradIndex3D(short[] perm) {
+    short[] permGradIndex3D = new short[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      //Since 3D has 24 gradients, simple bitmask won't work, so precompute modulo array.
+      permGradIndex3D[i] = (short) ((perm[i] % OpenSimplexNoise.GRADIENT_COUNT_3D) * 3);
+    }
+    return permGradIndex3D;
+  }
+
+  /**
+   * A method to fetch the table for a seed, shuffling it only if it isn't cached.
+   * @param seed The seed.
+   * @return The table, the same one new OpenSimplexNoise(seed) has always used.
+   */
+  public static PermutationTable forSeed(long seed) {
+    synchronized (cache) {
+      PermutationTable table = cache.get(seed);
+      if (table == null) {
+        table = shuffle(seed);
+        cache.put(seed, table);
+      }
+      return table;
+    }
+  }
+
+  //Generates a proper permutation (i.e. doesn't merely perform N successive pair swaps on a base array)
+  //Uses a simple 64-bit LCG.
+  private static PermutationTable shuffle(long seed) {
+    short[] perm = new short[SIZE];
+    short[] source = new short[SIZE];
+    for (short i = 0; i < SIZE; i++)
+      source[i] = i;
+    seed = seed * 6364136223846793005l + 1442695040888963407l;
+    seed = seed * 6364136223846793005l + 1442695040888963407l;
+    seed = seed * 6364136223846793005l + 1442695040888963407l;
+    for (int i = 255; i >= 0; i--) {
+      seed = seed * 6364136223846793005l + 1442695040888963407l;
+      int r = (int)((seed + 31) % (i + 1));
+      if (r < 0)
+        r += (i + 1);
+      perm[i] = source[r];
+      source[r] = source[i];
+    }
+    return new PermutationTable(perm, true);
+  }
+
+  /**
+   * A method to store the table in its compact form. Every entry fits in a byte, and the gradient
+   * indices are worked out again from them when reading it back.
+   * @return A new array of 256 bytes.
+   */
+  public byte[] toBytes() {
+    byte[] bytes = new byte[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      bytes[i] = (byte) this.perm[i];
+    }
+    return bytes;
+  }
+
+  /**
+   * A method to read a table back from its compact form.
+   * @param bytes The 256 bytes from toBytes().
+   * @return The table.
+   * @throws IllegalArgumentException If the bytes aren't a permutation of 0 to 255.
+   */
+  public static PermutationTable fromBytes(byte[] bytes) {
+    if (bytes.length != SIZE) {
+      throw new IllegalArgumentException("A permutation needs " + SIZE + " bytes.");
+    }
+    short[] perm = new short[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      perm[i] = (short) (bytes[i] & 0xFF);
+    }
+    return new PermutationTable(perm, true);
+  }
+
+  // The tables themselves, for the noise to read. Nobody may write to them.
+  short[] getPerm() {
+    return this.perm;
+  }
+
+  short[] getPermGradIndex3D() {
+    return this.permGradIndex3D;
+  }
+}
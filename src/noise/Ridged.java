@@ -0,0 +1,31 @@
+package noise;
+
+/**
+ * A Ridged layer folds another layer at zero and flips it, so where the source crosses zero there
+ * are sharp ridges: 1 - 2|v|. Put it under Octaves for ridged multifractal terrain like mountain
+ * ranges and river networks.
+ */
+public class Ridged extends NoiseLayer {
+  private final NoiseLayer source;
+
+  /**
+   * Create a new Ridged layer.
+   * @param source The layer to fold.
+   */
+  public Ridged(NoiseLayer source) {
+    this.source = source;
+  }
+
+  @Override
+  public double eval(double x, double y) {
+    return 1 - 2 * Math.abs(this.source.eval(x, y));
+  }
+
+  @Override
+  public void evalRow(double[] xs, double y, double[] into, int offset, int count) {
+    this.source.evalRow(xs, y, into, offset, count);
+    for (int i = 0; i < count; i++) {
+      into[offset + i] = 1 - 2 * Math.abs(into[offset + i]);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package noise;
+
+/**
+ * A Shared layer lets two parts of a pipeline use the same layer without working it out twice. It
+ * remembers the last row it evaluated on each thread, and hands out copies of it while it is asked
+ * for that row again, so a field and a DomainWarp that both read it during one NoisePipeline pass
+ * only pay for it once.
+ *
+ * Rows are recognised by being the same array of x positions with the same y, which is what a
+ * pipeline passes to every field.
+ */
+public class Shared extends NoiseLayer {
+  private final NoiseLayer source;
+  private final ThreadLocal<Row> last;
+
+  // The last row evaluated on one thread.
+  private static class Row {
+    double[] xs;
+    double y;
+    int count;
+    double[] values = new double[0];
+  }
+
+  /**
+   * Create a new Shared layer.
+   * @param source The layer to share.
+   */
+  public Shared(NoiseLayer source) {
+    this.source = source;
+    this.last = new ThreadLocal<Row>() {
+      @Override
+      protected Row initialValue() {
+        return new Row();
+      }
+    };
+  }
+
+  @Override
+  public double eval(double x, double y) {
+    return this.source.eval(x, y);
+  }
+
+  @Override
+  public void evalRow(double[] xs, double y, double[] into, int offset, int count) {
+    Row row = this.last.get();
+    if (row.xs != xs || row.y != y || row.count != count) {
+      if (row.values.length < count) {
+        row.values = new double[count];
+      }
+      this.source.evalRow(xs, y, row.values, 0, count);
+      row.xs = xs;
+      row.y = y;
+      row.count = count;
+    }
+    System.arraycopy(row.values, 0, into, offset, count);
+  }
+}
@@ -0,0 +1,29 @@
+package noise;
+
+/**
+ * A Simplex layer is plain 2D OpenSimplexNoise, the bottom of every pipeline.
+ */
+public class Simplex extends NoiseLayer {
+  private final OpenSimplexNoise noise;
+
+  /**
+   * Create a new Simplex layer from a seed.
+   * @param seed The seed of the noise.
+   */
+  public Simplex(long seed) {
+    this(new OpenSimplexNoise(seed));
+  }
+
+  /**
+   * Create a new Simplex layer sampling the given noise.
+   * @param noise The noise to sample.
+   */
+  public Simplex(OpenSimplexNoise noise) {
+    this.noise = noise;
+  }
+
+  @Override
+  public double eval(double x, double y) {
+    return this.noise.eval(x, y);
+  }
+}
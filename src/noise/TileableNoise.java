@@ -0,0 +1,106 @@
+package noise;
+
+/**
+ * A TileableNoise is 2D noise that repeats: the value at x + periodX is the value at x, and the same
+ * for y, with no seam where it wraps. It works by walking each axis around a circle in two of the
+ * four dimensions of an OpenSimplexNoise, so the 2D plane becomes a torus. The circles are sized so
+ * a step in x or y still covers about the same distance in noise space, so the noise looks like the
+ * plain 2D noise at the same scale.
+ */
+public class TileableNoise {
+  private final OpenSimplexNoise noise;
+  private final double periodX, periodY;
+  private final double radiusX, radiusY; // The radius of the circle each axis walks around.
+
+  /**
+   * Create a new TileableNoise.
+   * @param noise   The noise to sample, in 4D.
+   * @param periodX How far along x in noise space before the noise repeats.
+   * @param periodY How far along y in noise space before the noise repeats.
+   */
+  public TileableNoise(OpenSimplexNoise noise, double periodX, double periodY) {
+    this.noise = noise;
+    this.periodX = periodX;
+    this.periodY = periodY;
+    this.radiusX = periodX / (2 * Math.PI);
+    this.radiusY = periodY / (2 * Math.PI);
+  }
+
+  /**
+   * A method to evaluate the noise at a point.
+   * @param x The first coordinate in noise space.
+   * @param y The second coordinate in noise space.
+   * @return The noise at that point, the same as at (x + periodX, y) and (x, y + periodY).
+   */
+  public double eval(double x, double y) {
+    double angleX = x / this.periodX * 2 * Math.PI;
+    double angleY = y / this.periodY * 2 * Math.PI;
+    return this.noise.eval(this.radiusX * Math.cos(angleX), this.radiusX * Math.sin(angleX),
+            this.radiusY * Math.cos(angleY), this.radiusY * Math.sin(angleY));
+  }
+
+  /**
+   * A method to evaluate the noise at a point, moved along the first of the four dimensions by an
+   * offset. Moving the whole torus keeps it a torus, so this repeats just like eval(x, y), and it
+   * changes smoothly with the offset, which makes the offset a good axis for time.
+   * @param x      The first coordinate in noise space.
+   * @param y      The second coordinate in noise space.
+   * @param offset How far to move along the first dimension of the 4D noise.
+   * @return The noise at that point, the same as at (x + periodX, y) and (x, y + periodY).
+   */
+  public double eval(double x, double y, double offset) {
+    double angleX = x / this.periodX * 2 * Math.PI;
+    double angleY = y / this.periodY * 2 * Math.PI;
+    return this.noise.eval(this.radiusX * Math.cos(angleX) + offset,
+            this.radiusX * Math.sin(angleX), this.radiusY * Math.cos(angleY),
+            this.radiusY * Math.sin(angleY));
+  }
+
+  /**
+   * Evaluate the noise over a regular grid of points, row by row. The point in column c of row r is
+   * (originX + c) * step, (originY + r) * step, and its value goes into into[offset + r * width + c].
+   * The circle positions of the columns are worked out once rather than for every point.
+   * @param into    The array to fill.
+   * @param offset  Where in the array the first point goes.
+   * @param originX The lattice index of the first column, in steps.
+   * @param originY The lattice index of the first row, in steps.
+   * @param step    The distance in noise space between neighbouring points.
+   * @param width   The number of columns.
+   * @param height  The number of rows.
+   */
+  public void eval(double[] into, int offset, int originX, int originY, double step,
+                   int width, int height) {
+    double[] cosX = new double[width];
+    double[] sinX = new double[width];
+    for (int c = 0; c < width; c++) {
+      double angleX = ((double) (originX + c)) * step / this.periodX * 2 * Math.PI;
+      cosX[c] = this.radiusX * Math.cos(angleX);
+      sinX[c] = this.radiusX * Math.sin(angleX);
+    }
+    for (int r = 0; r < height; r++) {
+      double angleY = ((double) (originY + r)) * step / this.periodY * 2 * Math.PI;
+      double cosY = this.radiusY * Math.cos(angleY);
+      double sinY = this.radiusY * Math.sin(angleY);
+      int row = offset + r * width;
+      for (int c = 0; c < width; c++) {
+        into[row + c] = this.noise.eval(cosX[c], sinX[c], cosY, sinY);
+      }
+    }
+  }
+
+  /**
+   * A method to return how far along x the noise goes before it repeats.
+   * @return The period along x in noise space.
+   */
+  public double getPeriodX() {
+    return this.periodX;
+  }
+
+  /**
+   * A method to return how far along y the noise goes before it repeats.
+   * @return The period along y in noise space.
+   */
+  public double getPeriodY() {
+    return this.periodY;
+  }
+}
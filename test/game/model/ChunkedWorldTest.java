@@ -0,0 +1,74 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import game.CardinalDirection;
+import game.model.tiles.WaterTile;
+
+/**
+ * Checks that a ChunkedWorld keeps to its budget by throwing away the chunk used least recently,
+ * that a chunk thrown away comes back tile for tile the same, and that edited chunks are never
+ * thrown away.
+ */
+public class ChunkedWorldTest {
+  private static final int CHUNK_SIZE = 16;
+  // A chunk of tiles is six bytes a tile, so the budget holds this many chunks.
+  private static final int BUDGET_CHUNKS = 3;
+  private static final long BUDGET = (long) BUDGET_CHUNKS * CHUNK_SIZE * CHUNK_SIZE * 6;
+
+  // The x position of a tile in the chunk at the given chunk column of row 0.
+  private static int chunkX(int column) {
+    return column * CHUNK_SIZE;
+  }
+
+  @Test
+  public void leastRecentChunksAreThrownAway() {
+    ChunkedWorld world = new ChunkedWorld(1, CHUNK_SIZE, BUDGET);
+    for (int column = 0; column < 6; column++) {
+      world.getChunk(chunkX(column), 0);
+      assertTrue(world.getLoadedChunkCount() <= BUDGET_CHUNKS);
+    }
+    assertEquals(6, world.getGeneratedChunkCount());
+    // Columns 3, 4 and 5 are kept. Using 3 again makes 4 the least recent.
+    world.getChunk(chunkX(3), 0);
+    world.getChunk(chunkX(6), 0);
+    assertEquals(7, world.getGeneratedChunkCount());
+    world.getChunk(chunkX(3), 0);
+    world.getChunk(chunkX(5), 0);
+    assertEquals(7, world.getGeneratedChunkCount());
+    world.getChunk(chunkX(4), 0);
+    assertEquals(8, world.getGeneratedChunkCount());
+    assertEquals(BUDGET_CHUNKS, world.getLoadedChunkCount());
+  }
+
+  @Test
+  public void chunksComeBackTheSame() {
+    ChunkedWorld world = new ChunkedWorld(2, CHUNK_SIZE, BUDGET);
+    // Negative positions are in chunks like any other.
+    TileGrid first = world.getChunk(-20, -20);
+    world.touch(0, 0, CHUNK_SIZE * BUDGET_CHUNKS, CHUNK_SIZE);
+    TileGrid again = world.getChunk(-20, -20);
+    assertTrue("the chunk should have been generated again", first != again);
+    assertTrue(first.sameTilesAs(again));
+    ChunkedWorld other = new ChunkedWorld(2, CHUNK_SIZE, BUDGET);
+    assertTrue(first.sameTilesAs(other.getChunk(-20, -20)));
+  }
+
+  @Test
+  public void editedChunksAreKept() {
+    ChunkedWorld world = new ChunkedWorld(3, CHUNK_SIZE, BUDGET);
+    world.setTile(-1, 5, new WaterTile(CardinalDirection.WEST, 0.5));
+    TileGrid edited = world.getChunk(-1, 5);
+    long generated = world.getGeneratedChunkCount();
+    world.touch(0, 0, CHUNK_SIZE * BUDGET_CHUNKS * 2, CHUNK_SIZE);
+    assertTrue(world.getLoadedChunkCount() <= BUDGET_CHUNKS);
+    assertTrue(edited == world.getChunk(-1, 5));
+    assertEquals(generated + BUDGET_CHUNKS * 2, world.getGeneratedChunkCount());
+    assertEquals(TileGrid.WATER, world.getKind(-1, 5));
+    assertEquals(CardinalDirection.WEST,
+            ((WaterTile) world.getTile(-1, 5)).getCurrent());
+  }
+}
@@ -0,0 +1,169 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import game.CardinalDirection;
+import game.model.entities.Duck;
+import game.model.entities.EntityType;
+import game.model.tiles.GrassTile;
+
+/**
+ * Checks that moving currents keep everything worked out from the costs right: landmark tables and
+ * flow fields are kept instead of thrown away, and still give the cheapest paths, and listeners are
+ * told what the costs were and are. Also checks the currents themselves wrap around a TORUS.
+ */
+public class CurrentFieldTest {
+  private static final int WIDTH = 40;
+  private static final int HEIGHT = 31;
+  private static final int TILES_PER_TICK = 25;
+  private static final int TARGETS = 4;
+  private static final int QUERIES = 40;
+  // How close the flow has to be across the seam of a TORUS. Not exact: the sines don't quite come
+  // round, and 4D OpenSimplexNoise jumps by a few millionths in places.
+  private static final double SEAM_ERROR = 1e-4;
+
+  // Counts the changes it is told about.
+  private static class Counter implements CostListener {
+    int changes;
+
+    @Override
+    public void costsChanged(CostChanges changes) {
+      this.changes += changes.size();
+    }
+  }
+
+  @Test
+  public void pathsStayTheCheapestAsCurrentsMove() {
+    for (Topology topology : Topology.values()) {
+      for (int seed = 1; seed <= 3; seed++) {
+        GameState model = new GameState(HEIGHT, WIDTH, seed, new SingleThreadedExecutor(),
+                topology);
+        Duck duck = new Duck(0, 0, 0, 0, WIDTH, HEIGHT, model);
+        Random random = new Random(seed);
+        LandmarkTable table = model.getLandmarks(duck);
+        FlowField[] fields = new FlowField[TARGETS];
+        for (int i = 0; i < TARGETS; i++) {
+          fields[i] = model.getFlowField(duck, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+        }
+        Counter counter = new Counter();
+        model.addCostListener(counter);
+
+        // Stop short of a whole sweep, which would drop the landmarks.
+        CurrentField currents = new CurrentField(model, TILES_PER_TICK);
+        int ticks = (currents.getWaterCount() - 1) / TILES_PER_TICK;
+        for (int tick = 1; tick <= ticks; tick++) {
+          currents.advance(tick * 40);
+        }
+        String where = topology + " seed " + seed;
+        assertTrue(where, counter.changes > 0);
+        assertSame(where, table, model.getLandmarks(duck));
+
+        PathFinder reference = new PathFinder(model, WIDTH, HEIGHT);
+        PathFinder finder = new PathFinder(model, WIDTH, HEIGHT, SearchMode.LANDMARKS);
+        for (int q = 0; q < QUERIES; q++) {
+          int x = random.nextInt(WIDTH);
+          int y = random.nextInt(HEIGHT);
+          int xd = random.nextInt(WIDTH);
+          int yd = random.nextInt(HEIGHT);
+          reference.start(duck, x, y, xd, yd);
+          reference.run();
+          finder.start(duck, x, y, xd, yd);
+          finder.run();
+          int target = reference.node(xd, yd);
+          assertEquals(where, reference.getDistance(target), finder.getDistance(target));
+        }
+
+        for (FlowField field : fields) {
+          int target = field.getTarget();
+          assertSame(where, field,
+                  model.getFlowField(duck, target % WIDTH, target / WIDTH));
+          FlowField fresh = new FlowField(model, duck, target % WIDTH, target / WIDTH);
+          for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+              assertEquals(where, fresh.getDistance(x, y), field.getDistance(x, y));
+              CardinalDirection direction = field.getDirection(x, y);
+              if (direction == null) {
+                assertEquals(where, target, y * WIDTH + x);
+                continue;
+              }
+              // The direction has to be one of the cheapest ways on.
+              int nextX = topology.wrap(x + dx(direction), WIDTH);
+              int nextY = topology.wrap(y + dy(direction), HEIGHT);
+              assertEquals(where, field.getDistance(x, y),
+                      model.requestCost(duck, x, y, direction) + field.getDistance(nextX, nextY));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void listenersAreToldTheOldAndNewCosts() {
+    GameState model = new GameState(HEIGHT, WIDTH, 2);
+    Duck duck = new Duck(0, 0, 0, 0, WIDTH, HEIGHT, model);
+    final CostChanges[] told = new CostChanges[1];
+    model.addCostListener(new CostListener() {
+      @Override
+      public void costsChanged(CostChanges changes) {
+        told[0] = changes;
+      }
+    });
+    int x = 7;
+    int y = 5;
+    int[] before = new int[CostTable.DIRECTION_COUNT];
+    for (CardinalDirection direction : CardinalDirection.values()) {
+      before[direction.ordinal()] = model.requestCost(duck, x, y, direction);
+    }
+    model.setTile(x, y, new GrassTile());
+    assertEquals(1, told[0].size());
+    assertEquals(y * WIDTH + x, told[0].getCell(0));
+    for (CardinalDirection direction : CardinalDirection.values()) {
+      assertEquals(before[direction.ordinal()],
+              told[0].getOldCost(0, EntityType.DUCK, direction));
+      assertEquals(model.requestCost(duck, x, y, direction),
+              told[0].getNewCost(0, EntityType.DUCK, direction));
+    }
+  }
+
+  @Test
+  public void currentsWrapAroundATorus() {
+    GameState model = new GameState(HEIGHT, WIDTH, 3, new SingleThreadedExecutor(),
+            Topology.TORUS);
+    CurrentField currents = new CurrentField(model, TILES_PER_TICK);
+    for (double t = 0; t < 2; t += 0.5) {
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          assertEquals(currents.flowX(x, y, t), currents.flowX(x + WIDTH, y, t), SEAM_ERROR);
+          assertEquals(currents.flowX(x, y, t), currents.flowX(x, y + HEIGHT, t), SEAM_ERROR);
+          assertEquals(currents.flowY(x, y, t), currents.flowY(x + WIDTH, y, t), SEAM_ERROR);
+          assertEquals(currents.flowY(x, y, t), currents.flowY(x, y + HEIGHT, t), SEAM_ERROR);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void currentsFollowTheSeedOfTheGame() {
+    CurrentField first = new CurrentField(new GameState(HEIGHT, WIDTH, 1), TILES_PER_TICK);
+    CurrentField again = new CurrentField(new GameState(HEIGHT, WIDTH, 1), TILES_PER_TICK);
+    CurrentField other = new CurrentField(new GameState(HEIGHT, WIDTH, 2), TILES_PER_TICK);
+    assertEquals(first.flowX(3, 4, 0.5), again.flowX(3, 4, 0.5), 0);
+    assertNotEquals(first.flowX(3, 4, 0.5), other.flowX(3, 4, 0.5), 0);
+  }
+
+  private static int dx(CardinalDirection direction) {
+    return direction == CardinalDirection.EAST ? 1 : direction == CardinalDirection.WEST ? -1 : 0;
+  }
+
+  private static int dy(CardinalDirection direction) {
+    return direction == CardinalDirection.SOUTH ? 1 : direction == CardinalDirection.NORTH ? -1 : 0;
+  }
+}
@@ -0,0 +1,214 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import game.model.entities.Duck;
+import game.model.entities.Entity;
+import game.model.entities.EntityType;
+import game.model.entities.Koala;
+
+/**
+ * Checks the queries of an EntityIndex against looking at every entity, on random boards of both
+ * topologies with sizes that aren't a whole number of buckets, while entities are added, moved and
+ * removed. Also checks that inRange() counts what doesn't fit and that removed ids are handed out
+ * again.
+ */
+public class EntityIndexTest {
+  private static final int[][] SIZES = {{37, 21}, {13, 50}, {5, 3}, {70, 9}};
+  private static final int SEEDS = 4;
+  private static final int ROUNDS = 40;
+  private static final int CHANGES = 15;
+  private static final int QUERIES = 20;
+
+  // What the test knows about the entities it added, by id.
+  private static class Tracked {
+    final Entity entity;
+    final EntityType type;
+    int x, y;
+
+    Tracked(Entity entity, int x, int y) {
+      this.entity = entity;
+      this.type = EntityType.of(entity);
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  private static int distance(Topology topology, Tracked tracked, int x, int y, int width,
+                              int height) {
+    return topology.distance(x, tracked.x, width) + topology.distance(y, tracked.y, height);
+  }
+
+  @Test
+  public void queriesMatchLookingAtEveryEntity() {
+    for (Topology topology : Topology.values()) {
+      for (int[] size : SIZES) {
+        for (int seed = 1; seed <= SEEDS; seed++) {
+          checkBoard(topology, size[0], size[1], new Random(seed),
+                  topology + " " + size[0] + "x" + size[1] + " seed " + seed);
+        }
+      }
+    }
+  }
+
+  private static void checkBoard(Topology topology, int width, int height, Random random,
+                                 String board) {
+    EntityIndex index = new EntityIndex(width, height, topology);
+    List<Tracked> byId = new ArrayList<>();
+    List<Integer> live = new ArrayList<>();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int change = 0; change < CHANGES; change++) {
+        int what = random.nextInt(4);
+        if (what < 2 || live.isEmpty()) {
+          int x = random.nextInt(width);
+          int y = random.nextInt(height);
+          Entity entity = random.nextBoolean() ? new Duck(x, y, x, y, width, height, null)
+                  : new Koala(x, y, x, y, width, height, null);
+          int id = index.add(entity, x, y);
+          while (byId.size() <= id) {
+            byId.add(null);
+          }
+          assertNull(board + " id " + id + " is in use", byId.get(id));
+          byId.set(id, new Tracked(entity, x, y));
+          live.add(id);
+        } else if (what == 2) {
+          Tracked tracked = byId.get(live.get(random.nextInt(live.size())));
+          int x = random.nextInt(width);
+          int y = random.nextInt(height);
+          index.moved(tracked.entity, tracked.x, tracked.y, x, y);
+          tracked.x = x;
+          tracked.y = y;
+        } else {
+          int id = live.remove(random.nextInt(live.size()));
+          Tracked tracked = byId.get(id);
+          assertTrue(board, index.remove(tracked.entity, tracked.x, tracked.y));
+          assertTrue(board, !index.remove(tracked.entity, tracked.x, tracked.y));
+          assertNull(board, index.getEntity(id));
+          byId.set(id, null);
+        }
+      }
+      assertEquals(board, live.size(), index.size());
+      for (int id : live) {
+        Tracked tracked = byId.get(id);
+        assertTrue(board, tracked.entity == index.getEntity(id));
+        assertEquals(board, tracked.x, index.getX(id));
+        assertEquals(board, tracked.y, index.getY(id));
+        assertEquals(board, tracked.type, index.getType(id));
+      }
+      for (int q = 0; q < QUERIES; q++) {
+        checkInRange(index, byId, live, width, height, random, board);
+        checkNearest(index, byId, live, topology, width, height, random, board);
+      }
+    }
+  }
+
+  private static void checkInRange(EntityIndex index, List<Tracked> byId, List<Integer> live,
+                                   int width, int height, Random random, String board) {
+    // Rectangles can hang off the board, or be empty.
+    int minX = random.nextInt(width + 4) - 2;
+    int minY = random.nextInt(height + 4) - 2;
+    int maxX = minX + random.nextInt(width / 2 + 3) - 1;
+    int maxY = minY + random.nextInt(height / 2 + 3) - 1;
+    String where = board + " in " + minX + "," + minY + " to " + maxX + "," + maxY;
+    Set<Integer> expected = new HashSet<>();
+    for (int id : live) {
+      Tracked tracked = byId.get(id);
+      if (tracked.x >= minX && tracked.x <= maxX && tracked.y >= minY && tracked.y <= maxY) {
+        expected.add(id);
+      }
+    }
+    int[] all = new int[live.size() + 1];
+    assertEquals(where, expected.size(), index.inRange(minX, minY, maxX, maxY, all));
+    Set<Integer> found = new HashSet<>();
+    for (int i = 0; i < expected.size(); i++) {
+      found.add(all[i]);
+    }
+    assertEquals(where, expected, found);
+    // Too small an array still gets the whole count, and as many of the ids as fit.
+    int[] small = new int[random.nextInt(3)];
+    assertEquals(where, expected.size(), index.inRange(minX, minY, maxX, maxY, small));
+    for (int i = 0; i < Math.min(small.length, expected.size()); i++) {
+      assertTrue(where, expected.contains(small[i]));
+    }
+  }
+
+  private static void checkNearest(EntityIndex index, List<Tracked> byId, List<Integer> live,
+                                   Topology topology, int width, int height, Random random,
+                                   String board) {
+    int x = random.nextInt(width);
+    int y = random.nextInt(height);
+    int maxDistance = random.nextInt(width + height);
+    EntityType type = random.nextInt(3) == 0 ? null
+            : EntityType.values()[random.nextInt(EntityType.values().length)];
+    String where = board + " near " + x + "," + y + " within " + maxDistance + " of " + type;
+    int best = Integer.MAX_VALUE;
+    for (int id : live) {
+      Tracked tracked = byId.get(id);
+      if (type == null || tracked.type == type) {
+        best = Math.min(best, distance(topology, tracked, x, y, width, height));
+      }
+    }
+    int id = index.nearest(x, y, maxDistance, type);
+    if (best > maxDistance) {
+      assertEquals(where, EntityIndex.NONE, id);
+      return;
+    }
+    assertTrue(where + " found nothing", id != EntityIndex.NONE);
+    Tracked tracked = byId.get(id);
+    assertTrue(where, tracked != null && (type == null || tracked.type == type));
+    assertEquals(where, best, distance(topology, tracked, x, y, width, height));
+  }
+
+  @Test
+  public void removedIdsAreHandedOutAgain() {
+    EntityIndex index = new EntityIndex(13, 11, Topology.BOUNDED);
+    Entity[] entities = new Entity[40];
+    for (int i = 0; i < entities.length; i++) {
+      entities[i] = new Koala(i % 13, i % 11, 0, 0, 13, 11, null);
+      assertEquals(i, index.add(entities[i], i % 13, i % 11));
+    }
+    // Free a few ids, then the next adds take them before any new ones.
+    Set<Integer> freed = new HashSet<>();
+    for (int i = 3; i < entities.length; i += 7) {
+      assertTrue(index.remove(entities[i], i % 13, i % 11));
+      freed.add(i);
+    }
+    Set<Integer> reused = new HashSet<>();
+    for (int i = 0; i < freed.size(); i++) {
+      Entity entity = new Koala(12, 10, 0, 0, 13, 11, null);
+      int id = index.add(entity, 12, 10);
+      assertTrue(entity == index.getEntity(id));
+      assertEquals(12, index.getX(id));
+      assertEquals(10, index.getY(id));
+      reused.add(id);
+    }
+    assertEquals(freed, reused);
+    assertEquals(entities.length, index.getIdCount());
+    assertEquals(entities.length, index.add(new Koala(0, 0, 0, 0, 13, 11, null), 0, 0));
+    // The reused ids are only found where their new entities are.
+    int[] into = new int[entities.length + 1];
+    int found = index.inRange(12, 10, 12, 10, into);
+    Set<Integer> there = new HashSet<>();
+    for (int i = 0; i < found; i++) {
+      there.add(into[i]);
+    }
+    assertTrue(there.containsAll(freed));
+    for (int id : freed) {
+      found = index.inRange(id % 13, id % 11, id % 13, id % 11, into);
+      for (int i = 0; i < found; i++) {
+        assertTrue("id " + id + " is still where its old entity was",
+                into[i] != id || (id % 13 == 12 && id % 11 == 10));
+      }
+    }
+  }
+}
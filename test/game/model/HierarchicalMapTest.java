@@ -0,0 +1,104 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import game.CardinalDirection;
+import game.model.entities.Duck;
+import game.model.tiles.WaterTile;
+
+/**
+ * Checks the paths of a HierarchicalMap against plain Dijkstra on random boards of both topologies:
+ * they have to be real paths between the right tiles that never wrap around, and cost no more than
+ * the bounds HierarchicalMap promises over the cheapest path that doesn't wrap either.
+ */
+public class HierarchicalMapTest {
+  private static final int SIZE = 128;
+  // Small enough for the window of a nearby query to cover the whole board.
+  private static final int SMALL_SIZE = 48;
+  private static final int SEEDS = 4;
+  private static final int QUERIES = 100;
+  // How much more than the cheapest path the paths can cost, on average and at worst.
+  private static final double MEAN_EXCESS = 0.015;
+  private static final double WORST_EXCESS = 0.10;
+
+  // Sums the excess of the paths over the cheapest into totals[0], counting them in totals[1].
+  private static void comparePaths(int size, Topology topology, int seed, double[] totals) {
+    GameState model = new GameState(size, size, seed, new SingleThreadedExecutor(), topology);
+    Duck duck = new Duck(0, 0, 0, 0, size, size, model);
+    HierarchicalMap hierarchy = model.getHierarchy(duck);
+    PathFinder reference = new PathFinder(model, size, size);
+    // A window over the whole board, so the reference doesn't wrap around a TORUS either.
+    reference.setWindow(0, 0, size, size);
+    Random random = new Random(seed);
+    for (int q = 0; q < QUERIES; q++) {
+      int x = random.nextInt(size);
+      int y = random.nextInt(size);
+      int xd = random.nextInt(size);
+      int yd = random.nextInt(size);
+      String where = topology + " " + size + " seed " + seed + " from " + x + "," + y + " to "
+              + xd + "," + yd;
+      int[] path = hierarchy.findPath(x, y, xd, yd);
+      reference.start(duck, x, y, xd, yd);
+      reference.run();
+      int cheapest = reference.getDistance(reference.node(xd, yd));
+      if (cheapest == PathFinder.UNREACHED) {
+        assertEquals(where, 0, path.length);
+        continue;
+      }
+      assertEquals(where, y * size + x, path[0]);
+      assertEquals(where, yd * size + xd, path[path.length - 1]);
+      for (int i = 1; i < path.length; i++) {
+        assertEquals(where + " wraps", 1, Math.abs(path[i] % size - path[i - 1] % size)
+                + Math.abs(path[i] / size - path[i - 1] / size));
+      }
+      int cost = PathFinderTest.pathCost(model, duck, path);
+      assertTrue(where, cost >= cheapest);
+      if (cheapest > 0) {
+        double excess = (double) cost / cheapest - 1;
+        assertTrue(where + " costs " + cost + " against " + cheapest, excess <= WORST_EXCESS);
+        totals[0] += excess;
+        totals[1]++;
+      }
+    }
+  }
+
+  @Test
+  public void pathsStayCloseToTheCheapest() {
+    double[] totals = new double[2];
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      comparePaths(SIZE, Topology.BOUNDED, seed, totals);
+    }
+    assertTrue("mean excess " + totals[0] / totals[1], totals[0] / totals[1] <= MEAN_EXCESS);
+  }
+
+  @Test
+  public void pathsNeverWrapAroundATorus() {
+    double[] totals = new double[2];
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      comparePaths(SIZE, Topology.TORUS, seed, totals);
+      comparePaths(SMALL_SIZE, Topology.TORUS, seed, totals);
+    }
+    assertTrue("mean excess " + totals[0] / totals[1], totals[0] / totals[1] <= MEAN_EXCESS);
+  }
+
+  @Test
+  public void changedTilesAreSearchedAgain() {
+    GameState model = new GameState(SIZE, SIZE, 3);
+    Duck duck = new Duck(0, 0, 0, 0, SIZE, SIZE, model);
+    HierarchicalMap hierarchy = model.getHierarchy(duck);
+    // Turn everything to still water, so the cheapest way costs the same along any shortest path.
+    for (int y = 0; y < SIZE; y++) {
+      for (int x = 0; x < SIZE; x++) {
+        model.setTile(x, y, new WaterTile(CardinalDirection.NORTH, 0));
+      }
+    }
+    int still = model.requestCost(duck, 0, 0, CardinalDirection.EAST);
+    int[] path = hierarchy.findPath(3, 5, SIZE - 7, SIZE - 2);
+    assertEquals((SIZE - 10 + SIZE - 7) * still, PathFinderTest.pathCost(model, duck, path));
+  }
+}
@@ -0,0 +1,95 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import game.model.entities.Duck;
+
+/**
+ * Checks the bounds of a LandmarkTable against the real distances, both on boards small enough to
+ * keep them exactly and on a board long enough that they are kept in bigger units.
+ */
+public class LandmarkTableTest {
+  private static final int PAIRS = 300;
+
+  // Checks lowerBound() <= distance <= upperBound() for random pairs, and returns the table.
+  private static LandmarkTable checkBounds(int width, int height, int seed, Topology topology) {
+    GameState model = new GameState(height, width, seed, new SingleThreadedExecutor(), topology);
+    Duck duck = new Duck(0, 0, 0, 0, width, height, model);
+    LandmarkTable table = model.getLandmarks(duck);
+    PathFinder reference = new PathFinder(model, width, height);
+    Random random = new Random(seed);
+    for (int p = 0; p < PAIRS; p++) {
+      int from = random.nextInt(width * height);
+      int to = random.nextInt(width * height);
+      reference.start(duck, from % width, from / width, to % width, to / width);
+      reference.run();
+      int distance = reference.getDistance(to);
+      if (distance == PathFinder.UNREACHED) {
+        continue;
+      }
+      String where = topology + " " + width + "x" + height + " from " + from + " to " + to;
+      assertTrue(where, table.lowerBound(from, to) <= distance);
+      assertTrue(where, table.upperBound(from, to) >= distance);
+    }
+    return table;
+  }
+
+  @Test
+  public void boundsHoldOnSmallBoards() {
+    for (Topology topology : Topology.values()) {
+      for (int seed = 1; seed <= 3; seed++) {
+        LandmarkTable table = checkBounds(31, 23, seed, topology);
+        for (int i = 0; i < table.getLandmarkCount(); i++) {
+          assertEquals(1, table.getUnit(i));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void boundsHoldWhenDistancesAreRounded() {
+    // Far enough across that the distances don't fit in a char.
+    LandmarkTable table = checkBounds(1400, 6, 1, Topology.BOUNDED);
+    boolean rounded = false;
+    for (int i = 0; i < table.getLandmarkCount(); i++) {
+      rounded |= table.getUnit(i) > 1;
+    }
+    assertTrue(rounded);
+  }
+
+  @Test
+  public void roundedBoundsStillFindTheShortestPath() {
+    int width = 1400;
+    int height = 6;
+    GameState model = new GameState(height, width, 2, new SingleThreadedExecutor());
+    Duck duck = new Duck(0, 0, 0, 0, width, height, model);
+    PathFinder reference = new PathFinder(model, width, height);
+    PathFinder finder = new PathFinder(model, width, height, SearchMode.LANDMARKS);
+    Random random = new Random(2);
+    for (int q = 0; q < 20; q++) {
+      int x = random.nextInt(width);
+      int y = random.nextInt(height);
+      int xd = random.nextInt(width);
+      int yd = random.nextInt(height);
+      reference.start(duck, x, y, xd, yd);
+      reference.run();
+      finder.start(duck, x, y, xd, yd);
+      finder.run();
+      int target = reference.node(xd, yd);
+      assertEquals(reference.getDistance(target), finder.getDistance(target));
+    }
+  }
+
+  @Test
+  public void landmarksStayInTheBudget() {
+    assertEquals(8, LandmarkTable.landmarkCount(512 * 512, 8, 64L << 20));
+    assertEquals(4, LandmarkTable.landmarkCount(2048 * 2048, 8, 64L << 20));
+    assertEquals(1, LandmarkTable.landmarkCount(4096 * 4096, 8, 64L << 20));
+    assertEquals(1, LandmarkTable.landmarkCount(8192 * 8192, 8, 64L << 20));
+  }
+}
@@ -0,0 +1,116 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Test;
+
+import game.model.entities.Duck;
+import game.model.entities.EntityType;
+
+/**
+ * Checks that a board written by MapSnapshot reads back the same, tiles, costs and searches
+ * included, and that a file with a cell no tile could have is turned away when it is read.
+ */
+public class MapSnapshotTest {
+  private static final int WIDTH = 75;
+  private static final int HEIGHT = 50;
+  private static final int QUERIES = 20;
+
+  // Where the currents start in the file: the kinds come right after the header, a page each.
+  private static long currentsOffset(int cells) {
+    int page = MapSnapshot.HEADER_BYTES;
+    return page + (cells + page - 1) / page * page;
+  }
+
+  @Test
+  public void boardsReadBackTheSame() throws IOException {
+    GameState written = new GameState(HEIGHT, WIDTH, 5, new SingleThreadedExecutor(),
+            Topology.TORUS);
+    Path path = Files.createTempFile("snapshot", ".kqm");
+    try {
+      MapSnapshot.write(written, path);
+      MapSnapshot snapshot = MapSnapshot.read(path);
+      assertEquals(Topology.TORUS, snapshot.getTopology());
+      assertTrue(written.getGrid().sameTilesAs(snapshot.getGrid()));
+      GameState read = new GameState(snapshot, 5);
+      for (EntityType type : EntityType.values()) {
+        CostTable writtenCosts = written.getCostTable();
+        CostTable readCosts = read.getCostTable();
+        assertEquals(writtenCosts.getMinimumCost(type), readCosts.getMinimumCost(type));
+        // A table on a file has no arrays, so its searches read the buffers.
+        assertNull(readCosts.getCostArray(type));
+        int[] costs = writtenCosts.getCostArray(type);
+        for (int i = 0; i < costs.length; i++) {
+          assertEquals(costs[i], readCosts.getCosts(type).get(i));
+        }
+      }
+      Duck duck = new Duck(0, 0, 0, 0, WIDTH, HEIGHT, written);
+      PathFinder onHeap = new PathFinder(written, WIDTH, HEIGHT);
+      PathFinder onFile = new PathFinder(read, WIDTH, HEIGHT);
+      Random random = new Random(5);
+      for (int q = 0; q < QUERIES; q++) {
+        int x = random.nextInt(WIDTH);
+        int y = random.nextInt(HEIGHT);
+        int xd = random.nextInt(WIDTH);
+        int yd = random.nextInt(HEIGHT);
+        onHeap.start(duck, x, y, xd, yd);
+        onHeap.run();
+        onFile.start(duck, x, y, xd, yd);
+        onFile.run();
+        assertEquals(onHeap.getDistance(onHeap.node(xd, yd)),
+                onFile.getDistance(onFile.node(xd, yd)));
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void badCurrentsAreTurnedAway() throws IOException {
+    GameState written = new GameState(HEIGHT, WIDTH, 6);
+    TileGrid grid = written.getGrid();
+    int water = -1;
+    int grass = -1;
+    for (int cell = 0; cell < WIDTH * HEIGHT; cell++) {
+      if (grid.getKind(cell) == TileGrid.WATER && water < 0) {
+        water = cell;
+      } else if (grid.getKind(cell) == TileGrid.GRASS && grass < 0) {
+        grass = cell;
+      }
+    }
+    assertTrue("the board needs both kinds", water >= 0 && grass >= 0);
+    // A current past the last direction, one on land and one missing on water.
+    int[] cells = {water, grass, water};
+    byte[] currents = {(byte) CostTable.DIRECTION_COUNT, 0, -1};
+    Path path = Files.createTempFile("snapshot", ".kqm");
+    try {
+      for (int i = 0; i < cells.length; i++) {
+        MapSnapshot.write(written, path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+          channel.write(ByteBuffer.wrap(new byte[] {currents[i]}),
+                  currentsOffset(WIDTH * HEIGHT) + cells[i]);
+        }
+        try {
+          MapSnapshot.read(path);
+          fail("read a current of " + currents[i] + " at cell " + cells[i]);
+        } catch (IOException e) {
+          assertTrue(e.getMessage(), e.getMessage().contains(
+                  cells[i] % WIDTH + "," + cells[i] / WIDTH));
+        }
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+}
@@ -0,0 +1,304 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Test;
+
+import game.CardinalDirection;
+import game.model.entities.Duck;
+import game.model.entities.Koala;
+
+/**
+ * Checks every exact way of finding a path against plain Dijkstra, which is the reference: on
+ * random boards of both topologies the cost of the path found, or of following a FlowField, has to
+ * be the shortest distance. Koalas, which search with the landmarks, have to walk it. Plain
+ * Dijkstra is itself checked on a TORUS against a search written here from requestCost(), with the
+ * wrapped edges spelled out.
+ */
+public class PathFinderTest {
+  private static final int[][] SIZES = {{23, 17}, {40, 31}};
+  private static final int SEEDS = 4;
+  private static final int QUERIES = 25;
+
+  // A board to search, the duck whose costs we use and a random source for the queries.
+  private static class Board {
+    final GameState model;
+    final Duck duck;
+    final Random random;
+
+    Board(int width, int height, int seed, Topology topology) {
+      this.model = new GameState(height, width, seed, new SingleThreadedExecutor(), topology);
+      this.duck = new Duck(0, 0, 0, 0, width, height, this.model);
+      this.random = new Random(seed);
+    }
+  }
+
+  // Calls check for random queries on every board.
+  private static void forEachQuery(QueryCheck check) {
+    for (Topology topology : Topology.values()) {
+      for (int[] size : SIZES) {
+        for (int seed = 1; seed <= SEEDS; seed++) {
+          Board board = new Board(size[0], size[1], seed, topology);
+          PathFinder reference = new PathFinder(board.model, size[0], size[1]);
+          for (int q = 0; q < QUERIES; q++) {
+            int x = board.random.nextInt(size[0]);
+            int y = board.random.nextInt(size[1]);
+            int xd = board.random.nextInt(size[0]);
+            int yd = board.random.nextInt(size[1]);
+            reference.start(board.duck, x, y, xd, yd);
+            reference.run();
+            int expected = reference.getDistance(reference.node(xd, yd));
+            String where = topology + " " + size[0] + "x" + size[1] + " seed " + seed + " from "
+                    + x + "," + y + " to " + xd + "," + yd;
+            check.check(board, x, y, xd, yd, expected, where);
+          }
+        }
+      }
+    }
+  }
+
+  private interface QueryCheck {
+    void check(Board board, int x, int y, int xd, int yd, int expected, String where);
+  }
+
+  /**
+   * A method to add up the cost of following a path of packed node ids, checking every step is a
+   * move to a neighbour.
+   * @param model The model the path is on.
+   * @param duck  The duck whose costs to use.
+   * @param path  The packed node ids y * width + x along the path.
+   * @return The total cost of the moves.
+   */
+  static int pathCost(GameState model, Duck duck, int[] path) {
+    int width = model.getGameWidth();
+    int height = model.getGameHeight();
+    int cost = 0;
+    for (int i = 1; i < path.length; i++) {
+      int fromX = path[i - 1] % width;
+      int fromY = path[i - 1] / width;
+      int toX = path[i] % width;
+      int toY = path[i] / width;
+      CardinalDirection direction = model.getTopology().towards(fromX, fromY, toX, toY, width,
+              height);
+      assertTrue("not a move to a neighbour", direction != null
+              && model.getTopology().distance(fromX, toX, width)
+              + model.getTopology().distance(fromY, toY, height) == 1);
+      cost += model.requestCost(duck, fromX, fromY, direction);
+    }
+    return cost;
+  }
+
+  private static void checkSearch(final SearchMode mode) {
+    forEachQuery(new QueryCheck() {
+      @Override
+      public void check(Board board, int x, int y, int xd, int yd, int expected, String where) {
+        PathFinder finder = new PathFinder(board.model, board.model.getGameWidth(),
+                board.model.getGameHeight(), mode);
+        finder.start(board.duck, x, y, xd, yd);
+        finder.run();
+        int[] path = finder.getPath();
+        if (expected == PathFinder.UNREACHED) {
+          assertEquals(where, 0, path.length);
+          return;
+        }
+        assertEquals(where, expected, finder.getDistance(finder.node(xd, yd)));
+        assertEquals(where, finder.node(x, y), path[0]);
+        assertEquals(where, finder.node(xd, yd), path[path.length - 1]);
+        assertEquals(where, expected, pathCost(board.model, board.duck, path));
+      }
+    });
+  }
+
+  @Test
+  public void aStarFindsTheShortestPath() {
+    checkSearch(SearchMode.A_STAR);
+  }
+
+  @Test
+  public void landmarksFindTheShortestPath() {
+    checkSearch(SearchMode.LANDMARKS);
+  }
+
+  @Test
+  public void flowFieldsLeadTheShortestWay() {
+    forEachQuery(new QueryCheck() {
+      @Override
+      public void check(Board board, int x, int y, int xd, int yd, int expected, String where) {
+        FlowField field = board.model.getFlowField(board.duck, xd, yd);
+        assertEquals(where, expected, field.getDistance(x, y));
+        if (expected == PathFinder.UNREACHED) {
+          assertEquals(where, null, field.getDirection(x, y));
+          return;
+        }
+        // Follow the field to the destination, adding up what the moves cost.
+        int width = board.model.getGameWidth();
+        int height = board.model.getGameHeight();
+        Topology topology = board.model.getTopology();
+        int cost = 0;
+        int moves = 0;
+        CardinalDirection direction;
+        while ((direction = field.getDirection(x, y)) != null) {
+          cost += board.model.requestCost(board.duck, x, y, direction);
+          x = topology.wrap(x + dx(direction), width);
+          y = topology.wrap(y + dy(direction), height);
+          assertTrue(where + " goes round in circles", ++moves <= width * height);
+        }
+        assertEquals(where, xd + "," + yd, x + "," + y);
+        assertEquals(where, expected, cost);
+      }
+    });
+  }
+
+  private static int dx(CardinalDirection direction) {
+    return direction == CardinalDirection.EAST ? 1 : direction == CardinalDirection.WEST ? -1 : 0;
+  }
+
+  private static int dy(CardinalDirection direction) {
+    return direction == CardinalDirection.SOUTH ? 1 : direction == CardinalDirection.NORTH ? -1 : 0;
+  }
+
+  /**
+   * A method to find the distances from a cell to every other on a TORUS board, from requestCost()
+   * alone, with the four neighbours of a cell worked out here rather than by PathFinder.
+   * @param model The model to search, a TORUS.
+   * @param duck  The duck whose costs to use.
+   * @param x     The x position to start at.
+   * @param y     The y position to start at.
+   * @return The distance to every cell y * width + x.
+   */
+  private static long[] torusDistances(GameState model, Duck duck, int x, int y) {
+    int width = model.getGameWidth();
+    int height = model.getGameHeight();
+    long[] distances = new long[width * height];
+    Arrays.fill(distances, Long.MAX_VALUE);
+    // Entries are the distance shifted up past the cell, so the queue orders them by distance.
+    PriorityQueue<Long> queue = new PriorityQueue<>();
+    distances[y * width + x] = 0;
+    queue.add((long) (y * width + x));
+    CardinalDirection[] directions = CardinalDirection.values();
+    while (!queue.isEmpty()) {
+      long entry = queue.poll();
+      int cell = (int) (entry & 0xFFFFFFFFL);
+      long distance = entry >>> 32;
+      if (distance > distances[cell]) {
+        continue;
+      }
+      int cx = cell % width;
+      int cy = cell / width;
+      for (CardinalDirection direction : directions) {
+        int nx = (cx + dx(direction) + width) % width;
+        int ny = (cy + dy(direction) + height) % height;
+        long through = distance + model.requestCost(duck, cx, cy, direction);
+        int next = ny * width + nx;
+        if (through < distances[next]) {
+          distances[next] = through;
+          queue.add(through << 32 | next);
+        }
+      }
+    }
+    return distances;
+  }
+
+  @Test
+  public void torusSearchesTakeTheWrappedEdges() {
+    int wrappedPaths = 0;
+    for (int[] size : SIZES) {
+      int width = size[0];
+      int height = size[1];
+      for (int seed = 1; seed <= SEEDS; seed++) {
+        Board board = new Board(width, height, seed, Topology.TORUS);
+        for (int q = 0; q < QUERIES; q++) {
+          // Start on the west or north edge and go to the other side, where the wrapped edge is one
+          // move away.
+          boolean across = q % 2 == 0;
+          int x = across ? 0 : board.random.nextInt(width);
+          int y = across ? board.random.nextInt(height) : 0;
+          int xd = across ? width - 1 : x;
+          int yd = across ? y : height - 1;
+          CardinalDirection wrapped = across ? CardinalDirection.WEST : CardinalDirection.NORTH;
+          String where = width + "x" + height + " seed " + seed + " from " + x + "," + y + " to "
+                  + xd + "," + yd;
+          long[] expected = torusDistances(board.model, board.duck, x, y);
+          for (SearchMode mode : SearchMode.values()) {
+            if (mode == SearchMode.FLOW_FIELD || mode == SearchMode.HIERARCHICAL) {
+              continue;
+            }
+            PathFinder finder = new PathFinder(board.model, width, height, mode);
+            finder.start(board.duck, x, y, xd, yd);
+            finder.run();
+            int distance = finder.getDistance(finder.node(xd, yd));
+            assertEquals(mode + " " + where, expected[yd * width + xd], distance);
+            assertTrue(mode + " " + where, distance
+                    <= board.model.requestCost(board.duck, x, y, wrapped));
+            int[] path = finder.getPath();
+            assertEquals(mode + " " + where, distance, pathCost(board.model, board.duck, path));
+            if (mode == SearchMode.DIJKSTRA) {
+              for (int i = 0; i < finder.getWidth() * finder.getHeight(); i++) {
+                assertEquals(mode + " " + where + " at " + i, expected[i],
+                        finder.getDistance(i));
+              }
+            }
+            for (int i = 1; i < path.length; i++) {
+              if (Math.abs(path[i] % width - path[i - 1] % width) > 1
+                      || Math.abs(path[i] / width - path[i - 1] / width) > 1) {
+                wrappedPaths++;
+                break;
+              }
+            }
+          }
+        }
+      }
+    }
+    assertTrue("no path took a wrapped edge", wrappedPaths > 0);
+  }
+
+  @Test
+  public void koalasWalkTheShortestWay() {
+    for (Topology topology : Topology.values()) {
+      for (int[] size : SIZES) {
+        int width = size[0];
+        int height = size[1];
+        for (int seed = 1; seed <= SEEDS; seed++) {
+          GameState model = new GameState(height, width, seed, new SingleThreadedExecutor(),
+                  topology);
+          PathFinder reference = new PathFinder(model, width, height);
+          Random random = new Random(seed);
+          for (int q = 0; q < QUERIES; q++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            int xd = random.nextInt(width);
+            int yd = random.nextInt(height);
+            String where = topology + " " + width + "x" + height + " seed " + seed + " from "
+                    + x + "," + y + " to " + xd + "," + yd;
+            Koala koala = new Koala(x, y, xd, yd, width, height, model);
+            model.addKoala(koala);
+            reference.start(koala, x, y, xd, yd);
+            reference.run();
+            int expected = reference.getDistance(reference.node(xd, yd));
+            // Think it all through, then walk until it has nothing more to say, adding up what the
+            // moves cost.
+            koala.think(Integer.MAX_VALUE);
+            int cost = 0;
+            int steps = 0;
+            while (koala.getStatus() != null) {
+              CardinalDirection direction = koala.processStep();
+              if (direction != null) {
+                cost += model.requestCost(koala, koala.x, koala.y, direction);
+                koala.move(direction);
+              }
+              assertTrue(where + " goes round in circles", ++steps <= width * height + 1);
+            }
+            assertEquals(where, xd + "," + yd, koala.x + "," + koala.y);
+            assertEquals(where, expected, cost);
+            assertTrue(where, model.removeKoala(koala));
+          }
+        }
+      }
+    }
+  }
+}
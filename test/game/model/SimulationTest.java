@@ -0,0 +1,110 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import game.model.entities.Duck;
+
+/**
+ * Checks a simulation plays out the same whatever it runs on: the same game on one thread and on
+ * four has to end every stretch of ticks in the same state. Also checks that a simulation running
+ * in real time doesn't try to catch up on a long stall.
+ */
+public class SimulationTest {
+  private static final int SIZE = 48;
+  private static final int DUCKS = 24;
+  private static final int TICKS = 400;
+  private static final int CHECK_EVERY = 20;
+  // Few enough that the searches take many ticks, so how they are shared out matters.
+  private static final int OPERATIONS = 600;
+  private static final long TICK_MILLIS = 20;
+  private static final long STALL_MILLIS = 500;
+  private static final int TICKS_AFTER_STALL = 25;
+
+  // A game with ducks searching every way there is to random places.
+  private static Simulation game(int seed, SimulationExecutor executor) {
+    GameState gamestate = new GameState(SIZE, SIZE, seed, executor);
+    Random random = new Random(seed);
+    SearchMode[] modes = SearchMode.values();
+    for (int i = 0; i < DUCKS; i++) {
+      gamestate.addDuck(new Duck(random.nextInt(SIZE), random.nextInt(SIZE),
+              random.nextInt(SIZE), random.nextInt(SIZE), SIZE, SIZE, gamestate,
+              modes[i % modes.length]));
+    }
+    EntityUpdater updater =
+            new EntityUpdater(executor, ThinkingScheduler.operationsPerTick(OPERATIONS));
+    return new Simulation(gamestate, updater, 70);
+  }
+
+  /**
+   * A method to hash where every entity is and what it is doing.
+   * @param gamestate The model to hash.
+   * @return The hash.
+   */
+  static long stateHash(GameState gamestate) {
+    EntityIndex index = gamestate.getEntityIndex();
+    long hash = 17;
+    for (int id = 0; id < index.getIdCount(); id++) {
+      if (index.getEntity(id) == null) {
+        continue;
+      }
+      hash = hash * 31 + id;
+      hash = hash * 31 + index.getX(id);
+      hash = hash * 31 + index.getY(id);
+      hash = hash * 31 + index.getType(id).ordinal();
+      String status = index.getEntity(id).getStatus();
+      hash = hash * 31 + (status == null ? 0 : status.hashCode());
+    }
+    return hash;
+  }
+
+  @Test
+  public void oneThreadAndFourPlayTheSame() {
+    ForkJoinExecutor parallel = new ForkJoinExecutor(4);
+    try {
+      for (int seed = 1; seed <= 3; seed++) {
+        Simulation serial = game(seed, new SingleThreadedExecutor());
+        Simulation threaded = game(seed, parallel);
+        for (int tick = 0; tick < TICKS; tick += CHECK_EVERY) {
+          serial.run(CHECK_EVERY);
+          threaded.run(CHECK_EVERY);
+          assertEquals("seed " + seed + " tick " + (tick + CHECK_EVERY),
+                  stateHash(serial.getGameState()), stateHash(threaded.getGameState()));
+        }
+      }
+    } finally {
+      parallel.shutdown();
+    }
+  }
+
+  @Test
+  public void realTimeDropsALongStall() throws InterruptedException {
+    GameState gamestate = new GameState(SIZE, SIZE, 1, new SingleThreadedExecutor());
+    EntityUpdater updater = new EntityUpdater(new SingleThreadedExecutor(),
+            ThinkingScheduler.operationsPerTick(OPERATIONS));
+    Simulation simulation = new Simulation(gamestate, updater, TICK_MILLIS);
+    // The first tick takes as long as 25 ticks should.
+    simulation.addObserver(new SimulationObserver() {
+      @Override
+      public void ticked(Simulation simulation) {
+        if (simulation.getTickCount() == 1) {
+          try {
+            Thread.sleep(STALL_MILLIS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    long start = System.nanoTime();
+    simulation.runRealTime(1 + TICKS_AFTER_STALL);
+    long millis = (System.nanoTime() - start) / 1000000L;
+    // Catching up would run the ticks after the stall back to back and be done in about 520 ms.
+    // Dropping the stall paces every one of them.
+    assertTrue(millis + " ms", millis >= STALL_MILLIS + TICKS_AFTER_STALL * TICK_MILLIS - 1);
+  }
+}
@@ -0,0 +1,107 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import game.model.entities.Duck;
+
+/**
+ * Checks the snapshots a SnapshotPublisher hands out: what they find in a rectangle has to be what
+ * the index found at the end of the same tick, they have to be reused rather than made every tick,
+ * and the one being drawn can't change under the thread drawing it.
+ */
+public class SnapshotPublisherTest {
+  private static final int WIDTH = 45;
+  private static final int HEIGHT = 37;
+  private static final int DUCKS = 60;
+  private static final int TICKS = 120;
+  private static final int RECTANGLES = 20;
+
+  // A game with ducks heading to random places, with a publisher watching it.
+  private static Simulation game(int seed) {
+    SimulationExecutor executor = new SingleThreadedExecutor();
+    GameState gamestate = new GameState(HEIGHT, WIDTH, seed, executor);
+    Random random = new Random(seed);
+    for (int i = 0; i < DUCKS; i++) {
+      gamestate.addDuck(new Duck(random.nextInt(WIDTH), random.nextInt(HEIGHT),
+              random.nextInt(WIDTH), random.nextInt(HEIGHT), WIDTH, HEIGHT, gamestate));
+    }
+    EntityUpdater updater =
+            new EntityUpdater(executor, ThinkingScheduler.operationsPerTick(2000));
+    return new Simulation(gamestate, updater, 70);
+  }
+
+  // The ids found in a rectangle, sorted so that the order of the buckets doesn't matter.
+  private static int[] sorted(int[] ids, int count) {
+    int[] found = Arrays.copyOf(ids, count);
+    Arrays.sort(found);
+    return found;
+  }
+
+  @Test
+  public void snapshotsFindWhatTheIndexDid() {
+    Simulation simulation = game(1);
+    SnapshotPublisher publisher = new SnapshotPublisher(simulation.getGameState(), 70);
+    simulation.addObserver(publisher);
+    EntityIndex index = simulation.getGameState().getEntityIndex();
+    Random random = new Random(1);
+    int[] expected = new int[DUCKS * 2];
+    int[] actual = new int[DUCKS * 2];
+    for (int tick = 1; tick <= TICKS; tick++) {
+      simulation.tick();
+      SimulationSnapshot snapshot = publisher.getLatest();
+      assertEquals(tick, snapshot.getTick());
+      for (int r = 0; r < RECTANGLES; r++) {
+        int minX = random.nextInt(WIDTH + 4) - 2;
+        int minY = random.nextInt(HEIGHT + 4) - 2;
+        int maxX = minX + random.nextInt(WIDTH / 2);
+        int maxY = minY + random.nextInt(HEIGHT / 2);
+        int count = index.inRange(minX, minY, maxX, maxY, expected);
+        assertEquals("tick " + tick, count,
+                snapshot.inRange(minX, minY, maxX, maxY, actual));
+        assertTrue(Arrays.equals(sorted(expected, count), sorted(actual, count)));
+        for (int i = 0; i < count; i++) {
+          int id = actual[i];
+          assertEquals(index.getX(id), snapshot.getX(id, 1), 0);
+          assertEquals(index.getY(id), snapshot.getY(id, 1), 0);
+          assertEquals(index.getType(id), snapshot.getType(id));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void snapshotsAreReusedButNotWhileDrawn() {
+    Simulation simulation = game(2);
+    SnapshotPublisher publisher = new SnapshotPublisher(simulation.getGameState(), 70);
+    simulation.addObserver(publisher);
+    Map<SimulationSnapshot, Boolean> seen = new IdentityHashMap<>();
+    int[] ids = new int[DUCKS * 2];
+    // Drawing can be slower than the simulation, so a couple of ticks run while one is drawn.
+    for (int frame = 0; frame < TICKS / 3; frame++) {
+      simulation.tick();
+      SimulationSnapshot snapshot = publisher.getLatest();
+      seen.put(snapshot, true);
+      long taken = snapshot.getTick();
+      assertEquals(simulation.getTickCount(), taken);
+      int count = snapshot.inRange(0, 0, WIDTH - 1, HEIGHT - 1, ids);
+      double[] xs = new double[count];
+      for (int i = 0; i < count; i++) {
+        xs[i] = snapshot.getX(ids[i], 0.5);
+      }
+      simulation.run(2);
+      assertEquals(taken, snapshot.getTick());
+      for (int i = 0; i < count; i++) {
+        assertEquals(xs[i], snapshot.getX(ids[i], 0.5), 0);
+      }
+    }
+    assertTrue(seen.size() + " snapshots", seen.size() <= 3);
+  }
+}
@@ -0,0 +1,169 @@
+package game.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import game.CardinalDirection;
+import noise.NoiseLattice;
+import noise.OpenSimplexNoise;
+
+/**
+ * Checks the terrain read from a NoiseLattice against the terrain of evaluating the noise at every
+ * point a tile looks at, which is how TerrainGenerator used to work. Land, water and the power of
+ * the currents have to be exactly the same. The points the currents compare fall between lattice
+ * points, so they are only as close as the interpolation, and the direction of a current may only
+ * change where two directions were closer than that.
+ */
+public class TerrainGeneratorTest {
+  private static final int SIZE = 200;
+  private static final int[][] ORIGINS = {{0, 0}, {-137, 61}, {5000, -4000}};
+  private static final int SEEDS = 5;
+  private static final double SCALE = 1.5 / 5.0;
+  // How far an interpolated point can be from the noise there. The most over these boards is 0.083.
+  private static final double MAX_ERROR = 0.085;
+  // How many of the water tiles have to keep the direction of their current. These boards keep 96.7%.
+  private static final double MIN_AGREEMENT = 0.96;
+
+  // The four points a water tile compares, evaluated exactly, as the old generator did.
+  private static double[] exactDiffs(OpenSimplexNoise noise, double r, double c) {
+    double here = noise.eval(r * SCALE, c * SCALE);
+    return new double[] {
+        here - noise.eval(r * SCALE, c * SCALE - 1),
+        noise.eval(r * SCALE, c * SCALE + 1),
+        noise.eval(r * SCALE - 1, c * SCALE),
+        noise.eval(r * SCALE + 1, c * SCALE)};
+  }
+
+  // The direction the old generator picked for the diffs above, below, left and right.
+  private static CardinalDirection direction(double[] d) {
+    if (d[0] > d[1] && d[0] > d[2] && d[0] > d[3]) {
+      return CardinalDirection.NORTH;
+    } else if (d[1] > d[0] && d[1] > d[2] && d[1] > d[3]) {
+      return CardinalDirection.SOUTH;
+    } else if (d[2] > d[0] && d[2] > d[1] && d[2] > d[3]) {
+      return CardinalDirection.WEST;
+    }
+    return CardinalDirection.EAST;
+  }
+
+  // How far apart the biggest two diffs are, which is how close the direction was to changing.
+  private static double margin(double[] d) {
+    double first = Double.NEGATIVE_INFINITY;
+    double second = Double.NEGATIVE_INFINITY;
+    for (double value : d) {
+      if (value > first) {
+        second = first;
+        first = value;
+      } else if (value > second) {
+        second = value;
+      }
+    }
+    return first - second;
+  }
+
+  @Test
+  public void latticeIsCloseToTheNoise() {
+    double offset = 1 / SCALE;
+    int tiles = (int) Math.floor(offset);
+    double fraction = offset - tiles;
+    double maxError = 0;
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      OpenSimplexNoise noise = new OpenSimplexNoise(seed);
+      NoiseLattice lattice = new NoiseLattice(noise, SCALE);
+      for (int[] origin : ORIGINS) {
+        int r0 = origin[1];
+        int c0 = origin[0];
+        lattice.fill(r0 - tiles - 1, c0 - tiles - 1, SIZE + 2 * tiles + 2, SIZE + 2 * tiles + 2);
+        for (int r = r0; r < r0 + SIZE; r++) {
+          for (int c = c0; c < c0 + SIZE; c++) {
+            double[] exact = exactDiffs(noise, r, c);
+            double here = lattice.get(r, c);
+            assertEquals(noise.eval(r * SCALE, c * SCALE), here, 0);
+            double[] lerped = {
+                here - lattice.lerpJ(r, c - tiles - 1, 1 - fraction),
+                lattice.lerpJ(r, c + tiles, fraction),
+                lattice.lerpI(r - tiles - 1, c, 1 - fraction),
+                lattice.lerpI(r + tiles, c, fraction)};
+            for (int k = 0; k < 4; k++) {
+              maxError = Math.max(maxError, Math.abs(exact[k] - lerped[k]));
+            }
+          }
+        }
+      }
+    }
+    assertTrue("max error " + maxError, maxError <= MAX_ERROR);
+  }
+
+  @Test
+  public void tilesMatchTheNoise() {
+    int water = 0;
+    int agreeing = 0;
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      OpenSimplexNoise noise = new OpenSimplexNoise(seed);
+      TerrainGenerator generator = new TerrainGenerator(seed);
+      for (int[] origin : ORIGINS) {
+        TileGrid grid = new TileGrid(SIZE, SIZE);
+        generator.generate(grid, origin[0], origin[1]);
+        for (int y = 0; y < SIZE; y++) {
+          for (int x = 0; x < SIZE; x++) {
+            double r = origin[1] + y;
+            double c = origin[0] + x;
+            double value = noise.eval(r * SCALE, c * SCALE);
+            int cell = y * SIZE + x;
+            String where = "seed " + seed + " at " + (origin[0] + x) + "," + (origin[1] + y);
+            if (value > 0) {
+              assertEquals(where, TileGrid.GRASS, grid.getKind(cell));
+              continue;
+            }
+            assertEquals(where, TileGrid.WATER, grid.getKind(cell));
+            assertEquals(where, (float) (value + 1), grid.getPower(cell), 0);
+            double[] exact = exactDiffs(noise, r, c);
+            water++;
+            if (grid.getCurrent(cell) == direction(exact)) {
+              agreeing++;
+            } else {
+              // The interpolation can only tip a current that was nearly tied.
+              assertTrue(where, margin(exact) <= 2 * MAX_ERROR);
+            }
+          }
+        }
+      }
+    }
+    assertTrue("agreement " + agreeing + " of " + water, agreeing >= MIN_AGREEMENT * water);
+  }
+
+  @Test
+  public void layeredTerrainHasEveryClass() {
+    int[] counts = new int[TerrainClass.values().length];
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      GameState layered = new GameState(SIZE, SIZE, seed, new ForkJoinExecutor(),
+              Topology.BOUNDED, true);
+      TileGrid serial = new TileGrid(SIZE, SIZE);
+      new TerrainGenerator(seed).generateLayered(serial, 0, 0, new SingleThreadedExecutor());
+      assertTrue("seed " + seed, serial.sameTilesAs(layered.getGrid()));
+      for (int cell = 0; cell < SIZE * SIZE; cell++) {
+        if (serial.getKind(cell) == TileGrid.GRASS) {
+          counts[TerrainClass.GRASSLAND.ordinal()]++;
+        } else if (serial.getPower(cell) == 0) {
+          counts[TerrainClass.MARSH.ordinal()]++;
+        } else {
+          counts[TerrainClass.OPEN_WATER.ordinal()]++;
+        }
+      }
+    }
+    for (TerrainClass terrain : TerrainClass.values()) {
+      assertTrue(terrain + " " + counts[terrain.ordinal()], counts[terrain.ordinal()] > 0);
+    }
+    assertEquals(TerrainClass.OPEN_WATER, TerrainGenerator.classify(0, 1));
+    assertEquals(TerrainClass.MARSH, TerrainGenerator.classify(0.05, 0.5));
+    assertEquals(TerrainClass.GRASSLAND, TerrainGenerator.classify(0.05, -0.5));
+    assertEquals(TerrainClass.GRASSLAND, TerrainGenerator.classify(0.5, 0.5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void layeredTerrainDoesNotWrap() {
+    new GameState(SIZE, SIZE, 1, new SingleThreadedExecutor(), Topology.TORUS, true);
+  }
+}
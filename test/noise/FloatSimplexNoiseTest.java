@@ -0,0 +1,76 @@
+package noise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks FloatSimplexNoise against OpenSimplexNoise on a set of reference seeds: the float noise has
+ * to stay within errorBound() of the double noise for inputs of every size, and land and water
+ * classified with isAbove() have to come out exactly as with the double noise.
+ */
+public class FloatSimplexNoiseTest {
+  private static final int REFERENCE_SEEDS = 10;
+  private static final double[] MAGNITUDES = {1e-3, 1, 1e2, 1e4};
+  private static final int POINTS = 2000;
+  // The map's distance between tiles in noise space, and where the maps start.
+  private static final double SCALE = 1.5 / 5.0;
+  private static final int SIZE = 256;
+  private static final int[][] ORIGINS = {{0, 0}, {-137, 61}, {5000, -4000}};
+  // The most of the tiles that can need the double noise. The reference seeds need under 0.1%.
+  private static final double MAX_FALLBACK = 0.01;
+
+  @Test
+  public void errorStaysWithinTheBound() {
+    for (int seed = 0; seed < REFERENCE_SEEDS; seed++) {
+      OpenSimplexNoise exact = new OpenSimplexNoise(seed);
+      FloatSimplexNoise rounded = new FloatSimplexNoise(seed);
+      Random random = new Random(seed);
+      for (double magnitude : MAGNITUDES) {
+        for (int p = 0; p < POINTS; p++) {
+          double x = (random.nextDouble() * 2 - 1) * magnitude;
+          double y = (random.nextDouble() * 2 - 1) * magnitude;
+          double z = (random.nextDouble() * 2 - 1) * magnitude;
+          String where = "seed " + seed + " at " + x + "," + y + "," + z;
+          float fx = (float) x;
+          float fy = (float) y;
+          float fz = (float) z;
+          assertTrue(where, Math.abs(rounded.eval(fx, fy) - exact.eval(x, y))
+                  <= FloatSimplexNoise.errorBound(fx, fy));
+          assertTrue(where, Math.abs(rounded.eval(fx, fy, fz) - exact.eval(x, y, z))
+                  <= FloatSimplexNoise.errorBound(fx, fy, fz));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void landAndWaterComeOutTheSame() {
+    int tiles = 0;
+    int close = 0;
+    for (int seed = 0; seed < REFERENCE_SEEDS; seed++) {
+      OpenSimplexNoise exact = new OpenSimplexNoise(seed);
+      FloatSimplexNoise rounded = new FloatSimplexNoise(seed);
+      for (int[] origin : ORIGINS) {
+        for (int r = origin[1]; r < origin[1] + SIZE; r++) {
+          for (int c = origin[0]; c < origin[0] + SIZE; c++) {
+            // The same points and threshold as TerrainGenerator, and a slice of 3D noise.
+            double x = r * SCALE;
+            double y = c * SCALE;
+            String where = "seed " + seed + " at " + c + "," + r;
+            assertEquals(where, exact.eval(x, y) > 0, rounded.isAbove(exact, x, y, 0));
+            assertEquals(where, exact.eval(x, y, SCALE) > 0,
+                    rounded.isAbove(exact, x, y, SCALE, 0));
+            float value = rounded.eval((float) x, (float) y);
+            close += Math.abs(value) <= FloatSimplexNoise.errorBound((float) x, (float) y) ? 1 : 0;
+            tiles++;
+          }
+        }
+      }
+    }
+    assertTrue(close + " of " + tiles + " needed the double noise", close <= MAX_FALLBACK * tiles);
+  }
+}
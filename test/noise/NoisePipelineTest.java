@@ -0,0 +1,47 @@
+package noise;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks that a NoisePipeline filling a grid gives exactly the values of its layers evaluated point
+ * by point, with layers nested and shared the way TerrainGenerator uses them.
+ */
+public class NoisePipelineTest {
+  private static final int SIZE = 128;
+  private static final int SEEDS = 3;
+  // The distance in noise space between samples, the same as the map.
+  private static final double STEP = 1.5 / 5.0;
+
+  @Test
+  public void pipelineMatchesItsLayers() {
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      NoiseLayer warpX = new Shared(new Simplex(seed + 1));
+      NoiseLayer warpY = new Shared(new Simplex(seed + 2));
+      NoiseLayer[] layers = {
+          new DomainWarp(new Octaves(new Ridged(new Simplex(seed)), 3, 2, 0.5), warpX, warpY,
+                  0.75),
+          new Octaves(new Simplex(seed), 5, 2, 0.5),
+          warpX,
+          warpY};
+      NoisePipeline pipeline = new NoisePipeline();
+      for (NoiseLayer layer : layers) {
+        pipeline.addField(layer);
+      }
+      double[][] fields = new double[layers.length][SIZE * SIZE + 1];
+      // Negative positions and an offset into the arrays, to check both are handled.
+      pipeline.fill(fields, 1, -SIZE / 2, -7, STEP, SIZE, SIZE);
+      for (int r = 0; r < SIZE; r++) {
+        for (int c = 0; c < SIZE; c++) {
+          double x = ((double) (c - SIZE / 2)) * STEP;
+          double y = ((double) (r - 7)) * STEP;
+          for (int f = 0; f < layers.length; f++) {
+            assertEquals("seed " + seed + " field " + f + " at " + c + "," + r,
+                    layers[f].eval(x, y), fields[f][1 + r * SIZE + c], 0);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package noise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that forSeed() makes the same table OpenSimplexNoise used to shuffle for itself, so old
+ * seeds still make the same worlds, and that a table read back from toBytes() is the same table
+ * while anything that isn't a permutation is turned away.
+ */
+public class PermutationTableTest {
+  private static final long[] SEEDS = {0, 1, 5, -1, 123456789L, Long.MIN_VALUE, Long.MAX_VALUE};
+  private static final int RANDOM_SEEDS = 200;
+  private static final int GRADIENT_COUNT_3D = 24;
+
+  /**
+   * A method to shuffle a seed's table the way the OpenSimplexNoise constructor did before tables
+   * were shared, copied as it was.
+   * @param seed            The seed.
+   * @param permGradIndex3D An array of 256 to fill with the 3D gradient indices.
+   * @return The permutation.
+   */
+  private static short[] oldShuffle(long seed, short[] permGradIndex3D) {
+    short[] perm = new short[256];
+    short[] source = new short[256];
+    for (short i = 0; i < 256; i++)
+      source[i] = i;
+    seed = seed * 6364136223846793005l + 1442695040888963407l;
+    seed = seed * 6364136223846793005l + 1442695040888963407l;
+    seed = seed * 6364136223846793005l + 1442695040888963407l;
+    for (int i = 255; i >= 0; i--) {
+      seed = seed * 6364136223846793005l + 1442695040888963407l;
+      int r = (int)((seed + 31) % (i + 1));
+      if (r < 0)
+        r += (i + 1);
+      perm[i] = source[r];
+      permGradIndex3D[i] = (short)((perm[i] % GRADIENT_COUNT_3D) * 3);
+      source[r] = source[i];
+    }
+    return perm;
+  }
+
+  private static void checkSeed(long seed) {
+    short[] permGradIndex3D = new short[256];
+    short[] perm = oldShuffle(seed, permGradIndex3D);
+    PermutationTable table = PermutationTable.forSeed(seed);
+    for (int i = 0; i < PermutationTable.SIZE; i++) {
+      assertEquals("seed " + seed + " entry " + i, perm[i], table.getPerm()[i]);
+      assertEquals("seed " + seed + " entry " + i, permGradIndex3D[i],
+              table.getPermGradIndex3D()[i]);
+    }
+    assertTrue("seed " + seed + " wasn't cached", table == PermutationTable.forSeed(seed));
+  }
+
+  @Test
+  public void seedsShuffleTheSameAsBefore() {
+    for (long seed : SEEDS) {
+      checkSeed(seed);
+    }
+    Random random = new Random(19);
+    for (int s = 0; s < RANDOM_SEEDS; s++) {
+      checkSeed(random.nextLong());
+    }
+  }
+
+  @Test
+  public void bytesReadBackTheSame() {
+    Random random = new Random(19);
+    for (int s = 0; s < RANDOM_SEEDS; s++) {
+      long seed = random.nextLong();
+      PermutationTable table = PermutationTable.forSeed(seed);
+      byte[] bytes = table.toBytes();
+      assertEquals(PermutationTable.SIZE, bytes.length);
+      PermutationTable read = PermutationTable.fromBytes(bytes);
+      for (int i = 0; i < PermutationTable.SIZE; i++) {
+        assertEquals("seed " + seed + " entry " + i, table.getPerm()[i], read.getPerm()[i]);
+        assertEquals("seed " + seed + " entry " + i, table.getPermGradIndex3D()[i],
+                read.getPermGradIndex3D()[i]);
+      }
+    }
+  }
+
+  @Test
+  public void nonPermutationsAreTurnedAway() {
+    byte[] bytes = PermutationTable.forSeed(7).toBytes();
+    byte[][] bad = {new byte[PermutationTable.SIZE - 1], new byte[PermutationTable.SIZE + 1],
+            bytes.clone(), new byte[PermutationTable.SIZE]};
+    // The same value twice, and one missing.
+    bad[2][10] = bad[2][11];
+    for (int i = 0; i < bad.length; i++) {
+      try {
+        PermutationTable.fromBytes(bad[i]);
+        fail("read bad bytes " + i);
+      } catch (IllegalArgumentException e) {
+        // Turned away, as it should be.
+      }
+    }
+    short[] perm = PermutationTable.forSeed(7).getPerm().clone();
+    short[][] badPerms = {perm.clone(), perm.clone(), perm.clone(), new short[10]};
+    badPerms[0][3] = badPerms[0][4];
+    badPerms[1][3] = PermutationTable.SIZE;
+    badPerms[2][3] = -1;
+    for (int i = 0; i < badPerms.length; i++) {
+      try {
+        new PermutationTable(badPerms[i]);
+        fail("made a table of bad entries " + i);
+      } catch (IllegalArgumentException e) {
+        // Turned away, as it should be.
+      }
+    }
+    // The constructor takes a copy.
+    PermutationTable table = new PermutationTable(perm);
+    short first = perm[0];
+    perm[0] = perm[1];
+    assertEquals(first, table.getPerm()[0]);
+  }
+}
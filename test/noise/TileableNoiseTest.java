@@ -0,0 +1,74 @@
+package noise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that TileableNoise repeats: a point and the same point a period further along either axis
+ * have the same value, for a point at a time, with an offset and over a grid, and that the noise
+ * still changes within a period.
+ */
+public class TileableNoiseTest {
+  private static final int SEEDS = 5;
+  private static final int POINTS = 500;
+  // The periods of a 23 by 17 board at the map's scale, and of a square one.
+  private static final double STEP = 1.5 / 5.0;
+  private static final double[][] PERIODS = {{23 * STEP, 17 * STEP}, {64 * STEP, 64 * STEP}};
+  // Moving around a circle rounds the position a little differently each time.
+  private static final double DELTA = 1e-9;
+
+  @Test
+  public void pointsRepeatEveryPeriod() {
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      Random random = new Random(seed);
+      for (double[] period : PERIODS) {
+        TileableNoise noise = new TileableNoise(new OpenSimplexNoise(seed), period[0], period[1]);
+        double lowest = Double.POSITIVE_INFINITY;
+        double highest = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < POINTS; p++) {
+          double x = (random.nextDouble() * 6 - 3) * period[0];
+          double y = (random.nextDouble() * 6 - 3) * period[1];
+          double offset = random.nextDouble() * 10;
+          int times = random.nextInt(5) - 2;
+          String where = "seed " + seed + " at " + x + "," + y;
+          double value = noise.eval(x, y);
+          assertEquals(where, value, noise.eval(x + period[0], y), DELTA);
+          assertEquals(where, value, noise.eval(x, y + period[1]), DELTA);
+          assertEquals(where, value, noise.eval(x + times * period[0], y - times * period[1]),
+                  DELTA);
+          double moved = noise.eval(x, y, offset);
+          assertEquals(where, moved, noise.eval(x + period[0], y, offset), DELTA);
+          assertEquals(where, moved, noise.eval(x, y + period[1], offset), DELTA);
+          lowest = Math.min(lowest, value);
+          highest = Math.max(highest, value);
+        }
+        assertTrue("seed " + seed + " is flat", highest - lowest > 0.1);
+      }
+    }
+  }
+
+  @Test
+  public void gridsRepeatEveryPeriod() {
+    int width = 23;
+    int height = 17;
+    for (int seed = 1; seed <= SEEDS; seed++) {
+      TileableNoise noise = new TileableNoise(new OpenSimplexNoise(seed), width * STEP,
+              height * STEP);
+      // Two periods each way, starting below zero.
+      double[] grid = new double[4 * width * height + 1];
+      noise.eval(grid, 1, -5, -9, STEP, 2 * width, 2 * height);
+      for (int r = 0; r < 2 * height; r++) {
+        for (int c = 0; c < 2 * width; c++) {
+          String where = "seed " + seed + " at " + c + "," + r;
+          double value = grid[1 + r * 2 * width + c];
+          assertEquals(where, noise.eval((c - 5) * STEP, (r - 9) * STEP), value, DELTA);
+          assertEquals(where, grid[1 + (r % height) * 2 * width + c % width], value, DELTA);
+        }
+      }
+    }
+  }
+}